@@ -0,0 +1,31 @@
+package at.fhhgb.mc.pro.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry point of the benchmark jar; runs the benchmarks with the GC profiler, so the allocation rate is reported next to throughput and time per sample.
+ * Accepts the usual JMH command line options (e. g. a regular expression selecting benchmarks).
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * The program's entry point.
+	 * @param _args JMH command line options
+	 * @throws RunnerException if a benchmark fails
+	 * @throws CommandLineOptionException if the options are invalid
+	 */
+	public static void main(String[] _args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(_args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
\ No newline at end of file
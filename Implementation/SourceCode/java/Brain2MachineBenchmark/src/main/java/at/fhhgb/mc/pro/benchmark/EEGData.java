@@ -0,0 +1,188 @@
+package at.fhhgb.mc.pro.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * A class providing EEG data as OpenEEG packets for the benchmarks.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public final class EEGData {
+
+	/**
+	 * Name of the synthetic data source.
+	 */
+	public static final String SOURCE_SYNTHETIC = "synthetic";
+
+	/**
+	 * Name of the recorded data source.
+	 */
+	public static final String SOURCE_RECORDED = "recorded";
+
+	/**
+	 * System property for the directory of the recorded test data.
+	 */
+	public static final String TESTDATA_PROPERTY = "b2m.testdata";
+
+	/**
+	 * Default directory of the recorded test data, relative to the benchmark module.
+	 */
+	public static final String TESTDATA_DEFAULT = "../../matlab/testdata";
+
+	/**
+	 * Private constructor, since only static methods are provided.
+	 */
+	private EEGData() {
+	}
+
+	/**
+	 * Creates OpenEEG packets of a data source.
+	 * @param _source SOURCE_SYNTHETIC or SOURCE_RECORDED
+	 * @param _samples the number of samples
+	 * @param _channels the number of channels carrying a signal
+	 * @return the packets, one after another
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	public static byte[] packets(String _source, int _samples, int _channels) throws IOException {
+		if (SOURCE_SYNTHETIC.equals(_source)) {
+			return syntheticPackets(_samples, _channels, 42);
+		} else if (SOURCE_RECORDED.equals(_source)) {
+			return recordedPackets(_samples, _channels);
+		}
+		throw new IllegalArgumentException("Unknown data source " + _source + "!");
+	}
+
+	/**
+	 * Creates OpenEEG packets of a synthetic signal.
+	 * Every channel carries an alpha wave and noise; every 4 seconds there is a burst of high frequencies (like biting) and a step of the first channels (like looking to one side).
+	 * @param _samples the number of samples
+	 * @param _channels the number of channels carrying a signal
+	 * @param _seed the seed of the noise
+	 * @return the packets, one after another
+	 */
+	public static byte[] syntheticPackets(int _samples, int _channels, long _seed) {
+		Random random = new Random(_seed);
+		double[][] values = new double[_channels][_samples];
+		int rate = OpenEEGReader.SAMPLE_RATE;
+		for (int s=0; s<_samples; s++) {
+			int phase = s % (4 * rate);
+			double burst = phase < rate ? 0.15 * Math.sin(2 * Math.PI * 60 * s / rate) : 0;
+			double step = phase >= 2 * rate && phase < 2 * rate + rate / 2 ? 0.4 : 0;
+			for (int ch=0; ch<_channels; ch++) {
+				double value = 0.5 + 0.1 * Math.sin(2 * Math.PI * (10 + ch) * s / rate) + burst + 0.03 * random.nextGaussian();
+				values[ch][s] = value + (ch < 2 ? step : 0);
+			}
+		}
+		return encode(values, _samples);
+	}
+
+	/**
+	 * Creates OpenEEG packets of the recorded test data; the recordings are concatenated and repeated until enough samples are available.
+	 * @param _samples the number of samples
+	 * @param _channels the number of channels carrying a signal; channels not recorded repeat the recorded ones
+	 * @return the packets, one after another
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	public static byte[] recordedPackets(int _samples, int _channels) throws IOException {
+		File dir = new File(System.getProperty(TESTDATA_PROPERTY, TESTDATA_DEFAULT));
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Test data directory " + dir.getAbsolutePath() + " not found! Set -D" + TESTDATA_PROPERTY + "=<dir>.");
+		}
+		Arrays.sort(files);
+
+		List<double[][]> recordings = new ArrayList<>();
+		for (File file : files) {
+			if (file.getName().endsWith(".txt")) {
+				recordings.add(readRecording(file));
+			}
+		}
+		if (recordings.isEmpty()) {
+			throw new IOException("No test data found in " + dir.getAbsolutePath() + "!");
+		}
+
+		double[][] values = new double[_channels][_samples];
+		int s = 0;
+		while (s < _samples) {
+			for (int r=0; r<recordings.size() && s<_samples; r++) {
+				double[][] recording = recordings.get(r);
+				int length = Math.min(recording[0].length, _samples - s);
+				for (int ch=0; ch<_channels; ch++) {
+					System.arraycopy(recording[ch % recording.length], 0, values[ch], s, length);
+				}
+				s += length;
+			}
+		}
+		return encode(values, _samples);
+	}
+
+	/**
+	 * Helper method to read a recording of the Matlab test data (one line of comma separated normalized values per channel).
+	 * @param _file the file of the recording
+	 * @return the values, one array per channel
+	 * @throws IOException if the file cannot be read
+	 */
+	private static double[][] readRecording(File _file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		for (String line : Files.readAllLines(_file.toPath(), StandardCharsets.US_ASCII)) {
+			if (!line.trim().isEmpty()) {
+				lines.add(line);
+			}
+		}
+		double[][] values = new double[lines.size()][];
+		for (int ch=0; ch<values.length; ch++) {
+			String[] tokens = lines.get(ch).trim().split(",");
+			values[ch] = new double[tokens.length];
+			for (int s=0; s<tokens.length; s++) {
+				values[ch][s] = Double.parseDouble(tokens[s]);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Helper method to encode normalized values as OpenEEG packets.
+	 * @param _values the normalized values, one array per channel
+	 * @param _samples the number of samples
+	 * @return the packets, one after another
+	 */
+	private static byte[] encode(double[][] _values, int _samples) {
+		byte[] packets = new byte[_samples * OpenEEGReader.PACKET_SIZE];
+		for (int s=0; s<_samples; s++) {
+			int offset = s * OpenEEGReader.PACKET_SIZE;
+			packets[offset] = OpenEEGReader.SYNC0;
+			packets[offset + 1] = OpenEEGReader.SYNC1;
+			packets[offset + 2] = OpenEEGReader.VERSION;
+			packets[offset + OpenEEGReader.PACKET_COUNTER_INDEX] = (byte)s;
+			for (int ch=0; ch<_values.length && ch<OpenEEGReader.MAX_CHANNELS; ch++) {
+				int value = (int)Math.round(Math.max(0, Math.min(1, _values[ch][s])) * 1023);
+				packets[offset + OpenEEGReader.PACKET_DATA_INDEX + ch * 2] = (byte)(value >> 8);
+				packets[offset + OpenEEGReader.PACKET_DATA_INDEX + ch * 2 + 1] = (byte)value;
+			}
+		}
+		return packets;
+	}
+
+	/**
+	 * Splits packets into chunks as they would arrive from the serial port.
+	 * @param _packets the packets
+	 * @param _chunkBytes the number of bytes of a chunk
+	 * @return the chunks
+	 */
+	public static byte[][] chunks(byte[] _packets, int _chunkBytes) {
+		int count = (_packets.length + _chunkBytes - 1) / _chunkBytes;
+		byte[][] chunks = new byte[count][];
+		for (int c=0; c<count; c++) {
+			chunks[c] = Arrays.copyOfRange(_packets, c * _chunkBytes, Math.min(_packets.length, (c + 1) * _chunkBytes));
+		}
+		return chunks;
+	}
+}
\ No newline at end of file
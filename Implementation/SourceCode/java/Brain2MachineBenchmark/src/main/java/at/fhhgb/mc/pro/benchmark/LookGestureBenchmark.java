@@ -0,0 +1,115 @@
+package at.fhhgb.mc.pro.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * Benchmark of LookGesture.handleNextSample for different numbers of channels and gestures.
+ * The samples take the whole path through OpenEEGReader.onReceivedData; PacketDecodingBenchmark shows the share of decoding.
+ * One operation is one sample, so the scores are samples per second and nanoseconds per sample.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookGestureBenchmark {
+
+	/**
+	 * The number of samples replayed per invocation (100 seconds of EEG).
+	 */
+	public static final int SAMPLES = 100 * OpenEEGReader.SAMPLE_RATE;
+
+	/**
+	 * The data source.
+	 */
+	@Param({ EEGData.SOURCE_SYNTHETIC, EEGData.SOURCE_RECORDED })
+	public String mSource;
+
+	/**
+	 * The number of channels inspected by every gesture.
+	 */
+	@Param({ "2", "6" })
+	public int mChannels;
+
+	/**
+	 * The number of gestures attached to the reader.
+	 */
+	@Param({ "1", "4" })
+	public int mGestures;
+
+	/**
+	 * The reader being benchmarked.
+	 */
+	private OpenEEGReader mReader = null;
+
+	/**
+	 * The data split into chunks of the serial buffer size.
+	 */
+	private byte[][] mChunks = null;
+
+	/**
+	 * Creates the reader, the gestures and the data.
+	 * @param _blackhole the blackhole consuming the events
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup(final Blackhole _blackhole) throws IOException {
+		mReader = new OpenEEGReader(null, mChannels);
+		int[] channels = new int[mChannels];
+		double[] thresholdsHigh = new double[mChannels];
+		double[] thresholdsLow = new double[mChannels];
+		for (int ch=0; ch<mChannels; ch++) {
+			channels[ch] = ch;
+			thresholdsHigh[ch] = ch < 2 ? 0.7 : 0;
+			thresholdsLow[ch] = ch < 2 ? 0.3 : 1;
+		}
+		for (int g=0; g<mGestures; g++) {
+			LookGesture gesture = new LookGesture(channels, thresholdsHigh, thresholdsLow, g % 2);
+			gesture.addGestureEventListener(new LookGestureEventListener() {
+				@Override
+				public void onLook(LookGestureEvent _evt) {
+					_blackhole.consume(_evt);
+				}
+			});
+			mReader.addGesture(gesture);
+		}
+		mChunks = EEGData.chunks(EEGData.packets(mSource, SAMPLES, mChannels), OpenEEGReader.SERIAL_BUFFER_SIZE_DEFAULT);
+		mReader.connect();
+	}
+
+	/**
+	 * Replays all chunks.
+	 * @return the sample count of the reader
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public long handleSamples() {
+		for (byte[] chunk : mChunks) {
+			mReader.onReceivedData(chunk, chunk.length);
+		}
+		return mReader.getChannelDataSampleCount();
+	}
+}
\ No newline at end of file
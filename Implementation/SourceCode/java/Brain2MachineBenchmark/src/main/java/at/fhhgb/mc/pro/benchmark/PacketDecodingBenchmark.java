@@ -0,0 +1,91 @@
+package at.fhhgb.mc.pro.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * Benchmark of decoding OpenEEG packets in OpenEEGReader.onReceivedData without any gestures.
+ * One operation is one sample, so the scores are samples per second and nanoseconds per sample.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketDecodingBenchmark {
+
+	/**
+	 * The number of samples replayed per invocation (100 seconds of EEG).
+	 */
+	public static final int SAMPLES = 100 * OpenEEGReader.SAMPLE_RATE;
+
+	/**
+	 * The data source.
+	 */
+	@Param({ EEGData.SOURCE_SYNTHETIC, EEGData.SOURCE_RECORDED })
+	public String mSource;
+
+	/**
+	 * The number of channels of the reader.
+	 */
+	@Param({ "2", "6" })
+	public int mChannels;
+
+	/**
+	 * The number of bytes arriving at once.
+	 */
+	@Param({ "17", "256", "4096" })
+	public int mChunkBytes;
+
+	/**
+	 * The reader being benchmarked.
+	 */
+	private OpenEEGReader mReader = null;
+
+	/**
+	 * The data split into chunks.
+	 */
+	private byte[][] mChunks = null;
+
+	/**
+	 * Creates the reader and the data.
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		mReader = new OpenEEGReader(null, mChannels);
+		mChunks = EEGData.chunks(EEGData.packets(mSource, SAMPLES, mChannels), mChunkBytes);
+		mReader.connect();
+	}
+
+	/**
+	 * Decodes all chunks.
+	 * @return the sample count of the reader
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public long decode() {
+		for (byte[] chunk : mChunks) {
+			mReader.onReceivedData(chunk, chunk.length);
+		}
+		return mReader.getChannelDataSampleCount();
+	}
+}
\ No newline at end of file
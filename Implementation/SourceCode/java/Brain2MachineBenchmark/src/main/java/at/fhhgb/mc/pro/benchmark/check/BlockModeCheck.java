@@ -0,0 +1,212 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.dsp.BiquadFilter;
+import at.fhhgb.mc.pro.gesture.FreqGesture;
+import at.fhhgb.mc.pro.gesture.FreqGestureEvent;
+import at.fhhgb.mc.pro.gesture.FreqGestureEventListener;
+import at.fhhgb.mc.pro.gesture.FreqGestureMode;
+import at.fhhgb.mc.pro.gesture.Gesture;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.DecimatedStream;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleSignal;
+
+/**
+ * Replays the recorded test data through a look gesture and a frequency gesture in every FreqGestureMode, once per sample and once in block mode.
+ * The replay is done directly and in pipeline mode, on the normalized and the filtered signal, at full rate and on a decimated stream, in chunks of several sizes.
+ * The events of every gesture (kind, sample and read timestamp) have to be the same in both modes; only the order of events of different gestures may change.
+ * Afterwards two gestures in shared FFT mode with the same window and a hop shorter than a block are replayed; they have to share their spectra in block mode as well, so the number of transforms has to be the same in both modes.
+ * Exits with status 1 if the events or the numbers of transforms differ.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class BlockModeCheck {
+
+	/**
+	 * The number of replayed seconds of the recordings.
+	 */
+	public static final int SECONDS = 60;
+
+	/**
+	 * The sizes of the chunks the packets are split into, in bytes.
+	 */
+	public static final int[] CHUNK_BYTES = { OpenEEGReader.PACKET_SIZE, OpenEEGReader.SERIAL_BUFFER_SIZE_DEFAULT, 3000 };
+
+	/**
+	 * The decimation factors; 1 for the full rate samples.
+	 */
+	public static final int[] FACTORS = { 1, 4 };
+
+	/**
+	 * The threshold of the frequency gestures; low enough for the recordings to trigger events.
+	 */
+	public static final float FREQ_THRESHOLD = 0.2f;
+
+	/**
+	 * The overlap of the windows of the gestures sharing their spectra; the hop of 25 samples is shorter than a block.
+	 */
+	public static final float SHARED_OVERLAP = 0.9f;
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 * @throws IOException if the recorded data cannot be read
+	 * @throws InterruptedException if interrupted while waiting for the pipeline
+	 */
+	public static void main(String[] _args) throws IOException, InterruptedException {
+		byte[] packets = EEGData.recordedPackets(SECONDS * OpenEEGReader.SAMPLE_RATE, 2);
+		boolean passed = true;
+		for (boolean pipeline : new boolean[] { false, true }) {
+			for (boolean filter : new boolean[] { false, true }) {
+				for (int factor : FACTORS) {
+					for (int chunkBytes : CHUNK_BYTES) {
+						long[] perSampleEvaluations = new long[1];
+						long[] blockEvaluations = new long[1];
+						List<List<String>> perSample = replay(packets, false, pipeline, filter, factor, chunkBytes, perSampleEvaluations);
+						List<List<String>> block = replay(packets, true, pipeline, filter, factor, chunkBytes, blockEvaluations);
+						int events = 0;
+						for (List<String> gestureEvents : perSample) {
+							events += gestureEvents.size();
+						}
+						boolean equal = perSample.equals(block);
+						passed &= equal;
+						System.out.println("pipeline=" + pipeline + " filter=" + filter + " factor=" + factor + " chunk=" + chunkBytes + ": " + events + " events, equal=" + equal
+								+ ", evaluations per sample " + perSampleEvaluations[0] + " / block " + blockEvaluations[0]);
+						if (!equal) {
+							System.out.println("  per sample: " + perSample);
+							System.out.println("  block:      " + block);
+						}
+					}
+				}
+			}
+		}
+		for (int chunkBytes : CHUNK_BYTES) {
+			long perSample = sharedTransforms(packets, false, chunkBytes);
+			long block = sharedTransforms(packets, true, chunkBytes);
+			passed &= perSample == block;
+			System.out.println("shared spectra chunk=" + chunkBytes + ": transforms per sample " + perSample + " / block " + block + ", equal=" + (perSample == block));
+		}
+		System.out.println("passed=" + passed);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method to replay the packets through the gestures.
+	 * @param _packets the packets
+	 * @param _blockMode true to evaluate the gestures in block mode; false to evaluate them per sample
+	 * @param _pipeline true to process the samples in pipeline mode
+	 * @param _filter true to inspect the filtered signal; false to inspect the normalized signal
+	 * @param _factor the decimation factor of the stream the gestures are added to; 1 for the full rate samples
+	 * @param _chunkBytes the size of the chunks the packets are split into
+	 * @param _evaluations receives the sum of the evaluations of all gestures
+	 * @return the events, one list per gesture
+	 * @throws InterruptedException if interrupted while waiting for the pipeline
+	 */
+	private static List<List<String>> replay(byte[] _packets, boolean _blockMode, boolean _pipeline, boolean _filter, int _factor, int _chunkBytes, long[] _evaluations) throws InterruptedException {
+		OpenEEGReader reader = new OpenEEGReader((String)null);
+		if (_filter) {
+			reader.setFilter(BiquadFilter.createEEGFilter(OpenEEGReader.SAMPLE_RATE, 2));
+		}
+		List<List<String>> events = new ArrayList<>();
+		List<Gesture<?>> gestures = new ArrayList<>();
+
+		final List<String> lookEvents = new ArrayList<>();
+		LookGesture look = new LookGesture();
+		look.addGestureEventListener(new LookGestureEventListener() {
+			@Override
+			public void onLook(LookGestureEvent _evt) {
+				lookEvents.add(_evt.getDirection() + "@" + _evt.getSampleTimestamp() + "/" + _evt.getReadTimestamp());
+			}
+		});
+		events.add(lookEvents);
+		gestures.add(look);
+		for (FreqGestureMode mode : FreqGestureMode.values()) {
+			final List<String> freqEvents = new ArrayList<>();
+			FreqGesture freq = new FreqGesture(20, _factor > 1 ? 30 : 128, 1, 0.6f, new int[] { 0, 1 }, new float[] { FREQ_THRESHOLD, FREQ_THRESHOLD }, mode);
+			freq.addGestureEventListener(new FreqGestureEventListener() {
+				@Override
+				public void onFreqGestureEventStart(FreqGestureEvent _evt) {
+					freqEvents.add("START@" + _evt.getSampleTimestamp() + "/" + _evt.getReadTimestamp());
+				}
+
+				@Override
+				public void onFreqGestureEventComplete(FreqGestureEvent _evt) {
+					freqEvents.add("COMPLETE@" + _evt.getSampleTimestamp() + "/" + _evt.getReadTimestamp());
+				}
+			});
+			events.add(freqEvents);
+			gestures.add(freq);
+		}
+
+		DecimatedStream stream = _factor > 1 ? reader.addDecimatedStream(_factor) : null;
+		for (Gesture<?> gesture : gestures) {
+			gesture.setBlockMode(_blockMode);
+			if (_filter) {
+				gesture.setSignal(SampleSignal.FILTERED);
+			}
+			if (stream != null) {
+				stream.addGesture(gesture);
+			} else {
+				reader.addGesture(gesture);
+			}
+		}
+
+		reader.setPipelineMode(_pipeline);
+		reader.connect();
+		if (_pipeline) {
+			reader.startProcessing();
+		}
+		for (int offset=0; offset<_packets.length; offset+=_chunkBytes) {
+			int length = Math.min(_chunkBytes, _packets.length - offset);
+			byte[] chunk = new byte[length];
+			System.arraycopy(_packets, offset, chunk, 0, length);
+			//Read timestamps derived from the position, so both modes see the same ones
+			reader.onReceivedData(chunk, length, 1000000000L + offset * 4000L);
+			while (_pipeline && reader.getPipelineBacklog() > 512) {
+				Thread.sleep(1);
+			}
+		}
+		if (_pipeline) {
+			while (reader.getPipelineBacklog() > 0) {
+				Thread.sleep(5);
+			}
+			reader.stopProcessing();
+		}
+		reader.disconnect();
+
+		for (Gesture<?> gesture : gestures) {
+			_evaluations[0] += gesture.getEvaluationCount();
+		}
+		return events;
+	}
+
+	/**
+	 * Helper method to replay the packets through two gestures in shared FFT mode with the same window and hop.
+	 * @param _packets the packets
+	 * @param _blockMode true to evaluate the gestures in block mode; false to evaluate them per sample
+	 * @param _chunkBytes the size of the chunks the packets are split into
+	 * @return the number of spectra computed by the spectrum provider of the reader
+	 */
+	private static long sharedTransforms(byte[] _packets, boolean _blockMode, int _chunkBytes) {
+		OpenEEGReader reader = new OpenEEGReader((String)null);
+		for (int g=0; g<2; g++) {
+			FreqGesture freq = new FreqGesture(20, 128, 1, SHARED_OVERLAP, new int[] { 0, 1 }, new float[] { FREQ_THRESHOLD, FREQ_THRESHOLD }, FreqGestureMode.SHARED_FFT);
+			freq.setBlockMode(_blockMode);
+			reader.addGesture(freq);
+		}
+		reader.connect();
+		for (byte[] chunk : EEGData.chunks(_packets, _chunkBytes)) {
+			reader.onReceivedData(chunk, chunk.length);
+		}
+		reader.disconnect();
+		return reader.getSpectrumProvider().getTransformCount();
+	}
+}
\ No newline at end of file
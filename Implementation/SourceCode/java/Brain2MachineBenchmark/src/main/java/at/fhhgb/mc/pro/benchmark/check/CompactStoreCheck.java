@@ -0,0 +1,106 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.gesture.FreqGesture;
+import at.fhhgb.mc.pro.gesture.FreqGestureEvent;
+import at.fhhgb.mc.pro.gesture.FreqGestureEventListener;
+import at.fhhgb.mc.pro.gesture.FreqGestureMode;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * Replays the recorded test data through a reader with the double store and a reader with the compact store, each with a look gesture and a frequency gesture in every FreqGestureMode.
+ * The events (gesture, kind and sample count) and the values read back through the accessors have to be the same for both stores.
+ * Exits with status 1 if they differ.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class CompactStoreCheck {
+
+	/**
+	 * The number of replayed seconds of the recordings.
+	 */
+	public static final int SECONDS = 60;
+
+	/**
+	 * The threshold of the frequency gestures; low enough for the recordings to trigger events.
+	 */
+	public static final float FREQ_THRESHOLD = 0.2f;
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	public static void main(String[] _args) throws IOException {
+		byte[] packets = EEGData.recordedPackets(SECONDS * OpenEEGReader.SAMPLE_RATE, 2);
+		String doubleStore = replay(false, packets);
+		String compactStore = replay(true, packets);
+		boolean equal = doubleStore.equals(compactStore);
+		System.out.println("double store:");
+		System.out.println(doubleStore);
+		if (!equal) {
+			System.out.println("compact store:");
+			System.out.println(compactStore);
+		}
+		System.out.println("equal=" + equal);
+		if (!equal) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method to replay the packets and log the events and some values read back through the accessors.
+	 * @param _compactStore true for the compact store; false for the double store
+	 * @param _packets the packets
+	 * @return the log
+	 */
+	private static String replay(boolean _compactStore, byte[] _packets) {
+		final OpenEEGReader reader = new OpenEEGReader((String)null);
+		reader.setCompactStore(_compactStore);
+		final StringBuilder log = new StringBuilder();
+
+		LookGesture look = new LookGesture();
+		look.addGestureEventListener(new LookGestureEventListener() {
+			@Override
+			public void onLook(LookGestureEvent _evt) {
+				log.append("LOOK_" + _evt.getDirection() + "@" + reader.getChannelDataSampleCount() + " ");
+			}
+		});
+		reader.addGesture(look);
+		for (final FreqGestureMode mode : FreqGestureMode.values()) {
+			FreqGesture freq = new FreqGesture(20, 128, 1, 0.6f, new int[] { 0, 1 }, new float[] { FREQ_THRESHOLD, FREQ_THRESHOLD }, mode);
+			freq.addGestureEventListener(new FreqGestureEventListener() {
+				@Override
+				public void onFreqGestureEventStart(FreqGestureEvent _evt) {
+					log.append(mode + "_START@" + reader.getChannelDataSampleCount() + " ");
+				}
+
+				@Override
+				public void onFreqGestureEventComplete(FreqGestureEvent _evt) {
+					log.append(mode + "_COMPLETE@" + reader.getChannelDataSampleCount() + " ");
+				}
+			});
+			reader.addGesture(freq);
+		}
+
+		reader.connect();
+		for (byte[] chunk : EEGData.chunks(_packets, OpenEEGReader.SERIAL_BUFFER_SIZE_DEFAULT)) {
+			reader.onReceivedData(chunk, chunk.length);
+		}
+		reader.disconnect();
+
+		short[] raw = new short[20];
+		double[] normalized = new double[20];
+		reader.copyRaw(0, -10, raw.length, raw, 0);
+		reader.copyNormalized(0, -10, normalized.length, normalized, 0);
+		log.append("\nraw=" + Arrays.toString(raw));
+		log.append("\nnormalized=" + Arrays.toString(normalized));
+		log.append("\nvalue=" + reader.getNormalizedValue(0, reader.getBufferLength() - 10) + " raw value=" + reader.getRawValue(0, 5));
+		return log.toString();
+	}
+}
\ No newline at end of file
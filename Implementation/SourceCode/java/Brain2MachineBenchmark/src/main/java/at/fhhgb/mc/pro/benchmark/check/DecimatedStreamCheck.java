@@ -0,0 +1,114 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.dsp.PolyphaseDecimator;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.DecimatedStream;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * Prints the response of the decimation filters and replays the recorded test data through a look gesture on the full rate samples and on decimated streams.
+ * The look events of every decimated stream have to have the same directions as the ones at full rate and may only be delayed by up to MAX_DELAY_SECONDS.
+ * Exits with status 1 if the events differ.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class DecimatedStreamCheck {
+
+	/**
+	 * The number of replayed seconds of the recordings.
+	 */
+	public static final int SECONDS = 60;
+
+	/**
+	 * The decimation factors.
+	 */
+	public static final int[] FACTORS = { 4, 8 };
+
+	/**
+	 * The frequencies the response of the decimation filters is printed for, in Hz.
+	 */
+	public static final double[] FREQUENCIES = { 0, 5, 10, 15, 20, 25, 32, 40, 50, 64, 100 };
+
+	/**
+	 * The maximum delay of an event of a decimated stream in seconds.
+	 */
+	public static final double MAX_DELAY_SECONDS = 0.5;
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	public static void main(String[] _args) throws IOException {
+		for (int factor : FACTORS) {
+			PolyphaseDecimator decimator = new PolyphaseDecimator(factor, 1);
+			StringBuilder response = new StringBuilder("factor " + factor + ": delay " + decimator.getDelay() + " samples, |H| in dB:");
+			for (double frequency : FREQUENCIES) {
+				response.append(String.format(" %.0f Hz %.1f", frequency, 20 * Math.log10(decimator.getMagnitude(OpenEEGReader.SAMPLE_RATE, frequency))));
+			}
+			System.out.println(response);
+		}
+
+		byte[] packets = EEGData.recordedPackets(SECONDS * OpenEEGReader.SAMPLE_RATE, 2);
+		boolean passed = true;
+		List<String> fullRate = replay(packets, 1);
+		for (int factor : FACTORS) {
+			List<String> decimated = replay(packets, factor);
+			boolean same = decimated.size() == fullRate.size();
+			StringBuilder delays = new StringBuilder();
+			for (int e=0; same && e<fullRate.size(); e++) {
+				String[] expected = fullRate.get(e).split("@");
+				String[] actual = decimated.get(e).split("@");
+				double delay = Double.parseDouble(actual[1]) - Double.parseDouble(expected[1]);
+				same = expected[0].equals(actual[0]) && delay >= 0 && delay <= MAX_DELAY_SECONDS;
+				delays.append(String.format(" %.3f", delay));
+			}
+			passed &= same;
+			System.out.println("factor " + factor + ": same events=" + same + ", delays in s:" + delays);
+		}
+		System.out.println("passed=" + passed);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method to replay the packets through a look gesture on the full rate samples or a decimated stream.
+	 * @param _packets the packets
+	 * @param _factor the decimation factor; 1 for the full rate samples
+	 * @return the look events (direction and time in seconds of the reader's samples)
+	 */
+	private static List<String> replay(byte[] _packets, int _factor) {
+		final OpenEEGReader reader = new OpenEEGReader((String)null);
+		final List<String> events = new ArrayList<>();
+		LookGesture look = new LookGesture();
+		look.addGestureEventListener(new LookGestureEventListener() {
+			@Override
+			public void onLook(LookGestureEvent _evt) {
+				events.add(_evt.getDirection() + "@" + (double)reader.getChannelDataSampleCount() / OpenEEGReader.SAMPLE_RATE);
+			}
+		});
+		DecimatedStream stream = null;
+		if (_factor > 1) {
+			stream = reader.addDecimatedStream(_factor);
+			stream.addGesture(look);
+		} else {
+			reader.addGesture(look);
+		}
+
+		reader.connect();
+		for (byte[] chunk : EEGData.chunks(_packets, OpenEEGReader.SERIAL_BUFFER_SIZE_DEFAULT)) {
+			reader.onReceivedData(chunk, chunk.length);
+		}
+		reader.disconnect();
+		long samples = stream != null ? stream.getChannelDataSampleCount() : reader.getChannelDataSampleCount();
+		System.out.println("factor " + _factor + ": " + events + ", " + look.getEvaluationCount() + " evaluations for " + samples + " samples");
+		return events;
+	}
+}
\ No newline at end of file
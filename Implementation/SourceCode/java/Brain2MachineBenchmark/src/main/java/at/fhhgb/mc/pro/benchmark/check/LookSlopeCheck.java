@@ -0,0 +1,196 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.gesture.Gesture;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureDirection;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * Replays the recorded test data through LookGesture and through the previous implementation computing the slope with a new SimpleRegression for every threshold crossing.
+ * Both gestures are attached to the same reader, so they see the same samples; the look events (direction and sample count) have to be the same for every chunk size.
+ * Exits with status 1 if the events differ.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class LookSlopeCheck {
+
+	/**
+	 * The number of replayed seconds of the recordings.
+	 */
+	public static final int SECONDS = 120;
+
+	/**
+	 * The sizes of the chunks the packets are split into, in bytes.
+	 */
+	public static final int[] CHUNK_BYTES = { OpenEEGReader.PACKET_SIZE, 5, OpenEEGReader.SERIAL_BUFFER_SIZE_DEFAULT };
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 * @throws IOException if the recorded data cannot be read
+	 */
+	public static void main(String[] _args) throws IOException {
+		byte[] packets = EEGData.recordedPackets(SECONDS * OpenEEGReader.SAMPLE_RATE, 2);
+		boolean equal = true;
+		for (int chunkBytes : CHUNK_BYTES) {
+			OpenEEGReader reader = new OpenEEGReader((String)null, 2);
+			final List<String> events = new ArrayList<>();
+			LookGesture gesture = new LookGesture();
+			gesture.addGestureEventListener(new LookGestureEventListener() {
+				@Override
+				public void onLook(LookGestureEvent _evt) {
+					events.add(_evt.getDirection() + "@" + _evt.getSampleCount());
+				}
+			});
+			PreviousLookGesture previous = new PreviousLookGesture();
+			reader.addGesture(gesture);
+			reader.addGesture(previous);
+			reader.connect();
+			for (byte[] chunk : EEGData.chunks(packets, chunkBytes)) {
+				reader.onReceivedData(chunk, chunk.length);
+			}
+			reader.disconnect();
+
+			boolean same = events.equals(previous.mEvents);
+			equal &= same;
+			System.out.println("chunk " + chunkBytes + " bytes: " + events.size() + " events, previous implementation " + previous.mEvents.size() + " events, equal=" + same);
+			System.out.println("  " + events);
+		}
+		if (!equal) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The look gesture as it was before the running regression, computing the slope of channel 2 with a new SimpleRegression over the samples preceding the current sample.
+	 * The events are recorded with the sample count of the reader instead of being delivered.
+	 */
+	private static class PreviousLookGesture extends Gesture<LookGestureEventListener> {
+
+		/**
+		 * Predefined constant for the threshold of look gestures on channel 1 high.
+		 */
+		private static final double THRESHOLD_CH1_HIGH = 0.57;
+
+		/**
+		 * Predefined constant for the threshold of look gestures on channel 1 low.
+		 */
+		private static final double THRESHOLD_CH1_LOW = 0.44;
+
+		/**
+		 * Predefined constant for the threshold of look gestures on channel 2 high.
+		 */
+		private static final double THRESHOLD_CH2_HIGH = 0.9;
+
+		/**
+		 * Predefined constant for the threshold of look gestures on channel 2 low.
+		 */
+		private static final double THRESHOLD_CH2_LOW = 0.1;
+
+		/**
+		 * Time in seconds that has to pass before the next look gesture can be detected.
+		 */
+		private static final double SAFE_OFFSET_SECONDS = 0.25;
+
+		/**
+		 * The duration of the slope that is characteristic for a look gesture.
+		 */
+		private static final double SLOPE_SECONDS = 0.08;
+
+		/**
+		 * The duration of being able to look back to center without triggering another look gesture.
+		 */
+		private static final double LOOK_BACK_TO_CENTER_OFFSET = 1.0;
+
+		/**
+		 * The maximum slope of the look gesture.
+		 */
+		private static final double SLOPE_MAX = 4;
+
+		/**
+		 * The time stamp of the last sample a look gesture has been detected.
+		 */
+		private long mLastDetectionSample = -1;
+
+		/**
+		 * The time stamp of the last sample delivered by the reader.
+		 */
+		private long mLastSample = -1;
+
+		/**
+		 * The direction of the last detected look gesture.
+		 */
+		private LookGestureDirection mLastDirection = null;
+
+		/**
+		 * The detected events (direction and sample count of the reader).
+		 */
+		private List<String> mEvents = new ArrayList<>();
+
+		/**
+		 * Checks next incoming samples of the reader to record events if appropriate.
+		 * @param _reader the OpenEEGReader that provides the data for analysis
+		 */
+		@Override
+		public void handleNextSample(OpenEEGReader _reader) {
+			int safeOffset = (int)(SAFE_OFFSET_SECONDS * _reader.getSampleRate());
+			int slopeSamples = (int)(SLOPE_SECONDS * _reader.getSampleRate());
+			int backToCenterSamples = (int)(LOOK_BACK_TO_CENTER_OFFSET * _reader.getSampleRate());
+			int i = _reader.getChannelDataPointer();
+			double[][] buffer = _reader.getChannelData();
+
+			if (_reader.getChannelDataSampleCount() <= slopeSamples) {
+				return;
+			}
+
+			int max = mLastSample == -1 ? 0 : (int)(_reader.getChannelDataSampleCount() - mLastSample);
+
+			for (int idx = max - 1; idx>=0; idx--) {
+				int actualIdx = i - idx;
+				actualIdx = actualIdx < 0 ? buffer[0].length + actualIdx : actualIdx;
+
+				double ch1Val = buffer[0][actualIdx];
+				double ch2Val = buffer[1][actualIdx];
+
+				boolean fallingSignal = (ch1Val <= THRESHOLD_CH1_LOW && ch2Val <= THRESHOLD_CH2_LOW);
+				boolean risingSignal = (ch1Val >= THRESHOLD_CH1_HIGH && ch2Val >= THRESHOLD_CH2_HIGH);
+				boolean detected = fallingSignal != risingSignal;
+
+				if (detected && (mLastDetectionSample == -1 || (_reader.getChannelDataSampleCount() - idx - mLastDetectionSample) >= safeOffset)) {
+					SimpleRegression regression = new SimpleRegression();
+					double[][] regArray = new double[slopeSamples][2];
+					int regIdx = 0;
+					for (int idx2 = i-slopeSamples; idx2 < i; idx2++) {
+						int actualIdx2 = idx2 < 0 ? buffer[0].length + idx2 : idx2;
+						regArray[regIdx][0] = (double)regIdx / _reader.getSampleRate();
+						regArray[regIdx][1] = buffer[1][actualIdx2];
+						regIdx++;
+					}
+					regression.addData(regArray);
+					double slope = regression.getSlope();
+
+					if (((fallingSignal && slope < 0) || (risingSignal && slope > 0)) && Math.abs(slope) <= SLOPE_MAX) {
+						LookGestureDirection dir = fallingSignal ? LookGestureDirection.RIGHT : LookGestureDirection.LEFT;
+
+						if (!(mLastDirection != dir && (_reader.getChannelDataSampleCount() - mLastDetectionSample) <= backToCenterSamples)) {
+							mEvents.add(dir + "@" + _reader.getChannelDataSampleCount());
+
+							mLastDetectionSample = _reader.getChannelDataSampleCount() - idx;
+							mLastDirection = dir;
+						}
+					}
+				}
+			}
+
+			mLastSample = _reader.getChannelDataSampleCount();
+		}
+	}
+}
\ No newline at end of file
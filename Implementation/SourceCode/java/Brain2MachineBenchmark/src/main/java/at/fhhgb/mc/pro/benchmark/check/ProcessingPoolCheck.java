@@ -0,0 +1,179 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.gesture.FreqGesture;
+import at.fhhgb.mc.pro.gesture.FreqGestureMode;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.ProcessingPool;
+import at.fhhgb.mc.pro.reader.ReplayReader;
+
+/**
+ * Replays synthetic EEG through many readers in pipeline mode sharing a ProcessingPool and compares them with readers using their own processing thread.
+ * Every reader replays at full speed with backpressure, so no reader may drop samples.
+ * Afterwards one reader floods a pool with a single thread without backpressure while three readers replay at 20 times real time; only the flooding reader may drop samples.
+ * Exits with status 1 if a reader drops samples it should not.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class ProcessingPoolCheck {
+
+	/**
+	 * The number of samples replayed by every reader.
+	 */
+	public static final int SAMPLES = 20000;
+
+	/**
+	 * The numbers of readers replaying at the same time.
+	 */
+	public static final int[] READERS = { 1, 4, 16, 64 };
+
+	/**
+	 * The number of times the flooding reader receives all samples at once.
+	 */
+	public static final int FLOOD_REPEATS = 20;
+
+	/**
+	 * The replay speed of the paced readers (multiple of real time).
+	 */
+	public static final double PACED_SPEED = 20;
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 * @throws InterruptedException if interrupted while waiting for the readers
+	 */
+	public static void main(String[] _args) throws InterruptedException {
+		byte[] packets = EEGData.syntheticPackets(SAMPLES, 2, 3);
+		boolean passed = true;
+
+		ProcessingPool pool = new ProcessingPool();
+		for (int readers : READERS) {
+			passed &= replay(readers, null, packets);
+			passed &= replay(readers, pool, packets);
+		}
+		pool.shutdown();
+
+		ProcessingPool single = new ProcessingPool(1, 64);
+		List<OpenEEGReader> fairReaders = new ArrayList<>();
+		for (int r=0; r<4; r++) {
+			fairReaders.add(createReader(single));
+		}
+		final OpenEEGReader flooding = fairReaders.get(0);
+		final byte[] floodPackets = packets;
+		Thread flood = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int k=0; k<FLOOD_REPEATS; k++) {
+					flooding.onReceivedData(floodPackets, floodPackets.length);
+				}
+			}
+		});
+		byte[] pacedPackets = Arrays.copyOf(packets, OpenEEGReader.PACKET_SIZE * OpenEEGReader.SAMPLE_RATE * 20);
+		List<Thread> paced = new ArrayList<>();
+		for (int r=1; r<fairReaders.size(); r++) {
+			paced.add(startReplay(fairReaders.get(r), pacedPackets, PACED_SPEED));
+		}
+		flood.start();
+		flood.join();
+		for (Thread thread : paced) {
+			thread.join();
+		}
+		for (int r=0; r<fairReaders.size(); r++) {
+			OpenEEGReader reader = fairReaders.get(r);
+			while (reader.getPipelineBacklog() > 0) {
+				Thread.sleep(1);
+			}
+			System.out.println("fairness: reader " + r + (r == 0 ? " (flooding)" : " (paced)") + " packets=" + reader.getPacketCount() + " dropped=" + reader.getDroppedSampleCount());
+			passed &= r == 0 || reader.getDroppedSampleCount() == 0;
+			reader.disconnect();
+		}
+		single.shutdown();
+
+		System.out.println("passed=" + passed);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method to replay the packets through several readers at full speed at the same time.
+	 * @param _readers the number of readers
+	 * @param _pool the pool processing the samples; null if every reader uses its own processing thread
+	 * @param _packets the packets replayed by every reader
+	 * @return true if no reader dropped samples
+	 * @throws InterruptedException if interrupted while waiting for the readers
+	 */
+	private static boolean replay(int _readers, ProcessingPool _pool, byte[] _packets) throws InterruptedException {
+		List<OpenEEGReader> readers = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int r=0; r<_readers; r++) {
+			OpenEEGReader reader = createReader(_pool);
+			readers.add(reader);
+			threads.add(startReplay(reader, _packets, 0));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long samples = 0;
+		long dropped = 0;
+		for (OpenEEGReader reader : readers) {
+			while (reader.getPipelineBacklog() > 0) {
+				Thread.sleep(1);
+			}
+			samples += reader.getPacketCount();
+			dropped += reader.getDroppedSampleCount();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		for (OpenEEGReader reader : readers) {
+			reader.disconnect();
+		}
+		System.out.printf("readers=%d %s samples=%d samples/s=%.0f dropped=%d%n", _readers, _pool == null ? "own threads" : "pool(" + _pool.getThreadCount() + ")", samples, samples / seconds, dropped);
+		return dropped == 0 && samples == (long)_readers * SAMPLES;
+	}
+
+	/**
+	 * Helper method to create and connect a reader in pipeline mode with a frequency and a look gesture.
+	 * @param _pool the pool processing the samples; null if the reader uses its own processing thread
+	 * @return the connected reader
+	 */
+	private static OpenEEGReader createReader(ProcessingPool _pool) {
+		OpenEEGReader reader = new OpenEEGReader((String)null, 2);
+		reader.setPipelineMode(true);
+		reader.setProcessingPool(_pool);
+		reader.addGesture(new FreqGesture(20, 128, 1, 0.6f, FreqGesture.THRESHOLD_BITE_1_SEC_SAMPLES_CH1, FreqGesture.THRESHOLD_BITE_1_SEC_SAMPLES_CH2, FreqGestureMode.FFT));
+		reader.addGesture(new LookGesture());
+		reader.connect();
+		return reader;
+	}
+
+	/**
+	 * Helper method to start a thread replaying the packets through a reader.
+	 * @param _reader the reader
+	 * @param _packets the packets
+	 * @param _speed the replay speed (multiple of real time); 0 for full speed
+	 * @return the started thread
+	 */
+	private static Thread startReplay(OpenEEGReader _reader, final byte[] _packets, double _speed) {
+		final ReplayReader replay = new ReplayReader(_reader);
+		replay.setSpeed(_speed);
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					replay.replayRawDump(new ByteArrayInputStream(_packets));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+}
\ No newline at end of file
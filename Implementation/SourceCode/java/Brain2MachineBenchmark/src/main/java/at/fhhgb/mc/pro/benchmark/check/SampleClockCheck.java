@@ -0,0 +1,154 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleClock;
+
+/**
+ * Simulates 10 minute sessions of a device whose clock drifts against System.nanoTime() and compares the acquisition times estimated by the SampleClock of the reader with the true ones.
+ * The packets arrive in chunks of random length that are not aligned to packets; every chunk is read 1 to 3 ms after its last byte was sent, one in ten chunks up to 21 ms.
+ * One more session reads the first chunk FIRST_READ_DELAY_NS late, so the clock starts late and has to be corrected backwards without the timestamps going back.
+ * The first tenth of a session is skipped for the statistics, so the clock has settled. Afterwards the cost of SampleClock.next() is measured.
+ * Exits with status 1 if the estimated rate is off by more than MAX_RATE_ERROR or the timestamps are not increasing.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SampleClockCheck {
+
+	/**
+	 * The relative errors of the device clock.
+	 */
+	public static final double[] DRIFTS = { 0, 0.002, -0.003, 0.008 };
+
+	/**
+	 * The delay of the first read of the session with a late start in nanoseconds.
+	 */
+	public static final long FIRST_READ_DELAY_NS = 21000000L;
+
+	/**
+	 * The number of simulated samples (10 minutes).
+	 */
+	public static final int SAMPLES = 600 * OpenEEGReader.SAMPLE_RATE;
+
+	/**
+	 * The maximum relative error of the estimated sample rate.
+	 */
+	public static final double MAX_RATE_ERROR = 0.0002;
+
+	/**
+	 * The number of samples of a timing run of SampleClock.next().
+	 */
+	public static final int TIMING_SAMPLES = 1000000;
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 */
+	public static void main(String[] _args) {
+		byte[] packets = EEGData.syntheticPackets(SAMPLES, 2, 3);
+		boolean passed = true;
+		for (double drift : DRIFTS) {
+			passed &= simulate(packets, drift, 0);
+		}
+		passed &= simulate(packets, 0, FIRST_READ_DELAY_NS);
+
+		//A sample read 21 ms late, followed by 4 samples read 1 ms late
+		SampleClock lateStart = new SampleClock(OpenEEGReader.SAMPLE_RATE);
+		long period = 1000000000L / OpenEEGReader.SAMPLE_RATE;
+		lateStart.beginChunk(1, 1000000000L + period + FIRST_READ_DELAY_NS);
+		long last = lateStart.next();
+		lateStart.beginChunk(4, 1000000000L + 5 * period + 1000000L);
+		StringBuilder lateTimestamps = new StringBuilder("late start: " + last);
+		boolean lateIncreasing = true;
+		for (int s=0; s<4; s++) {
+			long timestamp = lateStart.next();
+			lateIncreasing &= timestamp > last;
+			last = timestamp;
+			lateTimestamps.append(" " + timestamp);
+		}
+		System.out.println(lateTimestamps + " increasing=" + lateIncreasing);
+		passed &= lateIncreasing;
+
+		SampleClock clock = new SampleClock(OpenEEGReader.SAMPLE_RATE);
+		long sink = 0;
+		for (int run=0; run<6; run++) {
+			long start = System.nanoTime();
+			for (int s=0; s<TIMING_SAMPLES; s++) {
+				if ((s & 15) == 0) {
+					clock.beginChunk(16, 1000000000L + (long)(s * 3906250.0));
+				}
+				sink += clock.next();
+			}
+			System.out.printf("next(): %.2f ns/sample%n", (double)(System.nanoTime() - start) / TIMING_SAMPLES);
+		}
+		//The sum keeps the timestamps from being optimized away
+		System.out.println("timestamp sum " + sink);
+		System.out.println("passed=" + passed);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method to simulate a session with a drifting device clock.
+	 * @param _packets the packets of the session
+	 * @param _drift the relative error of the device clock
+	 * @param _firstReadDelay the additional delay of the first read in nanoseconds
+	 * @return true if the estimated rate is within MAX_RATE_ERROR of the true rate and the timestamps are increasing
+	 */
+	private static boolean simulate(byte[] _packets, double _drift, long _firstReadDelay) {
+		double period = 1e9 / OpenEEGReader.SAMPLE_RATE * (1 + _drift);
+		OpenEEGReader reader = new OpenEEGReader((String)null, 2, 700);
+		reader.connect();
+		Random random = new Random(1);
+		long base = 1000000000L;
+		int offset = 0;
+		while (offset < _packets.length) {
+			int length = Math.min(_packets.length - offset, 1 + random.nextInt(120));
+			int end = offset + length;
+			//The chunk can be read once its last byte has been sent
+			double lastByteSent = base + ((double)end / OpenEEGReader.PACKET_SIZE) * period;
+			long read = (long)(lastByteSent + 1e6 + (random.nextDouble() < 0.9 ? random.nextDouble() * 2e6 : random.nextDouble() * 20e6));
+			if (offset == 0) {
+				read += _firstReadDelay;
+			}
+			reader.onReceivedData(Arrays.copyOfRange(_packets, offset, end), length, read);
+			offset = end;
+		}
+
+		int count = Math.min(SAMPLES, reader.getBufferLength());
+		long[] timestamps = new long[count];
+		reader.copySampleTimestamps(reader.getChannelDataPointer() - count, count, timestamps, 0);
+		int first = SAMPLES - count;
+		int skip = count / 10;
+		double[] errors = new double[count - skip];
+		double mean = 0;
+		for (int s=skip; s<count; s++) {
+			//A sample is acquired when its packet has been sent completely
+			errors[s - skip] = timestamps[s] - (base + (first + s + 1) * period);
+			mean += errors[s - skip];
+		}
+		mean /= errors.length;
+		double variance = 0;
+		double maxDeviation = 0;
+		for (double error : errors) {
+			variance += (error - mean) * (error - mean);
+			maxDeviation = Math.max(maxDeviation, Math.abs(error - mean));
+		}
+		double jitter = Math.sqrt(variance / errors.length);
+		boolean increasing = true;
+		for (int s=1; s<count; s++) {
+			increasing &= timestamps[s] > timestamps[s - 1];
+		}
+		double trueRate = 1e9 / period;
+		double rate = reader.getSampleClock().getEffectiveSampleRate();
+		double rateError = (rate - trueRate) / trueRate;
+		reader.disconnect();
+
+		System.out.printf("drift=%+.3f%% first read delay=%d ms true rate=%.4f Hz estimated rate=%.4f Hz (%+.4f%%) offset=%.3f ms jitter=%.3f ms max deviation=%.3f ms increasing=%b%n",
+				_drift * 100, _firstReadDelay / 1000000, trueRate, rate, rateError * 100, mean / 1e6, jitter / 1e6, maxDeviation / 1e6, increasing);
+		return Math.abs(rateError) <= MAX_RATE_ERROR && increasing;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,226 @@
+package at.fhhgb.mc.pro.benchmark.check;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import at.fhhgb.mc.pro.benchmark.EEGData;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.ReplayReader;
+import at.fhhgb.mc.pro.recording.SessionRecorder;
+import at.fhhgb.mc.pro.streaming.SampleStreamServer;
+
+/**
+ * Replays synthetic EEG at full speed through a reader publishing on a SampleStreamServer with a fast TCP client, a stalled TCP client and a UDP subscriber.
+ * The fast client has to receive every sample without a gap and with the values sent; the stalled client has a small receive buffer and only reads after the replay,
+ * so frames are dropped for it, but its stream has to consist of whole frames. The UDP subscriber has to receive the header frame and all published bytes.
+ * Exits with status 1 if the fast client or the UDP subscriber misses data; fails with an exception if a stream cannot be parsed.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class StreamServerCheck {
+
+	/**
+	 * The number of replayed samples.
+	 */
+	public static final int SAMPLES = 300000;
+
+	/**
+	 * The number of channels.
+	 */
+	public static final int CHANNELS = 6;
+
+	/**
+	 * The receive buffer size of the stalled client in bytes while it does not read.
+	 */
+	public static final int STALLED_RECEIVE_BUFFER = 4096;
+
+	/**
+	 * The program's entry point.
+	 * @param _args not used
+	 * @throws Exception if the server or a client fails
+	 */
+	public static void main(String[] _args) throws Exception {
+		byte[] packets = EEGData.syntheticPackets(SAMPLES, CHANNELS, 3);
+		OpenEEGReader reader = new OpenEEGReader((String)null, CHANNELS);
+		LookGesture look = new LookGesture();
+		reader.addGesture(look);
+		final long[] sentChecksum = new long[1];
+		reader.addSampleEventListener(new OpenEEGReader.SampleEventListener() {
+			@Override
+			public void onSampleDecoded(int _packetCounter, int[] _rawValues, int _channels) {
+				for (int ch=0; ch<_channels; ch++) {
+					sentChecksum[0] += _rawValues[ch];
+				}
+			}
+		});
+
+		SampleStreamServer server = new SampleStreamServer(reader, 0);
+		server.publishGesture(look, 1);
+		DatagramChannel udp = DatagramChannel.open();
+		udp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		udp.socket().setReceiveBufferSize(4 << 20);
+		server.addUdpSubscriber((InetSocketAddress)udp.getLocalAddress());
+
+		final Socket fast = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		Socket stalled = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		stalled.setReceiveBufferSize(STALLED_RECEIVE_BUFFER);
+		final StreamStats[] fastStats = new StreamStats[1];
+		Thread fastThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					fastStats[0] = parse(fast.getInputStream());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		fastThread.start();
+		Thread.sleep(200);
+
+		reader.connect();
+		ReplayReader replay = new ReplayReader(reader);
+		replay.setSpeed(0);
+		long start = System.nanoTime();
+		replay.replayRawDump(new ByteArrayInputStream(packets));
+		long replayMs = (System.nanoTime() - start) / 1000000;
+		Thread.sleep(500);
+
+		stalled.setReceiveBufferSize(4 << 20);
+		stalled.setSoTimeout(1000);
+		StreamStats stalledStats = parse(stalled.getInputStream());
+
+		ByteBuffer datagram = ByteBuffer.allocate(65536);
+		udp.configureBlocking(false);
+		long udpBytes = 0;
+		int udpDatagrams = 0;
+		while (udp.receive(datagram) != null) {
+			udpBytes += datagram.position();
+			datagram.clear();
+			udpDatagrams++;
+		}
+
+		server.close();
+		fast.close();
+		fastThread.join();
+		stalled.close();
+		udp.close();
+		reader.disconnect();
+
+		boolean passed = fastStats[0] != null && fastStats[0].mSamples == SAMPLES && fastStats[0].mGaps == 0 && fastStats[0].mChecksum == sentChecksum[0];
+		passed &= udpBytes == server.getPublishedByteCount() + SampleStreamServer.HEADER_FRAME_SIZE;
+		System.out.println("replay " + replayMs + " ms, published " + server.getPublishedByteCount() + " bytes, dropped " + server.getDroppedByteCount() + " bytes, look events " + look.getEventCount());
+		System.out.println("fast client: " + fastStats[0] + ", values equal=" + (fastStats[0] != null && fastStats[0].mChecksum == sentChecksum[0]));
+		System.out.println("stalled client: " + stalledStats);
+		System.out.println("udp: " + udpDatagrams + " datagrams, " + udpBytes + " bytes");
+		System.out.println("passed=" + passed);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method to parse a stream of the server until it ends or no data arrives within the timeout of the socket.
+	 * @param _in the stream of a client
+	 * @return the statistics of the stream
+	 * @throws IOException if the stream contains an invalid frame
+	 */
+	private static StreamStats parse(InputStream _in) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(_in));
+		StreamStats stats = new StreamStats();
+		if (in.readByte() != SampleStreamServer.FRAME_HEADER) {
+			throw new IOException("Missing header frame!");
+		}
+		in.readByte();
+		stats.mChannels = in.readByte();
+		stats.mSampleRate = in.readShort();
+		int lastCounter = -1;
+		try {
+			while (true) {
+				byte type = in.readByte();
+				if (type == SessionRecorder.RECORD_SAMPLE) {
+					int counter = in.readByte() & 0xFF;
+					if (lastCounter >= 0 && counter != ((lastCounter + 1) & 0xFF)) {
+						stats.mGaps++;
+					}
+					lastCounter = counter;
+					for (int ch=0; ch<stats.mChannels; ch++) {
+						int value = in.readShort();
+						if (value < 0 || value > 1023) {
+							throw new IOException("Invalid value " + value + " after " + stats.mSamples + " samples!");
+						}
+						stats.mChecksum += value;
+					}
+					stats.mSamples++;
+				} else if (type == SessionRecorder.RECORD_EVENT) {
+					in.readByte();
+					in.readInt();
+					in.readLong();
+					stats.mEvents++;
+				} else {
+					throw new IOException("Invalid frame type " + type + " after " + stats.mSamples + " samples!");
+				}
+			}
+		} catch (EOFException e) {
+			//The server closed the stream
+		} catch (SocketTimeoutException e) {
+			//No more data for the stalled client
+		}
+		return stats;
+	}
+
+	/**
+	 * The statistics of a parsed stream.
+	 */
+	private static class StreamStats {
+
+		/**
+		 * The number of channels given by the header frame.
+		 */
+		private int mChannels = 0;
+
+		/**
+		 * The sample rate given by the header frame.
+		 */
+		private int mSampleRate = 0;
+
+		/**
+		 * The number of sample frames.
+		 */
+		private long mSamples = 0;
+
+		/**
+		 * The number of event frames.
+		 */
+		private long mEvents = 0;
+
+		/**
+		 * The number of gaps in the packet counters of the sample frames.
+		 */
+		private long mGaps = 0;
+
+		/**
+		 * The sum of all values of the sample frames.
+		 */
+		private long mChecksum = 0;
+
+		/**
+		 * Gets a description of the statistics.
+		 * @return a description of the statistics
+		 */
+		@Override
+		public String toString() {
+			return mSamples + " samples, " + mEvents + " events, " + mGaps + " gaps, " + mChannels + " channels at " + mSampleRate + " Hz";
+		}
+	}
+}
\ No newline at end of file
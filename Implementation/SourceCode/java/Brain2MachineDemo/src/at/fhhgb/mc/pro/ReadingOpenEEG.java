@@ -1,23 +1,46 @@
 package at.fhhgb.mc.pro;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.util.Scanner;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import at.fhhgb.mc.pro.gesture.AsyncEventDispatcher;
+import at.fhhgb.mc.pro.gesture.DispatchPolicy;
 import at.fhhgb.mc.pro.gesture.FreqGesture;
 import at.fhhgb.mc.pro.gesture.FreqGestureEvent;
 import at.fhhgb.mc.pro.gesture.FreqGestureEventListener;
+import at.fhhgb.mc.pro.gesture.FreqGestureMode;
 import at.fhhgb.mc.pro.gesture.LookGesture;
 import at.fhhgb.mc.pro.gesture.LookGestureDirection;
 import at.fhhgb.mc.pro.gesture.LookGestureEvent;
 import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.latency.LatencyMonitor;
+import at.fhhgb.mc.pro.management.MetricsRegistration;
+import at.fhhgb.mc.pro.motor.MotionScheduler;
+import at.fhhgb.mc.pro.motor.MotionSequence;
+import at.fhhgb.mc.pro.motor.MotorCommand;
+import at.fhhgb.mc.pro.motor.MotorBackend;
+import at.fhhgb.mc.pro.motor.MotorCommandPipeline;
+import at.fhhgb.mc.pro.motor.RemoteEV3Backend;
+import at.fhhgb.mc.pro.motor.SimulatedEV3;
+import at.fhhgb.mc.pro.reader.DeviceFileTransport;
 import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.ProcessingPool;
+import at.fhhgb.mc.pro.reader.ReplayReader;
+import at.fhhgb.mc.pro.reader.SocketTransport;
+import at.fhhgb.mc.pro.recording.SessionRecorder;
+import at.fhhgb.mc.pro.recording.SessionRecording;
+import at.fhhgb.mc.pro.streaming.SampleStreamServer;
 import lejos.remote.ev3.RMIRegulatedMotor;
-import lejos.remote.ev3.RemoteEV3;
 
 /**
  * The main class that initializes all gesture listeners and controls the Lego Mindstorms crane.
@@ -50,19 +73,9 @@ public class ReadingOpenEEG {
 	
 	
 	/**
-	 * A background thread running the lifting tasks for the crane.
+	 * Runs the lifting tasks of the crane as timed motion sequences, so they can be reversed while running.
 	 */
-	private static Thread backgroundThread = null;
-	
-	/**
-	 * Indicates whether background thread is running.
-	 */
-	private static boolean backroundThreadRunning = false;
-	
-	/**
-	 * Queue that handles the lifting tasks.
-	 */
-	private static BlockingQueue<Runnable> backgroundTasks = new LinkedBlockingQueue<>();
+	private static MotionScheduler crane = null;
 	
 	
 	
@@ -89,84 +102,152 @@ public class ReadingOpenEEG {
 	private static LookGestureDirection lastDirection = null;
 	
 	/**
-	 * Indicates whether the crane is currently in a lifting task.
+	 * Indicates whether an object is currently held and should be released; switches between grabbing and releasing an object.
+	 */
+	private static boolean shouldReleaseItem = false;
+	
+	/**
+	 * Records the latencies from reading EEG data to the motor commands.
 	 */
-	private static boolean isLifting = false;
+	private static LatencyMonitor latencyMonitor = new LatencyMonitor();
 	
 	/**
-	 * Indicates whether an object is currently held and should be released; switches between grabbing and releasing an object.
+	 * Interval of printing the latencies in milliseconds.
 	 */
-	private static boolean shouldReleaseItem = false;
+	private static final long LATENCY_DUMP_INTERVAL_MS = 30000;
+	
+	/**
+	 * Sends the motor commands without blocking the callers.
+	 */
+	private static MotorCommandPipeline motors = null;
+	
+	/**
+	 * System property selecting the simulated brick instead of the real one ("simulator").
+	 */
+	private static final String MOTORS_PROPERTY = "b2m.motors";
+	
+	/**
+	 * System property with a session recording or raw serial dump to replay instead of reading the headset.
+	 */
+	private static final String REPLAY_PROPERTY = "b2m.replay";
+	
+	/**
+	 * System property with the localhost TCP port to stream the samples and gesture events to other processes.
+	 */
+	private static final String STREAM_PROPERTY = "b2m.stream";
+	
+	/**
+	 * System property with the source to read the headset from instead of the RXTX serial port: a device file (e. g. /dev/ttyUSB0 or a pty) or "tcp:&lt;host&gt;:&lt;port&gt;".
+	 */
+	private static final String SOURCE_PROPERTY = "b2m.source";
+	
+	/**
+	 * System property with the reduced sample rate the look gesture analyzes (e. g. 64 or 32 Hz) instead of the full rate of the headset.
+	 */
+	private static final String LOOK_RATE_PROPERTY = "b2m.lookRate";
 	
 	/**
 	 * The program's entry point.
-	 * @param _args
+	 * Run with -Db2m.motors=simulator and -Db2m.replay=&lt;file&gt; to run the control loop without brick and headset.
+	 * @param _args optionally the file to record the session to
+	 * @throws IOException if the session recording cannot be created
 	 * @throws RemoteException
 	 * @throws MalformedURLException
 	 * @throws NotBoundException
 	 * @throws InterruptedException
 	 */
-	public static void main(String[] _args) throws RemoteException, MalformedURLException, NotBoundException, InterruptedException {
-		//Prepare Lego motors
-		RemoteEV3 brick = new RemoteEV3("10.0.1.1");
+	public static void main(String[] _args) throws IOException, RemoteException, MalformedURLException, NotBoundException, InterruptedException {
+		//Check the reduced look rate before anything is started; it has to be a whole fraction of the sample rate of the headset
+		int lookRate = 0;
+		if (System.getProperty(LOOK_RATE_PROPERTY) != null) {
+			lookRate = Integer.parseInt(System.getProperty(LOOK_RATE_PROPERTY));
+			if (lookRate <= 0 || lookRate >= OpenEEGReader.SAMPLE_RATE || OpenEEGReader.SAMPLE_RATE % lookRate != 0) {
+				throw new IllegalArgumentException("System property " + LOOK_RATE_PROPERTY + " must be greater than 0, lower than and divide the sample rate " + OpenEEGReader.SAMPLE_RATE + "!");
+			}
+		}
+		
+		//Prepare Lego motors (of the real brick or a simulated one)
+		SimulatedEV3 simulator = null;
+		MotorBackend brick;
+		if ("simulator".equals(System.getProperty(MOTORS_PROPERTY))) {
+			simulator = new SimulatedEV3();
+			brick = simulator;
+		} else {
+			brick = new RemoteEV3Backend("10.0.1.1");
+		}
 		grabMotor = brick.createRegulatedMotor("C", 'M');
 		grabMotor.setSpeed(70);
 		rotateMotor = brick.createRegulatedMotor("A", 'L');
 		rotateMotor.setSpeed(15);
 		liftMotor = brick.createRegulatedMotor("D", 'L');
 		
-		//Initialize background thread
-		backgroundThread = new Thread() {			
+		//Send motor commands on a thread per motor, so the motors are commanded in parallel and nobody waits for RMI calls
+		ExecutorService motorExecutor = Executors.newFixedThreadPool(3);
+		motors = new MotorCommandPipeline(motorExecutor);
+		motors.setLatencyMonitor(latencyMonitor);
+		
+		//Initialize crane (lifting tasks are timed on a scheduler instead of a sleeping background thread)
+		ScheduledExecutorService craneScheduler = Executors.newSingleThreadScheduledExecutor();
+		crane = new MotionScheduler(motors, craneScheduler);
+		crane.addMotionListener(new MotionScheduler.MotionListener() {
 			@Override
-			public void run() {
-				while (backroundThreadRunning) {
-					try {
-						Runnable r = backgroundTasks.take();
-						r.run();
-					} catch (InterruptedException e) {
-						backroundThreadRunning = false;
-					}
-				}
-				System.out.println("Background thread exited");
+			public void onSequenceComplete(MotionSequence _sequence) {
+				System.out.println("Crane " + _sequence + " done");
+			}
+			@Override
+			public void onSequenceCancelled(MotionSequence _sequence) {
+				System.out.println("Crane " + _sequence + " cancelled");
 			}
-		};
-		backroundThreadRunning = true;
-		backgroundThread.start();
+		});
 		
 		
-		//Create EEG reader
-		OpenEEGReader reader = new OpenEEGReader("COM1");
+		//Create EEG reader (gestures are processed on a separate thread so they never delay reading from the serial port)
+		final String replayFile = System.getProperty(REPLAY_PROPERTY);
+		final String source = System.getProperty(SOURCE_PROPERTY);
+		final OpenEEGReader reader;
+		if (replayFile != null) {
+			reader = new OpenEEGReader(null);
+		} else if (source == null) {
+			reader = new OpenEEGReader("COM1");
+		} else if (source.startsWith("tcp:")) {
+			int separator = source.lastIndexOf(':');
+			InetSocketAddress address = new InetSocketAddress(source.substring(4, separator), Integer.parseInt(source.substring(separator + 1)));
+			reader = new OpenEEGReader(new SocketTransport(address), OpenEEGReader.CHANNELS_DEFAULT, OpenEEGReader.EEG_BUFFER_TIME_DEFAULT);
+		} else {
+			reader = new OpenEEGReader(new DeviceFileTransport(new File(source)), OpenEEGReader.CHANNELS_DEFAULT, OpenEEGReader.EEG_BUFFER_TIME_DEFAULT);
+		}
+		reader.setPipelineMode(true);
+		//Further headsets would share the same pool, with one processing thread per core for all of them
+		ProcessingPool processingPool = new ProcessingPool();
+		reader.setProcessingPool(processingPool);
+		reader.setLatencyMonitor(latencyMonitor);
+		latencyMonitor.startPeriodicDump(LATENCY_DUMP_INTERVAL_MS);
 		
 		//Look gesture
 		LookGesture lookGesture = new LookGesture();
 		lookGesture.addGestureEventListener(new LookGestureEventListener() {
 			@Override
 			public void onLook(LookGestureEvent _evt) {
-				if (!isLifting && !isBiting && !preventLook) {
+				if (!crane.isBusy() && !isBiting && !preventLook) {
 					if (task == null) {
 						task = new TimerTask() {
 							@Override
 							public void run() {
-								try {
 								System.out.println("Look " + _evt.getDirection());
 								if (lastDirection == null) {
 									if (_evt.getDirection()==LookGestureDirection.LEFT) {
-										rotateMotor.forward();
+										motors.submit(rotateMotor, MotorCommand.FORWARD, _evt);
 									} else { 
-										rotateMotor.backward();
+										motors.submit(rotateMotor, MotorCommand.BACKWARD, _evt);
 									}
 									lastDirection = _evt.getDirection();
 								}
 								else {
 									if (lastDirection != _evt.getDirection()) {
-										rotateMotor.stop(true);
+										motors.submit(rotateMotor, MotorCommand.STOP, _evt);
 										lastDirection = null;
 									}
 								}
-								
-								} catch (RemoteException e) {
-									e.printStackTrace();
-								}
 								task = null;
 							}
 						};
@@ -177,7 +258,7 @@ public class ReadingOpenEEG {
 		});
 		
 		//Prevent look gesture (when a strength of high frequencies is too high)
-		FreqGesture preventLookGesture = new FreqGesture(20, 128, 1, 0.6f, FreqGesture.THRESHOLD_PREVENT_LOOK_1_SEC_SAMPLES_CH1, FreqGesture.THRESHOLD_PREVENT_LOOK_1_SEC_SAMPLES_CH2);
+		FreqGesture preventLookGesture = new FreqGesture(20, 128, 1, 0.6f, FreqGesture.THRESHOLD_PREVENT_LOOK_1_SEC_SAMPLES_CH1, FreqGesture.THRESHOLD_PREVENT_LOOK_1_SEC_SAMPLES_CH2, FreqGestureMode.SHARED_FFT);
 		preventLookGesture.addGestureEventListener(new FreqGestureEventListener() {
 			@Override
 			public void onFreqGestureEventStart(FreqGestureEvent _evt) {
@@ -200,7 +281,7 @@ public class ReadingOpenEEG {
 		});
 		
 		//Bite gesture
-		FreqGesture biteFreqGesture = new FreqGesture(20, 128, 1, 0.6f, FreqGesture.THRESHOLD_BITE_1_SEC_SAMPLES_CH1, FreqGesture.THRESHOLD_BITE_1_SEC_SAMPLES_CH2);
+		FreqGesture biteFreqGesture = new FreqGesture(20, 128, 1, 0.6f, FreqGesture.THRESHOLD_BITE_1_SEC_SAMPLES_CH1, FreqGesture.THRESHOLD_BITE_1_SEC_SAMPLES_CH2, FreqGestureMode.SHARED_FFT);
 		biteFreqGesture.addGestureEventListener(new FreqGestureEventListener() {
 			@Override
 			public void onFreqGestureEventStart(FreqGestureEvent _evt) {
@@ -211,96 +292,23 @@ public class ReadingOpenEEG {
 					task = null;
 				}
 				
-				if (isLifting) {
+				//Biting again while the crane is lifting moves it back, so the item stays as it was
+				if (crane.isBusy()) {
+					crane.reverse();
+					shouldReleaseItem = !shouldReleaseItem;
 					return;
 				}
 				
-				isLifting = true;
+				motors.submit(rotateMotor, MotorCommand.STOP, _evt);
 				
-				Runnable r = null;
-				if (!shouldReleaseItem) {
-					r = new Runnable() {
-						@Override
-						public void run() {
-							try {
-								rotateMotor.stop(true);
-								
-								//Go down
-								liftMotor.setSpeed(22);
-								liftMotor.forward();
-								Thread.sleep(4000);
-								liftMotor.stop(true);
-								
-								//Grab item
-								grabMotor.forward();
-								Thread.sleep(2500);
-								grabMotor.stop(true);
-								
-								//Go back up
-								liftMotor.setSpeed(44);
-								liftMotor.backward();
-								Thread.sleep(2000);
-								liftMotor.stop(true);
-							} catch (Exception e) {
-								try {
-									grabMotor.stop(true);
-								} catch (RemoteException e1) {
-									e1.printStackTrace();
-								}
-								try {
-									liftMotor.stop(true);
-								} catch (RemoteException e1) {
-									e1.printStackTrace();
-								}
-								e.printStackTrace();
-							}
-							isLifting = false;
-						}
-					};
-				}
-				else {
-					r = new Runnable() {
-						@Override
-						public void run() {
-							try {
-								rotateMotor.stop(true);
-								
-								//Go down
-								liftMotor.setSpeed(22);
-								liftMotor.forward();
-								Thread.sleep(4000);
-								liftMotor.stop(true);
-								
-								//Release item
-								grabMotor.backward();
-								Thread.sleep(2500);
-								grabMotor.stop(true);
-								
-								//Go back up
-								liftMotor.setSpeed(44);
-								liftMotor.backward();
-								Thread.sleep(2000);
-								liftMotor.stop(true);
-							} catch (Exception e) {
-								try {
-									grabMotor.stop(true);
-								} catch (RemoteException e1) {
-									e1.printStackTrace();
-								}
-								try {
-									liftMotor.stop(true);
-								} catch (RemoteException e1) {
-									e1.printStackTrace();
-								}
-								e.printStackTrace();
-							}
-							isLifting = false;
-						}
-					};
-				}
-				try {
-					backgroundTasks.put(r);
-				} catch (InterruptedException e) { }
+				MotionSequence sequence = new MotionSequence(shouldReleaseItem ? "release" : "grab");
+				//Go down
+				sequence.add(liftMotor, 22, MotorCommand.FORWARD, 4000);
+				//Grab or release item
+				sequence.add(grabMotor, shouldReleaseItem ? MotorCommand.BACKWARD : MotorCommand.FORWARD, 2500);
+				//Go back up
+				sequence.add(liftMotor, 44, MotorCommand.BACKWARD, 2000);
+				crane.enqueue(sequence);
 				shouldReleaseItem = !shouldReleaseItem;
 				
 			}
@@ -316,24 +324,107 @@ public class ReadingOpenEEG {
 		});
 		
 		//Add gestures and start reader
-		reader.addGesture(lookGesture);
+		if (lookRate > 0) {
+			//Eye movements are slow, so the look gesture only needs to be evaluated for every sample of a decimated stream
+			reader.addDecimatedStream(reader.getSampleRate() / lookRate).addGesture(lookGesture);
+		} else {
+			reader.addGesture(lookGesture);
+		}
 		reader.addGesture(preventLookGesture);
 		reader.addGesture(biteFreqGesture);
+		
+		//Deliver gesture events on a separate thread, so motor calls of the listeners do not delay the reader
+		ExecutorService dispatchExecutor = Executors.newSingleThreadExecutor();
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(dispatchExecutor, AsyncEventDispatcher.CAPACITY_DEFAULT, DispatchPolicy.COALESCE);
+		lookGesture.setEventDispatcher(dispatcher);
+		preventLookGesture.setEventDispatcher(dispatcher);
+		biteFreqGesture.setEventDispatcher(dispatcher);
+		
+		//Expose metrics of reader and gestures via JMX (e. g. for JConsole)
+		MetricsRegistration.register("headset", reader);
+		
+		//Record session if a file is given
+		SessionRecorder recorder = null;
+		if (_args.length > 0) {
+			recorder = new SessionRecorder(new File(_args[0]), reader);
+			recorder.recordGesture(lookGesture, 1);
+			recorder.recordGesture(preventLookGesture, 2);
+			recorder.recordGesture(biteFreqGesture, 3);
+			System.out.println("Recording session to " + recorder.getFile());
+		}
+		
+		//Stream samples and gesture events if a port is given (e. g. for visualization)
+		SampleStreamServer streamServer = null;
+		if (System.getProperty(STREAM_PROPERTY) != null) {
+			streamServer = new SampleStreamServer(reader, Integer.parseInt(System.getProperty(STREAM_PROPERTY)));
+			streamServer.publishGesture(lookGesture, 1);
+			streamServer.publishGesture(preventLookGesture, 2);
+			streamServer.publishGesture(biteFreqGesture, 3);
+			System.out.println("Streaming samples on port " + streamServer.getPort());
+		}
 		reader.connect();
 		
+		//Replay recorded data instead of reading the headset
+		final ReplayReader replay = new ReplayReader(reader);
+		if (replayFile != null) {
+			Thread replayThread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						File file = new File(replayFile);
+						SessionRecording recording = null;
+						try {
+							recording = new SessionRecording(file);
+						} catch (IOException e) {
+							//No session recording, so replay it as raw dump of the serial port
+						}
+						if (recording != null) {
+							replay.replayRecording(recording, 0);
+						} else {
+							replay.replayRawDump(file);
+						}
+						System.out.println("Replay of " + replayFile + " done");
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			replayThread.setDaemon(true);
+			replayThread.start();
+		}
+		
 		//Handle enter press to exit program
 		System.out.println("Press ENTER to exit");
 		Scanner sc = new Scanner(System.in);
 		sc.nextLine();
 		sc.close();
 		
-		//Stop background thread, close RMI motors and disconnect reader
-		backroundThreadRunning = false;
-		backgroundThread.interrupt();
+		//Stop replay and disconnect reader, deliver the queued gesture events, then stop crane and close RMI motors
+		replay.stop();
+		reader.disconnect();
+		processingPool.shutdown();
+		dispatchExecutor.shutdown();
+		dispatchExecutor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+		timer.cancel();
+		crane.cancel();
+		craneScheduler.shutdown();
+		motors.awaitIdle(1000);
+		motorExecutor.shutdown();
 		rotateMotor.close();
 		liftMotor.close();
 		grabMotor.close();
-		reader.disconnect();
+		MetricsRegistration.unregister("headset");
+		latencyMonitor.stopPeriodicDump();
+		System.out.println(latencyMonitor);
+		if (simulator != null) {
+			simulator.printTimeline(System.out);
+		}
+		if (recorder != null) {
+			recorder.close();
+		}
+		if (streamServer != null) {
+			streamServer.close();
+		}
 		Thread.sleep(3000);
 		System.exit(0);
 	}
@@ -0,0 +1,180 @@
+package at.fhhgb.mc.pro.dsp;
+
+/**
+ * A class representing the normalized coefficients of a second order IIR filter section (biquad).
+ * The coefficients are computed once by the factory methods (following the Audio EQ Cookbook by Robert Bristow-Johnson), so filtering a sample costs five multiply-adds per section.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class Biquad {
+
+	/**
+	 * Feed forward coefficient of the current input.
+	 */
+	private double mB0 = 0;
+
+	/**
+	 * Feed forward coefficient of the previous input.
+	 */
+	private double mB1 = 0;
+
+	/**
+	 * Feed forward coefficient of the input before the previous input.
+	 */
+	private double mB2 = 0;
+
+	/**
+	 * Feedback coefficient of the previous output.
+	 */
+	private double mA1 = 0;
+
+	/**
+	 * Feedback coefficient of the output before the previous output.
+	 */
+	private double mA2 = 0;
+
+	/**
+	 * Constructor.
+	 * @param _b0 feed forward coefficient of the current input
+	 * @param _b1 feed forward coefficient of the previous input
+	 * @param _b2 feed forward coefficient of the input before the previous input
+	 * @param _a0 coefficient of the output the other coefficients are normalized with
+	 * @param _a1 feedback coefficient of the previous output
+	 * @param _a2 feedback coefficient of the output before the previous output
+	 */
+	public Biquad(double _b0, double _b1, double _b2, double _a0, double _a1, double _a2) {
+		if (_a0 == 0) {
+			throw new IllegalArgumentException("Constructor parameter _a0 must not be 0 in class " + this.getClass().getName() + "!");
+		}
+		mB0 = _b0 / _a0;
+		mB1 = _b1 / _a0;
+		mB2 = _b2 / _a0;
+		mA1 = _a1 / _a0;
+		mA2 = _a2 / _a0;
+	}
+
+	/**
+	 * Creates a second order low pass section.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _cutoff the cutoff frequency in Hz
+	 * @param _q the quality factor (0.7071 for a Butterworth section)
+	 * @return the section
+	 */
+	public static Biquad lowPass(double _sampleRate, double _cutoff, double _q) {
+		double w = 2 * Math.PI * _cutoff / _sampleRate;
+		double cos = Math.cos(w);
+		double alpha = Math.sin(w) / (2 * _q);
+		return new Biquad((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Creates a second order high pass section.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _cutoff the cutoff frequency in Hz
+	 * @param _q the quality factor (0.7071 for a Butterworth section)
+	 * @return the section
+	 */
+	public static Biquad highPass(double _sampleRate, double _cutoff, double _q) {
+		double w = 2 * Math.PI * _cutoff / _sampleRate;
+		double cos = Math.cos(w);
+		double alpha = Math.sin(w) / (2 * _q);
+		return new Biquad((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Creates a notch section removing a single frequency, e. g. mains hum.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _frequency the frequency to remove in Hz
+	 * @param _q the quality factor (the width of the notch is _frequency / _q)
+	 * @return the section
+	 */
+	public static Biquad notch(double _sampleRate, double _frequency, double _q) {
+		double w = 2 * Math.PI * _frequency / _sampleRate;
+		double cos = Math.cos(w);
+		double alpha = Math.sin(w) / (2 * _q);
+		return new Biquad(1, -2 * cos, 1, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Creates a first order DC blocker (y[n] = x[n] - x[n-1] + _pole * y[n-1]).
+	 * @param _pole the pole between 0 and 1; the closer to 1, the lower the cutoff frequency
+	 * @return the section
+	 */
+	public static Biquad dcBlocker(double _pole) {
+		return new Biquad(1, -1, 0, 1, -_pole, 0);
+	}
+
+	/**
+	 * Computes the quality factors of the second order sections of a Butterworth filter.
+	 * @param _order the even order of the filter
+	 * @return the quality factors, one per section
+	 */
+	public static double[] butterworthQ(int _order) {
+		if (_order <= 0 || _order % 2 != 0) {
+			throw new IllegalArgumentException("Parameter _order must be even and greater than 0 in class " + Biquad.class.getName() + "!");
+		}
+		double[] q = new double[_order / 2];
+		for (int k=0; k<q.length; k++) {
+			q[k] = 1 / (2 * Math.cos(Math.PI * (2 * k + 1) / (2 * _order)));
+		}
+		return q;
+	}
+
+	/**
+	 * Computes the magnitude of the response of the section at a frequency.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _frequency the frequency in Hz
+	 * @return the magnitude (1 if the frequency passes unchanged)
+	 */
+	public double getMagnitude(double _sampleRate, double _frequency) {
+		double w = 2 * Math.PI * _frequency / _sampleRate;
+		double cos1 = Math.cos(w);
+		double sin1 = Math.sin(w);
+		double cos2 = Math.cos(2 * w);
+		double sin2 = Math.sin(2 * w);
+		double numRe = mB0 + mB1 * cos1 + mB2 * cos2;
+		double numIm = -mB1 * sin1 - mB2 * sin2;
+		double denRe = 1 + mA1 * cos1 + mA2 * cos2;
+		double denIm = -mA1 * sin1 - mA2 * sin2;
+		return Math.sqrt((numRe * numRe + numIm * numIm) / (denRe * denRe + denIm * denIm));
+	}
+
+	/**
+	 * Gets the feed forward coefficient of the current input.
+	 * @return the normalized coefficient
+	 */
+	public double getB0() {
+		return mB0;
+	}
+
+	/**
+	 * Gets the feed forward coefficient of the previous input.
+	 * @return the normalized coefficient
+	 */
+	public double getB1() {
+		return mB1;
+	}
+
+	/**
+	 * Gets the feed forward coefficient of the input before the previous input.
+	 * @return the normalized coefficient
+	 */
+	public double getB2() {
+		return mB2;
+	}
+
+	/**
+	 * Gets the feedback coefficient of the previous output.
+	 * @return the normalized coefficient
+	 */
+	public double getA1() {
+		return mA1;
+	}
+
+	/**
+	 * Gets the feedback coefficient of the output before the previous output.
+	 * @return the normalized coefficient
+	 */
+	public double getA2() {
+		return mA2;
+	}
+}
\ No newline at end of file
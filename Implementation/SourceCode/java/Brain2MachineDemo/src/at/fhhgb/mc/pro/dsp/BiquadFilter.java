@@ -0,0 +1,238 @@
+package at.fhhgb.mc.pro.dsp;
+
+/**
+ * A class representing a cascade of biquad sections filtering several channels sample by sample.
+ * The sections are run in transposed direct form II; the coefficients and the state of all channels are kept in primitive arrays, so filtering does not allocate memory.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class BiquadFilter {
+
+	/**
+	 * Default lower edge of the pass band in Hz (as the band pass of the Matlab prototype).
+	 */
+	public static final double EEG_LOW_DEFAULT = 1;
+
+	/**
+	 * Default upper edge of the pass band in Hz (as the band pass of the Matlab prototype).
+	 */
+	public static final double EEG_HIGH_DEFAULT = 49;
+
+	/**
+	 * Default mains frequency in Hz.
+	 */
+	public static final double MAINS_DEFAULT = 50;
+
+	/**
+	 * Quality factor of the mains notch (a notch of 1 Hz width at 50 Hz).
+	 */
+	public static final double MAINS_Q = 50;
+
+	/**
+	 * Pole of the DC blocker (cutoff of about 0.2 Hz at 256 Hz).
+	 */
+	public static final double DC_POLE = 0.995;
+
+	/**
+	 * Order of the Butterworth low and high pass of the band pass.
+	 */
+	public static final int BAND_ORDER = 4;
+
+	/**
+	 * The number of sections.
+	 */
+	private int mSections = 0;
+
+	/**
+	 * The number of channels.
+	 */
+	private int mChannels = 0;
+
+	/**
+	 * The sections of the cascade.
+	 */
+	private Biquad[] mBiquads = null;
+
+	/**
+	 * Feed forward coefficients of the current input, one per section.
+	 */
+	private double[] mB0 = null;
+
+	/**
+	 * Feed forward coefficients of the previous input, one per section.
+	 */
+	private double[] mB1 = null;
+
+	/**
+	 * Feed forward coefficients of the input before the previous input, one per section.
+	 */
+	private double[] mB2 = null;
+
+	/**
+	 * Feedback coefficients of the previous output, one per section.
+	 */
+	private double[] mA1 = null;
+
+	/**
+	 * Feedback coefficients of the output before the previous output, one per section.
+	 */
+	private double[] mA2 = null;
+
+	/**
+	 * The two state variables of every section of every channel.
+	 */
+	private double[] mState = null;
+
+	/**
+	 * Indicates per channel whether the first sample has been filtered, so the state can be settled on it.
+	 */
+	private boolean[] mPrimed = null;
+
+	/**
+	 * Constructor.
+	 * @param _channels the number of channels to filter
+	 * @param _biquads the sections of the cascade in the order they are applied
+	 */
+	public BiquadFilter(int _channels, Biquad... _biquads) {
+		if (_channels <= 0 || _biquads == null || _biquads.length == 0) {
+			throw new IllegalArgumentException("Constructor parameters _channels and _biquads must contain at least one channel and one section in class " + this.getClass().getName() + "!");
+		}
+		mChannels = _channels;
+		mSections = _biquads.length;
+		mBiquads = _biquads.clone();
+		mB0 = new double[mSections];
+		mB1 = new double[mSections];
+		mB2 = new double[mSections];
+		mA1 = new double[mSections];
+		mA2 = new double[mSections];
+		for (int s=0; s<mSections; s++) {
+			mB0[s] = _biquads[s].getB0();
+			mB1[s] = _biquads[s].getB1();
+			mB2[s] = _biquads[s].getB2();
+			mA1[s] = _biquads[s].getA1();
+			mA2[s] = _biquads[s].getA2();
+		}
+		mState = new double[_channels * mSections * 2];
+		mPrimed = new boolean[_channels];
+	}
+
+	/**
+	 * Creates the filter for EEG data: DC removal, a Butterworth band pass and a notch at the mains frequency.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _channels the number of channels to filter
+	 * @param _low the lower edge of the pass band in Hz
+	 * @param _high the upper edge of the pass band in Hz
+	 * @param _mains the mains frequency to remove in Hz; 0 for no notch
+	 * @return the filter
+	 */
+	public static BiquadFilter createEEGFilter(int _sampleRate, int _channels, double _low, double _high, double _mains) {
+		double[] q = Biquad.butterworthQ(BAND_ORDER);
+		int sections = 1 + 2 * q.length + (_mains > 0 ? 1 : 0);
+		Biquad[] biquads = new Biquad[sections];
+		int s = 0;
+		biquads[s++] = Biquad.dcBlocker(DC_POLE);
+		for (int k=0; k<q.length; k++) {
+			biquads[s++] = Biquad.highPass(_sampleRate, _low, q[k]);
+		}
+		for (int k=0; k<q.length; k++) {
+			biquads[s++] = Biquad.lowPass(_sampleRate, _high, q[k]);
+		}
+		if (_mains > 0) {
+			biquads[s++] = Biquad.notch(_sampleRate, _mains, MAINS_Q);
+		}
+		return new BiquadFilter(_channels, biquads);
+	}
+
+	/**
+	 * Creates the filter for EEG data with the default band of 1 to 49 Hz and a 50 Hz notch.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _channels the number of channels to filter
+	 * @return the filter
+	 */
+	public static BiquadFilter createEEGFilter(int _sampleRate, int _channels) {
+		return createEEGFilter(_sampleRate, _channels, EEG_LOW_DEFAULT, EEG_HIGH_DEFAULT, MAINS_DEFAULT);
+	}
+
+	/**
+	 * Filters the next sample of a channel.
+	 * @param _channel the channel
+	 * @param _value the sample
+	 * @return the filtered sample
+	 */
+	public double filter(int _channel, double _value) {
+		int state = _channel * mSections * 2;
+		if (!mPrimed[_channel]) {
+			prime(_channel, _value);
+		}
+		double x = _value;
+		for (int s=0; s<mSections; s++) {
+			double y = mB0[s] * x + mState[state];
+			mState[state] = mB1[s] * x - mA1[s] * y + mState[state + 1];
+			mState[state + 1] = mB2[s] * x - mA2[s] * y;
+			x = y;
+			state += 2;
+		}
+		return x;
+	}
+
+	/**
+	 * Clears the state of all channels, e. g. before filtering a new recording.
+	 */
+	public void reset() {
+		for (int i=0; i<mState.length; i++) {
+			mState[i] = 0;
+		}
+		for (int c=0; c<mChannels; c++) {
+			mPrimed[c] = false;
+		}
+	}
+
+	/**
+	 * Gets the number of channels.
+	 * @return the number of channels
+	 */
+	public int getChannels() {
+		return mChannels;
+	}
+
+	/**
+	 * Gets the sections of the cascade.
+	 * @return the sections in the order they are applied
+	 */
+	public Biquad[] getBiquads() {
+		return mBiquads.clone();
+	}
+
+	/**
+	 * Computes the magnitude of the response of the cascade at a frequency.
+	 * @param _sampleRate the sample rate in Hz
+	 * @param _frequency the frequency in Hz
+	 * @return the magnitude (1 if the frequency passes unchanged)
+	 */
+	public double getMagnitude(double _sampleRate, double _frequency) {
+		double magnitude = 1;
+		for (int s=0; s<mSections; s++) {
+			magnitude *= mBiquads[s].getMagnitude(_sampleRate, _frequency);
+		}
+		return magnitude;
+	}
+
+	/**
+	 * Helper method to settle the state of a channel as if the first sample had been applied forever, so the offset of the signal does not cause a long transient.
+	 * @param _channel the channel
+	 * @param _value the first sample
+	 */
+	private void prime(int _channel, double _value) {
+		int state = _channel * mSections * 2;
+		double x = _value;
+		for (int s=0; s<mSections; s++) {
+			//Steady state of a constant input x: y = gain * x
+			double gain = (mB0[s] + mB1[s] + mB2[s]) / (1 + mA1[s] + mA2[s]);
+			double y = gain * x;
+			mState[state + 1] = mB2[s] * x - mA2[s] * y;
+			mState[state] = mB1[s] * x - mA1[s] * y + mState[state + 1];
+			x = y;
+			state += 2;
+		}
+		mPrimed[_channel] = true;
+	}
+}
\ No newline at end of file
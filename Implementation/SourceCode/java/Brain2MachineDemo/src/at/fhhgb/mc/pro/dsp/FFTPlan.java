@@ -0,0 +1,506 @@
+package at.fhhgb.mc.pro.dsp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class representing a precomputed plan for a forward FFT of a fixed length.
+ * The twiddle factors and the bit reversal permutation are computed once, afterwards every transform works in place on primitive arrays without allocating memory.
+ * Lengths that are a power of 2 use an in place radix-2 transform, lengths with only small prime factors use a mixed-radix transform and all other lengths use Bluestein's algorithm.
+ * The transform is not normalized, i. e. it matches the standard forward transform of Commons Math.
+ * A plan is immutable and can be shared between threads; the scratch buffers of the mixed-radix and Bluestein transforms are kept per thread.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class FFTPlan {
+
+	/**
+	 * The largest prime factor a length may have to be transformed with the mixed-radix transform instead of Bluestein's algorithm.
+	 */
+	public static final int MAX_MIXED_RADIX_FACTOR = 13;
+
+	/**
+	 * The plans created so far, indexed by their length.
+	 */
+	private static final Map<Integer, FFTPlan> PLANS = new HashMap<>();
+
+	/**
+	 * The length of the transform.
+	 */
+	private int mLength = 0;
+
+	/**
+	 * The radices of the mixed-radix stages; null if the mixed-radix transform is not used.
+	 */
+	private int[] mRadices = null;
+
+	/**
+	 * Cosine of the twiddle factors of each mixed-radix stage.
+	 */
+	private double[][] mStageCos = null;
+
+	/**
+	 * Sine of the twiddle factors of each mixed-radix stage.
+	 */
+	private double[][] mStageSin = null;
+
+	/**
+	 * Cosine of the roots of unity of each mixed-radix stage.
+	 */
+	private double[][] mRootCos = null;
+
+	/**
+	 * Sine of the roots of unity of each mixed-radix stage.
+	 */
+	private double[][] mRootSin = null;
+
+	/**
+	 * The power of 2 plan used for the convolution of Bluestein's algorithm; null if Bluestein's algorithm is not used.
+	 */
+	private FFTPlan mConvolutionPlan = null;
+
+	/**
+	 * Cosine of the chirp of Bluestein's algorithm.
+	 */
+	private double[] mChirpCos = null;
+
+	/**
+	 * Sine of the chirp of Bluestein's algorithm.
+	 */
+	private double[] mChirpSin = null;
+
+	/**
+	 * Real parts of the transformed convolution kernel of Bluestein's algorithm.
+	 */
+	private double[] mKernelRe = null;
+
+	/**
+	 * Imaginary parts of the transformed convolution kernel of Bluestein's algorithm.
+	 */
+	private double[] mKernelIm = null;
+
+	/**
+	 * Scratch buffers of the mixed-radix and Bluestein transforms for each thread.
+	 */
+	private ThreadLocal<double[][]> mScratch = null;
+
+	/**
+	 * The index each element is swapped with during the bit reversal permutation.
+	 */
+	private int[] mBitReverse = null;
+
+	/**
+	 * Cosine of the twiddle factors.
+	 */
+	private double[] mCos = null;
+
+	/**
+	 * Sine of the twiddle factors.
+	 */
+	private double[] mSin = null;
+
+	/**
+	 * Constructor.
+	 * @param _length the length of the transform
+	 */
+	public FFTPlan(int _length) {
+		if (_length <= 0) {
+			throw new IllegalArgumentException("Constructor parameter _length must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mLength = _length;
+
+		if (isPowerOfTwo(_length)) {
+			initRadix2();
+		} else {
+			List<Integer> radices = factorize(_length);
+			if (radices.get(radices.size() - 1) <= MAX_MIXED_RADIX_FACTOR) {
+				initMixedRadix(radices);
+			} else {
+				initBluestein();
+			}
+		}
+	}
+
+	/**
+	 * Gets the shared plan for a length, creating it on first use.
+	 * @param _length the length of the transform
+	 * @return the plan for the length
+	 */
+	public static FFTPlan forLength(int _length) {
+		synchronized (PLANS) {
+			FFTPlan plan = PLANS.get(_length);
+			if (plan == null) {
+				plan = new FFTPlan(_length);
+				PLANS.put(_length, plan);
+			}
+			return plan;
+		}
+	}
+
+	/**
+	 * Helper method to prepare the in place radix-2 transform.
+	 */
+	private void initRadix2() {
+		int bits = Integer.numberOfTrailingZeros(mLength);
+		mBitReverse = new int[mLength];
+		for (int i=0; i<mLength; i++) {
+			mBitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+
+		mCos = new double[mLength / 2];
+		mSin = new double[mLength / 2];
+		for (int k=0; k<mCos.length; k++) {
+			double angle = -2 * Math.PI * k / mLength;
+			mCos[k] = Math.cos(angle);
+			mSin[k] = Math.sin(angle);
+		}
+	}
+
+	/**
+	 * Helper method to prepare the mixed-radix transform.
+	 * @param _radices the prime factors of the length in ascending order
+	 */
+	private void initMixedRadix(List<Integer> _radices) {
+		//Combine pairs of 2 to radix 4 to save stages
+		List<Integer> combined = new ArrayList<>();
+		int twos = 0;
+		for (int radix : _radices) {
+			if (radix == 2) {
+				twos++;
+			} else {
+				combined.add(radix);
+			}
+		}
+		for (; twos >= 2; twos -= 2) {
+			combined.add(0, 4);
+		}
+		if (twos == 1) {
+			combined.add(0, 2);
+		}
+
+		int stages = combined.size();
+		mRadices = new int[stages];
+		mStageCos = new double[stages][];
+		mStageSin = new double[stages][];
+		mRootCos = new double[stages][];
+		mRootSin = new double[stages][];
+		int maxRadix = 0;
+		int ns = 1;
+		for (int s=0; s<stages; s++) {
+			int radix = combined.get(s);
+			mRadices[s] = radix;
+			maxRadix = Math.max(maxRadix, radix);
+
+			mStageCos[s] = new double[ns * radix];
+			mStageSin[s] = new double[ns * radix];
+			for (int k=0; k<ns; k++) {
+				for (int r=0; r<radix; r++) {
+					double angle = -2 * Math.PI * r * k / (ns * radix);
+					mStageCos[s][k * radix + r] = Math.cos(angle);
+					mStageSin[s][k * radix + r] = Math.sin(angle);
+				}
+			}
+
+			mRootCos[s] = new double[radix];
+			mRootSin[s] = new double[radix];
+			for (int r=0; r<radix; r++) {
+				double angle = -2 * Math.PI * r / radix;
+				mRootCos[s][r] = Math.cos(angle);
+				mRootSin[s][r] = Math.sin(angle);
+			}
+			ns *= radix;
+		}
+
+		final int scratchLength = mLength;
+		final int tempLength = maxRadix;
+		mScratch = new ThreadLocal<double[][]>() {
+			@Override
+			protected double[][] initialValue() {
+				return new double[][] { new double[scratchLength], new double[scratchLength], new double[tempLength], new double[tempLength] };
+			}
+		};
+	}
+
+	/**
+	 * Helper method to prepare Bluestein's algorithm.
+	 */
+	private void initBluestein() {
+		int m = Integer.highestOneBit(2 * mLength - 1);
+		if (m < 2 * mLength - 1) {
+			m <<= 1;
+		}
+		mConvolutionPlan = forLength(m);
+
+		mChirpCos = new double[mLength];
+		mChirpSin = new double[mLength];
+		for (int k=0; k<mLength; k++) {
+			//k^2 mod 2n keeps the angle small and therefore precise
+			long kk = ((long)k * k) % (2L * mLength);
+			double angle = -Math.PI * kk / mLength;
+			mChirpCos[k] = Math.cos(angle);
+			mChirpSin[k] = Math.sin(angle);
+		}
+
+		mKernelRe = new double[m];
+		mKernelIm = new double[m];
+		mKernelRe[0] = mChirpCos[0];
+		mKernelIm[0] = -mChirpSin[0];
+		for (int k=1; k<mLength; k++) {
+			mKernelRe[k] = mChirpCos[k];
+			mKernelIm[k] = -mChirpSin[k];
+			mKernelRe[m - k] = mChirpCos[k];
+			mKernelIm[m - k] = -mChirpSin[k];
+		}
+		mConvolutionPlan.transform(mKernelRe, mKernelIm);
+
+		final int scratchLength = m;
+		mScratch = new ThreadLocal<double[][]>() {
+			@Override
+			protected double[][] initialValue() {
+				return new double[][] { new double[scratchLength], new double[scratchLength] };
+			}
+		};
+	}
+
+	/**
+	 * Helper method to split a number into its prime factors.
+	 * @param _n the number to split
+	 * @return the prime factors in ascending order
+	 */
+	private static List<Integer> factorize(int _n) {
+		List<Integer> factors = new ArrayList<>();
+		for (int f=2; (long)f*f <= _n; f++) {
+			while (_n % f == 0) {
+				factors.add(f);
+				_n /= f;
+			}
+		}
+		if (_n > 1) {
+			factors.add(_n);
+		}
+		return factors;
+	}
+
+	/**
+	 * Checks whether a number is a power of 2.
+	 * @param _n the number to check
+	 * @return true if the number is a power of 2; false otherwise
+	 */
+	public static boolean isPowerOfTwo(int _n) {
+		return _n > 0 && (_n & (_n - 1)) == 0;
+	}
+
+	/**
+	 * Gets the length of the transform.
+	 * @return the length of the transform
+	 */
+	public int getLength() {
+		return mLength;
+	}
+
+	/**
+	 * Applies the forward transform in place.
+	 * @param _re the real parts (at least the length of the transform)
+	 * @param _im the imaginary parts (at least the length of the transform)
+	 */
+	public void transform(double[] _re, double[] _im) {
+		if (mRadices != null) {
+			transformMixedRadix(_re, _im);
+		} else if (mConvolutionPlan != null) {
+			transformBluestein(_re, _im);
+		} else {
+			transformRadix2(_re, _im);
+		}
+	}
+
+	/**
+	 * Helper method to apply the in place radix-2 transform.
+	 * @param _re the real parts
+	 * @param _im the imaginary parts
+	 */
+	private void transformRadix2(double[] _re, double[] _im) {
+		int n = mLength;
+
+		for (int i=0; i<n; i++) {
+			int j = mBitReverse[i];
+			if (i < j) {
+				double tmp = _re[i];
+				_re[i] = _re[j];
+				_re[j] = tmp;
+				tmp = _im[i];
+				_im[i] = _im[j];
+				_im[j] = tmp;
+			}
+		}
+
+		for (int size=2; size<=n; size<<=1) {
+			int half = size >> 1;
+			int step = n / size;
+			for (int start=0; start<n; start+=size) {
+				for (int k=0; k<half; k++) {
+					double wr = mCos[k * step];
+					double wi = mSin[k * step];
+					int a = start + k;
+					int b = a + half;
+					double tr = _re[b] * wr - _im[b] * wi;
+					double ti = _re[b] * wi + _im[b] * wr;
+					_re[b] = _re[a] - tr;
+					_im[b] = _im[a] - ti;
+					_re[a] += tr;
+					_im[a] += ti;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method to apply the mixed-radix transform (Stockham autosort, so no reordering is necessary).
+	 * @param _re the real parts
+	 * @param _im the imaginary parts
+	 */
+	private void transformMixedRadix(double[] _re, double[] _im) {
+		int n = mLength;
+		double[][] scratch = mScratch.get();
+		double[] xRe = _re;
+		double[] xIm = _im;
+		double[] yRe = scratch[0];
+		double[] yIm = scratch[1];
+		double[] vRe = scratch[2];
+		double[] vIm = scratch[3];
+
+		int ns = 1;
+		for (int s=0; s<mRadices.length; s++) {
+			int radix = mRadices[s];
+			int stride = n / radix;
+			double[] twCos = mStageCos[s];
+			double[] twSin = mStageSin[s];
+			double[] rootCos = mRootCos[s];
+			double[] rootSin = mRootSin[s];
+
+			for (int j=0; j<stride; j++) {
+				int k = j % ns;
+				int tw = k * radix;
+
+				//Load and twiddle the inputs of the butterfly
+				for (int r=0; r<radix; r++) {
+					double re = xRe[j + r * stride];
+					double im = xIm[j + r * stride];
+					double wr = twCos[tw + r];
+					double wi = twSin[tw + r];
+					vRe[r] = re * wr - im * wi;
+					vIm[r] = re * wi + im * wr;
+				}
+
+				//Butterfly (DFT of length radix) written to its sorted position
+				int dst = (j - k) * radix + k;
+				if (radix == 2) {
+					yRe[dst] = vRe[0] + vRe[1];
+					yIm[dst] = vIm[0] + vIm[1];
+					yRe[dst + ns] = vRe[0] - vRe[1];
+					yIm[dst + ns] = vIm[0] - vIm[1];
+				} else if (radix == 4) {
+					double aRe = vRe[0] + vRe[2];
+					double aIm = vIm[0] + vIm[2];
+					double bRe = vRe[0] - vRe[2];
+					double bIm = vIm[0] - vIm[2];
+					double cRe = vRe[1] + vRe[3];
+					double cIm = vIm[1] + vIm[3];
+					double dRe = vRe[1] - vRe[3];
+					double dIm = vIm[1] - vIm[3];
+					yRe[dst] = aRe + cRe;
+					yIm[dst] = aIm + cIm;
+					yRe[dst + ns] = bRe + dIm;
+					yIm[dst + ns] = bIm - dRe;
+					yRe[dst + 2 * ns] = aRe - cRe;
+					yIm[dst + 2 * ns] = aIm - cIm;
+					yRe[dst + 3 * ns] = bRe - dIm;
+					yIm[dst + 3 * ns] = bIm + dRe;
+				} else {
+					for (int q=0; q<radix; q++) {
+						double sumRe = 0;
+						double sumIm = 0;
+						int root = 0;
+						for (int r=0; r<radix; r++) {
+							sumRe += vRe[r] * rootCos[root] - vIm[r] * rootSin[root];
+							sumIm += vRe[r] * rootSin[root] + vIm[r] * rootCos[root];
+							root += q;
+							if (root >= radix) {
+								root -= radix;
+							}
+						}
+						yRe[dst + q * ns] = sumRe;
+						yIm[dst + q * ns] = sumIm;
+					}
+				}
+			}
+
+			double[] tmp = xRe;
+			xRe = yRe;
+			yRe = tmp;
+			tmp = xIm;
+			xIm = yIm;
+			yIm = tmp;
+			ns *= radix;
+		}
+
+		if (xRe != _re) {
+			System.arraycopy(xRe, 0, _re, 0, n);
+			System.arraycopy(xIm, 0, _im, 0, n);
+		}
+	}
+
+	/**
+	 * Helper method to apply Bluestein's algorithm, which expresses the transform as a convolution computed with a power of 2 transform.
+	 * @param _re the real parts
+	 * @param _im the imaginary parts
+	 */
+	private void transformBluestein(double[] _re, double[] _im) {
+		int n = mLength;
+		int m = mConvolutionPlan.getLength();
+		double[][] scratch = mScratch.get();
+		double[] aRe = scratch[0];
+		double[] aIm = scratch[1];
+
+		//Multiply with the chirp and pad with zeros
+		for (int k=0; k<n; k++) {
+			aRe[k] = _re[k] * mChirpCos[k] - _im[k] * mChirpSin[k];
+			aIm[k] = _re[k] * mChirpSin[k] + _im[k] * mChirpCos[k];
+		}
+		for (int k=n; k<m; k++) {
+			aRe[k] = 0;
+			aIm[k] = 0;
+		}
+
+		//Convolve with the kernel; the inverse transform is computed as conjugated forward transform
+		mConvolutionPlan.transform(aRe, aIm);
+		for (int k=0; k<m; k++) {
+			double re = aRe[k] * mKernelRe[k] - aIm[k] * mKernelIm[k];
+			double im = aRe[k] * mKernelIm[k] + aIm[k] * mKernelRe[k];
+			aRe[k] = re;
+			aIm[k] = -im;
+		}
+		mConvolutionPlan.transform(aRe, aIm);
+
+		//Scale, conjugate back and multiply with the chirp again
+		for (int k=0; k<n; k++) {
+			double re = aRe[k] / m;
+			double im = -aIm[k] / m;
+			_re[k] = re * mChirpCos[k] - im * mChirpSin[k];
+			_im[k] = re * mChirpSin[k] + im * mChirpCos[k];
+		}
+	}
+
+	/**
+	 * Computes the magnitudes of the transformed bins.
+	 * @param _re the real parts of the transformed bins
+	 * @param _im the imaginary parts of the transformed bins
+	 * @param _magnitudes the array to store the magnitudes in
+	 * @param _count the number of bins to compute the magnitude for, starting at bin 0
+	 */
+	public static void magnitudes(double[] _re, double[] _im, double[] _magnitudes, int _count) {
+		for (int k=0; k<_count; k++) {
+			_magnitudes[k] = Math.sqrt(_re[k] * _re[k] + _im[k] * _im[k]);
+		}
+	}
+}
\ No newline at end of file
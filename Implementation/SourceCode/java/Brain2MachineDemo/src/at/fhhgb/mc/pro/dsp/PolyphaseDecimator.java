@@ -0,0 +1,258 @@
+package at.fhhgb.mc.pro.dsp;
+
+/**
+ * A class representing an anti-aliasing FIR low pass that reduces the sample rate of several channels by an integer factor.
+ * The prototype filter is split into one sub filter per phase; every input sample is only multiplied with the coefficients of its phase and accumulated,
+ * so the work is spread evenly over the input samples and only one multiplication per output sample and tap is spent.
+ * With the default taps and cutoff (a Hamming windowed sinc of 16 taps per phase) the response is flat within 0.1 dB up to about half the Nyquist frequency of the output,
+ * reaches -50 dB at about 0.9 times the Nyquist frequency of the output and stays below -54 dB above it (e. g. from 14.5 Hz for 256 Hz decimated to 32 Hz, from 29 Hz decimated to 64 Hz),
+ * so content above the Nyquist frequency of the output cannot alias into the band of slow signals like eye movements; fewer taps per phase widen the transition band accordingly.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class PolyphaseDecimator {
+
+	/**
+	 * Default number of taps of every phase (a prototype of 64 taps for a factor of 4), enough for a stopband of at least 54 dB from the Nyquist frequency of the output.
+	 */
+	public static final int TAPS_PER_PHASE_DEFAULT = 16;
+
+	/**
+	 * The cutoff (-6 dB) of the prototype relative to the Nyquist frequency of the output; low enough that the transition band ends before the Nyquist frequency of the output.
+	 */
+	public static final double CUTOFF_RATIO = 0.7;
+
+	/**
+	 * The decimation factor.
+	 */
+	private int mFactor = 0;
+
+	/**
+	 * The number of taps of every phase.
+	 */
+	private int mTapsPerPhase = 0;
+
+	/**
+	 * The number of channels.
+	 */
+	private int mChannels = 0;
+
+	/**
+	 * The coefficients of the prototype filter.
+	 */
+	private double[] mCoefficients = null;
+
+	/**
+	 * The coefficients of every phase in reversed order, so they line up with the oldest to newest samples of the delay line.
+	 */
+	private double[][] mPhaseCoefficients = null;
+
+	/**
+	 * The delay line of every phase of every channel; each line holds its samples twice, so the last mTapsPerPhase samples are always contiguous.
+	 */
+	private double[][][] mDelayLines = null;
+
+	/**
+	 * The partial output sample of every channel accumulated over the phases received so far.
+	 */
+	private double[] mAccumulators = null;
+
+	/**
+	 * The write position inside the delay lines, shared by all phases and channels.
+	 */
+	private int mPosition = 0;
+
+	/**
+	 * The phase of the next input sample; counts down to 0, which completes an output sample.
+	 */
+	private int mPhase = 0;
+
+	/**
+	 * Indicates whether the first sample has been processed, so the delay lines can be settled on it.
+	 */
+	private boolean mPrimed = false;
+
+	/**
+	 * Constructor using the default number of taps per phase.
+	 * @param _factor the decimation factor
+	 * @param _channels the number of channels
+	 */
+	public PolyphaseDecimator(int _factor, int _channels) {
+		this(_factor, TAPS_PER_PHASE_DEFAULT, _channels);
+	}
+
+	/**
+	 * Constructor.
+	 * @param _factor the decimation factor (at least 2)
+	 * @param _tapsPerPhase the number of taps of every phase; the prototype has _factor * _tapsPerPhase taps
+	 * @param _channels the number of channels
+	 */
+	public PolyphaseDecimator(int _factor, int _tapsPerPhase, int _channels) {
+		if (_factor < 2) {
+			throw new IllegalArgumentException("Constructor parameter _factor must be at least 2 in class " + this.getClass().getName() + "!");
+		}
+		if (_tapsPerPhase <= 0 || _channels <= 0) {
+			throw new IllegalArgumentException("Constructor parameters _tapsPerPhase and _channels must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mFactor = _factor;
+		mTapsPerPhase = _tapsPerPhase;
+		mChannels = _channels;
+		mCoefficients = createPrototype(_factor * _tapsPerPhase, CUTOFF_RATIO / (2.0 * _factor));
+		mPhaseCoefficients = new double[_factor][_tapsPerPhase];
+		for (int p=0; p<_factor; p++) {
+			for (int k=0; k<_tapsPerPhase; k++) {
+				mPhaseCoefficients[p][_tapsPerPhase - 1 - k] = mCoefficients[k * _factor + p];
+			}
+		}
+		mDelayLines = new double[_channels][_factor][2 * _tapsPerPhase];
+		mAccumulators = new double[_channels];
+		reset();
+	}
+
+	/**
+	 * Processes the next input sample of all channels.
+	 * @param _input the input sample of every channel
+	 * @param _output the array the output sample of every channel is written to if one is completed
+	 * @return true if an output sample was completed; false otherwise
+	 */
+	public boolean process(double[] _input, double[] _output) {
+		if (!mPrimed) {
+			prime(_input);
+		}
+		int phase = mPhase;
+		int position = mPosition;
+		double[] coefficients = mPhaseCoefficients[phase];
+		for (int c=0; c<mChannels; c++) {
+			double[] line = mDelayLines[c][phase];
+			line[position] = _input[c];
+			line[position + mTapsPerPhase] = _input[c];
+			double sum = 0;
+			for (int k=0; k<mTapsPerPhase; k++) {
+				sum += coefficients[k] * line[position + 1 + k];
+			}
+			mAccumulators[c] += sum;
+		}
+		if (phase > 0) {
+			mPhase = phase - 1;
+			return false;
+		}
+		for (int c=0; c<mChannels; c++) {
+			_output[c] = mAccumulators[c];
+			mAccumulators[c] = 0;
+		}
+		mPhase = mFactor - 1;
+		mPosition = position + 1 == mTapsPerPhase ? 0 : position + 1;
+		return true;
+	}
+
+	/**
+	 * Clears the delay lines of all channels, e. g. before processing a new recording.
+	 */
+	public void reset() {
+		for (int c=0; c<mChannels; c++) {
+			for (int p=0; p<mFactor; p++) {
+				for (int i=0; i<mDelayLines[c][p].length; i++) {
+					mDelayLines[c][p][i] = 0;
+				}
+			}
+			mAccumulators[c] = 0;
+		}
+		mPosition = 0;
+		mPhase = mFactor - 1;
+		mPrimed = false;
+	}
+
+	/**
+	 * Gets the decimation factor.
+	 * @return the decimation factor
+	 */
+	public int getFactor() {
+		return mFactor;
+	}
+
+	/**
+	 * Gets the number of taps of every phase.
+	 * @return the number of taps of every phase
+	 */
+	public int getTapsPerPhase() {
+		return mTapsPerPhase;
+	}
+
+	/**
+	 * Gets the number of channels.
+	 * @return the number of channels
+	 */
+	public int getChannels() {
+		return mChannels;
+	}
+
+	/**
+	 * Gets the coefficients of the prototype filter.
+	 * @return a copy of the coefficients
+	 */
+	public double[] getCoefficients() {
+		return mCoefficients.clone();
+	}
+
+	/**
+	 * Gets the group delay of the filter.
+	 * @return the delay in input samples
+	 */
+	public double getDelay() {
+		return (mCoefficients.length - 1) / 2.0;
+	}
+
+	/**
+	 * Computes the magnitude of the response of the prototype filter at a frequency.
+	 * @param _sampleRate the input sample rate in Hz
+	 * @param _frequency the frequency in Hz
+	 * @return the magnitude (1 if the frequency passes unchanged)
+	 */
+	public double getMagnitude(double _sampleRate, double _frequency) {
+		double omega = 2 * Math.PI * _frequency / _sampleRate;
+		double re = 0;
+		double im = 0;
+		for (int n=0; n<mCoefficients.length; n++) {
+			re += mCoefficients[n] * Math.cos(omega * n);
+			im -= mCoefficients[n] * Math.sin(omega * n);
+		}
+		return Math.sqrt(re * re + im * im);
+	}
+
+	/**
+	 * Helper method to design a windowed sinc low pass with a gain of 1 at DC.
+	 * @param _length the number of taps
+	 * @param _cutoff the cutoff relative to the sample rate (below 0.5)
+	 * @return the coefficients
+	 */
+	private static double[] createPrototype(int _length, double _cutoff) {
+		double[] window = WindowFunction.HAMMING.createCoefficients(_length);
+		double[] coefficients = new double[_length];
+		double center = (_length - 1) / 2.0;
+		double sum = 0;
+		for (int n=0; n<_length; n++) {
+			double t = n - center;
+			double sinc = t == 0 ? 2 * _cutoff : Math.sin(2 * Math.PI * _cutoff * t) / (Math.PI * t);
+			coefficients[n] = sinc * window[n];
+			sum += coefficients[n];
+		}
+		for (int n=0; n<_length; n++) {
+			coefficients[n] /= sum;
+		}
+		return coefficients;
+	}
+
+	/**
+	 * Helper method to settle the delay lines as if the first sample had been applied forever, so the offset of the signal does not cause a long transient.
+	 * @param _input the first sample of every channel
+	 */
+	private void prime(double[] _input) {
+		for (int c=0; c<mChannels; c++) {
+			for (int p=0; p<mFactor; p++) {
+				for (int i=0; i<mDelayLines[c][p].length; i++) {
+					mDelayLines[c][p][i] = _input[c];
+				}
+			}
+		}
+		mPrimed = true;
+	}
+}
\ No newline at end of file
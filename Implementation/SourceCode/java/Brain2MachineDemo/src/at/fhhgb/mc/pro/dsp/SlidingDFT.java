@@ -0,0 +1,239 @@
+package at.fhhgb.mc.pro.dsp;
+
+/**
+ * A class representing a sliding discrete fourier transform that keeps only a contiguous range of frequency bins up to date.
+ * Every new sample updates the tracked bins in constant time per bin, so the cost per sample depends on the width of the band and not on the window length.
+ * The bins are kept as modulated sliding DFT: the samples are weighted with the rotation of their absolute position taken from an exact table instead of rotating the bins every sample,
+ * so rounding errors of the rotation do not accumulate and the bins never have to be recomputed periodically. The phase of the bins differs from a DFT of the window, their magnitudes do not.
+ * Several channels are tracked at once; the bins of all channels are stored next to each other, so every rotation factor is loaded once per sample for all channels.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SlidingDFT {
+
+	/**
+	 * The length of the window in samples.
+	 */
+	private int mLength = 0;
+
+	/**
+	 * The first bin to track.
+	 */
+	private int mBinLow = 0;
+
+	/**
+	 * The last bin to track (inclusive).
+	 */
+	private int mBinHigh = -1;
+
+	/**
+	 * The number of tracked channels.
+	 */
+	private int mChannels = 0;
+
+	/**
+	 * The number of tracked bins per channel.
+	 */
+	private int mBins = 0;
+
+	/**
+	 * Real parts of the tracked bins, the values of all channels of a bin next to each other.
+	 */
+	private double[] mRe = null;
+
+	/**
+	 * Imaginary parts of the tracked bins, the values of all channels of a bin next to each other.
+	 */
+	private double[] mIm = null;
+
+	/**
+	 * Difference between the sample entering and the sample leaving the window for each channel.
+	 */
+	private double[] mDelta = null;
+
+	/**
+	 * Cosine table for one full period with the length of the window.
+	 */
+	private double[] mCosTable = null;
+
+	/**
+	 * Sine table for one full period with the length of the window.
+	 */
+	private double[] mSinTable = null;
+
+	/**
+	 * The index into the tables of the rotation of the next sample entering the window for each tracked bin.
+	 */
+	private int[] mPhases = null;
+
+	/**
+	 * Indicator whether the bins hold valid values for a complete window.
+	 */
+	private boolean mValid = false;
+
+	/**
+	 * Constructor.
+	 * @param _length the length of the window in samples
+	 * @param _binLow the first bin to track
+	 * @param _binHigh the last bin to track (inclusive); no bins are tracked if lower than _binLow
+	 * @param _channels the number of channels to track
+	 */
+	public SlidingDFT(int _length, int _binLow, int _binHigh, int _channels) {
+		if (_length <= 0 || _channels <= 0) {
+			throw new IllegalArgumentException("Constructor parameters _length and _channels must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mLength = _length;
+		mChannels = _channels;
+		mBinLow = Math.max(0, _binLow);
+		mBinHigh = Math.min(_length - 1, _binHigh);
+
+		int bins = Math.max(0, mBinHigh - mBinLow + 1);
+		mBins = bins;
+		mRe = new double[bins * _channels];
+		mIm = new double[bins * _channels];
+		mDelta = new double[_channels];
+		mPhases = new int[bins];
+
+		mCosTable = new double[mLength];
+		mSinTable = new double[mLength];
+		for (int m=0; m<mLength; m++) {
+			double angle = 2 * Math.PI * m / mLength;
+			mCosTable[m] = Math.cos(angle);
+			mSinTable[m] = Math.sin(angle);
+		}
+	}
+
+	/**
+	 * Gets the length of the window in samples.
+	 * @return the length of the window in samples
+	 */
+	public int getLength() {
+		return mLength;
+	}
+
+	/**
+	 * Gets the number of tracked channels.
+	 * @return the number of tracked channels
+	 */
+	public int getChannels() {
+		return mChannels;
+	}
+
+	/**
+	 * Gets the number of tracked bins per channel.
+	 * @return the number of tracked bins per channel
+	 */
+	public int getBinCount() {
+		return mBins;
+	}
+
+	/**
+	 * Checks whether the next sample has to be added with a refresh instead of sliding the window, because the bins have not been computed for a complete window yet.
+	 * @return true if the bins have to be computed; false if the window can be slid
+	 */
+	public boolean needsRefresh() {
+		return !mValid;
+	}
+
+	/**
+	 * Slides the window of all channels by one sample with the values entering and leaving the window.
+	 * Only valid if needsRefresh() returns false.
+	 * @param _entering the values entering the window, one per tracked channel
+	 * @param _leaving the values leaving the window (the values one window length before), one per tracked channel
+	 */
+	public void slide(double[] _entering, double[] _leaving) {
+		for (int c=0; c<mChannels; c++) {
+			mDelta[c] = _entering[c] - _leaving[c];
+		}
+		addDeltas();
+	}
+
+	/**
+	 * Helper method to add the deltas of all channels, weighted with the rotation taken from the tables for the position of the entering sample, to the bins
+	 * and to advance the position of every bin by one sample. The bins themselves are not rotated (see the class description).
+	 */
+	private void addDeltas() {
+		int idx = 0;
+		for (int b=0; b<mBins; b++) {
+			int phase = mPhases[b];
+			double cos = mCosTable[phase];
+			double sin = mSinTable[phase];
+			for (int c=0; c<mChannels; c++) {
+				mRe[idx] += mDelta[c] * cos;
+				mIm[idx] -= mDelta[c] * sin;
+				idx++;
+			}
+			phase += mBinLow + b;
+			mPhases[b] = phase >= mLength ? phase - mLength : phase;
+		}
+	}
+
+	/**
+	 * Recomputes all tracked bins of all channels for the given windows.
+	 * @param _windows the windows in chronological order, one per tracked channel, each at least as long as the window length
+	 */
+	public void refresh(double[][] _windows) {
+		for (int c=0; c<mChannels; c++) {
+			refreshChannel(c, _windows[c]);
+		}
+		resetPhases();
+		mValid = true;
+	}
+
+	/**
+	 * Helper method to restart the rotation after a refresh; the first sample of the refreshed window has the rotation 0, so does the sample one window length later entering next.
+	 */
+	private void resetPhases() {
+		for (int b=0; b<mBins; b++) {
+			mPhases[b] = 0;
+		}
+	}
+
+	/**
+	 * Helper method to recompute all tracked bins of a channel.
+	 * @param _channel the index of the tracked channel
+	 * @param _window the window in chronological order
+	 */
+	private void refreshChannel(int _channel, double[] _window) {
+		for (int b=0; b<mBins; b++) {
+			int bin = mBinLow + b;
+			double re = 0;
+			double im = 0;
+			int phase = 0;
+			for (int m=0; m<mLength; m++) {
+				double value = _window[m];
+				re += value * mCosTable[phase];
+				im -= value * mSinTable[phase];
+				phase += bin;
+				if (phase >= mLength) {
+					phase -= mLength;
+				}
+			}
+			mRe[b * mChannels + _channel] = re;
+			mIm[b * mChannels + _channel] = im;
+		}
+	}
+
+	/**
+	 * Gets the magnitude of a tracked bin.
+	 * @param _channel the index of the tracked channel
+	 * @param _bin the bin (between the first and last tracked bin)
+	 * @return the magnitude of the bin
+	 */
+	public double getMagnitude(int _channel, int _bin) {
+		int idx = (_bin - mBinLow) * mChannels + _channel;
+		return Math.sqrt(mRe[idx] * mRe[idx] + mIm[idx] * mIm[idx]);
+	}
+
+	/**
+	 * Gets the average magnitude over all tracked bins of a channel.
+	 * @param _channel the index of the tracked channel
+	 * @return the average magnitude; NaN if no bins are tracked
+	 */
+	public double getAverageMagnitude(int _channel) {
+		double sum = 0;
+		for (int idx=_channel; idx<mRe.length; idx+=mChannels) {
+			sum += Math.sqrt(mRe[idx] * mRe[idx] + mIm[idx] * mIm[idx]);
+		}
+		return sum / mBins;
+	}
+}
\ No newline at end of file
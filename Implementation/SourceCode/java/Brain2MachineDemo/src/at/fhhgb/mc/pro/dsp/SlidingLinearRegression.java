@@ -0,0 +1,152 @@
+package at.fhhgb.mc.pro.dsp;
+
+/**
+ * A class representing a linear regression over the last values of an equally spaced signal.
+ * The sums needed for the slope are updated in constant time per value, so the slope is always available without allocating memory or rescanning the window.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SlidingLinearRegression {
+
+	/**
+	 * The values inside the window (ring buffer).
+	 */
+	private double[] mValues = null;
+
+	/**
+	 * Index of the oldest value inside the ring buffer.
+	 */
+	private int mOldest = 0;
+
+	/**
+	 * Number of values inside the window.
+	 */
+	private int mCount = 0;
+
+	/**
+	 * The distance between two values on the x axis.
+	 */
+	private double mXStep = 1;
+
+	/**
+	 * Sum of all values inside the window.
+	 */
+	private double mSumY = 0;
+
+	/**
+	 * Sum of all values inside the window weighted with their position (0 for the oldest value).
+	 */
+	private double mSumXY = 0;
+
+	/**
+	 * Number of values added since the sums have been recomputed exactly.
+	 */
+	private int mAddsSinceRefresh = 0;
+
+	/**
+	 * Constructor.
+	 * @param _length the number of values inside the window
+	 * @param _xStep the distance between two values on the x axis (e. g. 1 / sample rate)
+	 */
+	public SlidingLinearRegression(int _length, double _xStep) {
+		if (_length <= 0) {
+			throw new IllegalArgumentException("Constructor parameter _length must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mValues = new double[_length];
+		mXStep = _xStep;
+	}
+
+	/**
+	 * Gets the number of values inside a full window.
+	 * @return the number of values inside a full window
+	 */
+	public int getLength() {
+		return mValues.length;
+	}
+
+	/**
+	 * Gets the number of values currently inside the window.
+	 * @return the number of values currently inside the window
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Checks whether the window is completely filled.
+	 * @return true if the window is completely filled; false otherwise
+	 */
+	public boolean isFull() {
+		return mCount == mValues.length;
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear() {
+		mOldest = 0;
+		mCount = 0;
+		mSumY = 0;
+		mSumXY = 0;
+		mAddsSinceRefresh = 0;
+	}
+
+	/**
+	 * Adds the next value; the oldest value leaves the window if it is full.
+	 * @param _value the next value
+	 */
+	public void addValue(double _value) {
+		int n = mValues.length;
+		if (mCount < n) {
+			mValues[(mOldest + mCount) % n] = _value;
+			mSumXY += mCount * _value;
+			mSumY += _value;
+			mCount++;
+			return;
+		}
+
+		//Every value moves one position towards the oldest one, the oldest value leaves the window
+		double oldest = mValues[mOldest];
+		mSumXY += -(mSumY - oldest) + (n - 1) * _value;
+		mSumY += _value - oldest;
+		mValues[mOldest] = _value;
+		mOldest = (mOldest + 1) % n;
+
+		//Recompute the sums once per window length to keep rounding errors from accumulating
+		mAddsSinceRefresh++;
+		if (mAddsSinceRefresh >= n) {
+			refresh();
+		}
+	}
+
+	/**
+	 * Gets the slope of the regression line.
+	 * @return the slope of the regression line; NaN if there are less than 2 values
+	 */
+	public double getSlope() {
+		if (mCount < 2) {
+			return Double.NaN;
+		}
+		double n = mCount;
+		double sumX = n * (n - 1) / 2;
+		double sumXX = (n - 1) * n * (2 * n - 1) / 6;
+		double slope = (n * mSumXY - sumX * mSumY) / (n * sumXX - sumX * sumX);
+		return slope / mXStep;
+	}
+
+	/**
+	 * Helper method to recompute the sums from the values inside the window.
+	 */
+	private void refresh() {
+		int n = mValues.length;
+		double sumY = 0;
+		double sumXY = 0;
+		for (int x=0; x<mCount; x++) {
+			double value = mValues[(mOldest + x) % n];
+			sumY += value;
+			sumXY += x * value;
+		}
+		mSumY = sumY;
+		mSumXY = sumXY;
+		mAddsSinceRefresh = 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package at.fhhgb.mc.pro.dsp;
+
+/**
+ * An enum containing window functions that can be applied to a signal before transforming it.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public enum WindowFunction {
+	/**
+	 * Leaves the signal unchanged.
+	 */
+	RECTANGULAR,
+
+	/**
+	 * The Hann window.
+	 */
+	HANN,
+
+	/**
+	 * The Hamming window.
+	 */
+	HAMMING;
+
+	/**
+	 * Computes the coefficients of the window function.
+	 * @param _length the length of the window
+	 * @return the coefficients of the window function
+	 */
+	public double[] createCoefficients(int _length) {
+		double[] coefficients = new double[_length];
+		for (int i=0; i<_length; i++) {
+			double phase = _length > 1 ? 2 * Math.PI * i / (_length - 1) : 0;
+			switch (this) {
+			case HANN:
+				coefficients[i] = 0.5 - 0.5 * Math.cos(phase);
+				break;
+			case HAMMING:
+				coefficients[i] = 0.54 - 0.46 * Math.cos(phase);
+				break;
+			default:
+				coefficients[i] = 1;
+				break;
+			}
+		}
+		return coefficients;
+	}
+}
\ No newline at end of file
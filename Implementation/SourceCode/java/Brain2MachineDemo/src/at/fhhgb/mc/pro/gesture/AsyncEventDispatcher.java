@@ -0,0 +1,323 @@
+package at.fhhgb.mc.pro.gesture;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class delivering gesture events to the listeners on an executor instead of the thread processing the samples.
+ * Every listener has its own bounded queue; its events are delivered one after another in the order they were triggered, so a slow listener neither delays the gestures nor other listeners.
+ * What happens when a queue is full is defined by the dispatch policy.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class AsyncEventDispatcher {
+	
+	/**
+	 * Default number of events that can be queued per listener.
+	 */
+	public static final int CAPACITY_DEFAULT = 16;
+	
+	/**
+	 * The executor delivering the events.
+	 */
+	private Executor mExecutor = null;
+	
+	/**
+	 * The number of events that can be queued per listener.
+	 */
+	private int mCapacity = 0;
+	
+	/**
+	 * The behavior when the queue of a listener is full.
+	 */
+	private DispatchPolicy mPolicy = null;
+	
+	/**
+	 * The queue of every listener.
+	 */
+	private Map<GestureEventListener, ListenerQueue> mQueues = null;
+	
+	/**
+	 * The number of events dropped because a queue was full.
+	 */
+	private AtomicLong mDroppedCount = null;
+	
+	/**
+	 * The number of events replaced by a newer event.
+	 */
+	private AtomicLong mCoalescedCount = null;
+	
+	/**
+	 * Constructor.
+	 * @param _executor the executor delivering the events
+	 * @param _capacity the number of events that can be queued per listener
+	 * @param _policy the behavior when the queue of a listener is full
+	 */
+	public AsyncEventDispatcher(Executor _executor, int _capacity, DispatchPolicy _policy) {
+		if (_executor == null || _policy == null) {
+			throw new IllegalArgumentException("Constructor parameters _executor and _policy must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_capacity <= 0) {
+			throw new IllegalArgumentException("Constructor parameter _capacity must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mExecutor = _executor;
+		mCapacity = _capacity;
+		mPolicy = _policy;
+		mQueues = new IdentityHashMap<>();
+		mDroppedCount = new AtomicLong();
+		mCoalescedCount = new AtomicLong();
+	}
+	
+	/**
+	 * Gets the number of events that can be queued per listener.
+	 * @return the capacity of a queue
+	 */
+	public int getCapacity() {
+		return mCapacity;
+	}
+	
+	/**
+	 * Gets the behavior when the queue of a listener is full.
+	 * @return the dispatch policy
+	 */
+	public DispatchPolicy getPolicy() {
+		return mPolicy;
+	}
+	
+	/**
+	 * Gets the number of events dropped because a queue was full.
+	 * @return the number of dropped events
+	 */
+	public long getDroppedEventCount() {
+		return mDroppedCount.get();
+	}
+	
+	/**
+	 * Gets the number of events replaced by a newer event.
+	 * @return the number of coalesced events
+	 */
+	public long getCoalescedEventCount() {
+		return mCoalescedCount.get();
+	}
+	
+	/**
+	 * Gets the number of events queued for a listener.
+	 * @param _listener the listener
+	 * @return the number of queued events; 0 if no event has been dispatched to the listener yet
+	 */
+	public int getQueueDepth(GestureEventListener _listener) {
+		ListenerQueue queue;
+		synchronized (mQueues) {
+			queue = mQueues.get(_listener);
+		}
+		return queue == null ? 0 : queue.size();
+	}
+	
+	/**
+	 * Gets the number of events queued for all listeners.
+	 * @return the number of queued events
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		synchronized (mQueues) {
+			for (ListenerQueue queue : mQueues.values()) {
+				depth += queue.size();
+			}
+		}
+		return depth;
+	}
+	
+	/**
+	 * Queues an event for a listener; called by the gestures.
+	 * @param _gesture the gesture triggering the event
+	 * @param _listener the listener
+	 * @param _evt the event
+	 * @param _delivery the callback of the listener to call
+	 */
+	public <T extends GestureEventListener, E extends GestureEvent> void dispatch(Gesture<T> _gesture, T _listener, E _evt, GestureEventDelivery<T, E> _delivery) {
+		ListenerQueue queue;
+		synchronized (mQueues) {
+			queue = mQueues.get(_listener);
+			if (queue == null) {
+				queue = new ListenerQueue(_listener);
+				mQueues.put(_listener, queue);
+			}
+		}
+		queue.offer(new PendingEvent(_gesture, _evt, _delivery));
+	}
+	
+	/**
+	 * Helper class holding an event until it is delivered.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static class PendingEvent {
+		/**
+		 * The gesture triggering the event.
+		 */
+		private Gesture mGesture = null;
+		
+		/**
+		 * The event.
+		 */
+		private GestureEvent mEvent = null;
+		
+		/**
+		 * The callback of the listener to call.
+		 */
+		private GestureEventDelivery mDelivery = null;
+		
+		/**
+		 * Constructor.
+		 * @param _gesture the gesture triggering the event
+		 * @param _evt the event
+		 * @param _delivery the callback of the listener to call
+		 */
+		private PendingEvent(Gesture _gesture, GestureEvent _evt, GestureEventDelivery _delivery) {
+			mGesture = _gesture;
+			mEvent = _evt;
+			mDelivery = _delivery;
+		}
+		
+		/**
+		 * Checks whether the other event is triggered by the same gesture for the same callback and can be replaced by this event.
+		 * @param _other the other event
+		 * @return true if this event can replace the other event; false otherwise
+		 */
+		private boolean coalescesWith(PendingEvent _other) {
+			return mGesture == _other.mGesture && mDelivery == _other.mDelivery && mEvent.getClass() == _other.mEvent.getClass();
+		}
+		
+		/**
+		 * Delivers the event to a listener.
+		 * @param _listener the listener
+		 */
+		@SuppressWarnings("unchecked")
+		private void deliver(GestureEventListener _listener) {
+			mDelivery.deliver(_listener, mEvent);
+		}
+	}
+	
+	/**
+	 * Helper class representing the queue of a listener; delivers its events on the executor with at most one task at a time.
+	 */
+	private class ListenerQueue implements Runnable {
+		/**
+		 * The listener.
+		 */
+		private GestureEventListener mListener = null;
+		
+		/**
+		 * The queued events.
+		 */
+		private ArrayDeque<PendingEvent> mPending = null;
+		
+		/**
+		 * Indicates whether a task delivering the events has been submitted to the executor.
+		 */
+		private boolean mScheduled = false;
+		
+		/**
+		 * Constructor.
+		 * @param _listener the listener
+		 */
+		private ListenerQueue(GestureEventListener _listener) {
+			mListener = _listener;
+			mPending = new ArrayDeque<>(mCapacity);
+		}
+		
+		/**
+		 * Gets the number of queued events.
+		 * @return the number of queued events
+		 */
+		private synchronized int size() {
+			return mPending.size();
+		}
+		
+		/**
+		 * Queues an event according to the dispatch policy and makes sure it will be delivered.
+		 * @param _event the event
+		 */
+		private synchronized void offer(PendingEvent _event) {
+			if (mPending.size() >= mCapacity && mPolicy == DispatchPolicy.BLOCK) {
+				//Only wait while a task is delivering the events, otherwise nobody would make space
+				try {
+					while (mPending.size() >= mCapacity && mScheduled) {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					mDroppedCount.incrementAndGet();
+					return;
+				}
+			}
+			if (mPending.size() >= mCapacity) {
+				if (mPolicy == DispatchPolicy.COALESCE && replace(_event)) {
+					mCoalescedCount.incrementAndGet();
+					return;
+				}
+				mPending.pollFirst();
+				mDroppedCount.incrementAndGet();
+			}
+			mPending.addLast(_event);
+			
+			if (!mScheduled) {
+				mScheduled = true;
+				try {
+					mExecutor.execute(this);
+				} catch (RejectedExecutionException e) {
+					//The events cannot be delivered (e. g. the executor has been shut down), so they are dropped instead of filling the queue
+					mScheduled = false;
+					mDroppedCount.addAndGet(mPending.size());
+					mPending.clear();
+					notifyAll();
+					System.err.println("Executor rejected delivering gesture events: " + e.getMessage());
+				}
+			}
+		}
+		
+		/**
+		 * Helper method to remove the newest queued event of the same gesture and callback and to append the new event at the end of the queue.
+		 * The new event is never delivered before events triggered earlier, so e. g. the start and complete events of a gesture stay in order.
+		 * @param _event the new event
+		 * @return true if an event was replaced; false if there is no such event
+		 */
+		private boolean replace(PendingEvent _event) {
+			Iterator<PendingEvent> it = mPending.descendingIterator();
+			while (it.hasNext()) {
+				if (_event.coalescesWith(it.next())) {
+					it.remove();
+					mPending.addLast(_event);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * Executed on the executor this method delivers all queued events in order.
+		 */
+		@Override
+		public void run() {
+			while (true) {
+				PendingEvent event;
+				synchronized (this) {
+					event = mPending.pollFirst();
+					if (event == null) {
+						mScheduled = false;
+						return;
+					}
+					notifyAll();
+				}
+				try {
+					event.deliver(mListener);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
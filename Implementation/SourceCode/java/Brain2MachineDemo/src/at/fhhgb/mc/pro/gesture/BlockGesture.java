@@ -0,0 +1,20 @@
+package at.fhhgb.mc.pro.gesture;
+
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleBlock;
+import at.fhhgb.mc.pro.reader.SampleStream;
+
+/**
+ * An interface for gestures that can analyze the samples of a decoded batch at once, so they can be switched to block mode (see Gesture.setBlockMode).
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface BlockGesture {
+	/**
+	 * Checks the samples a stream of the reader received in one decoded batch to trigger events if appropriate; only called in block mode.
+	 * The samples are already stored in the stream, which refers to the sample following the block when this method is called.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _block the new samples of the stream
+	 */
+	public void handleBlock(OpenEEGReader _reader, SampleStream _stream, SampleBlock _block);
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package at.fhhgb.mc.pro.gesture;
+
+/**
+ * An enum containing the possible behaviors of an AsyncEventDispatcher when the queue of a listener is full.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public enum DispatchPolicy {
+	/**
+	 * The oldest queued event is dropped.
+	 */
+	DROP_OLDEST,
+	
+	/**
+	 * The newest queued event of the same gesture and callback is removed and the new event is queued at the end; if there is none, the oldest queued event is dropped.
+	 */
+	COALESCE,
+	
+	/**
+	 * The thread triggering the event waits until the queue has space.
+	 */
+	BLOCK
+}
\ No newline at end of file
@@ -1,16 +1,23 @@
 package at.fhhgb.mc.pro.gesture;
 
+import java.util.Arrays;
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.transform.DftNormalization;
 import org.apache.commons.math3.transform.FastFourierTransformer;
 import org.apache.commons.math3.transform.TransformType;
+import at.fhhgb.mc.pro.dsp.FFTPlan;
+import at.fhhgb.mc.pro.dsp.SlidingDFT;
+import at.fhhgb.mc.pro.dsp.WindowFunction;
 import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleBlock;
+import at.fhhgb.mc.pro.reader.SampleStream;
+import at.fhhgb.mc.pro.reader.SpectrumProvider;
 
 /**
  * A class representing a frequency gesture that is checking the average strength of a frequency range by applying FFT to a signal.
  * @author Boris Fuchs, Paul Schmutz
  */
-public class FreqGesture extends Gesture<FreqGestureEventListener> {
+public class FreqGesture extends Gesture<FreqGestureEventListener> implements BlockGesture {
 	
 	/**
 	 * Predefined constant for the threshold of bite gesture on channel 1.
@@ -34,6 +41,26 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	public static final float THRESHOLD_PREVENT_LOOK_1_SEC_SAMPLES_CH2 = 0.37f;
 	
 	
+	/**
+	 * Delivery of the start of a frequency gesture event.
+	 */
+	private static final GestureEventDelivery<FreqGestureEventListener, FreqGestureEvent> START_DELIVERY = new GestureEventDelivery<FreqGestureEventListener, FreqGestureEvent>() {
+		@Override
+		public void deliver(FreqGestureEventListener _listener, FreqGestureEvent _evt) {
+			_listener.onFreqGestureEventStart(_evt);
+		}
+	};
+	
+	/**
+	 * Delivery of the end of a frequency gesture event.
+	 */
+	private static final GestureEventDelivery<FreqGestureEventListener, FreqGestureEvent> COMPLETE_DELIVERY = new GestureEventDelivery<FreqGestureEventListener, FreqGestureEvent>() {
+		@Override
+		public void deliver(FreqGestureEventListener _listener, FreqGestureEvent _evt) {
+			_listener.onFreqGestureEventComplete(_evt);
+		}
+	};
+	
 	/**
 	 * The lower frequency of the frequency range to inspect.
 	 */
@@ -55,14 +82,14 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	private float mOverlap = 0;
 	
 	/**
-	 * Threshold for channel 1.
+	 * The indexes of the channels to inspect.
 	 */
-	private float mThresholdCh1 = 0;
+	private int[] mChannels = null;
 	
 	/**
-	 * Threshold for channel 2.
+	 * The threshold for each inspected channel.
 	 */
-	private float mThresholdCh2 = 0;
+	private float[] mThresholds = null;
 	
 	/**
 	 * Time stamp of the last time FFT was applied.
@@ -74,6 +101,71 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	 */
 	private boolean mStarted = false;
 	
+	/**
+	 * The way the strength of the frequency range is computed.
+	 */
+	private FreqGestureMode mMode = FreqGestureMode.FFT;
+	
+	/**
+	 * The sliding DFT tracking all inspected channels (only used in sliding DFT mode).
+	 */
+	private SlidingDFT mSlidingDFT = null;
+	
+	/**
+	 * The windows of all inspected channels the sliding DFT is refreshed with (only used in sliding DFT mode).
+	 */
+	private double[][] mSlidingWindows = null;
+	
+	/**
+	 * The values of all inspected channels entering the sliding window (only used in sliding DFT mode).
+	 */
+	private double[] mSlidingEntering = null;
+	
+	/**
+	 * The values of all inspected channels leaving the sliding window (only used in sliding DFT mode).
+	 */
+	private double[] mSlidingLeaving = null;
+	
+	/**
+	 * The sample count of the last sample the sliding DFTs have been updated with.
+	 */
+	private long mLastSlidingSample = -1;
+	
+	/**
+	 * The window function applied before transforming (only used in planned FFT mode).
+	 */
+	private WindowFunction mWindowFunction = WindowFunction.RECTANGULAR;
+	
+	/**
+	 * The precomputed FFT plan for the window length (only used in planned FFT mode).
+	 */
+	private FFTPlan mPlan = null;
+	
+	/**
+	 * The coefficients of the window function for the window length (only used in planned FFT mode).
+	 */
+	private double[] mWindowCoefficients = null;
+	
+	/**
+	 * Preallocated real parts of the transform for each inspected channel (only used in planned FFT mode).
+	 */
+	private double[][] mRe = null;
+	
+	/**
+	 * Preallocated imaginary parts of the transform for each inspected channel (only used in planned FFT mode).
+	 */
+	private double[][] mIm = null;
+	
+	/**
+	 * The number of spectra computed for this gesture.
+	 */
+	private volatile long mTransformCount = 0;
+	
+	/**
+	 * The average strength of the frequency range for each inspected channel of the last inspected window.
+	 */
+	private double[] mAvg = null;
+	
 	/**
 	 * Default constructor.
 	 * @param _freqRangeLow the lower value of the frequency range
@@ -84,6 +176,50 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	 * @param _thresholdCh2 the threshold for channel 2
 	 */
 	public FreqGesture(int _freqRangeLow, int _freqRangeHigh, float _sampleDuration, float _overlap, float _thresholdCh1, float _thresholdCh2) {
+		this(_freqRangeLow, _freqRangeHigh, _sampleDuration, _overlap, _thresholdCh1, _thresholdCh2, FreqGestureMode.FFT);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param _freqRangeLow the lower value of the frequency range
+	 * @param _freqRangeHigh the upper value of the frequency range
+	 * @param _sampleDuration the duration of the sample in seconds
+	 * @param _overlap the percentage (0f to 1f) of the window overlap
+	 * @param _thresholdCh1 the threshold for channel 1
+	 * @param _thresholdCh2 the threshold for channel 2
+	 * @param _mode the way the strength of the frequency range is computed
+	 */
+	public FreqGesture(int _freqRangeLow, int _freqRangeHigh, float _sampleDuration, float _overlap, float _thresholdCh1, float _thresholdCh2, FreqGestureMode _mode) {
+		this(_freqRangeLow, _freqRangeHigh, _sampleDuration, _overlap, new int[] { 0, 1 }, new float[] { _thresholdCh1, _thresholdCh2 }, _mode);
+	}
+	
+	/**
+	 * Constructor for inspecting an arbitrary set of channels.
+	 * The gesture starts when the average strength of every inspected channel reaches its threshold.
+	 * @param _freqRangeLow the lower value of the frequency range
+	 * @param _freqRangeHigh the upper value of the frequency range
+	 * @param _sampleDuration the duration of the sample in seconds
+	 * @param _overlap the percentage (0f to 1f) of the window overlap
+	 * @param _channels the indexes of the channels to inspect (0 to OpenEEGReader.MAX_CHANNELS - 1, checked against the channels of the reader when the gesture is added)
+	 * @param _thresholds the threshold for each inspected channel
+	 * @param _mode the way the strength of the frequency range is computed
+	 */
+	public FreqGesture(int _freqRangeLow, int _freqRangeHigh, float _sampleDuration, float _overlap, int[] _channels, float[] _thresholds, FreqGestureMode _mode) {
+		if (_mode == null) {
+			throw new IllegalArgumentException("Constructor parameter _mode must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_channels == null || _thresholds == null || _channels.length == 0 || _channels.length != _thresholds.length) {
+			throw new IllegalArgumentException("Constructor parameters _channels and _thresholds must not be empty and must have the same length in class " + this.getClass().getName() + "!");
+		}
+		for (int channel : _channels) {
+			if (channel < 0 || channel >= OpenEEGReader.MAX_CHANNELS) {
+				throw new IllegalArgumentException("Constructor parameter _channels contains invalid channel " + channel + " in class " + this.getClass().getName() + "!");
+			}
+		}
+		mMode = _mode;
+		mChannels = _channels.clone();
+		mThresholds = _thresholds.clone();
+		mAvg = new double[_channels.length];
 		mFreqRangeLow = Math.max(0, _freqRangeLow);
 		mFreqRangeHigh = Math.max(0, _freqRangeHigh);
 		
@@ -95,8 +231,65 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 		
 		mSampleDuration = Math.max(0, _sampleDuration);
 		mOverlap = Math.max(0, Math.min(1, _overlap));
-		mThresholdCh1 = _thresholdCh1;
-		mThresholdCh2 = _thresholdCh2;
+	}
+
+	/**
+	 * Gets the way the strength of the frequency range is computed.
+	 * @return the mode of the frequency gesture
+	 */
+	public FreqGestureMode getMode() {
+		return mMode;
+	}
+	
+	/**
+	 * Gets the number of spectra computed for this gesture; in shared FFT mode only the spectra that were not cached yet are counted, in sliding DFT mode none.
+	 * @return the number of transforms
+	 */
+	@Override
+	public long getTransformCount() {
+		return mTransformCount;
+	}
+	
+	/**
+	 * Gets the indexes of the inspected channels.
+	 * @return a copy of the indexes of the inspected channels
+	 */
+	public int[] getChannels() {
+		return mChannels.clone();
+	}
+	
+	/**
+	 * Checks whether all inspected channels exist on a reader with the given number of channels.
+	 * @param _channelCount the number of channels of the reader
+	 * @throws IllegalArgumentException if the gesture inspects a channel the reader does not have
+	 */
+	@Override
+	public void checkChannels(int _channelCount) {
+		for (int channel : mChannels) {
+			if (channel >= _channelCount) {
+				throw new IllegalArgumentException("Channel " + channel + " of class " + this.getClass().getName() + " does not exist on a reader with " + _channelCount + " channels!");
+			}
+		}
+	}
+	
+	/**
+	 * Sets the window function applied to the signal before transforming; only used in planned FFT mode.
+	 * @param _windowFunction the window function
+	 */
+	public void setWindowFunction(WindowFunction _windowFunction) {
+		if (_windowFunction == null) {
+			throw new IllegalArgumentException("Parameter _windowFunction must not be null in class " + this.getClass().getName() + "!");
+		}
+		mWindowFunction = _windowFunction;
+		mWindowCoefficients = null;
+	}
+	
+	/**
+	 * Gets the window function applied to the signal before transforming.
+	 * @return the window function
+	 */
+	public WindowFunction getWindowFunction() {
+		return mWindowFunction;
 	}
 
 	/**
@@ -105,74 +298,265 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	 */
 	@Override
 	public void handleNextSample(OpenEEGReader _reader) {
-		int durationSamples = (int)(mSampleDuration * _reader.getSampleRate());
+		handleNextSample(_reader, _reader);
+	}
+	
+	/**
+	 * Checks next incoming samples of a stream of the reader to trigger events if appropriate.
+	 * The window of the gesture is given in seconds, so the gesture works on the full rate samples as well as on a decimated stream (as long as the frequency range is below its Nyquist frequency).
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 */
+	@Override
+	public void handleNextSample(OpenEEGReader _reader, SampleStream _stream) {
+		int durationSamples = (int)(mSampleDuration * _stream.getSampleRate());
 		int overlapOffset = (int)(durationSamples * (1f - mOverlap));
-		int i = _reader.getChannelDataPointer();
-		double[][] buffer = _reader.getChannelData();
 		
-		if (_reader.getChannelDataSampleCount() <= durationSamples) {
+		if (_stream.getChannelDataSampleCount() <= durationSamples) {
 			return;
 		}
 		
-		if (mLastFourierTaken == -1 || _reader.getChannelDataSampleCount() - mLastFourierTaken >= overlapOffset) {
-			mLastFourierTaken = _reader.getChannelDataSampleCount();
-			FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-			
-			double[][] chFourier = new double[2][durationSamples];
-			
-			int fIdx = 0;
-			
-			//Get channel data for transformation
-			for(int idx = i-durationSamples; idx < i; idx++) {
-				int actualIdx = idx < 0 ? buffer[0].length + idx : idx;
-				chFourier[0][fIdx] = buffer[0][actualIdx];
-				chFourier[1][fIdx] = buffer[1][actualIdx];
-				fIdx++;
+		int i = _stream.getChannelDataPointer();
+		if (evaluateWindow(_reader, _stream, durationSamples, overlapOffset, _stream.getChannelDataSampleCount(), i)) {
+			FreqGestureEvent evt = new FreqGestureEvent();
+			stampEvent(evt, _reader, _stream.getSampleTimestamp(i));
+			notifyChange(evt);
+		}
+	}
+	
+	/**
+	 * Checks the samples a stream of the reader received in one decoded batch to trigger events if appropriate.
+	 * The window length and hop size are computed once per block; every sample of the block is then evaluated as in per-sample mode.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _block the new samples of the stream
+	 */
+	@Override
+	public void handleBlock(OpenEEGReader _reader, SampleStream _stream, SampleBlock _block) {
+		int durationSamples = (int)(mSampleDuration * _stream.getSampleRate());
+		int overlapOffset = (int)(durationSamples * (1f - mOverlap));
+		int bufferLength = _stream.getBufferLength();
+		
+		for (int j=0; j<_block.getLength(); j++) {
+			long sampleCount = _block.getFirstSample() + j;
+			if (sampleCount <= durationSamples) {
+				continue;
 			}
+			int index = _block.getFirstIndex() + j;
+			index = index >= bufferLength ? index - bufferLength : index;
+			if (evaluateWindow(_reader, _stream, durationSamples, overlapOffset, sampleCount, index)) {
+				FreqGestureEvent evt = new FreqGestureEvent();
+				stampEvent(evt, _reader, _block, j);
+				notifyChange(evt);
+			}
+		}
+	}
+	
+	/**
+	 * Helper method to evaluate the window ending right before a sample of the stream and to update whether the thresholds are exceeded.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _durationSamples the length of the window in samples
+	 * @param _overlapOffset the number of samples between two inspected windows
+	 * @param _sampleCount the sample count of the stream when the sample was received
+	 * @param _index the index of the sample inside the buffer of the stream
+	 * @return true if the thresholds started or stopped being exceeded; false otherwise
+	 */
+	private boolean evaluateWindow(OpenEEGReader _reader, SampleStream _stream, int _durationSamples, int _overlapOffset, long _sampleCount, int _index) {
+		if (mMode == FreqGestureMode.SLIDING_DFT) {
+			updateSlidingDFTs(_stream, _durationSamples, _sampleCount, _index);
+		}
+		
+		if (mLastFourierTaken == -1 || _sampleCount - mLastFourierTaken >= _overlapOffset) {
+			mLastFourierTaken = _sampleCount;
 			
-			//Transform data
-			Complex[][] transformed = {
-					fft.transform(chFourier[0], TransformType.FORWARD),
-					fft.transform(chFourier[1], TransformType.FORWARD)
-			};
-			
-			//Get ABS of transformation
-			double[][] transformedReal = new double[transformed.length][transformed[0].length];
-			for (int j=0; j<transformedReal.length; j++) {
-				for (int k=0; k<transformedReal[j].length; k++) {
-					transformedReal[j][k] = transformed[j][k].abs();
+			double[] avg = mAvg;
+			if (mMode == FreqGestureMode.SLIDING_DFT) {
+				for (int c=0; c<mChannels.length; c++) {
+					avg[c] = mSlidingDFT.getAverageMagnitude(c);
 				}
+			} else if (mMode == FreqGestureMode.SHARED_FFT) {
+				SpectrumProvider provider = _stream.getSpectrumProvider();
+				long transforms = provider.getTransformCount();
+				for (int c=0; c<mChannels.length; c++) {
+					avg[c] = averageRange(provider.getMagnitudes(getSignal(), mChannels[c], _durationSamples, _sampleCount, _index), _durationSamples, _stream.getSampleRate());
+				}
+				mTransformCount += provider.getTransformCount() - transforms;
+			} else if (mMode == FreqGestureMode.PLANNED_FFT || !FFTPlan.isPowerOfTwo(_durationSamples)) {
+				//Commons Math only transforms powers of 2, so other window lengths always use the planned FFT
+				transformWindowPlanned(_stream, _durationSamples, _index);
+			} else {
+				transformWindow(_stream, _durationSamples, _index);
 			}
 			
-			//Calculate average over desired frequency room
-			double[] avg = { 0, 0 };
-			int[] count = { 0, 0 };
-			for (int j=0; j<transformedReal.length; j++) {
-				for (int k=0; k<transformedReal[j].length / 2; k++) {
-					double freq = k * _reader.getSampleRate() / (double)transformedReal[j].length;
-					if (freq >= mFreqRangeLow && freq <= mFreqRangeHigh) {
-						avg[j] += transformedReal[j][k];
-						count[j]++;
-					}
-				}
+			//Check thresholds of all channels; the magnitudes grow with the window length, so they are scaled to the full rate the thresholds refer to
+			double scale = _reader.getSampleRate() / (double)_stream.getSampleRate();
+			boolean exceeded = true;
+			for (int c=0; c<mChannels.length; c++) {
+				exceeded &= avg[c] * scale >= mThresholds[c];
+			}
+			if (exceeded != mStarted) {
+				mStarted = exceeded;
+				return true;
 			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Helper method to compute the average strength of the frequency range by applying a full FFT to the window ending right before a sample.
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _durationSamples the length of the window in samples
+	 * @param _index the index of the sample following the window inside the buffer of the stream
+	 */
+	private void transformWindow(SampleStream _stream, int _durationSamples, int _index) {
+		int i = _index;
+		FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
+		
+		double[][] chFourier = new double[mChannels.length][_durationSamples];
+		
+		//Get channel data for transformation
+		for (int c=0; c<mChannels.length; c++) {
+			_stream.copyValues(getSignal(), mChannels[c], i-_durationSamples, _durationSamples, chFourier[c], 0);
+		}
+		
+		//Transform data
+		Complex[][] transformed = new Complex[mChannels.length][];
+		for (int c=0; c<mChannels.length; c++) {
+			transformed[c] = fft.transform(chFourier[c], TransformType.FORWARD);
+		}
+		
+		//Get ABS of transformation
+		double[][] transformedReal = new double[transformed.length][transformed[0].length];
+		for (int j=0; j<transformedReal.length; j++) {
+			for (int k=0; k<transformedReal[j].length; k++) {
+				transformedReal[j][k] = transformed[j][k].abs();
+			}
+		}
+		
+		//Calculate average over desired frequency room
+		for (int j=0; j<transformedReal.length; j++) {
+			mAvg[j] = averageRange(transformedReal[j], _durationSamples, _stream.getSampleRate());
+		}
+		mTransformCount += mChannels.length;
+	}
+	
+	/**
+	 * Helper method to compute the average strength of the frequency range with the precomputed FFT plan.
+	 * All buffers are allocated once per window length, so no memory is allocated while the window length stays the same.
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _durationSamples the length of the window in samples
+	 * @param _index the index of the sample following the window inside the buffer of the stream
+	 */
+	private void transformWindowPlanned(SampleStream _stream, int _durationSamples, int _index) {
+		if (mPlan == null || mPlan.getLength() != _durationSamples) {
+			mPlan = FFTPlan.forLength(_durationSamples);
+			mRe = new double[mChannels.length][_durationSamples];
+			mIm = new double[mChannels.length][_durationSamples];
+			mWindowCoefficients = null;
+		}
+		if (mWindowCoefficients == null) {
+			mWindowCoefficients = mWindowFunction.createCoefficients(_durationSamples);
+		}
+		
+		int i = _index;
+		
+		for (int c=0; c<mChannels.length; c++) {
+			double[] re = mRe[c];
+			double[] im = mIm[c];
 			
-			for(int j=0; j<avg.length; j++) {
-				avg[j] /= count[j];
+			//Copy the window in bulk and apply the window function
+			_stream.copyValues(getSignal(), mChannels[c], i-_durationSamples, _durationSamples, re, 0);
+			for (int k=0; k<_durationSamples; k++) {
+				re[k] *= mWindowCoefficients[k];
 			}
+			Arrays.fill(im, 0);
 			
-			//Check threshold
-			if(avg[0] >= mThresholdCh1 && avg[1] >= mThresholdCh2) {
-				if (!mStarted) {
-					notifyStart(new FreqGestureEvent());
-				}
-				mStarted = true;
-			} else {
-				if (mStarted) {
-					notifyComplete(new FreqGestureEvent());
+			mPlan.transform(re, im);
+			FFTPlan.magnitudes(re, im, re, _durationSamples / 2);
+			mAvg[c] = averageRange(re, _durationSamples, _stream.getSampleRate());
+		}
+		mTransformCount += mChannels.length;
+	}
+	
+	/**
+	 * Helper method to calculate the average magnitude of the bins inside the frequency range.
+	 * @param _magnitudes the magnitudes of the bins (at least the first _length / 2 bins)
+	 * @param _length the length of the transformed window
+	 * @param _sampleRate the sample rate of the transformed signal
+	 * @return the average magnitude of the frequency range
+	 */
+	private double averageRange(double[] _magnitudes, int _length, int _sampleRate) {
+		double avg = 0;
+		int count = 0;
+		for (int k=0; k<_length / 2; k++) {
+			double freq = k * _sampleRate / (double)_length;
+			if (freq >= mFreqRangeLow && freq <= mFreqRangeHigh) {
+				avg += _magnitudes[k];
+				count++;
+			}
+		}
+		return avg / count;
+	}
+	
+	/**
+	 * Helper method to slide the window of the sliding DFT by the samples that arrived since the last call.
+	 * The window covers the same samples as the FFT window, i. e. it ends right before the current sample.
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _durationSamples the length of the window in samples
+	 * @param _sampleCount the sample count of the stream when the current sample was received
+	 * @param _index the index of the current sample inside the buffer of the stream
+	 */
+	private void updateSlidingDFTs(SampleStream _stream, int _durationSamples, long _sampleCount, int _index) {
+		if (mSlidingDFT == null || mSlidingDFT.getLength() != _durationSamples) {
+			int binLow = -1;
+			int binHigh = -2;
+			for (int k=0; k<_durationSamples / 2; k++) {
+				double freq = k * _stream.getSampleRate() / (double)_durationSamples;
+				if (freq >= mFreqRangeLow && freq <= mFreqRangeHigh) {
+					if (binLow == -1) {
+						binLow = k;
+					}
+					binHigh = k;
 				}
-				mStarted = false;
 			}
+			mSlidingDFT = new SlidingDFT(_durationSamples, binLow, binHigh, mChannels.length);
+			mSlidingWindows = new double[mChannels.length][_durationSamples];
+			mSlidingEntering = new double[mChannels.length];
+			mSlidingLeaving = new double[mChannels.length];
+		}
+		
+		int bufferLength = _stream.getBufferLength();
+		int newest = _index - 1;
+		newest = newest < 0 ? bufferLength + newest : newest;
+		
+		//Recompute the whole window if samples were missed
+		if (mLastSlidingSample == -1 || _sampleCount - mLastSlidingSample != 1 || mSlidingDFT.needsRefresh()) {
+			for (int c=0; c<mChannels.length; c++) {
+				_stream.copyValues(getSignal(), mChannels[c], newest - _durationSamples + 1, _durationSamples, mSlidingWindows[c], 0);
+			}
+			mSlidingDFT.refresh(mSlidingWindows);
+		} else {
+			int oldest = newest - _durationSamples;
+			oldest = oldest < 0 ? bufferLength + oldest : oldest;
+			for (int c=0; c<mChannels.length; c++) {
+				mSlidingEntering[c] = _stream.getValue(getSignal(), mChannels[c], newest);
+				mSlidingLeaving[c] = _stream.getValue(getSignal(), mChannels[c], oldest);
+			}
+			mSlidingDFT.slide(mSlidingEntering, mSlidingLeaving);
+		}
+		mLastSlidingSample = _sampleCount;
+	}
+	
+	/**
+	 * Helper method to trigger the start or the end of the frequency gesture event depending on whether the thresholds are exceeded now.
+	 * @param _evt the frequency gesture event
+	 */
+	private void notifyChange(FreqGestureEvent _evt) {
+		if (mStarted) {
+			notifyStart(_evt);
+		} else {
+			notifyComplete(_evt);
 		}
 	}
 	
@@ -181,9 +565,7 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	 * @param _evt the frequency gesture event
 	 */
 	private void notifyStart(FreqGestureEvent _evt) {
-		for (FreqGestureEventListener listener : mListeners) {
-			listener.onFreqGestureEventStart(_evt);
-		}
+		dispatch(_evt, START_DELIVERY);
 	}
 	
 	/**
@@ -191,8 +573,6 @@ public class FreqGesture extends Gesture<FreqGestureEventListener> {
 	 * @param _evt the frequency gesture event
 	 */
 	private void notifyComplete(FreqGestureEvent _evt) {
-		for (FreqGestureEventListener listener : mListeners) {
-			listener.onFreqGestureEventComplete(_evt);
-		}
+		dispatch(_evt, COMPLETE_DELIVERY);
 	}
 }
\ No newline at end of file
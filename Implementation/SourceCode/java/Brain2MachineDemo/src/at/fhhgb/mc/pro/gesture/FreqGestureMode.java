@@ -0,0 +1,27 @@
+package at.fhhgb.mc.pro.gesture;
+
+/**
+ * An enum containing the possible ways a frequency gesture computes the strength of its frequency range.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public enum FreqGestureMode {
+	/**
+	 * Applies a full FFT to the whole window every time the window advances; window lengths that are not a power of 2 are transformed like in planned FFT mode.
+	 */
+	FFT,
+	
+	/**
+	 * Uses the spectra of the reader's shared spectrum provider, so gestures inspecting the same windows share one FFT.
+	 */
+	SHARED_FFT,
+	
+	/**
+	 * Applies a full FFT with a plan prepared once per window length, working on preallocated primitive buffers without allocating memory.
+	 */
+	PLANNED_FFT,
+	
+	/**
+	 * Keeps only the bins of the frequency range up to date with every new sample using a sliding DFT.
+	 */
+	SLIDING_DFT
+}
\ No newline at end of file
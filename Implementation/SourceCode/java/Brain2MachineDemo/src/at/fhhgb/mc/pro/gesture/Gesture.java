@@ -2,7 +2,13 @@ package at.fhhgb.mc.pro.gesture;
 
 import java.util.ArrayList;
 import java.util.List;
+import at.fhhgb.mc.pro.latency.LatencyHistogram;
+import at.fhhgb.mc.pro.latency.LatencyMonitor;
+import at.fhhgb.mc.pro.latency.LatencyStage;
 import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleBlock;
+import at.fhhgb.mc.pro.reader.SampleSignal;
+import at.fhhgb.mc.pro.reader.SampleStream;
 
 /**
  * A class representing a gesture that is capable of managing a set of gesture event listeners that get notified when gestures are detected and events are triggered.
@@ -15,11 +21,52 @@ public abstract class Gesture<T extends GestureEventListener> {
 	 */
 	protected List<T> mListeners = null;
 	
+	/**
+	 * The number of times the gesture has been evaluated.
+	 */
+	private volatile long mEvaluationCount = 0;
+	
+	/**
+	 * The number of events the gesture has triggered.
+	 */
+	private volatile long mEventCount = 0;
+	
+	/**
+	 * Indicates whether the duration of every evaluation is recorded.
+	 */
+	private volatile boolean mTimingEnabled = false;
+	
+	/**
+	 * The durations of the evaluations (only recorded if timing is enabled).
+	 */
+	private LatencyHistogram mEvaluationTimes = null;
+	
+	/**
+	 * The dispatcher delivering the events asynchronously; null if the listeners are called directly.
+	 */
+	private volatile AsyncEventDispatcher mDispatcher = null;
+	
+	/**
+	 * The signal of the reader the gesture inspects.
+	 */
+	private SampleSignal mSignal = SampleSignal.NORMALIZED;
+	
+	/**
+	 * Indicates whether the gesture is to be evaluated once per block of samples instead of once per sample.
+	 */
+	private volatile boolean mRequestedBlockMode = false;
+	
+	/**
+	 * Indicates whether the gesture is currently evaluated once per block of samples; follows mRequestedBlockMode at the boundary of a batch (only accessed by the thread processing the samples).
+	 */
+	private boolean mBlockMode = false;
+	
 	/**
 	 * Default constructor.
 	 */
 	public Gesture() {
 		mListeners = new ArrayList<>();
+		mEvaluationTimes = new LatencyHistogram();
 	}
 	
 	/**
@@ -47,9 +94,248 @@ public abstract class Gesture<T extends GestureEventListener> {
 		mListeners.clear();
 	}
 	
+	/**
+	 * Sets the dispatcher delivering the events asynchronously.
+	 * @param _dispatcher the dispatcher; null to call the listeners directly on the thread processing the samples
+	 */
+	public void setEventDispatcher(AsyncEventDispatcher _dispatcher) {
+		mDispatcher = _dispatcher;
+	}
+	
+	/**
+	 * Gets the dispatcher delivering the events asynchronously.
+	 * @return the dispatcher; null if the listeners are called directly
+	 */
+	public AsyncEventDispatcher getEventDispatcher() {
+		return mDispatcher;
+	}
+	
+	/**
+	 * Sets the signal of the reader the gesture inspects; thresholds of the gesture have to match the signal (the filtered signal has no offset).
+	 * @param _signal the signal
+	 */
+	public void setSignal(SampleSignal _signal) {
+		if (_signal == null) {
+			throw new IllegalArgumentException("Parameter _signal must not be null in class " + this.getClass().getName() + "!");
+		}
+		mSignal = _signal;
+	}
+	
+	/**
+	 * Gets the signal of the reader the gesture inspects.
+	 * @return the signal
+	 */
+	public SampleSignal getSignal() {
+		return mSignal;
+	}
+	
+	/**
+	 * Sets whether the gesture is evaluated once per decoded batch of samples (see BlockGesture) instead of once per sample; only gestures implementing BlockGesture support block mode.
+	 * In block mode the setup of an evaluation is done once per batch and the new samples are analyzed in one loop; the events are the same.
+	 * The mode changes at the boundary of the next batch, so no sample is skipped or evaluated twice.
+	 * @param _blockMode true for block mode; false to evaluate every sample
+	 */
+	public void setBlockMode(boolean _blockMode) {
+		if (_blockMode && !(this instanceof BlockGesture)) {
+			throw new IllegalArgumentException("Parameter _blockMode is not supported by class " + this.getClass().getName() + "!");
+		}
+		mRequestedBlockMode = _blockMode;
+	}
+	
+	/**
+	 * Checks whether the gesture is currently evaluated once per decoded batch of samples instead of once per sample.
+	 * @return true in block mode; false otherwise
+	 */
+	public boolean isBlockMode() {
+		return mBlockMode;
+	}
+	
+	/**
+	 * Applies the mode set with setBlockMode; called by the reader and its decimated streams at the boundary of a batch, when all gestures of the stream have evaluated the same samples.
+	 */
+	public final void applyBlockMode() {
+		mBlockMode = mRequestedBlockMode;
+	}
+	
+	/**
+	 * Checks whether the gesture can be evaluated on a reader with the given number of channels; called when the gesture is added to a reader or a decimated stream.
+	 * @param _channelCount the number of channels of the reader
+	 * @throws IllegalArgumentException if the gesture inspects a channel the reader does not have
+	 */
+	public void checkChannels(int _channelCount) {
+	}
+	
 	/**
 	 * Checks next incoming samples of the reader to trigger events if appropriate.
 	 * @param _reader the OpenEEGReader that provides the data for analysis
 	 */
 	public abstract void handleNextSample(OpenEEGReader _reader);
+	
+	/**
+	 * Checks next incoming samples of a stream of the reader (the reader itself or one of its decimated streams) to trigger events if appropriate.
+	 * Gestures able to analyze streams with a reduced sample rate override this method; the default implementation inspects the full rate samples of the reader.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 */
+	public void handleNextSample(OpenEEGReader _reader, SampleStream _stream) {
+		handleNextSample(_reader);
+	}
+	
+	/**
+	 * Evaluates the gesture for the next sample of the reader and updates the statistics; called by the reader.
+	 * @param _reader the OpenEEGReader that provides the data for analysis
+	 */
+	public final void evaluate(OpenEEGReader _reader) {
+		evaluate(_reader, _reader);
+	}
+	
+	/**
+	 * Evaluates the gesture for the next sample of a stream of the reader and updates the statistics; called by the reader and its decimated streams.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 */
+	public final void evaluate(OpenEEGReader _reader, SampleStream _stream) {
+		if (mTimingEnabled) {
+			long start = System.nanoTime();
+			handleNextSample(_reader, _stream);
+			mEvaluationTimes.record(System.nanoTime() - start);
+		} else {
+			handleNextSample(_reader, _stream);
+		}
+		mEvaluationCount++;
+	}
+	
+	/**
+	 * Evaluates the gesture for a block of samples of a stream of the reader and updates the statistics; called by the reader and its decimated streams in block mode.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _block the new samples of the stream
+	 */
+	public final void evaluateBlock(OpenEEGReader _reader, SampleStream _stream, SampleBlock _block) {
+		BlockGesture gesture = (BlockGesture)this;
+		if (mTimingEnabled) {
+			long start = System.nanoTime();
+			gesture.handleBlock(_reader, _stream, _block);
+			mEvaluationTimes.record(System.nanoTime() - start);
+		} else {
+			gesture.handleBlock(_reader, _stream, _block);
+		}
+		mEvaluationCount++;
+	}
+	
+	/**
+	 * Gets the number of times the gesture has been evaluated (once per block in block mode).
+	 * @return the number of evaluations
+	 */
+	public long getEvaluationCount() {
+		return mEvaluationCount;
+	}
+	
+	/**
+	 * Gets the number of events the gesture has triggered.
+	 * @return the number of events
+	 */
+	public long getEventCount() {
+		return mEventCount;
+	}
+	
+	/**
+	 * Gets the number of spectra the gesture has computed.
+	 * @return the number of transforms; 0 for gestures not working with spectra
+	 */
+	public long getTransformCount() {
+		return 0;
+	}
+	
+	/**
+	 * Sets whether the duration of every evaluation is recorded.
+	 * @param _timingEnabled true to record the durations; false otherwise
+	 */
+	public void setTimingEnabled(boolean _timingEnabled) {
+		mTimingEnabled = _timingEnabled;
+	}
+	
+	/**
+	 * Checks whether the duration of every evaluation is recorded.
+	 * @return true if the durations are recorded; false otherwise
+	 */
+	public boolean isTimingEnabled() {
+		return mTimingEnabled;
+	}
+	
+	/**
+	 * Gets the durations of the evaluations (only recorded if timing is enabled).
+	 * @return the histogram of the durations in nanoseconds
+	 */
+	public LatencyHistogram getEvaluationTimes() {
+		return mEvaluationTimes;
+	}
+	
+	/**
+	 * Helper method to stamp an event with the read time and position of the current sample of the reader, count it and record its latency before it is emitted.
+	 * @param _evt the gesture event
+	 * @param _reader the OpenEEGReader providing the current sample
+	 */
+	protected void stampEvent(GestureEvent _evt, OpenEEGReader _reader) {
+		stampEvent(_evt, _reader, _reader.getSampleTimestamp());
+	}
+	
+	/**
+	 * Helper method to stamp an event with the read time and position of the current sample of the reader and the acquisition time of the triggering sample, count it and record its latency before it is emitted.
+	 * @param _evt the gesture event
+	 * @param _reader the OpenEEGReader providing the current sample
+	 * @param _sampleTimestamp the estimated acquisition time of the sample triggering the event (see OpenEEGReader.getSampleTimestamp(int)); 0 if unknown
+	 */
+	protected void stampEvent(GestureEvent _evt, OpenEEGReader _reader, long _sampleTimestamp) {
+		stampEvent(_evt, _reader.getLatencyMonitor(), _reader.getSampleReadTimestamp(), _sampleTimestamp, _reader.getChannelDataSampleCount());
+	}
+	
+	/**
+	 * Helper method to stamp an event with the read time, acquisition time and position of the sample of a block triggering the event, count it and record its latency before it is emitted.
+	 * @param _evt the gesture event
+	 * @param _reader the OpenEEGReader the block belongs to
+	 * @param _block the block containing the sample
+	 * @param _index the index of the sample triggering the event inside the block
+	 */
+	protected void stampEvent(GestureEvent _evt, OpenEEGReader _reader, SampleBlock _block, int _index) {
+		stampEvent(_evt, _reader.getLatencyMonitor(), _block.getReadTimestamp(_index), _block.getSampleTimestamp(_index), _block.getReaderSampleCount(_index));
+	}
+	
+	/**
+	 * Helper method to stamp an event with the read and acquisition time of the triggering sample, count it and record its latency.
+	 * @param _evt the gesture event
+	 * @param _monitor the monitor recording the latencies; null if latencies are not recorded
+	 * @param _readTimestamp the time the data of the triggering sample was read; 0 if unknown
+	 * @param _sampleTimestamp the estimated acquisition time of the triggering sample; 0 if unknown
+	 * @param _sampleCount the sample count of the reader when the triggering sample was processed
+	 */
+	private void stampEvent(GestureEvent _evt, LatencyMonitor _monitor, long _readTimestamp, long _sampleTimestamp, long _sampleCount) {
+		mEventCount++;
+		_evt.setSampleCount(_sampleCount);
+		_evt.setReadTimestamp(_readTimestamp);
+		_evt.setSampleTimestamp(_sampleTimestamp);
+		if (_monitor != null && _readTimestamp != 0) {
+			_monitor.record(LatencyStage.READ_TO_GESTURE, _evt.getTimestamp() - _readTimestamp);
+		}
+		if (_monitor != null && _sampleTimestamp != 0) {
+			_monitor.record(LatencyStage.SAMPLE_TO_GESTURE, _evt.getTimestamp() - _sampleTimestamp);
+		}
+	}
+	
+	/**
+	 * Helper method to deliver an event to all listeners, either directly or through the dispatcher.
+	 * @param _evt the event
+	 * @param _delivery the callback of the listeners to call
+	 */
+	protected <E extends GestureEvent> void dispatch(E _evt, GestureEventDelivery<T, E> _delivery) {
+		AsyncEventDispatcher dispatcher = mDispatcher;
+		for (int l=0; l<mListeners.size(); l++) {
+			T listener = mListeners.get(l);
+			if (dispatcher == null) {
+				_delivery.deliver(listener, _evt);
+			} else {
+				dispatcher.dispatch(this, listener, _evt, _delivery);
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -4,4 +4,88 @@ package at.fhhgb.mc.pro.gesture;
  * This class is prodiving the base for all gesture events.
  * @author Boris Fuchs, Paul Schmutz
  */
-public abstract class GestureEvent { }
\ No newline at end of file
+public abstract class GestureEvent {
+	
+	/**
+	 * The time the event was created in nanoseconds (System.nanoTime()).
+	 */
+	private long mTimestamp = 0;
+	
+	/**
+	 * The time the data of the sample triggering the event was read in nanoseconds (System.nanoTime()); 0 if unknown.
+	 */
+	private long mReadTimestamp = 0;
+	
+	/**
+	 * The estimated acquisition time of the sample triggering the event in nanoseconds (System.nanoTime()); 0 if unknown.
+	 */
+	private long mSampleTimestamp = 0;
+	
+	/**
+	 * The number of samples the reader had received before the sample it was processing when the event was triggered; -1 if unknown.
+	 */
+	private long mSampleCount = -1;
+	
+	/**
+	 * Default constructor.
+	 */
+	public GestureEvent() {
+		mTimestamp = System.nanoTime();
+	}
+	
+	/**
+	 * Gets the time the event was created.
+	 * @return the time in nanoseconds (System.nanoTime())
+	 */
+	public long getTimestamp() {
+		return mTimestamp;
+	}
+	
+	/**
+	 * Gets the time the data of the sample triggering the event was read.
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if unknown
+	 */
+	public long getReadTimestamp() {
+		return mReadTimestamp;
+	}
+	
+	/**
+	 * Sets the time the data of the sample triggering the event was read.
+	 * @param _readTimestamp the time in nanoseconds (System.nanoTime())
+	 */
+	void setReadTimestamp(long _readTimestamp) {
+		mReadTimestamp = _readTimestamp;
+	}
+	
+	/**
+	 * Gets the estimated acquisition time of the sample triggering the event.
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if unknown
+	 */
+	public long getSampleTimestamp() {
+		return mSampleTimestamp;
+	}
+	
+	/**
+	 * Sets the estimated acquisition time of the sample triggering the event.
+	 * @param _sampleTimestamp the time in nanoseconds (System.nanoTime())
+	 */
+	void setSampleTimestamp(long _sampleTimestamp) {
+		mSampleTimestamp = _sampleTimestamp;
+	}
+	
+	/**
+	 * Gets the position of the sample the reader was processing when the event was triggered, so the event can be related to the samples even if it is delivered later.
+	 * @return the number of samples the reader had received before this sample (see OpenEEGReader.getChannelDataSampleCount()); -1 if unknown
+	 */
+	public long getSampleCount() {
+		return mSampleCount;
+	}
+	
+	/**
+	 * Sets the position of the sample the reader was processing when the event was triggered.
+	 * @param _sampleCount the number of samples the reader had received before this sample
+	 */
+	void setSampleCount(long _sampleCount) {
+		mSampleCount = _sampleCount;
+	}
+}
\ No newline at end of file
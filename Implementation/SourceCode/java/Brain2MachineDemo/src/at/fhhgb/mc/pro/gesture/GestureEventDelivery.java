@@ -0,0 +1,14 @@
+package at.fhhgb.mc.pro.gesture;
+
+/**
+ * An interface representing one callback of a gesture event listener, so events can be delivered later (e. g. by an AsyncEventDispatcher).
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface GestureEventDelivery<T extends GestureEventListener, E extends GestureEvent> {
+	/**
+	 * Calls the callback of a listener.
+	 * @param _listener the listener
+	 * @param _evt the event being triggered
+	 */
+	public void deliver(T _listener, E _evt);
+}
\ No newline at end of file
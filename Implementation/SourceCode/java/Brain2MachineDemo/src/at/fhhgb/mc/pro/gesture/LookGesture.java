@@ -1,13 +1,26 @@
 package at.fhhgb.mc.pro.gesture;
 
-import org.apache.commons.math3.stat.regression.SimpleRegression;
+import java.util.Arrays;
+import at.fhhgb.mc.pro.dsp.SlidingLinearRegression;
 import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleBlock;
+import at.fhhgb.mc.pro.reader.SampleStream;
 
 /**
  * A class representing a look gesture (moving eyes).
  * @author Boris Fuchs, Paul Schmutz
  */
-public class LookGesture extends Gesture<LookGestureEventListener> {
+public class LookGesture extends Gesture<LookGestureEventListener> implements BlockGesture {
+	
+	/**
+	 * Delivery of a look gesture event.
+	 */
+	private static final GestureEventDelivery<LookGestureEventListener, LookGestureEvent> LOOK_DELIVERY = new GestureEventDelivery<LookGestureEventListener, LookGestureEvent>() {
+		@Override
+		public void deliver(LookGestureEventListener _listener, LookGestureEvent _evt) {
+			_listener.onLook(_evt);
+		}
+	};
 	
 	/**
 	 * Predefined constant for the threshold of look gestures on channel 1 high.
@@ -57,7 +70,7 @@ public class LookGesture extends Gesture<LookGestureEventListener> {
 	private long mLastDetectionSample = -1;
 	
 	/**
-	 * The time stamp of the last sample delivered by the reader.
+	 * The time stamp of the last sample delivered by the stream.
 	 */
 	private long mLastSample = -1;
 	
@@ -65,64 +78,275 @@ public class LookGesture extends Gesture<LookGestureEventListener> {
 	 * The direction of the last detected look gesture.
 	 */
 	private LookGestureDirection mLastDirection = null;
+	
+	/**
+	 * The indexes of the channels to inspect.
+	 */
+	private int[] mChannels = null;
+	
+	/**
+	 * The high threshold for each inspected channel (all channels have to exceed it for a look to the left).
+	 */
+	private double[] mThresholdsHigh = null;
+	
+	/**
+	 * The low threshold for each inspected channel (all channels have to fall below it for a look to the right).
+	 */
+	private double[] mThresholdsLow = null;
+	
+	/**
+	 * The index of the channel the slope is computed for.
+	 */
+	private int mSlopeChannel = 1;
+	
+	/**
+	 * Running regression over the samples of the slope channel preceding the current sample.
+	 */
+	private SlidingLinearRegression mRegression = null;
+	
+	/**
+	 * The sample count of the last sample added to the running regression.
+	 */
+	private long mLastRegressionSample = -1;
+	
+	/**
+	 * Indicates for every sample of a block whether all inspected channels are below their low threshold (only used in block mode).
+	 */
+	private boolean[] mFalling = null;
+	
+	/**
+	 * Indicates for every sample of a block whether all inspected channels are above their high threshold (only used in block mode).
+	 */
+	private boolean[] mRising = null;
 
+	/**
+	 * Default constructor inspecting channel 1 and 2 and computing the slope for channel 2.
+	 */
+	public LookGesture() {
+		this(new int[] { 0, 1 }, new double[] { THRESHOLD_CH1_HIGH, THRESHOLD_CH2_HIGH }, new double[] { THRESHOLD_CH1_LOW, THRESHOLD_CH2_LOW }, 1);
+	}
+	
+	/**
+	 * Constructor for inspecting an arbitrary set of channels.
+	 * @param _channels the indexes of the channels to inspect (0 to OpenEEGReader.MAX_CHANNELS - 1, checked against the channels of the reader when the gesture is added)
+	 * @param _thresholdsHigh the high threshold for each inspected channel
+	 * @param _thresholdsLow the low threshold for each inspected channel
+	 * @param _slopeChannel the index of the channel the slope is computed for
+	 */
+	public LookGesture(int[] _channels, double[] _thresholdsHigh, double[] _thresholdsLow, int _slopeChannel) {
+		if (_channels == null || _thresholdsHigh == null || _thresholdsLow == null || _channels.length == 0
+				|| _channels.length != _thresholdsHigh.length || _channels.length != _thresholdsLow.length) {
+			throw new IllegalArgumentException("Constructor parameters _channels, _thresholdsHigh and _thresholdsLow must not be empty and must have the same length in class " + this.getClass().getName() + "!");
+		}
+		for (int channel : _channels) {
+			if (channel < 0 || channel >= OpenEEGReader.MAX_CHANNELS) {
+				throw new IllegalArgumentException("Constructor parameter _channels contains invalid channel " + channel + " in class " + this.getClass().getName() + "!");
+			}
+		}
+		if (_slopeChannel < 0 || _slopeChannel >= OpenEEGReader.MAX_CHANNELS) {
+			throw new IllegalArgumentException("Constructor parameter _slopeChannel is invalid in class " + this.getClass().getName() + "!");
+		}
+		mChannels = _channels.clone();
+		mThresholdsHigh = _thresholdsHigh.clone();
+		mThresholdsLow = _thresholdsLow.clone();
+		mSlopeChannel = _slopeChannel;
+	}
+	
+	/**
+	 * Gets the indexes of the inspected channels.
+	 * @return a copy of the indexes of the inspected channels
+	 */
+	public int[] getChannels() {
+		return mChannels.clone();
+	}
+	
+	/**
+	 * Checks whether all inspected channels and the slope channel exist on a reader with the given number of channels.
+	 * @param _channelCount the number of channels of the reader
+	 * @throws IllegalArgumentException if the gesture inspects a channel the reader does not have
+	 */
+	@Override
+	public void checkChannels(int _channelCount) {
+		for (int channel : mChannels) {
+			if (channel >= _channelCount) {
+				throw new IllegalArgumentException("Channel " + channel + " of class " + this.getClass().getName() + " does not exist on a reader with " + _channelCount + " channels!");
+			}
+		}
+		if (mSlopeChannel >= _channelCount) {
+			throw new IllegalArgumentException("Slope channel " + mSlopeChannel + " of class " + this.getClass().getName() + " does not exist on a reader with " + _channelCount + " channels!");
+		}
+	}
+	
 	/**
 	 * Checks next incoming samples of the reader to trigger events if appropriate.
 	 * @param _reader the OpenEEGReader that provides the data for analysis
 	 */
 	@Override
 	public void handleNextSample(OpenEEGReader _reader) {
-		int safeOffset = (int)(SAFE_OFFSET_SECONDS * _reader.getSampleRate());
-		int slopeSamples = (int)(SLOPE_SECONDS * _reader.getSampleRate());
-		int backToCenterSamples = (int)(LOOK_BACK_TO_CENTER_OFFSET * _reader.getSampleRate());
-		int i = _reader.getChannelDataPointer();
-		double[][] buffer = _reader.getChannelData();
+		handleNextSample(_reader, _reader);
+	}
+	
+	/**
+	 * Checks next incoming samples of a stream of the reader to trigger events if appropriate.
+	 * The durations of the gesture are given in seconds, so the gesture works on the full rate samples as well as on a decimated stream.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 */
+	@Override
+	public void handleNextSample(OpenEEGReader _reader, SampleStream _stream) {
+		int safeOffset = (int)(SAFE_OFFSET_SECONDS * _stream.getSampleRate());
+		int slopeSamples = (int)(SLOPE_SECONDS * _stream.getSampleRate());
+		int backToCenterSamples = (int)(LOOK_BACK_TO_CENTER_OFFSET * _stream.getSampleRate());
+		int i = _stream.getChannelDataPointer();
+		int bufferLength = _stream.getBufferLength();
 		
-		if (_reader.getChannelDataSampleCount() <= slopeSamples) {
+		if (_stream.getChannelDataSampleCount() <= slopeSamples) {
 			return;
 		}
 		
-		int max = mLastSample == -1 ? 0 : (int)(_reader.getChannelDataSampleCount() - mLastSample);
+		updateRegression(_stream, slopeSamples, _stream.getChannelDataSampleCount(), i);
+		
+		int max = mLastSample == -1 ? 0 : (int)(_stream.getChannelDataSampleCount() - mLastSample);
 		
 		for (int idx = max - 1; idx>=0; idx--) {
 			int actualIdx = i - idx;
-			actualIdx = actualIdx < 0 ? buffer[0].length + actualIdx : actualIdx;
+			actualIdx = actualIdx < 0 ? bufferLength + actualIdx : actualIdx;
 			
-			double ch1Val = buffer[0][actualIdx];
-			double ch2Val = buffer[1][actualIdx];
-			
-			boolean fallingSignal = (ch1Val <= THRESHOLD_CH1_LOW && ch2Val <= THRESHOLD_CH2_LOW);
-			boolean risingSignal = (ch1Val >= THRESHOLD_CH1_HIGH && ch2Val >= THRESHOLD_CH2_HIGH);
+			//Check all channels in one pass
+			boolean fallingSignal = true;
+			boolean risingSignal = true;
+			for (int c=0; c<mChannels.length; c++) {
+				double value = _stream.getValue(getSignal(), mChannels[c], actualIdx);
+				fallingSignal &= value <= mThresholdsLow[c];
+				risingSignal &= value >= mThresholdsHigh[c];
+			}
 			boolean detected = fallingSignal != risingSignal;
 			
-			if (detected && (mLastDetectionSample == -1 || (_reader.getChannelDataSampleCount() - idx - mLastDetectionSample) >= safeOffset)) {			
-				SimpleRegression regression = new SimpleRegression();
-				double[][] regArray = new double[slopeSamples][2];
-				int regIdx = 0;
-				for(int idx2 = i-slopeSamples; idx2 < i; idx2++) {
-					int actualIdx2 = idx2 < 0 ? buffer[0].length + idx2 : idx2;
-					regArray[regIdx][0] = (double)regIdx / _reader.getSampleRate();
-					regArray[regIdx][1] = buffer[1][actualIdx2];
-					regIdx++;
-				}
-				regression.addData(regArray);
-				double slope = regression.getSlope();
+			if (detected && (mLastDetectionSample == -1 || (_stream.getChannelDataSampleCount() - idx - mLastDetectionSample) >= safeOffset)) {			
+				double slope = mRegression.getSlope();
 				
 				if (((fallingSignal && slope < 0) || (risingSignal && slope > 0)) && Math.abs(slope) <= SLOPE_MAX) {					
 					LookGestureDirection dir = fallingSignal ? LookGestureDirection.RIGHT : LookGestureDirection.LEFT;
 					
-					if (!(mLastDirection != dir && (_reader.getChannelDataSampleCount() - mLastDetectionSample) <= backToCenterSamples)) {
+					if (!(mLastDirection != dir && (_stream.getChannelDataSampleCount() - mLastDetectionSample) <= backToCenterSamples)) {
+						LookGestureEvent evt = new LookGestureEvent(dir);
+						stampEvent(evt, _reader, _stream.getSampleTimestamp(actualIdx));
+						notifyLook(evt);
+						
+						mLastDetectionSample = _stream.getChannelDataSampleCount() - idx;
+						mLastDirection = dir;
+					}
+				}
+			}
+		}
+		
+		mLastSample = _stream.getChannelDataSampleCount();
+	}
+	
+	/**
+	 * Checks the samples a stream of the reader received in one decoded batch to trigger events if appropriate.
+	 * The thresholds of all channels are checked in one pass over the contiguous values of the block, so only the samples beyond the thresholds are checked further.
+	 * The running regression advances by one sample per sample of the block, so the events are the same as in per-sample mode.
+	 * @param _reader the OpenEEGReader the stream belongs to
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _block the new samples of the stream
+	 */
+	@Override
+	public void handleBlock(OpenEEGReader _reader, SampleStream _stream, SampleBlock _block) {
+		int safeOffset = (int)(SAFE_OFFSET_SECONDS * _stream.getSampleRate());
+		int slopeSamples = (int)(SLOPE_SECONDS * _stream.getSampleRate());
+		int backToCenterSamples = (int)(LOOK_BACK_TO_CENTER_OFFSET * _stream.getSampleRate());
+		int bufferLength = _stream.getBufferLength();
+		int length = _block.getLength();
+		long firstSample = _block.getFirstSample();
+		
+		//Samples before the slope can be computed are skipped as in per-sample mode
+		int start = (int)Math.max(0, Math.min(length, slopeSamples + 1 - firstSample));
+		if (start == length) {
+			return;
+		}
+		
+		//Check all channels for all samples in one pass
+		if (mFalling == null || mFalling.length < _block.getCapacity()) {
+			mFalling = new boolean[_block.getCapacity()];
+			mRising = new boolean[_block.getCapacity()];
+		}
+		boolean[] falling = mFalling;
+		boolean[] rising = mRising;
+		Arrays.fill(falling, start, length, true);
+		Arrays.fill(rising, start, length, true);
+		for (int c=0; c<mChannels.length; c++) {
+			double[] values = _block.getValues(getSignal(), mChannels[c]);
+			double low = mThresholdsLow[c];
+			double high = mThresholdsHigh[c];
+			for (int j=start; j<length; j++) {
+				falling[j] &= values[j] <= low;
+				rising[j] &= values[j] >= high;
+			}
+		}
+		
+		double[] slopeValues = _block.getValues(getSignal(), mSlopeChannel);
+		for (int j=start; j<length; j++) {
+			long sampleCount = firstSample + j;
+			if (mRegression == null || mRegression.getLength() != slopeSamples || mLastRegressionSample != sampleCount - 1) {
+				int index = _block.getFirstIndex() + j;
+				updateRegression(_stream, slopeSamples, sampleCount, index >= bufferLength ? index - bufferLength : index);
+			}
+			
+			boolean detected = falling[j] != rising[j];
+			if (mLastSample != -1 && detected && (mLastDetectionSample == -1 || (sampleCount - mLastDetectionSample) >= safeOffset)) {
+				double slope = mRegression.getSlope();
+				
+				if (((falling[j] && slope < 0) || (rising[j] && slope > 0)) && Math.abs(slope) <= SLOPE_MAX) {
+					LookGestureDirection dir = falling[j] ? LookGestureDirection.RIGHT : LookGestureDirection.LEFT;
+					
+					if (!(mLastDirection != dir && (sampleCount - mLastDetectionSample) <= backToCenterSamples)) {
 						LookGestureEvent evt = new LookGestureEvent(dir);
+						stampEvent(evt, _reader, _block, j);
 						notifyLook(evt);
 						
-						mLastDetectionSample = _reader.getChannelDataSampleCount() - idx;
+						mLastDetectionSample = sampleCount;
 						mLastDirection = dir;
 					}
 				}
 			}
+			mLastSample = sampleCount;
+			
+			//The regression of the next sample covers this sample
+			mRegression.addValue(slopeValues[j]);
+			mLastRegressionSample = sampleCount;
+		}
+	}
+	
+	/**
+	 * Helper method to add the samples of the slope channel that arrived since the last call to the running regression.
+	 * The regression covers the samples right before the current sample.
+	 * @param _stream the stream that provides the data for analysis
+	 * @param _slopeSamples the number of samples the slope is computed for
+	 * @param _sampleCount the sample count of the stream when the current sample was received
+	 * @param _index the index of the current sample inside the buffer of the stream
+	 */
+	private void updateRegression(SampleStream _stream, int _slopeSamples, long _sampleCount, int _index) {
+		if (mRegression == null || mRegression.getLength() != _slopeSamples) {
+			mRegression = new SlidingLinearRegression(_slopeSamples, 1.0 / _stream.getSampleRate());
+			mLastRegressionSample = -1;
+		}
+		
+		long sampleCount = _sampleCount;
+		long first = mLastRegressionSample + 1;
+		if (mLastRegressionSample == -1 || sampleCount - first > _slopeSamples) {
+			mRegression.clear();
+			first = sampleCount - _slopeSamples;
 		}
 		
-		mLastSample = _reader.getChannelDataSampleCount();
+		int i = _index;
+		int bufferLength = _stream.getBufferLength();
+		for (long sample = first; sample < sampleCount; sample++) {
+			int actualIdx = i - (int)(sampleCount - sample);
+			actualIdx = actualIdx < 0 ? bufferLength + actualIdx : actualIdx;
+			mRegression.addValue(_stream.getValue(getSignal(), mSlopeChannel, actualIdx));
+		}
+		mLastRegressionSample = sampleCount - 1;
 	}
 	
 	/**
@@ -130,8 +354,6 @@ public class LookGesture extends Gesture<LookGestureEventListener> {
 	 * @param _evt the look gesture event
 	 */
 	private void notifyLook(LookGestureEvent _evt) {
-		for (LookGestureEventListener listener : mListeners) {
-			listener.onLook(_evt);
-		}
+		dispatch(_evt, LOOK_DELIVERY);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package at.fhhgb.mc.pro.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A class representing a histogram of latencies in nanoseconds that can be recorded to by any number of threads without locks.
+ * The buckets are log-linear: every power of 2 is split into 32 buckets of equal width, so every percentile is accurate to about 3 % while the histogram has a fixed size.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of bits of a value that select the bucket inside its power of 2.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * Number of buckets per power of 2.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Total number of buckets, enough for all positive long values.
+	 */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	/**
+	 * The number of recorded values of each bucket.
+	 */
+	private AtomicLongArray mBuckets = null;
+
+	/**
+	 * The number of recorded values.
+	 */
+	private AtomicLong mCount = null;
+
+	/**
+	 * The sum of all recorded values.
+	 */
+	private AtomicLong mSum = null;
+
+	/**
+	 * The largest recorded value.
+	 */
+	private AtomicLong mMax = null;
+
+	/**
+	 * Default constructor.
+	 */
+	public LatencyHistogram() {
+		mBuckets = new AtomicLongArray(BUCKETS);
+		mCount = new AtomicLong();
+		mSum = new AtomicLong();
+		mMax = new AtomicLong();
+	}
+
+	/**
+	 * Records a latency.
+	 * @param _nanos the latency in nanoseconds; negative values are recorded as 0
+	 */
+	public void record(long _nanos) {
+		long value = Math.max(0, _nanos);
+		mBuckets.incrementAndGet(bucketIndex(value));
+		mCount.incrementAndGet();
+		mSum.addAndGet(value);
+		long max = mMax.get();
+		while (value > max && !mMax.compareAndSet(max, value)) {
+			max = mMax.get();
+		}
+	}
+
+	/**
+	 * Gets the number of recorded latencies.
+	 * @return the number of recorded latencies
+	 */
+	public long getCount() {
+		return mCount.get();
+	}
+
+	/**
+	 * Gets the largest recorded latency.
+	 * @return the largest recorded latency in nanoseconds
+	 */
+	public long getMax() {
+		return mMax.get();
+	}
+
+	/**
+	 * Gets the mean of the recorded latencies.
+	 * @return the mean in nanoseconds; 0 if no latency has been recorded
+	 */
+	public double getMean() {
+		long count = mCount.get();
+		return count == 0 ? 0 : (double)mSum.get() / count;
+	}
+
+	/**
+	 * Gets a percentile of the recorded latencies.
+	 * @param _percentile the percentile between 0 and 100 (e. g. 99.9)
+	 * @return the latency in nanoseconds that the given percentage of all recorded latencies does not exceed; 0 if no latency has been recorded
+	 */
+	public long getPercentile(double _percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int b=0; b<BUCKETS; b++) {
+			counts[b] = mBuckets.get(b);
+			total += counts[b];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, _percentile)) / 100 * total));
+		long seen = 0;
+		for (int b=0; b<BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(b), mMax.get());
+			}
+		}
+		return mMax.get();
+	}
+
+	/**
+	 * Removes all recorded latencies; latencies recorded at the same time may get lost.
+	 */
+	public void reset() {
+		for (int b=0; b<BUCKETS; b++) {
+			mBuckets.set(b, 0);
+		}
+		mCount.set(0);
+		mSum.set(0);
+		mMax.set(0);
+	}
+
+	/**
+	 * Gets a summary of the recorded latencies in milliseconds.
+	 * @return the number of latencies, their mean, p50, p99, p99.9 and maximum
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+				getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, getPercentile(99.9) / 1e6, getMax() / 1e6);
+	}
+
+	/**
+	 * Helper method to get the bucket of a value.
+	 * @param _value the value (not negative)
+	 * @return the index of the bucket
+	 */
+	private static int bucketIndex(long _value) {
+		if (_value < SUB_BUCKETS) {
+			return (int)_value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(_value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)(_value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Helper method to get the largest value of a bucket.
+	 * @param _index the index of the bucket
+	 * @return the largest value falling into the bucket
+	 */
+	private static long bucketUpperBound(int _index) {
+		if (_index < SUB_BUCKETS) {
+			return _index;
+		}
+		int shift = _index / SUB_BUCKETS - 1;
+		long mantissa = _index % SUB_BUCKETS + SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package at.fhhgb.mc.pro.latency;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import at.fhhgb.mc.pro.gesture.GestureEvent;
+
+/**
+ * A class collecting one latency histogram per stage of the path from the serial port to the motors.
+ * All methods can be called from any thread; recording does not lock or allocate memory.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class LatencyMonitor {
+
+	/**
+	 * The histograms, one per stage.
+	 */
+	private LatencyHistogram[] mHistograms = null;
+
+	/**
+	 * Timer dumping the histograms periodically; null if not dumping.
+	 */
+	private Timer mDumpTimer = null;
+
+	/**
+	 * Default constructor.
+	 */
+	public LatencyMonitor() {
+		LatencyStage[] stages = LatencyStage.values();
+		mHistograms = new LatencyHistogram[stages.length];
+		for (int s=0; s<stages.length; s++) {
+			mHistograms[s] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Gets the histogram of a stage.
+	 * @param _stage the stage
+	 * @return the histogram of the stage
+	 */
+	public LatencyHistogram getHistogram(LatencyStage _stage) {
+		return mHistograms[_stage.ordinal()];
+	}
+
+	/**
+	 * Records a latency of a stage.
+	 * @param _stage the stage
+	 * @param _nanos the latency in nanoseconds
+	 */
+	public void record(LatencyStage _stage, long _nanos) {
+		mHistograms[_stage.ordinal()].record(_nanos);
+	}
+
+	/**
+	 * Records the latencies of a motor command caused by a gesture event; call right before the motor command.
+	 * @param _evt the gesture event causing the motor command
+	 * @return the current time in nanoseconds, to be passed to recordMotorCallEnd()
+	 */
+	public long recordMotorCall(GestureEvent _evt) {
+		long now = System.nanoTime();
+		record(LatencyStage.GESTURE_TO_MOTOR, now - _evt.getTimestamp());
+		if (_evt.getReadTimestamp() != 0) {
+			record(LatencyStage.READ_TO_MOTOR, now - _evt.getReadTimestamp());
+		}
+		return now;
+	}
+
+	/**
+	 * Records the duration of a motor command; call right after the motor command.
+	 * @param _start the time returned by recordMotorCall()
+	 */
+	public void recordMotorCallEnd(long _start) {
+		record(LatencyStage.MOTOR_CALL, System.nanoTime() - _start);
+	}
+
+	/**
+	 * Removes the recorded latencies of all stages.
+	 */
+	public void reset() {
+		for (LatencyHistogram histogram : mHistograms) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Starts printing the histograms of all stages periodically.
+	 * @param _periodMillis the period in milliseconds
+	 */
+	public synchronized void startPeriodicDump(long _periodMillis) {
+		stopPeriodicDump();
+		mDumpTimer = new Timer("LatencyMonitor dump", true);
+		mDumpTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				System.out.println(LatencyMonitor.this);
+			}
+		}, _periodMillis, _periodMillis);
+	}
+
+	/**
+	 * Stops printing the histograms periodically.
+	 */
+	public synchronized void stopPeriodicDump() {
+		if (mDumpTimer != null) {
+			mDumpTimer.cancel();
+			mDumpTimer = null;
+		}
+	}
+
+	/**
+	 * Gets a summary of the histograms of all stages that recorded latencies.
+	 * @return one line per stage
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Latencies:");
+		for (LatencyStage stage : LatencyStage.values()) {
+			LatencyHistogram histogram = getHistogram(stage);
+			if (histogram.getCount() > 0) {
+				sb.append(System.lineSeparator()).append("  ").append(stage).append(": ").append(histogram);
+			}
+		}
+		return sb.toString();
+	}
+}
\ No newline at end of file
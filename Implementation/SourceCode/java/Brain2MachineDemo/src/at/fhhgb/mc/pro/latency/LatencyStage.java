@@ -0,0 +1,42 @@
+package at.fhhgb.mc.pro.latency;
+
+/**
+ * An enum representing the stages of the path from the serial port to the motors; all latencies are measured from the time the data was read from the serial port, except SAMPLE_TO_GESTURE, GESTURE_TO_MOTOR and MOTOR_CALL.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public enum LatencyStage {
+	/**
+	 * From reading a chunk to completing a packet of it.
+	 */
+	READ_TO_PACKET,
+	
+	/**
+	 * From reading a chunk to processing a sample of it with the gestures (includes waiting inside the pipeline).
+	 */
+	READ_TO_PROCESSING,
+	
+	/**
+	 * From reading a chunk to a gesture event triggered by a sample of it.
+	 */
+	READ_TO_GESTURE,
+	
+	/**
+	 * From the estimated acquisition time of the sample triggering a gesture event to the event (includes the delay of transmitting and reading the sample).
+	 */
+	SAMPLE_TO_GESTURE,
+	
+	/**
+	 * From a gesture event to the motor command it caused.
+	 */
+	GESTURE_TO_MOTOR,
+	
+	/**
+	 * From reading a chunk to the motor command caused by a sample of it.
+	 */
+	READ_TO_MOTOR,
+	
+	/**
+	 * Duration of a motor command (remote call to the brick).
+	 */
+	MOTOR_CALL
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package at.fhhgb.mc.pro.management;
+
+/**
+ * Management interface exposing the live metrics of a gesture via JMX.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface GestureMXBean {
+	
+	/**
+	 * Gets the type of the gesture.
+	 * @return the simple class name of the gesture
+	 */
+	public String getType();
+	
+	/**
+	 * Gets the number of times the gesture has been evaluated.
+	 * @return the number of evaluations
+	 */
+	public long getEvaluationCount();
+	
+	/**
+	 * Gets the number of spectra the gesture has computed.
+	 * @return the number of transforms
+	 */
+	public long getTransformCount();
+	
+	/**
+	 * Gets the number of events the gesture has triggered.
+	 * @return the number of events
+	 */
+	public long getEventCount();
+	
+	/**
+	 * Gets the mean duration of an evaluation.
+	 * @return the mean duration in microseconds
+	 */
+	public double getEvaluationMeanMicros();
+	
+	/**
+	 * Gets the 99th percentile of the durations of an evaluation.
+	 * @return the 99th percentile in microseconds
+	 */
+	public double getEvaluationP99Micros();
+	
+	/**
+	 * Gets the maximum duration of an evaluation.
+	 * @return the maximum duration in microseconds
+	 */
+	public double getEvaluationMaxMicros();
+	
+	/**
+	 * Gets the number of events waiting to be delivered by the asynchronous dispatcher of the gesture.
+	 * @return the number of queued events of all listeners; 0 if events are delivered directly
+	 */
+	public int getDispatchQueueDepth();
+	
+	/**
+	 * Gets the number of events the asynchronous dispatcher of the gesture dropped because a queue was full.
+	 * @return the number of dropped events; 0 if events are delivered directly
+	 */
+	public long getDroppedEventCount();
+	
+	/**
+	 * Removes the recorded evaluation durations.
+	 */
+	public void resetEvaluationTimes();
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package at.fhhgb.mc.pro.management;
+
+import at.fhhgb.mc.pro.gesture.AsyncEventDispatcher;
+import at.fhhgb.mc.pro.gesture.Gesture;
+
+/**
+ * A class representing the MBean of a gesture.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+@SuppressWarnings("rawtypes")
+public class GestureMetrics implements GestureMXBean {
+
+	/**
+	 * The gesture being exposed.
+	 */
+	private Gesture mGesture = null;
+
+	/**
+	 * Constructor.
+	 * @param _gesture the gesture to expose
+	 */
+	public GestureMetrics(Gesture _gesture) {
+		if (_gesture == null) {
+			throw new IllegalArgumentException("Constructor parameter _gesture must not be null in class " + this.getClass().getName() + "!");
+		}
+		mGesture = _gesture;
+	}
+
+	/**
+	 * Gets the type of the gesture.
+	 * @return the simple class name of the gesture
+	 */
+	@Override
+	public String getType() {
+		return mGesture.getClass().getSimpleName();
+	}
+
+	/**
+	 * Gets the number of times the gesture has been evaluated.
+	 * @return the number of evaluations
+	 */
+	@Override
+	public long getEvaluationCount() {
+		return mGesture.getEvaluationCount();
+	}
+
+	/**
+	 * Gets the number of spectra the gesture has computed.
+	 * @return the number of transforms
+	 */
+	@Override
+	public long getTransformCount() {
+		return mGesture.getTransformCount();
+	}
+
+	/**
+	 * Gets the number of events the gesture has triggered.
+	 * @return the number of events
+	 */
+	@Override
+	public long getEventCount() {
+		return mGesture.getEventCount();
+	}
+
+	/**
+	 * Gets the mean duration of an evaluation.
+	 * @return the mean duration in microseconds
+	 */
+	@Override
+	public double getEvaluationMeanMicros() {
+		return mGesture.getEvaluationTimes().getMean() / 1e3;
+	}
+
+	/**
+	 * Gets the 99th percentile of the durations of an evaluation.
+	 * @return the 99th percentile in microseconds
+	 */
+	@Override
+	public double getEvaluationP99Micros() {
+		return mGesture.getEvaluationTimes().getPercentile(99) / 1e3;
+	}
+
+	/**
+	 * Gets the maximum duration of an evaluation.
+	 * @return the maximum duration in microseconds
+	 */
+	@Override
+	public double getEvaluationMaxMicros() {
+		return mGesture.getEvaluationTimes().getMax() / 1e3;
+	}
+
+	/**
+	 * Gets the number of events waiting to be delivered by the asynchronous dispatcher of the gesture.
+	 * @return the number of queued events of all listeners; 0 if events are delivered directly
+	 */
+	@Override
+	public int getDispatchQueueDepth() {
+		AsyncEventDispatcher dispatcher = mGesture.getEventDispatcher();
+		return dispatcher == null ? 0 : dispatcher.getQueueDepth();
+	}
+	
+	/**
+	 * Gets the number of events the asynchronous dispatcher of the gesture dropped because a queue was full.
+	 * @return the number of dropped events; 0 if events are delivered directly
+	 */
+	@Override
+	public long getDroppedEventCount() {
+		AsyncEventDispatcher dispatcher = mGesture.getEventDispatcher();
+		return dispatcher == null ? 0 : dispatcher.getDroppedEventCount();
+	}
+	
+	/**
+	 * Removes the recorded evaluation durations.
+	 */
+	@Override
+	public void resetEvaluationTimes() {
+		mGesture.getEvaluationTimes().reset();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+package at.fhhgb.mc.pro.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import at.fhhgb.mc.pro.gesture.Gesture;
+import at.fhhgb.mc.pro.reader.DecimatedStream;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * A class registering the MBeans of a reader and its gestures at the platform MBean server, so they can be watched with JConsole or any other JMX client.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public final class MetricsRegistration {
+
+	/**
+	 * The domain of all MBeans.
+	 */
+	public static final String DOMAIN = "at.fhhgb.mc.pro";
+
+	/**
+	 * Private constructor, since only static methods are provided.
+	 */
+	private MetricsRegistration() {
+	}
+
+	/**
+	 * Registers the MBeans of a reader and all gestures it and its decimated streams currently handle, and enables recording the dispatch and evaluation durations.
+	 * The reader is registered as "at.fhhgb.mc.pro:type=OpenEEGReader,name=_name", every gesture as "at.fhhgb.mc.pro:type=Gesture,reader=_name,name=index-type".
+	 * @param _name the name of the reader
+	 * @param _reader the reader
+	 * @return true if all MBeans were registered; false if an error occurred
+	 */
+	@SuppressWarnings("rawtypes")
+	public static boolean register(String _name, OpenEEGReader _reader) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			unregister(_name);
+			server.registerMBean(new OpenEEGReaderMetrics(_reader), readerName(_name));
+			_reader.setTimingEnabled(true);
+
+			List<Gesture> gestures = new ArrayList<>(_reader.getGestures());
+			for (DecimatedStream stream : _reader.getDecimatedStreams()) {
+				gestures.addAll(stream.getGestures());
+			}
+			for (int g=0; g<gestures.size(); g++) {
+				Gesture gesture = gestures.get(g);
+				server.registerMBean(new GestureMetrics(gesture), new ObjectName(DOMAIN + ":type=Gesture,reader=" + ObjectName.quote(_name)
+						+ ",name=" + g + "-" + gesture.getClass().getSimpleName()));
+				gesture.setTimingEnabled(true);
+			}
+		} catch (JMException e) {
+			System.err.println("Exception while registering MBeans of reader " + _name + ": " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Unregisters the MBeans of a reader and its gestures.
+	 * @param _name the name of the reader
+	 */
+	public static void unregister(String _name) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (ObjectName name : server.queryNames(readerName(_name), null)) {
+				server.unregisterMBean(name);
+			}
+			for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":type=Gesture,reader=" + ObjectName.quote(_name) + ",*"), null)) {
+				server.unregisterMBean(name);
+			}
+		} catch (JMException e) {
+			System.err.println("Exception while unregistering MBeans of reader " + _name + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Helper method to create the object name of a reader.
+	 * @param _name the name of the reader
+	 * @return the object name
+	 * @throws JMException if the name is invalid
+	 */
+	private static ObjectName readerName(String _name) throws JMException {
+		return new ObjectName(DOMAIN + ":type=OpenEEGReader,name=" + ObjectName.quote(_name));
+	}
+}
\ No newline at end of file
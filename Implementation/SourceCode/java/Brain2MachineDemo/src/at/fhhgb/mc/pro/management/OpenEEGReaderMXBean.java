@@ -0,0 +1,115 @@
+package at.fhhgb.mc.pro.management;
+
+/**
+ * Management interface exposing the live metrics of an OpenEEGReader via JMX.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface OpenEEGReaderMXBean {
+	
+	/**
+	 * Gets the number of channels of the reader.
+	 * @return the number of channels
+	 */
+	public int getChannels();
+	
+	/**
+	 * Checks whether the gestures are processed on a separate thread.
+	 * @return true if the reader is in pipeline mode; false otherwise
+	 */
+	public boolean isPipelineMode();
+	
+	/**
+	 * Gets the number of received bytes since the reader was connected.
+	 * @return the number of received bytes
+	 */
+	public long getReceivedBytes();
+	
+	/**
+	 * Gets the rate of received bytes, measured over at least one second.
+	 * @return the received bytes per second
+	 */
+	public double getBytesPerSecond();
+	
+	/**
+	 * Gets the number of valid packets since the reader was connected.
+	 * @return the number of valid packets
+	 */
+	public long getPackets();
+	
+	/**
+	 * Gets the rate of valid packets, measured over at least one second.
+	 * @return the valid packets per second
+	 */
+	public double getPacketsPerSecond();
+	
+	/**
+	 * Gets the number of times the reader lost the packet boundaries and had to sync again.
+	 * @return the number of sync losses
+	 */
+	public long getSyncLossCount();
+	
+	/**
+	 * Gets the number of packets that were lost according to the packet counter.
+	 * @return the number of lost packets
+	 */
+	public long getLostPacketCount();
+	
+	/**
+	 * Gets the number of samples dropped because the pipeline was full.
+	 * @return the number of dropped samples
+	 */
+	public long getDroppedSampleCount();
+	
+	/**
+	 * Gets the number of samples waiting in the pipeline.
+	 * @return the number of waiting samples
+	 */
+	public int getPipelineBacklog();
+	
+	/**
+	 * Gets the number of samples processed by the gestures.
+	 * @return the sample count of the reader
+	 */
+	public long getSampleCount();
+	
+	/**
+	 * Gets the number of gestures handled by the reader and its decimated streams.
+	 * @return the number of gestures
+	 */
+	public int getGestureCount();
+	
+	/**
+	 * Gets the mean duration of dispatching a sample to the sample event listeners.
+	 * @return the mean duration in microseconds
+	 */
+	public double getListenerDispatchMeanMicros();
+	
+	/**
+	 * Gets the maximum duration of dispatching a sample to the sample event listeners.
+	 * @return the maximum duration in microseconds
+	 */
+	public double getListenerDispatchMaxMicros();
+	
+	/**
+	 * Gets the mean duration of dispatching a sample to the gestures.
+	 * @return the mean duration in microseconds
+	 */
+	public double getGestureDispatchMeanMicros();
+	
+	/**
+	 * Gets the 99th percentile of the durations of dispatching a sample to the gestures.
+	 * @return the 99th percentile in microseconds
+	 */
+	public double getGestureDispatchP99Micros();
+	
+	/**
+	 * Gets the maximum duration of dispatching a sample to the gestures.
+	 * @return the maximum duration in microseconds
+	 */
+	public double getGestureDispatchMaxMicros();
+	
+	/**
+	 * Removes the recorded dispatch durations.
+	 */
+	public void resetDispatchTimes();
+}
\ No newline at end of file
@@ -0,0 +1,248 @@
+package at.fhhgb.mc.pro.management;
+
+import at.fhhgb.mc.pro.reader.DecimatedStream;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+
+/**
+ * A class representing the MBean of an OpenEEGReader.
+ * The rates are computed from the counters of the reader whenever they are queried and at least one second has passed, so the reader does not do any additional work for them.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class OpenEEGReaderMetrics implements OpenEEGReaderMXBean {
+
+	/**
+	 * Minimum interval the rates are measured over in nanoseconds.
+	 */
+	private static final long RATE_INTERVAL_NANOS = 1000000000L;
+
+	/**
+	 * The reader being exposed.
+	 */
+	private OpenEEGReader mReader = null;
+
+	/**
+	 * The time the rates were last updated in nanoseconds.
+	 */
+	private long mRateTimestamp = 0;
+
+	/**
+	 * The number of received bytes when the rates were last updated.
+	 */
+	private long mRateBytes = 0;
+
+	/**
+	 * The number of valid packets when the rates were last updated.
+	 */
+	private long mRatePackets = 0;
+
+	/**
+	 * The last computed rate of received bytes per second.
+	 */
+	private double mBytesPerSecond = 0;
+
+	/**
+	 * The last computed rate of valid packets per second.
+	 */
+	private double mPacketsPerSecond = 0;
+
+	/**
+	 * Constructor.
+	 * @param _reader the reader to expose
+	 */
+	public OpenEEGReaderMetrics(OpenEEGReader _reader) {
+		if (_reader == null) {
+			throw new IllegalArgumentException("Constructor parameter _reader must not be null in class " + this.getClass().getName() + "!");
+		}
+		mReader = _reader;
+		mRateTimestamp = System.nanoTime();
+		mRateBytes = _reader.getReceivedByteCount();
+		mRatePackets = _reader.getPacketCount();
+	}
+
+	/**
+	 * Gets the number of channels of the reader.
+	 * @return the number of channels
+	 */
+	@Override
+	public int getChannels() {
+		return mReader.getChannels();
+	}
+
+	/**
+	 * Checks whether the gestures are processed on a separate thread.
+	 * @return true if the reader is in pipeline mode; false otherwise
+	 */
+	@Override
+	public boolean isPipelineMode() {
+		return mReader.isPipelineMode();
+	}
+
+	/**
+	 * Gets the number of received bytes since the reader was connected.
+	 * @return the number of received bytes
+	 */
+	@Override
+	public long getReceivedBytes() {
+		return mReader.getReceivedByteCount();
+	}
+
+	/**
+	 * Gets the rate of received bytes, measured over at least one second.
+	 * @return the received bytes per second
+	 */
+	@Override
+	public synchronized double getBytesPerSecond() {
+		updateRates();
+		return mBytesPerSecond;
+	}
+
+	/**
+	 * Gets the number of valid packets since the reader was connected.
+	 * @return the number of valid packets
+	 */
+	@Override
+	public long getPackets() {
+		return mReader.getPacketCount();
+	}
+
+	/**
+	 * Gets the rate of valid packets, measured over at least one second.
+	 * @return the valid packets per second
+	 */
+	@Override
+	public synchronized double getPacketsPerSecond() {
+		updateRates();
+		return mPacketsPerSecond;
+	}
+
+	/**
+	 * Gets the number of times the reader lost the packet boundaries and had to sync again.
+	 * @return the number of sync losses
+	 */
+	@Override
+	public long getSyncLossCount() {
+		return mReader.getSyncLossCount();
+	}
+
+	/**
+	 * Gets the number of packets that were lost according to the packet counter.
+	 * @return the number of lost packets
+	 */
+	@Override
+	public long getLostPacketCount() {
+		return mReader.getLostPacketCount();
+	}
+
+	/**
+	 * Gets the number of samples dropped because the pipeline was full.
+	 * @return the number of dropped samples
+	 */
+	@Override
+	public long getDroppedSampleCount() {
+		return mReader.getDroppedSampleCount();
+	}
+
+	/**
+	 * Gets the number of samples waiting in the pipeline.
+	 * @return the number of waiting samples
+	 */
+	@Override
+	public int getPipelineBacklog() {
+		return mReader.getPipelineBacklog();
+	}
+
+	/**
+	 * Gets the number of samples processed by the gestures.
+	 * @return the sample count of the reader
+	 */
+	@Override
+	public long getSampleCount() {
+		return mReader.getChannelDataSampleCount();
+	}
+
+	/**
+	 * Gets the number of gestures handled by the reader and its decimated streams.
+	 * @return the number of gestures
+	 */
+	@Override
+	public int getGestureCount() {
+		int count = mReader.getGestures().size();
+		for (DecimatedStream stream : mReader.getDecimatedStreams()) {
+			count += stream.getGestures().size();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the mean duration of dispatching a sample to the sample event listeners.
+	 * @return the mean duration in microseconds
+	 */
+	@Override
+	public double getListenerDispatchMeanMicros() {
+		return mReader.getListenerDispatchTimes().getMean() / 1e3;
+	}
+
+	/**
+	 * Gets the maximum duration of dispatching a sample to the sample event listeners.
+	 * @return the maximum duration in microseconds
+	 */
+	@Override
+	public double getListenerDispatchMaxMicros() {
+		return mReader.getListenerDispatchTimes().getMax() / 1e3;
+	}
+
+	/**
+	 * Gets the mean duration of dispatching a sample to the gestures.
+	 * @return the mean duration in microseconds
+	 */
+	@Override
+	public double getGestureDispatchMeanMicros() {
+		return mReader.getGestureDispatchTimes().getMean() / 1e3;
+	}
+
+	/**
+	 * Gets the 99th percentile of the durations of dispatching a sample to the gestures.
+	 * @return the 99th percentile in microseconds
+	 */
+	@Override
+	public double getGestureDispatchP99Micros() {
+		return mReader.getGestureDispatchTimes().getPercentile(99) / 1e3;
+	}
+
+	/**
+	 * Gets the maximum duration of dispatching a sample to the gestures.
+	 * @return the maximum duration in microseconds
+	 */
+	@Override
+	public double getGestureDispatchMaxMicros() {
+		return mReader.getGestureDispatchTimes().getMax() / 1e3;
+	}
+
+	/**
+	 * Removes the recorded dispatch durations.
+	 */
+	@Override
+	public void resetDispatchTimes() {
+		mReader.getListenerDispatchTimes().reset();
+		mReader.getGestureDispatchTimes().reset();
+	}
+
+	/**
+	 * Helper method to update the rates if at least one second has passed since the last update.
+	 */
+	private void updateRates() {
+		long now = System.nanoTime();
+		long elapsed = now - mRateTimestamp;
+		if (elapsed < RATE_INTERVAL_NANOS) {
+			return;
+		}
+		long bytes = mReader.getReceivedByteCount();
+		long packets = mReader.getPacketCount();
+		//The counters start again from 0 when the reader reconnects
+		mBytesPerSecond = Math.max(0, bytes - mRateBytes) * 1e9 / elapsed;
+		mPacketsPerSecond = Math.max(0, packets - mRatePackets) * 1e9 / elapsed;
+		mRateTimestamp = now;
+		mRateBytes = bytes;
+		mRatePackets = packets;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,375 @@
+package at.fhhgb.mc.pro.motor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import lejos.remote.ev3.RMIRegulatedMotor;
+
+/**
+ * A class executing motion sequences as a timed state machine.
+ * Instead of a thread sleeping between the movements, the end of every step is scheduled on a scheduled executor, so any number of sequences can be queued without blocking a thread.
+ * A running sequence can be cancelled, preempted by another sequence or reversed at any time; the motors react as soon as the motor commands are sent.
+ * The motor commands are sent through a MotorCommandPipeline.
+ * The listeners are notified after the state of the scheduler has been settled and outside of its lock, so they may call the scheduler and register or unregister listeners.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class MotionScheduler {
+	
+	/**
+	 * The pipeline sending the motor commands.
+	 */
+	private MotorCommandPipeline mMotors = null;
+	
+	/**
+	 * The executor scheduling the ends of the steps.
+	 */
+	private ScheduledExecutorService mScheduler = null;
+	
+	/**
+	 * The sequences waiting for the current sequence to complete.
+	 */
+	private ArrayDeque<MotionSequence> mQueue = null;
+	
+	/**
+	 * The running sequence; null if the scheduler is idle.
+	 */
+	private MotionSequence mCurrent = null;
+	
+	/**
+	 * The index of the running step of the current sequence.
+	 */
+	private int mStepIndex = 0;
+	
+	/**
+	 * The time the running step started in nanoseconds.
+	 */
+	private long mStepStart = 0;
+	
+	/**
+	 * The scheduled end of the running step; null if there is none.
+	 */
+	private ScheduledFuture<?> mStepEnd = null;
+	
+	/**
+	 * Incremented whenever a step starts or is cancelled, so ends scheduled for an earlier step are ignored.
+	 */
+	private long mGeneration = 0;
+	
+	/**
+	 * The registered listeners; copied on write, so they can be iterated while a listener registers or unregisters listeners.
+	 */
+	private List<MotionListener> mListeners = null;
+	
+	/**
+	 * Constructor.
+	 * @param _motors the pipeline sending the motor commands
+	 * @param _scheduler the executor scheduling the ends of the steps
+	 */
+	public MotionScheduler(MotorCommandPipeline _motors, ScheduledExecutorService _scheduler) {
+		if (_motors == null || _scheduler == null) {
+			throw new IllegalArgumentException("Constructor parameters _motors and _scheduler must not be null in class " + this.getClass().getName() + "!");
+		}
+		mMotors = _motors;
+		mScheduler = _scheduler;
+		mQueue = new ArrayDeque<>();
+		mListeners = new CopyOnWriteArrayList<>();
+	}
+	
+	/**
+	 * Registers a listener; the listeners are called on the thread that completed or cancelled the sequence, so they must return quickly but may call the scheduler.
+	 * @param _listener the listener
+	 */
+	public void addMotionListener(MotionListener _listener) {
+		mListeners.add(_listener);
+	}
+	
+	/**
+	 * Unregisters a listener.
+	 * @param _listener the listener
+	 */
+	public void removeMotionListener(MotionListener _listener) {
+		mListeners.remove(_listener);
+	}
+	
+	/**
+	 * Checks whether a sequence is running or queued.
+	 * @return true if a sequence is running or queued; false if the scheduler is idle
+	 */
+	public synchronized boolean isBusy() {
+		return mCurrent != null;
+	}
+	
+	/**
+	 * Gets the running sequence.
+	 * @return the running sequence; null if the scheduler is idle
+	 */
+	public synchronized MotionSequence getCurrentSequence() {
+		return mCurrent;
+	}
+	
+	/**
+	 * Gets the number of sequences waiting for the running sequence to complete.
+	 * @return the number of queued sequences
+	 */
+	public synchronized int getQueuedSequenceCount() {
+		return mQueue.size();
+	}
+	
+	/**
+	 * Queues a sequence; it starts immediately if the scheduler is idle.
+	 * @param _sequence the sequence
+	 */
+	public void enqueue(MotionSequence _sequence) {
+		if (_sequence == null) {
+			throw new IllegalArgumentException("Parameter _sequence must not be null in class " + this.getClass().getName() + "!");
+		}
+		List<MotionSequence> completed = new ArrayList<>();
+		synchronized (this) {
+			if (mCurrent == null) {
+				start(_sequence, completed);
+			} else {
+				mQueue.addLast(_sequence);
+			}
+		}
+		notifyComplete(completed);
+	}
+	
+	/**
+	 * Cancels the running and all queued sequences and starts a sequence immediately.
+	 * @param _sequence the sequence
+	 */
+	public void preempt(MotionSequence _sequence) {
+		if (_sequence == null) {
+			throw new IllegalArgumentException("Parameter _sequence must not be null in class " + this.getClass().getName() + "!");
+		}
+		List<MotionSequence> cancelled = new ArrayList<>();
+		List<MotionSequence> completed = new ArrayList<>();
+		synchronized (this) {
+			cancelAll(cancelled);
+			start(_sequence, completed);
+		}
+		notifyCancelled(cancelled);
+		notifyComplete(completed);
+	}
+	
+	/**
+	 * Cancels the running and all queued sequences; the moving motor is stopped immediately.
+	 */
+	public void cancel() {
+		List<MotionSequence> cancelled = new ArrayList<>();
+		synchronized (this) {
+			cancelAll(cancelled);
+		}
+		notifyCancelled(cancelled);
+	}
+	
+	/**
+	 * Cancels the running and all queued sequences and moves the motors back the way the running sequence moved them so far.
+	 * The executed movements are reversed in opposite order with the same speeds and durations; pauses are skipped.
+	 * @return the sequence moving the motors back; null if no sequence was running
+	 */
+	public MotionSequence reverse() {
+		MotionSequence reversed = null;
+		List<MotionSequence> cancelled = new ArrayList<>();
+		List<MotionSequence> completed = new ArrayList<>();
+		synchronized (this) {
+			if (mCurrent == null) {
+				return null;
+			}
+			reversed = new MotionSequence(mCurrent.getName() + " reversed");
+			List<MotionSequence.Step> steps = mCurrent.getSteps();
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mStepStart);
+			for (int s=Math.min(mStepIndex, steps.size() - 1); s>=0; s--) {
+				MotionSequence.Step step = steps.get(s);
+				long duration = s == mStepIndex ? Math.min(elapsed, step.getDurationMillis()) : step.getDurationMillis();
+				MotorCommand opposite = opposite(step.getCommand());
+				if (opposite != null && duration > 0) {
+					reversed.add(step.getMotor(), speedAt(steps, s), opposite, duration);
+				}
+			}
+			cancelAll(cancelled);
+			start(reversed, completed);
+		}
+		notifyCancelled(cancelled);
+		notifyComplete(completed);
+		return reversed;
+	}
+	
+	/**
+	 * Helper method to cancel the running and all queued sequences; the scheduler must be locked.
+	 * @param _cancelled the list the cancelled sequences are added to, so the listeners can be notified after the lock has been released
+	 */
+	private void cancelAll(List<MotionSequence> _cancelled) {
+		MotionSequence cancelled = stopCurrent();
+		if (cancelled != null) {
+			_cancelled.add(cancelled);
+		}
+		while (!mQueue.isEmpty()) {
+			_cancelled.add(mQueue.pollFirst());
+		}
+	}
+	
+	/**
+	 * Helper method to start a sequence; the scheduler must be idle and locked.
+	 * @param _sequence the sequence
+	 * @param _completed the list the completed sequences are added to, so the listeners can be notified after the lock has been released
+	 */
+	private void start(MotionSequence _sequence, List<MotionSequence> _completed) {
+		mCurrent = _sequence;
+		mStepIndex = 0;
+		startStep(_completed);
+	}
+	
+	/**
+	 * Helper method to start the current step, continuing with the next queued sequence if the current sequence is complete; the scheduler must be locked.
+	 * @param _completed the list the completed sequences are added to, so the listeners can be notified after the lock has been released
+	 */
+	private void startStep(List<MotionSequence> _completed) {
+		while (mCurrent != null) {
+			List<MotionSequence.Step> steps = mCurrent.getSteps();
+			if (mStepIndex < steps.size()) {
+				MotionSequence.Step step = steps.get(mStepIndex);
+				if (step.getSpeed() != MotionSequence.KEEP_SPEED) {
+					mMotors.setSpeed(step.getMotor(), step.getSpeed());
+				}
+				if (step.getCommand() != MotorCommand.STOP) {
+					mMotors.submit(step.getMotor(), step.getCommand());
+				}
+				mStepStart = System.nanoTime();
+				final long generation = ++mGeneration;
+				mStepEnd = mScheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						endStep(generation);
+					}
+				}, step.getDurationMillis(), TimeUnit.MILLISECONDS);
+				return;
+			}
+			_completed.add(mCurrent);
+			mCurrent = mQueue.pollFirst();
+			mStepIndex = 0;
+		}
+		mStepEnd = null;
+	}
+	
+	/**
+	 * Executed on the scheduler this method stops the motor of the current step and starts the next step.
+	 * @param _generation the generation of the step when its end was scheduled
+	 */
+	private void endStep(long _generation) {
+		List<MotionSequence> completed = new ArrayList<>();
+		synchronized (this) {
+			if (_generation != mGeneration || mCurrent == null) {
+				return;
+			}
+			MotionSequence.Step step = mCurrent.getSteps().get(mStepIndex);
+			if (step.getCommand() != MotorCommand.STOP) {
+				mMotors.submit(step.getMotor(), MotorCommand.STOP);
+			}
+			mStepIndex++;
+			startStep(completed);
+		}
+		notifyComplete(completed);
+	}
+	
+	/**
+	 * Helper method to stop the running sequence without starting the next one.
+	 * @return the stopped sequence; null if no sequence was running
+	 */
+	private MotionSequence stopCurrent() {
+		MotionSequence current = mCurrent;
+		if (current == null) {
+			return null;
+		}
+		mGeneration++;
+		if (mStepEnd != null) {
+			mStepEnd.cancel(false);
+			mStepEnd = null;
+		}
+		List<MotionSequence.Step> steps = current.getSteps();
+		if (mStepIndex < steps.size() && steps.get(mStepIndex).getCommand() != MotorCommand.STOP) {
+			mMotors.submit(steps.get(mStepIndex).getMotor(), MotorCommand.STOP);
+		}
+		mCurrent = null;
+		return current;
+	}
+	
+	/**
+	 * Helper method to get the speed a motor moved at during a step.
+	 * @param _steps the steps of the sequence
+	 * @param _index the index of the step
+	 * @return the last speed set for the motor up to the step; KEEP_SPEED if the sequence did not set one
+	 */
+	private static int speedAt(List<MotionSequence.Step> _steps, int _index) {
+		RMIRegulatedMotor motor = _steps.get(_index).getMotor();
+		for (int s=_index; s>=0; s--) {
+			MotionSequence.Step step = _steps.get(s);
+			if (step.getMotor() == motor && step.getSpeed() != MotionSequence.KEEP_SPEED) {
+				return step.getSpeed();
+			}
+		}
+		return MotionSequence.KEEP_SPEED;
+	}
+	
+	/**
+	 * Helper method to get the opposite of a movement.
+	 * @param _command the movement
+	 * @return the opposite movement; null for STOP
+	 */
+	private static MotorCommand opposite(MotorCommand _command) {
+		switch (_command) {
+			case FORWARD:
+				return MotorCommand.BACKWARD;
+			case BACKWARD:
+				return MotorCommand.FORWARD;
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * Helper method to notify all listeners about completed sequences; must be called without holding the lock of the scheduler.
+	 * @param _sequences the sequences in the order they completed
+	 */
+	private void notifyComplete(List<MotionSequence> _sequences) {
+		for (MotionSequence sequence : _sequences) {
+			for (MotionListener listener : mListeners) {
+				listener.onSequenceComplete(sequence);
+			}
+		}
+	}
+	
+	/**
+	 * Helper method to notify all listeners about cancelled sequences; must be called without holding the lock of the scheduler.
+	 * @param _sequences the sequences in the order they were cancelled
+	 */
+	private void notifyCancelled(List<MotionSequence> _sequences) {
+		for (MotionSequence sequence : _sequences) {
+			for (MotionListener listener : mListeners) {
+				listener.onSequenceCancelled(sequence);
+			}
+		}
+	}
+	
+	/**
+	 * Interface for a listener being notified about the end of motion sequences.
+	 */
+	public static interface MotionListener {
+		/**
+		 * Called when all steps of a sequence have been executed.
+		 * @param _sequence the sequence
+		 */
+		public void onSequenceComplete(MotionSequence _sequence);
+		
+		/**
+		 * Called when a running or queued sequence has been cancelled, preempted or reversed.
+		 * @param _sequence the sequence
+		 */
+		public void onSequenceCancelled(MotionSequence _sequence);
+	}
+}
\ No newline at end of file
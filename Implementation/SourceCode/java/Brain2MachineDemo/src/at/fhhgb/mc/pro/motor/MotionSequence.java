@@ -0,0 +1,180 @@
+package at.fhhgb.mc.pro.motor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lejos.remote.ev3.RMIRegulatedMotor;
+
+/**
+ * A class representing a choreography of timed motor movements, executed one after another by a MotionScheduler.
+ * Every step moves one motor for a given duration and stops it afterwards; a step with the command STOP only pauses.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class MotionSequence {
+	
+	/**
+	 * Constant for a step keeping the current speed of the motor.
+	 */
+	public static final int KEEP_SPEED = -1;
+	
+	/**
+	 * The name of the sequence (for log output).
+	 */
+	private String mName = null;
+	
+	/**
+	 * The steps of the sequence.
+	 */
+	private List<Step> mSteps = null;
+	
+	/**
+	 * Constructor.
+	 * @param _name the name of the sequence (for log output)
+	 */
+	public MotionSequence(String _name) {
+		if (_name == null) {
+			throw new IllegalArgumentException("Constructor parameter _name must not be null in class " + this.getClass().getName() + "!");
+		}
+		mName = _name;
+		mSteps = new ArrayList<>();
+	}
+	
+	/**
+	 * Appends a step moving a motor at its current speed.
+	 * @param _motor the motor
+	 * @param _command the movement
+	 * @param _durationMillis the duration of the movement in milliseconds
+	 * @return this sequence, so steps can be chained
+	 */
+	public MotionSequence add(RMIRegulatedMotor _motor, MotorCommand _command, long _durationMillis) {
+		return add(_motor, KEEP_SPEED, _command, _durationMillis);
+	}
+	
+	/**
+	 * Appends a step moving a motor.
+	 * @param _motor the motor
+	 * @param _speed the speed in degrees per second; KEEP_SPEED to keep the current speed
+	 * @param _command the movement
+	 * @param _durationMillis the duration of the movement in milliseconds
+	 * @return this sequence, so steps can be chained
+	 */
+	public MotionSequence add(RMIRegulatedMotor _motor, int _speed, MotorCommand _command, long _durationMillis) {
+		if (_motor == null || _command == null) {
+			throw new IllegalArgumentException("Parameters _motor and _command must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_speed < KEEP_SPEED || _durationMillis < 0) {
+			throw new IllegalArgumentException("Parameters _speed and _durationMillis must not be negative in class " + this.getClass().getName() + "!");
+		}
+		mSteps.add(new Step(_motor, _speed, _command, _durationMillis));
+		return this;
+	}
+	
+	/**
+	 * Gets the name of the sequence.
+	 * @return the name
+	 */
+	public String getName() {
+		return mName;
+	}
+	
+	/**
+	 * Gets the steps of the sequence.
+	 * @return the steps, which cannot be modified
+	 */
+	public List<Step> getSteps() {
+		return Collections.unmodifiableList(mSteps);
+	}
+	
+	/**
+	 * Gets the total duration of the sequence.
+	 * @return the duration in milliseconds
+	 */
+	public long getDurationMillis() {
+		long duration = 0;
+		for (Step step : mSteps) {
+			duration += step.getDurationMillis();
+		}
+		return duration;
+	}
+	
+	/**
+	 * Returns the name of the sequence.
+	 * @return the name
+	 */
+	@Override
+	public String toString() {
+		return mName;
+	}
+	
+	/**
+	 * A class representing a single timed movement of a sequence.
+	 */
+	public static class Step {
+		/**
+		 * The motor.
+		 */
+		private RMIRegulatedMotor mMotor = null;
+		
+		/**
+		 * The speed in degrees per second; KEEP_SPEED to keep the current speed.
+		 */
+		private int mSpeed = KEEP_SPEED;
+		
+		/**
+		 * The movement.
+		 */
+		private MotorCommand mCommand = null;
+		
+		/**
+		 * The duration of the movement in milliseconds.
+		 */
+		private long mDurationMillis = 0;
+		
+		/**
+		 * Constructor.
+		 * @param _motor the motor
+		 * @param _speed the speed in degrees per second; KEEP_SPEED to keep the current speed
+		 * @param _command the movement
+		 * @param _durationMillis the duration of the movement in milliseconds
+		 */
+		private Step(RMIRegulatedMotor _motor, int _speed, MotorCommand _command, long _durationMillis) {
+			mMotor = _motor;
+			mSpeed = _speed;
+			mCommand = _command;
+			mDurationMillis = _durationMillis;
+		}
+		
+		/**
+		 * Gets the motor.
+		 * @return the motor
+		 */
+		public RMIRegulatedMotor getMotor() {
+			return mMotor;
+		}
+		
+		/**
+		 * Gets the speed.
+		 * @return the speed in degrees per second; KEEP_SPEED to keep the current speed
+		 */
+		public int getSpeed() {
+			return mSpeed;
+		}
+		
+		/**
+		 * Gets the movement.
+		 * @return the movement
+		 */
+		public MotorCommand getCommand() {
+			return mCommand;
+		}
+		
+		/**
+		 * Gets the duration of the movement.
+		 * @return the duration in milliseconds
+		 */
+		public long getDurationMillis() {
+			return mDurationMillis;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package at.fhhgb.mc.pro.motor;
+
+import lejos.remote.ev3.RMIRegulatedMotor;
+
+/**
+ * Interface for a source of regulated motors, either the motors of a real EV3 brick or simulated ones.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface MotorBackend {
+	/**
+	 * Creates a regulated motor.
+	 * @param _port the port of the motor ("A" to "D")
+	 * @param _type the type of the motor ('L' for large, 'M' for medium)
+	 * @return the motor
+	 */
+	public RMIRegulatedMotor createRegulatedMotor(String _port, char _type);
+}
\ No newline at end of file
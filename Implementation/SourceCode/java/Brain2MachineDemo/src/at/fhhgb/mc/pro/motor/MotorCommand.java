@@ -0,0 +1,22 @@
+package at.fhhgb.mc.pro.motor;
+
+/**
+ * An enum containing the movements that can be submitted to a MotorCommandPipeline.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public enum MotorCommand {
+	/**
+	 * The motor rotates forward until it is stopped.
+	 */
+	FORWARD,
+	
+	/**
+	 * The motor rotates backward until it is stopped.
+	 */
+	BACKWARD,
+	
+	/**
+	 * The motor stops; the command returns immediately without waiting for the motor to stand still.
+	 */
+	STOP
+}
\ No newline at end of file
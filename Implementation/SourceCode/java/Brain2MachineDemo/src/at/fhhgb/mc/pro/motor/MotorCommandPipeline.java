@@ -0,0 +1,333 @@
+package at.fhhgb.mc.pro.motor;
+
+import java.rmi.RemoteException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import at.fhhgb.mc.pro.gesture.GestureEvent;
+import at.fhhgb.mc.pro.latency.LatencyMonitor;
+import lejos.remote.ev3.RMIRegulatedMotor;
+
+/**
+ * A class sending commands to remote motors on an executor, so callers never wait for the RMI round trips.
+ * Every motor keeps only the latest submitted movement and speed that have not been sent yet; a command superseded before it was sent (like a forward directly followed by a stop) is dropped instead of being sent.
+ * The commands of a motor are sent one after another by at most one task at a time, the commands of different motors in parallel if the executor has enough threads.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class MotorCommandPipeline {
+	
+	/**
+	 * Constant for no pending speed.
+	 */
+	private static final int NO_SPEED = -1;
+	
+	/**
+	 * The executor sending the commands.
+	 */
+	private Executor mExecutor = null;
+	
+	/**
+	 * The pending commands of every motor.
+	 */
+	private Map<RMIRegulatedMotor, MotorQueue> mQueues = null;
+	
+	/**
+	 * The number of commands sent to the motors.
+	 */
+	private AtomicLong mSentCount = null;
+	
+	/**
+	 * The number of commands dropped because a newer command superseded them.
+	 */
+	private AtomicLong mCoalescedCount = null;
+	
+	/**
+	 * The monitor recording the latencies of the motor commands; null if the latencies should not be recorded.
+	 */
+	private volatile LatencyMonitor mLatencyMonitor = null;
+	
+	/**
+	 * Constructor.
+	 * @param _executor the executor sending the commands; should have a thread per motor to command the motors in parallel
+	 */
+	public MotorCommandPipeline(Executor _executor) {
+		if (_executor == null) {
+			throw new IllegalArgumentException("Constructor parameter _executor must not be null in class " + this.getClass().getName() + "!");
+		}
+		mExecutor = _executor;
+		mQueues = new IdentityHashMap<>();
+		mSentCount = new AtomicLong();
+		mCoalescedCount = new AtomicLong();
+	}
+	
+	/**
+	 * Sets the monitor recording the latencies of the motor commands.
+	 * @param _monitor the latency monitor; null if the latencies should not be recorded
+	 */
+	public void setLatencyMonitor(LatencyMonitor _monitor) {
+		mLatencyMonitor = _monitor;
+	}
+	
+	/**
+	 * Gets the monitor recording the latencies of the motor commands.
+	 * @return the latency monitor; null if the latencies are not recorded
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return mLatencyMonitor;
+	}
+	
+	/**
+	 * Gets the number of commands sent to the motors.
+	 * @return the number of sent commands
+	 */
+	public long getSentCommandCount() {
+		return mSentCount.get();
+	}
+	
+	/**
+	 * Gets the number of commands dropped because a newer command superseded them.
+	 * @return the number of coalesced commands
+	 */
+	public long getCoalescedCommandCount() {
+		return mCoalescedCount.get();
+	}
+	
+	/**
+	 * Submits a movement of a motor; returns immediately.
+	 * @param _motor the motor
+	 * @param _command the movement
+	 */
+	public void submit(RMIRegulatedMotor _motor, MotorCommand _command) {
+		submit(_motor, _command, null);
+	}
+	
+	/**
+	 * Submits a movement of a motor caused by a gesture event; returns immediately.
+	 * The latencies from the event to the command are recorded if a latency monitor is set.
+	 * @param _motor the motor
+	 * @param _command the movement
+	 * @param _cause the gesture event causing the movement; null if there is none
+	 */
+	public void submit(RMIRegulatedMotor _motor, MotorCommand _command, GestureEvent _cause) {
+		if (_motor == null || _command == null) {
+			throw new IllegalArgumentException("Parameters _motor and _command must not be null in class " + this.getClass().getName() + "!");
+		}
+		getQueue(_motor).submitCommand(_command, _cause);
+	}
+	
+	/**
+	 * Submits a new speed of a motor; returns immediately.
+	 * A pending speed is always sent before a pending movement of the same motor.
+	 * @param _motor the motor
+	 * @param _speed the speed in degrees per second
+	 */
+	public void setSpeed(RMIRegulatedMotor _motor, int _speed) {
+		if (_motor == null) {
+			throw new IllegalArgumentException("Parameter _motor must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_speed < 0) {
+			throw new IllegalArgumentException("Parameter _speed must not be negative in class " + this.getClass().getName() + "!");
+		}
+		getQueue(_motor).submitSpeed(_speed);
+	}
+	
+	/**
+	 * Waits until all submitted commands have been sent, e. g. before the motors are closed.
+	 * @param _timeoutMillis the maximum time to wait in milliseconds
+	 * @return true if all commands have been sent; false if the time elapsed before
+	 * @throws InterruptedException if the thread has been interrupted while waiting
+	 */
+	public boolean awaitIdle(long _timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + _timeoutMillis;
+		MotorQueue[] queues;
+		synchronized (mQueues) {
+			queues = mQueues.values().toArray(new MotorQueue[mQueues.size()]);
+		}
+		for (MotorQueue queue : queues) {
+			if (!queue.awaitIdle(deadline)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Helper method to get the queue of a motor, creating it on first use.
+	 * @param _motor the motor
+	 * @return the queue of the motor
+	 */
+	private MotorQueue getQueue(RMIRegulatedMotor _motor) {
+		synchronized (mQueues) {
+			MotorQueue queue = mQueues.get(_motor);
+			if (queue == null) {
+				queue = new MotorQueue(_motor);
+				mQueues.put(_motor, queue);
+			}
+			return queue;
+		}
+	}
+	
+	/**
+	 * Helper class holding the pending commands of a motor; sends them on the executor with at most one task at a time.
+	 */
+	private class MotorQueue implements Runnable {
+		/**
+		 * The motor.
+		 */
+		private RMIRegulatedMotor mMotor = null;
+		
+		/**
+		 * The pending speed; NO_SPEED if there is none.
+		 */
+		private int mPendingSpeed = NO_SPEED;
+		
+		/**
+		 * The pending movement; null if there is none.
+		 */
+		private MotorCommand mPendingCommand = null;
+		
+		/**
+		 * The gesture event causing the pending movement; null if there is none.
+		 */
+		private GestureEvent mPendingCause = null;
+		
+		/**
+		 * Indicates whether a task sending the commands has been submitted to the executor or is running.
+		 */
+		private boolean mScheduled = false;
+		
+		/**
+		 * Constructor.
+		 * @param _motor the motor
+		 */
+		private MotorQueue(RMIRegulatedMotor _motor) {
+			mMotor = _motor;
+		}
+		
+		/**
+		 * Replaces the pending movement and makes sure it will be sent.
+		 * @param _command the movement
+		 * @param _cause the gesture event causing the movement; null if there is none
+		 */
+		private synchronized void submitCommand(MotorCommand _command, GestureEvent _cause) {
+			if (mPendingCommand != null) {
+				mCoalescedCount.incrementAndGet();
+			}
+			mPendingCommand = _command;
+			//Keep the earliest cause, the latency is measured from the first gesture waiting for the motor
+			if (mPendingCause == null) {
+				mPendingCause = _cause;
+			}
+			schedule();
+		}
+		
+		/**
+		 * Replaces the pending speed and makes sure it will be sent.
+		 * @param _speed the speed in degrees per second
+		 */
+		private synchronized void submitSpeed(int _speed) {
+			if (mPendingSpeed != NO_SPEED) {
+				mCoalescedCount.incrementAndGet();
+			}
+			mPendingSpeed = _speed;
+			schedule();
+		}
+		
+		/**
+		 * Helper method to submit this queue to the executor unless it is already scheduled.
+		 */
+		private void schedule() {
+			if (!mScheduled) {
+				mScheduled = true;
+				try {
+					mExecutor.execute(this);
+				} catch (RejectedExecutionException e) {
+					mScheduled = false;
+					System.err.println("Executor rejected sending motor commands: " + e.getMessage());
+				}
+			}
+		}
+		
+		/**
+		 * Waits until no command is pending or being sent.
+		 * @param _deadline the time to give up in milliseconds since the epoch
+		 * @return true if the queue is idle; false if the deadline has passed before
+		 * @throws InterruptedException if the thread has been interrupted while waiting
+		 */
+		private synchronized boolean awaitIdle(long _deadline) throws InterruptedException {
+			while (mScheduled) {
+				long wait = _deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					return false;
+				}
+				wait(wait);
+			}
+			return true;
+		}
+		
+		/**
+		 * Executed on the executor this method sends the pending commands until none are left.
+		 */
+		@Override
+		public void run() {
+			while (true) {
+				int speed;
+				MotorCommand command;
+				GestureEvent cause;
+				synchronized (this) {
+					speed = mPendingSpeed;
+					command = mPendingCommand;
+					cause = mPendingCause;
+					mPendingSpeed = NO_SPEED;
+					mPendingCommand = null;
+					mPendingCause = null;
+					if (speed == NO_SPEED && command == null) {
+						mScheduled = false;
+						notifyAll();
+						return;
+					}
+				}
+				try {
+					if (speed != NO_SPEED) {
+						mMotor.setSpeed(speed);
+						mSentCount.incrementAndGet();
+					}
+					if (command != null) {
+						send(command, cause);
+						mSentCount.incrementAndGet();
+					}
+				} catch (RemoteException | RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		/**
+		 * Helper method to send a movement to the motor and record its latencies.
+		 * @param _command the movement
+		 * @param _cause the gesture event causing the movement; null if there is none
+		 * @throws RemoteException if the motor cannot be reached
+		 */
+		private void send(MotorCommand _command, GestureEvent _cause) throws RemoteException {
+			LatencyMonitor monitor = mLatencyMonitor;
+			long start = monitor != null && _cause != null ? monitor.recordMotorCall(_cause) : 0;
+			switch (_command) {
+				case FORWARD:
+					mMotor.forward();
+					break;
+				case BACKWARD:
+					mMotor.backward();
+					break;
+				case STOP:
+					mMotor.stop(true);
+					break;
+			}
+			if (start != 0) {
+				monitor.recordMotorCallEnd(start);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package at.fhhgb.mc.pro.motor;
+
+import java.net.MalformedURLException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+
+import lejos.remote.ev3.RMIRegulatedMotor;
+import lejos.remote.ev3.RemoteEV3;
+
+/**
+ * A class providing the motors of a real EV3 brick connected via RMI.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class RemoteEV3Backend implements MotorBackend {
+	
+	/**
+	 * The remote brick.
+	 */
+	private RemoteEV3 mBrick = null;
+	
+	/**
+	 * Constructor; connects to the brick.
+	 * @param _host the host name or IP address of the brick
+	 * @throws RemoteException if the brick cannot be reached
+	 * @throws MalformedURLException if the host is invalid
+	 * @throws NotBoundException if the brick does not provide RMI
+	 */
+	public RemoteEV3Backend(String _host) throws RemoteException, MalformedURLException, NotBoundException {
+		if (_host == null) {
+			throw new IllegalArgumentException("Constructor parameter _host must not be null in class " + this.getClass().getName() + "!");
+		}
+		mBrick = new RemoteEV3(_host);
+	}
+	
+	/**
+	 * Creates a regulated motor of the brick.
+	 * @param _port the port of the motor ("A" to "D")
+	 * @param _type the type of the motor ('L' for large, 'M' for medium)
+	 * @return the motor
+	 */
+	@Override
+	public RMIRegulatedMotor createRegulatedMotor(String _port, char _type) {
+		return mBrick.createRegulatedMotor(_port, _type);
+	}
+}
\ No newline at end of file
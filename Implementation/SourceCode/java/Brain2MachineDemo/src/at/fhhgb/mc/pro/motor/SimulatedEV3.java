@@ -0,0 +1,255 @@
+package at.fhhgb.mc.pro.motor;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import lejos.remote.ev3.RMIRegulatedMotor;
+
+/**
+ * A class simulating an EV3 brick in-process, so the control loop can run and be measured without the real brick.
+ * Every call of a simulated motor takes a round trip time like an RMI call: a fixed latency plus normally distributed jitter; the command takes effect half way through.
+ * All commands are recorded in a timeline together with the position of the motor.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SimulatedEV3 implements MotorBackend {
+	
+	/**
+	 * Default round trip latency in milliseconds (typical for RMI over the USB or Bluetooth network of the brick).
+	 */
+	public static final double LATENCY_MILLIS_DEFAULT = 20;
+	
+	/**
+	 * Default standard deviation of the round trip latency in milliseconds.
+	 */
+	public static final double JITTER_MILLIS_DEFAULT = 5;
+	
+	/**
+	 * The mean round trip latency in nanoseconds.
+	 */
+	private long mLatencyNanos = 0;
+	
+	/**
+	 * The standard deviation of the round trip latency in nanoseconds.
+	 */
+	private long mJitterNanos = 0;
+	
+	/**
+	 * The random generator of the jitter.
+	 */
+	private Random mRandom = null;
+	
+	/**
+	 * The time the simulation started in nanoseconds.
+	 */
+	private long mStartTime = 0;
+	
+	/**
+	 * The recorded commands.
+	 */
+	private List<TimelineEntry> mTimeline = null;
+	
+	/**
+	 * Constructor; simulates the default latency and jitter.
+	 */
+	public SimulatedEV3() {
+		this(LATENCY_MILLIS_DEFAULT, JITTER_MILLIS_DEFAULT, System.nanoTime());
+	}
+	
+	/**
+	 * Constructor.
+	 * @param _latencyMillis the mean round trip latency of a motor call in milliseconds
+	 * @param _jitterMillis the standard deviation of the round trip latency in milliseconds
+	 * @param _seed the seed of the jitter, so simulations can be repeated
+	 */
+	public SimulatedEV3(double _latencyMillis, double _jitterMillis, long _seed) {
+		if (_latencyMillis < 0 || _jitterMillis < 0) {
+			throw new IllegalArgumentException("Constructor parameters _latencyMillis and _jitterMillis must not be negative in class " + this.getClass().getName() + "!");
+		}
+		mLatencyNanos = (long)(_latencyMillis * 1000000);
+		mJitterNanos = (long)(_jitterMillis * 1000000);
+		mRandom = new Random(_seed);
+		mStartTime = System.nanoTime();
+		mTimeline = new ArrayList<>();
+	}
+	
+	/**
+	 * Creates a simulated regulated motor.
+	 * @param _port the port of the motor ("A" to "D")
+	 * @param _type the type of the motor ('L' for large, 'M' for medium)
+	 * @return the motor
+	 */
+	@Override
+	public RMIRegulatedMotor createRegulatedMotor(String _port, char _type) {
+		return new SimulatedMotor(this, _port, _type);
+	}
+	
+	/**
+	 * Gets the time the simulation started.
+	 * @return the start time in nanoseconds
+	 */
+	public long getStartTime() {
+		return mStartTime;
+	}
+	
+	/**
+	 * Gets the recorded commands.
+	 * @return a copy of the timeline in the order the commands took effect
+	 */
+	public List<TimelineEntry> getTimeline() {
+		synchronized (mTimeline) {
+			return new ArrayList<>(mTimeline);
+		}
+	}
+	
+	/**
+	 * Removes all recorded commands.
+	 */
+	public void clearTimeline() {
+		synchronized (mTimeline) {
+			mTimeline.clear();
+		}
+	}
+	
+	/**
+	 * Prints the recorded commands, one per line.
+	 * @param _out the stream to print to
+	 */
+	public void printTimeline(PrintStream _out) {
+		for (TimelineEntry entry : getTimeline()) {
+			_out.println(entry);
+		}
+	}
+	
+	/**
+	 * Draws the round trip time of a motor call.
+	 * @return the round trip time in nanoseconds
+	 */
+	long nextRoundTrip() {
+		double jitter;
+		synchronized (mRandom) {
+			jitter = mRandom.nextGaussian();
+		}
+		return Math.max(0, mLatencyNanos + (long)(jitter * mJitterNanos));
+	}
+	
+	/**
+	 * Waits for a part of a round trip like a network transfer.
+	 * @param _nanos the time to wait in nanoseconds
+	 */
+	static void transfer(long _nanos) {
+		long end = System.nanoTime() + _nanos;
+		long wait = _nanos;
+		while (wait > 0) {
+			LockSupport.parkNanos(wait);
+			wait = end - System.nanoTime();
+		}
+	}
+	
+	/**
+	 * Records a command that took effect.
+	 * @param _entry the command
+	 */
+	void record(TimelineEntry _entry) {
+		synchronized (mTimeline) {
+			mTimeline.add(_entry);
+		}
+	}
+	
+	/**
+	 * A class representing a command of a simulated motor in the timeline.
+	 */
+	public static class TimelineEntry {
+		/**
+		 * The time the command took effect in nanoseconds since the start of the simulation.
+		 */
+		private long mTime = 0;
+		
+		/**
+		 * The port of the motor.
+		 */
+		private String mPort = null;
+		
+		/**
+		 * The command including its parameters.
+		 */
+		private String mCommand = null;
+		
+		/**
+		 * The position of the motor when the command took effect in degrees.
+		 */
+		private int mTachoCount = 0;
+		
+		/**
+		 * The round trip time of the call in nanoseconds.
+		 */
+		private long mRoundTrip = 0;
+		
+		/**
+		 * Constructor.
+		 * @param _time the time the command took effect in nanoseconds since the start of the simulation
+		 * @param _port the port of the motor
+		 * @param _command the command including its parameters
+		 * @param _tachoCount the position of the motor when the command took effect in degrees
+		 * @param _roundTrip the round trip time of the call in nanoseconds
+		 */
+		TimelineEntry(long _time, String _port, String _command, int _tachoCount, long _roundTrip) {
+			mTime = _time;
+			mPort = _port;
+			mCommand = _command;
+			mTachoCount = _tachoCount;
+			mRoundTrip = _roundTrip;
+		}
+		
+		/**
+		 * Gets the time the command took effect.
+		 * @return the time in nanoseconds since the start of the simulation
+		 */
+		public long getTime() {
+			return mTime;
+		}
+		
+		/**
+		 * Gets the port of the motor.
+		 * @return the port
+		 */
+		public String getPort() {
+			return mPort;
+		}
+		
+		/**
+		 * Gets the command.
+		 * @return the command including its parameters
+		 */
+		public String getCommand() {
+			return mCommand;
+		}
+		
+		/**
+		 * Gets the position of the motor when the command took effect.
+		 * @return the position in degrees
+		 */
+		public int getTachoCount() {
+			return mTachoCount;
+		}
+		
+		/**
+		 * Gets the round trip time of the call.
+		 * @return the round trip time in nanoseconds
+		 */
+		public long getRoundTrip() {
+			return mRoundTrip;
+		}
+		
+		/**
+		 * Returns the entry as a line of the timeline.
+		 * @return the time in milliseconds, the port, the command, the position and the round trip time
+		 */
+		@Override
+		public String toString() {
+			return String.format("%10.3f ms  %s  %-20s tacho=%6d  rtt=%.3f ms", mTime / 1e6, mPort, mCommand, mTachoCount, mRoundTrip / 1e6);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,890 @@
+package at.fhhgb.mc.pro.motor;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import lejos.remote.ev3.RMIRegulatedMotor;
+import lejos.robotics.RegulatedMotor;
+import lejos.robotics.RegulatedMotorListener;
+
+/**
+ * A class simulating a regulated motor of a SimulatedEV3.
+ * The motor follows its commands without acceleration; its position is calculated from the speed and the time it has been moving.
+ * Every call blocks for a simulated round trip time and is recorded in the timeline of the brick.
+ * Like the regulator thread of a motor on the brick, one daemon thread notifies the listeners when a motor starts or stops rotating (also when a rotation reaches its target).
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SimulatedMotor implements RMIRegulatedMotor {
+	
+	/**
+	 * The maximum speed in degrees per second (leJOS allows about 100 degrees per second per volt, the brick runs at about 9 V).
+	 */
+	public static final int MAX_SPEED = 900;
+	
+	/**
+	 * The default speed in degrees per second.
+	 */
+	public static final int SPEED_DEFAULT = 360;
+	
+	/**
+	 * Constant for a motor not rotating to a target.
+	 */
+	private static final int NO_TARGET = Integer.MIN_VALUE;
+	
+	/**
+	 * The thread notifying the listeners of all simulated motors in the order the rotations started and stopped and detecting the end of rotations to a target.
+	 */
+	private static final ScheduledExecutorService REGULATOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable _runnable) {
+			Thread thread = new Thread(_runnable, "SimulatedMotorRegulator");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * The simulated brick.
+	 */
+	private SimulatedEV3 mBrick = null;
+	
+	/**
+	 * The port of the motor.
+	 */
+	private String mPort = null;
+	
+	/**
+	 * The type of the motor ('L' for large, 'M' for medium).
+	 */
+	private char mType = 0;
+	
+	/**
+	 * The speed in degrees per second.
+	 */
+	private int mSpeed = SPEED_DEFAULT;
+	
+	/**
+	 * The direction of the rotation: 1 for forward, -1 for backward, 0 if the motor stands still.
+	 */
+	private int mDirection = 0;
+	
+	/**
+	 * The position in degrees at mPositionTime.
+	 */
+	private double mPosition = 0;
+	
+	/**
+	 * The time mPosition refers to in nanoseconds.
+	 */
+	private long mPositionTime = 0;
+	
+	/**
+	 * The position to rotate to in degrees; NO_TARGET if the motor rotates until it is stopped.
+	 */
+	private int mTarget = NO_TARGET;
+	
+	/**
+	 * The registered listener; null if there is none.
+	 */
+	private RegulatedMotorListener mListener = null;
+	
+	/**
+	 * The motor passed to the listener, standing in for the motor on the brick.
+	 */
+	private RegulatedMotor mLocalMotor = null;
+	
+	/**
+	 * Indicates whether the listener has last been told that the motor rotates.
+	 */
+	private boolean mNotifiedMoving = false;
+	
+	/**
+	 * Incremented whenever the movement or speed changes, so checks for the end of an earlier rotation are ignored.
+	 */
+	private long mArrivalGeneration = 0;
+	
+	/**
+	 * Indicates whether the motor has been closed.
+	 */
+	private boolean mClosed = false;
+	
+	/**
+	 * Constructor.
+	 * @param _brick the simulated brick
+	 * @param _port the port of the motor
+	 * @param _type the type of the motor ('L' for large, 'M' for medium)
+	 */
+	SimulatedMotor(SimulatedEV3 _brick, String _port, char _type) {
+		if (_brick == null || _port == null) {
+			throw new IllegalArgumentException("Constructor parameters _brick and _port must not be null in class " + this.getClass().getName() + "!");
+		}
+		mBrick = _brick;
+		mPort = _port;
+		mType = _type;
+		mPositionTime = System.nanoTime();
+		mLocalMotor = new LocalMotor();
+	}
+	
+	/**
+	 * Gets the type of the motor.
+	 * @return 'L' for large, 'M' for medium
+	 */
+	public char getType() {
+		return mType;
+	}
+	
+	/**
+	 * Registers the listener of the motor; it is notified on the regulator thread whenever the motor starts or stops rotating.
+	 * @param _listener the listener
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void addListener(RegulatedMotorListener _listener) throws RemoteException {
+		call();
+		synchronized (this) {
+			mListener = _listener;
+		}
+	}
+	
+	/**
+	 * Unregisters the listener of the motor.
+	 * @return the listener; null if there was none
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public RegulatedMotorListener removeListener() throws RemoteException {
+		call();
+		synchronized (this) {
+			RegulatedMotorListener listener = mListener;
+			mListener = null;
+			return listener;
+		}
+	}
+	
+	/**
+	 * Stops the motor.
+	 * @param _immediateReturn ignored, the simulated motor stops instantly
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void stop(boolean _immediateReturn) throws RemoteException {
+		move("stop", 0, NO_TARGET);
+	}
+	
+	/**
+	 * Lets the motor float; simulated like stop.
+	 * @param _immediateReturn ignored, the simulated motor stops instantly
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void flt(boolean _immediateReturn) throws RemoteException {
+		move("flt", 0, NO_TARGET);
+	}
+	
+	/**
+	 * Waits until a rotation to a target is complete; returns immediately if the speed is 0, since the target would never be reached.
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void waitComplete() throws RemoteException {
+		call();
+		while (true) {
+			long remaining;
+			synchronized (this) {
+				long now = System.nanoTime();
+				update(now);
+				if (mDirection == 0 || mTarget == NO_TARGET || mSpeed == 0) {
+					return;
+				}
+				remaining = (long)(Math.abs(mTarget - mPosition) / mSpeed * 1e9);
+			}
+			SimulatedEV3.transfer(Math.max(remaining, 1000000));
+		}
+	}
+	
+	/**
+	 * Rotates the motor by an angle.
+	 * @param _angle the angle in degrees
+	 * @param _immediateReturn true to return immediately; false to wait until the rotation is complete
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void rotate(int _angle, boolean _immediateReturn) throws RemoteException {
+		int target;
+		synchronized (this) {
+			update(System.nanoTime());
+			target = (int)Math.round(mPosition) + _angle;
+		}
+		rotateTo(target, _immediateReturn);
+	}
+	
+	/**
+	 * Rotates the motor by an angle and waits until the rotation is complete.
+	 * @param _angle the angle in degrees
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void rotate(int _angle) throws RemoteException {
+		rotate(_angle, false);
+	}
+	
+	/**
+	 * Rotates the motor to a position and waits until the rotation is complete.
+	 * @param _limitAngle the position in degrees
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void rotateTo(int _limitAngle) throws RemoteException {
+		rotateTo(_limitAngle, false);
+	}
+	
+	/**
+	 * Rotates the motor to a position.
+	 * @param _limitAngle the position in degrees
+	 * @param _immediateReturn true to return immediately; false to wait until the rotation is complete
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void rotateTo(int _limitAngle, boolean _immediateReturn) throws RemoteException {
+		int direction;
+		synchronized (this) {
+			update(System.nanoTime());
+			direction = (int)Math.signum(_limitAngle - mPosition);
+		}
+		move("rotateTo(" + _limitAngle + ")", direction, _limitAngle);
+		if (!_immediateReturn) {
+			waitComplete();
+		}
+	}
+	
+	/**
+	 * Gets the position the motor rotates to.
+	 * @return the position in degrees; the current position if the motor does not rotate to a target
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public int getLimitAngle() throws RemoteException {
+		call();
+		synchronized (this) {
+			return mTarget != NO_TARGET ? mTarget : (int)Math.round(mPosition);
+		}
+	}
+	
+	/**
+	 * Sets the speed; a running rotation continues at the new speed.
+	 * @param _speed the speed in degrees per second, limited to MAX_SPEED
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void setSpeed(int _speed) throws RemoteException {
+		long roundTrip = begin();
+		synchronized (this) {
+			long now = System.nanoTime();
+			update(now);
+			mSpeed = Math.max(0, Math.min(MAX_SPEED, _speed));
+			scheduleArrival();
+			record(now, "setSpeed(" + _speed + ")", roundTrip);
+		}
+		end(roundTrip);
+	}
+	
+	/**
+	 * Gets the speed.
+	 * @return the speed in degrees per second
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public int getSpeed() throws RemoteException {
+		call();
+		synchronized (this) {
+			return mSpeed;
+		}
+	}
+	
+	/**
+	 * Gets the maximum speed.
+	 * @return MAX_SPEED
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public float getMaxSpeed() throws RemoteException {
+		call();
+		return MAX_SPEED;
+	}
+	
+	/**
+	 * Checks whether the motor is stalled; the simulated motor never stalls.
+	 * @return false
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public boolean isStalled() throws RemoteException {
+		call();
+		return false;
+	}
+	
+	/**
+	 * Sets the stall threshold; ignored since the simulated motor never stalls.
+	 * @param _error the position error in degrees
+	 * @param _time the time in milliseconds
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void setStallThreshold(int _error, int _time) throws RemoteException {
+		call();
+	}
+	
+	/**
+	 * Sets the acceleration; ignored since the simulated motor accelerates instantly.
+	 * @param _acceleration the acceleration in degrees per second squared
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void setAcceleration(int _acceleration) throws RemoteException {
+		call();
+	}
+	
+	/**
+	 * Closes the motor; all further calls fail.
+	 * @throws RemoteException if the motor has already been closed
+	 */
+	@Override
+	public void close() throws RemoteException {
+		move("close", 0, NO_TARGET);
+		synchronized (this) {
+			mClosed = true;
+		}
+	}
+	
+	/**
+	 * Rotates the motor forward until it is stopped.
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void forward() throws RemoteException {
+		move("forward", 1, NO_TARGET);
+	}
+	
+	/**
+	 * Rotates the motor backward until it is stopped.
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void backward() throws RemoteException {
+		move("backward", -1, NO_TARGET);
+	}
+	
+	/**
+	 * Sets the current position to 0.
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public void resetTachoCount() throws RemoteException {
+		long roundTrip = begin();
+		synchronized (this) {
+			long now = System.nanoTime();
+			update(now);
+			if (mTarget != NO_TARGET) {
+				mTarget -= (int)Math.round(mPosition);
+			}
+			mPosition = 0;
+			record(now, "resetTachoCount", roundTrip);
+		}
+		end(roundTrip);
+	}
+	
+	/**
+	 * Gets the current position.
+	 * @return the position in degrees
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public int getTachoCount() throws RemoteException {
+		call();
+		synchronized (this) {
+			update(System.nanoTime());
+			return (int)Math.round(mPosition);
+		}
+	}
+	
+	/**
+	 * Checks whether the motor is rotating.
+	 * @return true if the motor is rotating; false if it stands still
+	 * @throws RemoteException if the motor has been closed
+	 */
+	@Override
+	public boolean isMoving() throws RemoteException {
+		call();
+		synchronized (this) {
+			update(System.nanoTime());
+			return mDirection != 0;
+		}
+	}
+	
+	/**
+	 * Gets the position of the motor without a simulated round trip, e. g. to check the simulation.
+	 * @return the position in degrees
+	 */
+	public synchronized int getSimulatedPosition() {
+		update(System.nanoTime());
+		return (int)Math.round(mPosition);
+	}
+	
+	/**
+	 * Helper method to simulate a call that does not change the motor.
+	 * @throws RemoteException if the motor has been closed
+	 */
+	private void call() throws RemoteException {
+		long roundTrip = begin();
+		end(roundTrip);
+	}
+	
+	/**
+	 * Helper method to simulate a call changing the movement of the motor.
+	 * @param _command the name of the call for the timeline
+	 * @param _direction the new direction: 1 for forward, -1 for backward, 0 to stop
+	 * @param _target the position to rotate to; NO_TARGET to rotate until stopped
+	 * @throws RemoteException if the motor has been closed
+	 */
+	private void move(String _command, int _direction, int _target) throws RemoteException {
+		long roundTrip = begin();
+		synchronized (this) {
+			long now = System.nanoTime();
+			update(now);
+			mDirection = _direction;
+			mTarget = _direction == 0 ? NO_TARGET : _target;
+			scheduleArrival();
+			notifyListener();
+			record(now, _command, roundTrip);
+		}
+		end(roundTrip);
+	}
+	
+	/**
+	 * Helper method to schedule the check for the end of a rotation to a target; must be called while the motor is locked.
+	 */
+	private void scheduleArrival() {
+		final long generation = ++mArrivalGeneration;
+		if (mDirection == 0 || mTarget == NO_TARGET || mSpeed == 0) {
+			return;
+		}
+		long remaining = (long)(Math.abs(mTarget - mPosition) / mSpeed * 1e9);
+		REGULATOR.schedule(new Runnable() {
+			@Override
+			public void run() {
+				arrive(generation);
+			}
+		}, remaining, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Executed on the regulator thread this method checks whether a rotation has reached its target and notifies the listener.
+	 * @param _generation the generation of the movement when the check was scheduled
+	 */
+	private synchronized void arrive(long _generation) {
+		if (_generation != mArrivalGeneration) {
+			return;
+		}
+		update(System.nanoTime());
+		if (mDirection != 0) {
+			scheduleArrival();
+		}
+		notifyListener();
+	}
+	
+	/**
+	 * Helper method to notify the listener on the regulator thread if the motor started or stopped rotating since it was notified last; must be called while the motor is locked.
+	 */
+	private void notifyListener() {
+		final boolean moving = mDirection != 0;
+		final RegulatedMotorListener listener = mListener;
+		if (moving == mNotifiedMoving) {
+			return;
+		}
+		mNotifiedMoving = moving;
+		if (listener == null) {
+			return;
+		}
+		final int tachoCount = (int)Math.round(mPosition);
+		final long timeStamp = System.currentTimeMillis();
+		REGULATOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (moving) {
+					listener.rotationStarted(mLocalMotor, tachoCount, false, timeStamp);
+				} else {
+					listener.rotationStopped(mLocalMotor, tachoCount, false, timeStamp);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Helper method to simulate the transfer of a call to the brick.
+	 * @return the round trip time of the call in nanoseconds
+	 * @throws RemoteException if the motor has been closed
+	 */
+	private long begin() throws RemoteException {
+		synchronized (this) {
+			if (mClosed) {
+				throw new RemoteException("Simulated motor " + mPort + " has been closed!");
+			}
+		}
+		long roundTrip = mBrick.nextRoundTrip();
+		SimulatedEV3.transfer(roundTrip / 2);
+		return roundTrip;
+	}
+	
+	/**
+	 * Helper method to simulate the transfer of the reply of a call from the brick.
+	 * @param _roundTrip the round trip time of the call in nanoseconds
+	 */
+	private void end(long _roundTrip) {
+		SimulatedEV3.transfer(_roundTrip - _roundTrip / 2);
+	}
+	
+	/**
+	 * Helper method to advance the position of the motor to a point in time.
+	 * @param _now the point in time in nanoseconds
+	 */
+	private void update(long _now) {
+		if (mDirection != 0) {
+			double position = mPosition + mDirection * mSpeed * (_now - mPositionTime) / 1e9;
+			if (mTarget != NO_TARGET && (position - mTarget) * mDirection >= 0) {
+				position = mTarget;
+				mDirection = 0;
+				mTarget = NO_TARGET;
+			}
+			mPosition = position;
+		}
+		mPositionTime = _now;
+	}
+	
+	/**
+	 * Helper method to record a command in the timeline of the brick.
+	 * @param _now the time the command took effect in nanoseconds
+	 * @param _command the command including its parameters
+	 * @param _roundTrip the round trip time of the call in nanoseconds
+	 */
+	private void record(long _now, String _command, long _roundTrip) {
+		mBrick.record(new SimulatedEV3.TimelineEntry(_now - mBrick.getStartTime(), mPort, _command, (int)Math.round(mPosition), _roundTrip));
+	}
+	
+	/**
+	 * A class standing in for the motor on the brick, passed to the listener.
+	 * The calls are forwarded to the simulated motor; a closed motor raises an IllegalStateException instead of a RemoteException.
+	 */
+	private class LocalMotor implements RegulatedMotor {
+		
+		/**
+		 * Registers the listener of the motor.
+		 * @param _listener the listener
+		 */
+		@Override
+		public void addListener(RegulatedMotorListener _listener) {
+			try {
+				SimulatedMotor.this.addListener(_listener);
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Unregisters the listener of the motor.
+		 * @return the listener; null if there was none
+		 */
+		@Override
+		public RegulatedMotorListener removeListener() {
+			try {
+				return SimulatedMotor.this.removeListener();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Stops the motor.
+		 * @param _immediateReturn ignored, the simulated motor stops instantly
+		 */
+		@Override
+		public void stop(boolean _immediateReturn) {
+			try {
+				SimulatedMotor.this.stop(_immediateReturn);
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Lets the motor float; simulated like stop.
+		 * @param _immediateReturn ignored, the simulated motor stops instantly
+		 */
+		@Override
+		public void flt(boolean _immediateReturn) {
+			try {
+				SimulatedMotor.this.flt(_immediateReturn);
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Waits until a rotation to a target is complete.
+		 */
+		@Override
+		public void waitComplete() {
+			try {
+				SimulatedMotor.this.waitComplete();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Rotates the motor by an angle.
+		 * @param _angle the angle in degrees
+		 * @param _immediateReturn true to return immediately; false to wait until the rotation is complete
+		 */
+		@Override
+		public void rotate(int _angle, boolean _immediateReturn) {
+			try {
+				SimulatedMotor.this.rotate(_angle, _immediateReturn);
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Rotates the motor by an angle and waits until the rotation is complete.
+		 * @param _angle the angle in degrees
+		 */
+		@Override
+		public void rotate(int _angle) {
+			rotate(_angle, false);
+		}
+		
+		/**
+		 * Rotates the motor to a position and waits until the rotation is complete.
+		 * @param _limitAngle the position in degrees
+		 */
+		@Override
+		public void rotateTo(int _limitAngle) {
+			rotateTo(_limitAngle, false);
+		}
+		
+		/**
+		 * Rotates the motor to a position.
+		 * @param _limitAngle the position in degrees
+		 * @param _immediateReturn true to return immediately; false to wait until the rotation is complete
+		 */
+		@Override
+		public void rotateTo(int _limitAngle, boolean _immediateReturn) {
+			try {
+				SimulatedMotor.this.rotateTo(_limitAngle, _immediateReturn);
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Gets the position the motor rotates to.
+		 * @return the position in degrees; the current position if the motor does not rotate to a target
+		 */
+		@Override
+		public int getLimitAngle() {
+			try {
+				return SimulatedMotor.this.getLimitAngle();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Sets the speed; a running rotation continues at the new speed.
+		 * @param _speed the speed in degrees per second, limited to MAX_SPEED
+		 */
+		@Override
+		public void setSpeed(int _speed) {
+			try {
+				SimulatedMotor.this.setSpeed(_speed);
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Gets the speed.
+		 * @return the speed in degrees per second
+		 */
+		@Override
+		public int getSpeed() {
+			try {
+				return SimulatedMotor.this.getSpeed();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Gets the maximum speed.
+		 * @return MAX_SPEED
+		 */
+		@Override
+		public float getMaxSpeed() {
+			return MAX_SPEED;
+		}
+		
+		/**
+		 * Checks whether the motor is stalled; the simulated motor never stalls.
+		 * @return false
+		 */
+		@Override
+		public boolean isStalled() {
+			return false;
+		}
+		
+		/**
+		 * Sets the stall threshold; ignored since the simulated motor never stalls.
+		 * @param _error the position error in degrees
+		 * @param _time the time in milliseconds
+		 */
+		@Override
+		public void setStallThreshold(int _error, int _time) {
+		}
+		
+		/**
+		 * Sets the acceleration; ignored since the simulated motor accelerates instantly.
+		 * @param _acceleration the acceleration in degrees per second squared
+		 */
+		@Override
+		public void setAcceleration(int _acceleration) {
+		}
+		
+		/**
+		 * Synchronizes the motor with other motors; ignored since the simulated motors execute every command instantly.
+		 * @param _motors the motors to synchronize with
+		 */
+		@Override
+		public void synchronizeWith(RegulatedMotor[] _motors) {
+		}
+		
+		/**
+		 * Starts a synchronized block of commands; ignored since the simulated motors execute every command instantly.
+		 */
+		@Override
+		public void startSynchronization() {
+		}
+		
+		/**
+		 * Ends a synchronized block of commands; ignored since the simulated motors execute every command instantly.
+		 */
+		@Override
+		public void endSynchronization() {
+		}
+		
+		/**
+		 * Closes the motor; all further calls fail.
+		 */
+		@Override
+		public void close() {
+			try {
+				SimulatedMotor.this.close();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Rotates the motor forward until it is stopped.
+		 */
+		@Override
+		public void forward() {
+			try {
+				SimulatedMotor.this.forward();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Rotates the motor backward until it is stopped.
+		 */
+		@Override
+		public void backward() {
+			try {
+				SimulatedMotor.this.backward();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Stops the motor.
+		 */
+		@Override
+		public void stop() {
+			stop(false);
+		}
+		
+		/**
+		 * Lets the motor float; simulated like stop.
+		 */
+		@Override
+		public void flt() {
+			flt(false);
+		}
+		
+		/**
+		 * Checks whether the motor is rotating.
+		 * @return true if the motor is rotating; false if it stands still
+		 */
+		@Override
+		public boolean isMoving() {
+			try {
+				return SimulatedMotor.this.isMoving();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Gets the speed of the rotation.
+		 * @return the speed in degrees per second, negative if the motor rotates backward
+		 */
+		@Override
+		public int getRotationSpeed() {
+			synchronized (SimulatedMotor.this) {
+				update(System.nanoTime());
+				return mDirection * mSpeed;
+			}
+		}
+		
+		/**
+		 * Gets the current position.
+		 * @return the position in degrees
+		 */
+		@Override
+		public int getTachoCount() {
+			try {
+				return SimulatedMotor.this.getTachoCount();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+		
+		/**
+		 * Sets the current position to 0.
+		 */
+		@Override
+		public void resetTachoCount() {
+			try {
+				SimulatedMotor.this.resetTachoCount();
+			} catch (RemoteException _e) {
+				throw new IllegalStateException(_e);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * Interface for a source of bytes a SerialReader reads from, e. g. a serial port, a device file or a socket.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface ByteTransport {
+	/**
+	 * Opens the source.
+	 * @throws IOException if the source cannot be opened
+	 */
+	public void open() throws IOException;
+	
+	/**
+	 * Checks whether the source is open.
+	 * @return true if the source is open; false otherwise
+	 */
+	public boolean isOpen();
+	
+	/**
+	 * Gets the channel to read from; only valid while the source is open.
+	 * @return the channel
+	 */
+	public ReadableByteChannel getChannel();
+	
+	/**
+	 * Gets the stream to read from for sources that only provide a stream, so the bytes are read straight into the array handed to the listeners instead of being copied through the buffer of a channel; only valid while the source is open.
+	 * @return the stream; null if the source is read through its channel
+	 */
+	public InputStream getInputStream();
+	
+	/**
+	 * Gets the channel to read from as selectable channel, so many sources can be read by one thread with a selector.
+	 * @return the selectable channel; null if the source cannot be selected
+	 */
+	public SelectableChannel getSelectableChannel();
+	
+	/**
+	 * Closes the source.
+	 * @throws IOException if the source cannot be closed
+	 */
+	public void close() throws IOException;
+	
+	/**
+	 * Gets the name of the source (for log output).
+	 * @return the name
+	 */
+	public String getName();
+}
\ No newline at end of file
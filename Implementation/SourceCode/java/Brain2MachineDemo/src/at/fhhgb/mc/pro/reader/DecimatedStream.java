@@ -0,0 +1,392 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import at.fhhgb.mc.pro.dsp.PolyphaseDecimator;
+import at.fhhgb.mc.pro.gesture.Gesture;
+
+/**
+ * A class representing a stream of an OpenEEGReader with a sample rate reduced by an integer factor (e. g. 64 Hz or 32 Hz instead of 256 Hz).
+ * The samples of the reader are low pass filtered by a polyphase FIR against aliasing and every n-th sample is kept in an own ring buffer.
+ * Gestures added to the stream are only evaluated when the stream produces a new sample, which divides the work of these gestures by the decimation factor.
+ * Streams are created by OpenEEGReader.addDecimatedStream and are fed by the thread processing the samples of the reader.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class DecimatedStream implements SampleStream {
+	
+	/**
+	 * The reader that provides the full rate samples.
+	 */
+	private OpenEEGReader mReader = null;
+	
+	/**
+	 * The decimator of the normalized samples.
+	 */
+	private PolyphaseDecimator mDecimator = null;
+	
+	/**
+	 * The decimator of the filtered samples; null if the reader has no filter.
+	 */
+	private PolyphaseDecimator mFilteredDecimator = null;
+	
+	/**
+	 * The sample rate of the stream.
+	 */
+	private int mSampleRate = 0;
+	
+	/**
+	 * The number of samples the buffer holds.
+	 */
+	private int mBufferLength = 0;
+	
+	/**
+	 * The buffer for storing the decimated normalized samples divided in multiple channels.
+	 */
+	private double[][] mChannelData = null;
+	
+	/**
+	 * The buffer for storing the decimated filtered samples parallel to the channel data; null if the reader has no filter.
+	 */
+	private double[][] mFilteredChannelData = null;
+	
+	/**
+	 * The estimated acquisition time of every sample in the buffer in nanoseconds (System.nanoTime()), corrected by the delay of the decimator.
+	 */
+	private long[] mSampleTimestamps = null;
+	
+	/**
+	 * The delay of the decimator in nanoseconds.
+	 */
+	private long mDelayNanos = 0;
+	
+	/**
+	 * The current full rate sample of every channel handed to the decimator.
+	 */
+	private double[] mInput = null;
+	
+	/**
+	 * The decimated sample of every channel completed by the decimator.
+	 */
+	private double[] mOutput = null;
+	
+	/**
+	 * Current pointer to the sample in the buffer.
+	 */
+	private int mChannelDataPointer = -1;
+	
+	/**
+	 * The number of samples produced so far.
+	 */
+	private long mChannelDataSampleCount = 0;
+	
+	/**
+	 * The samples of the current decoded batch for the gestures in block mode.
+	 */
+	private SampleBlock mBlock = null;
+	
+	/**
+	 * List of gestures that will be supplied with the decimated samples.
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<Gesture> mGestures = null;
+	
+	/**
+	 * The shared spectrum engine for gestures of this stream; created on first use.
+	 */
+	private SpectrumProvider mSpectrumProvider = null;
+	
+	/**
+	 * Constructor.
+	 * @param _reader the reader that provides the full rate samples
+	 * @param _factor the decimation factor; has to divide the sample rate of the reader
+	 * @param _tapsPerPhase the number of taps of every phase of the decimator
+	 */
+	@SuppressWarnings("rawtypes")
+	DecimatedStream(OpenEEGReader _reader, int _factor, int _tapsPerPhase) {
+		if (_reader == null) {
+			throw new IllegalArgumentException("Constructor parameter _reader must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_factor < 2 || _reader.getSampleRate() % _factor != 0) {
+			throw new IllegalArgumentException("Constructor parameter _factor must be at least 2 and divide the sample rate " + _reader.getSampleRate() + " in class " + this.getClass().getName() + "!");
+		}
+		mReader = _reader;
+		mDecimator = new PolyphaseDecimator(_factor, _tapsPerPhase, _reader.getChannels());
+		mSampleRate = _reader.getSampleRate() / _factor;
+		mBufferLength = Math.max(1, _reader.getBufferLength() / _factor);
+		mDelayNanos = Math.round(mDecimator.getDelay() * 1000000000.0 / _reader.getSampleRate());
+		mInput = new double[_reader.getChannels()];
+		mOutput = new double[_reader.getChannels()];
+		mGestures = new ArrayList<Gesture>();
+		reset();
+	}
+	
+	/**
+	 * Reset the buffers, pointers and the decimators; called by the reader whenever its own buffers are reset.
+	 */
+	void reset() {
+		int channels = mReader.getChannels();
+		if (mChannelData == null) {
+			mChannelData = new double[channels][mBufferLength];
+			mSampleTimestamps = new long[mBufferLength];
+		}
+		for (int i=0; i<channels; i++) {
+			Arrays.fill(mChannelData[i], -1);
+		}
+		Arrays.fill(mSampleTimestamps, 0);
+		mDecimator.reset();
+		if (mReader.getFilter() == null) {
+			mFilteredDecimator = null;
+			mFilteredChannelData = null;
+		} else {
+			if (mFilteredDecimator == null) {
+				mFilteredDecimator = new PolyphaseDecimator(mDecimator.getFactor(), mDecimator.getTapsPerPhase(), channels);
+				mFilteredChannelData = new double[channels][mBufferLength];
+			}
+			for (int i=0; i<channels; i++) {
+				Arrays.fill(mFilteredChannelData[i], 0);
+			}
+			mFilteredDecimator.reset();
+		}
+		mBlock = new SampleBlock(channels, Math.max(1, Math.min(OpenEEGReader.BLOCK_SAMPLES_MAX, mBufferLength / 2)), mFilteredDecimator != null);
+		mChannelDataPointer = -1;
+		mChannelDataSampleCount = 0;
+		if (mSpectrumProvider != null) {
+			mSpectrumProvider.clear();
+			mSpectrumProvider.setPendingBlock(mBlock);
+		}
+	}
+	
+	/**
+	 * Adds a gesture that is evaluated whenever the stream produces a new sample.
+	 * @param _gesture the gesture to add
+	 * @throws IllegalArgumentException if the gesture inspects a channel the reader does not have
+	 */
+	@SuppressWarnings("rawtypes")
+	public void addGesture(Gesture _gesture) {
+		_gesture.checkChannels(mReader.getChannels());
+		mGestures.add(_gesture);
+	}
+	
+	/**
+	 * Removes a gesture from the gesture list.
+	 * @param _gesture the gesture to remove
+	 */
+	@SuppressWarnings("rawtypes")
+	public void removeGesture(Gesture _gesture) {
+		mGestures.remove(_gesture);
+	}
+	
+	/**
+	 * Gets the gestures handled by the stream.
+	 * @return an unmodifiable view of the gestures
+	 */
+	@SuppressWarnings("rawtypes")
+	public List<Gesture> getGestures() {
+		return Collections.unmodifiableList(mGestures);
+	}
+	
+	/**
+	 * Gets the reader that provides the full rate samples.
+	 * @return the reader
+	 */
+	public OpenEEGReader getReader() {
+		return mReader;
+	}
+	
+	/**
+	 * Gets the decimation factor.
+	 * @return the number of samples of the reader per sample of the stream
+	 */
+	public int getFactor() {
+		return mDecimator.getFactor();
+	}
+	
+	/**
+	 * Gets the delay of the anti-aliasing filter, i. e. how much later a change of the signal appears in the stream.
+	 * The acquisition times of the samples of the stream are already corrected by this delay.
+	 * @return the delay in seconds
+	 */
+	public double getDelaySeconds() {
+		return mDecimator.getDelay() / mReader.getSampleRate();
+	}
+	
+	/**
+	 * Gets the sample rate of the stream.
+	 * @return the sample rate in Hz
+	 */
+	@Override
+	public int getSampleRate() {
+		return mSampleRate;
+	}
+	
+	/**
+	 * Gets the number of samples the buffer holds.
+	 * @return the length of the buffer
+	 */
+	@Override
+	public int getBufferLength() {
+		return mBufferLength;
+	}
+	
+	/**
+	 * Gets the index of the current sample inside the buffer.
+	 * @return the index of the current sample
+	 */
+	@Override
+	public int getChannelDataPointer() {
+		return mChannelDataPointer;
+	}
+	
+	/**
+	 * Gets the number of samples the stream has produced.
+	 * @return the number of samples
+	 */
+	@Override
+	public long getChannelDataSampleCount() {
+		return mChannelDataSampleCount;
+	}
+	
+	/**
+	 * Gets the value of a sample of a signal in the buffer.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the value; -1 for the normalized signal if no sample was produced for the index yet
+	 */
+	@Override
+	public double getValue(SampleSignal _signal, int _channel, int _index) {
+		if (_signal == SampleSignal.FILTERED && mFilteredChannelData != null) {
+			return mFilteredChannelData[_channel][_index];
+		}
+		return mChannelData[_channel][_index];
+	}
+	
+	/**
+	 * Copies consecutive values of a signal of a channel in chronological order.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _start the index of the first sample inside the buffer; negative indexes count back from the end of the buffer
+	 * @param _length the number of samples to copy (at most the buffer length)
+	 * @param _dest the array to copy the values to
+	 * @param _destOffset the index of the first value inside _dest
+	 */
+	@Override
+	public void copyValues(SampleSignal _signal, int _channel, int _start, int _length, double[] _dest, int _destOffset) {
+		double[] buffer = _signal == SampleSignal.FILTERED && mFilteredChannelData != null ? mFilteredChannelData[_channel] : mChannelData[_channel];
+		int start = _start < 0 ? mBufferLength + _start : _start;
+		int first = Math.min(_length, mBufferLength - start);
+		System.arraycopy(buffer, start, _dest, _destOffset, first);
+		System.arraycopy(buffer, 0, _dest, _destOffset + first, _length - first);
+	}
+	
+	/**
+	 * Gets the estimated acquisition time of a sample in the buffer, corrected by the delay of the decimator.
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if no sample was produced for the index yet
+	 */
+	@Override
+	public long getSampleTimestamp(int _index) {
+		return mSampleTimestamps[_index];
+	}
+	
+	/**
+	 * Gets the shared spectrum engine that computes each spectrum of the stream at most once per sample for all gestures of the stream.
+	 * @return the spectrum provider of this stream
+	 */
+	@Override
+	public SpectrumProvider getSpectrumProvider() {
+		if (mSpectrumProvider == null) {
+			mSpectrumProvider = new SpectrumProvider(this);
+			mSpectrumProvider.setPendingBlock(mBlock);
+		}
+		return mSpectrumProvider;
+	}
+	
+	/**
+	 * Hands the current sample of the reader to the decimators and evaluates the gestures if a new sample is produced; called by the reader.
+	 * @param _index the index of the current sample inside the buffer of the reader
+	 * @param _readTimestamp the time the data of the current sample was read in nanoseconds
+	 * @param _sampleTimestamp the estimated acquisition time of the current sample in nanoseconds
+	 */
+	@SuppressWarnings("rawtypes")
+	void processSample(int _index, long _readTimestamp, long _sampleTimestamp) {
+		int channels = mInput.length;
+		for (int ch=0; ch<channels; ch++) {
+			mInput[ch] = mReader.getNormalizedValue(ch, _index);
+		}
+		boolean produced = mDecimator.process(mInput, mOutput);
+		if (produced) {
+			if (mChannelDataPointer <= -1) {
+				mChannelDataPointer = 0;
+			}
+			for (int ch=0; ch<channels; ch++) {
+				mChannelData[ch][mChannelDataPointer] = mOutput[ch];
+			}
+		}
+		//The decimator of the filtered samples runs in lockstep, so it completes its samples together with the other decimator
+		if (mFilteredDecimator != null) {
+			for (int ch=0; ch<channels; ch++) {
+				mInput[ch] = mReader.getValue(SampleSignal.FILTERED, ch, _index);
+			}
+			if (mFilteredDecimator.process(mInput, mOutput)) {
+				for (int ch=0; ch<channels; ch++) {
+					mFilteredChannelData[ch][mChannelDataPointer] = mOutput[ch];
+				}
+			}
+		}
+		if (!produced) {
+			return;
+		}
+		mSampleTimestamps[mChannelDataPointer] = _sampleTimestamp == 0 ? 0 : _sampleTimestamp - mDelayNanos;
+		
+		//Handle gestures
+		boolean blockMode = false;
+		for (int g=0; g<mGestures.size(); g++) {
+			Gesture gesture = mGestures.get(g);
+			if (gesture.isBlockMode()) {
+				blockMode = true;
+			} else {
+				gesture.evaluate(mReader, this);
+			}
+		}
+		if (blockMode) {
+			mBlock.append(this, mChannelDataPointer, mChannelDataSampleCount, mReader.getChannelDataSampleCount(), _readTimestamp);
+		}
+		
+		mChannelDataPointer++;
+		mChannelDataSampleCount++;
+		
+		if (mChannelDataPointer >= mBufferLength) {
+			mChannelDataPointer = 0;
+		}
+		
+		if (mBlock.isFull()) {
+			flushBlock();
+		}
+	}
+	
+	/**
+	 * Hands the samples produced since the last call to the gestures in block mode and applies changed modes of the gestures; called by the reader after each decoded batch.
+	 */
+	@SuppressWarnings("rawtypes")
+	void flushBlock() {
+		try {
+			if (mBlock.getLength() > 0) {
+				for (int g=0; g<mGestures.size(); g++) {
+					Gesture gesture = mGestures.get(g);
+					if (gesture.isBlockMode()) {
+						gesture.evaluateBlock(mReader, this, mBlock);
+					}
+				}
+			}
+		} finally {
+			mBlock.clear();
+			//All gestures have evaluated the same samples now, so they can change their mode
+			for (int g=0; g<mGestures.size(); g++) {
+				mGestures.get(g).applyBlockMode();
+			}
+		}
+	}
+}
\ No newline at end of file
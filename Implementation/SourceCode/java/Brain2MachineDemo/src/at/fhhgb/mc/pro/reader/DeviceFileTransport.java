@@ -0,0 +1,108 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class reading from a file, e. g. a Linux tty device of a serial adapter, the slave side of a pseudo-terminal or a raw dump.
+ * A tty device has to be configured before (e. g. "stty -F /dev/ttyUSB0 57600 raw"); pseudo-terminals allow load tests with any data rate.
+ * Regular files end the reading at their end; device files block until new data arrives.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class DeviceFileTransport implements ByteTransport {
+	
+	/**
+	 * The file to read.
+	 */
+	private File mFile = null;
+	
+	/**
+	 * The channel of the opened file; null if the file is not open.
+	 */
+	private FileChannel mChannel = null;
+	
+	/**
+	 * Constructor.
+	 * @param _file the file to read
+	 */
+	public DeviceFileTransport(File _file) {
+		if (_file == null) {
+			throw new IllegalArgumentException("Constructor parameter _file must not be null in class " + this.getClass().getName() + "!");
+		}
+		mFile = _file;
+	}
+	
+	/**
+	 * Opens the file for reading.
+	 * @throws IOException if the file cannot be opened
+	 */
+	@Override
+	public void open() throws IOException {
+		mChannel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ);
+	}
+	
+	/**
+	 * Checks whether the file is open.
+	 * @return true if the file is open; false otherwise
+	 */
+	@Override
+	public boolean isOpen() {
+		return mChannel != null;
+	}
+	
+	/**
+	 * Gets the channel of the file.
+	 * @return the channel
+	 */
+	@Override
+	public ReadableByteChannel getChannel() {
+		return mChannel;
+	}
+	
+	/**
+	 * Gets the stream to read from; the file is read through its channel.
+	 * @return null
+	 */
+	@Override
+	public InputStream getInputStream() {
+		return null;
+	}
+	
+	/**
+	 * Gets the selectable channel; file channels cannot be selected.
+	 * @return null
+	 */
+	@Override
+	public SelectableChannel getSelectableChannel() {
+		return null;
+	}
+	
+	/**
+	 * Closes the file.
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (mChannel != null) {
+			try {
+				mChannel.close();
+			} finally {
+				mChannel = null;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the path of the file.
+	 * @return the path
+	 */
+	@Override
+	public String getName() {
+		return mFile.getPath();
+	}
+}
\ No newline at end of file
@@ -1,15 +1,26 @@
 package at.fhhgb.mc.pro.reader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import gnu.io.SerialPort;
+import at.fhhgb.mc.pro.dsp.BiquadFilter;
+import at.fhhgb.mc.pro.dsp.PolyphaseDecimator;
 import at.fhhgb.mc.pro.gesture.Gesture;
+import at.fhhgb.mc.pro.latency.LatencyHistogram;
+import at.fhhgb.mc.pro.latency.LatencyMonitor;
+import at.fhhgb.mc.pro.latency.LatencyStage;
 
 /**
  * A class representing a component for reading OpenEEG data from a serial port - specifically for Olimex EEG.
  * @author Boris Fuchs, Paul Schmutz
  */
-public class OpenEEGReader implements SerialReader.ReceiveEventListener {
+public class OpenEEGReader implements SerialReader.ReceiveEventListener, SampleStream {
 	
 	/**
 	 * Predefined constant for the default number of channels for the Olimex EEG.
@@ -68,12 +79,43 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	 */
 	public static final int PACKET_SIZE = 17;
 	
+	/**
+	 * Index of the packet counter inside an Open EEG packet.
+	 */
+	public static final int PACKET_COUNTER_INDEX = 3;
+	
+	/**
+	 * Index of the high byte of the first channel inside an Open EEG packet.
+	 */
+	public static final int PACKET_DATA_INDEX = 4;
+	
 	/**
 	 * Sample rate of the Olimex EEG.
 	 */
 	public static final int SAMPLE_RATE = 256;
 	
 	
+	/**
+	 * Lookup table mapping the unsigned high byte of a channel to its contribution to the 10-bit value (values above 3 are clamped to 3, negative values to 0).
+	 */
+	private static final int[] HIGH_BYTE_TABLE = new int[256];
+	
+	/**
+	 * Lookup table mapping a 10-bit value to its normalized value between 0 and 1.
+	 */
+	private static final double[] NORMALIZED_TABLE = new double[1024];
+	
+	static {
+		for (int b=0; b<HIGH_BYTE_TABLE.length; b++) {
+			int high = (byte)b;
+			HIGH_BYTE_TABLE[b] = Math.max(0, Math.min(3, high)) * 256;
+		}
+		for (int v=0; v<NORMALIZED_TABLE.length; v++) {
+			NORMALIZED_TABLE[v] = v / 1023.0;
+		}
+	}
+	
+	
 	/**
 	 * Default buffer size for new EEG data arriving at the serial port.
 	 */
@@ -84,6 +126,26 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	 */
 	public static final int EEG_BUFFER_TIME_DEFAULT = 10;
 	
+	/**
+	 * Default number of samples the pipeline can hold between the reading and the processing thread.
+	 */
+	public static final int PIPELINE_BUFFER_SAMPLES_DEFAULT = 4 * SAMPLE_RATE;
+	
+	/**
+	 * Maximum number of samples the processing thread takes from the pipeline at once.
+	 */
+	public static final int PIPELINE_BATCH_SAMPLES = 64;
+	
+	/**
+	 * Maximum time in milliseconds the processing thread waits for new samples before checking the pipeline again.
+	 */
+	public static final int PIPELINE_IDLE_WAIT_MS = 10;
+	
+	/**
+	 * The maximum number of samples handed to the gestures in block mode at once; limited, so the samples preceding a block are still in the buffer.
+	 */
+	public static final int BLOCK_SAMPLES_MAX = 64;
+	
 	
 	/**
 	 * The serial reader to read the EEG data from a serial port.
@@ -96,14 +158,39 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	private Thread mReaderThread = null;
 	
 	/**
-	 * Buffer for storing the bytes of 1 single Open EEG data packet.
+	 * Buffer for storing the bytes of 1 single Open EEG data packet that is split over multiple chunks of received data.
 	 */
 	private byte[] mTempBuffer = null;
 	
 	/**
-	 * Current pointer to a byte of the temp buffer.
+	 * Number of bytes of the split packet inside the temp buffer.
+	 */
+	private int mTempBufferLength = 0;
+	
+	/**
+	 * Copy of a rejected packet that has to be scanned for the next packet start.
+	 */
+	private byte[] mResyncBuffer = null;
+	
+	/**
+	 * Number of bytes of the packet header (SYNC0, SYNC1, VERSION) found so far while syncing.
+	 */
+	private int mSyncState = 0;
+	
+	/**
+	 * The packet counter of the last complete packet; -1 if no packet has been received since syncing.
 	 */
-	private int mTempBufferPointer = -1;
+	private int mLastPacketCounter = -1;
+	
+	/**
+	 * Number of packets that were lost according to the packet counter.
+	 */
+	private volatile long mLostPacketCount = 0;
+	
+	/**
+	 * Number of times the reader lost the packet boundaries and had to sync again.
+	 */
+	private volatile long mSyncLossCount = 0;
 	
 	/**
 	 * Duration of the EEG data to buffer in seconds.
@@ -117,10 +204,40 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	private int mChannels = 0;
 	
 	/**
-	 * The buffer for storing EEG data with the length matching the mBufferSamplesSeconds duration.
+	 * The buffer for storing EEG data with the length matching the mBufferSamplesSeconds duration (null in compact store mode).
 	 */
 	private double[][] mChannelData = null;
 	
+	/**
+	 * The buffer for storing the raw 10-bit EEG data in compact store mode with the length matching the mBufferSamplesSeconds duration (null otherwise).
+	 */
+	private short[][] mCompactChannelData = null;
+	
+	/**
+	 * Indicates whether the raw values are stored as short instead of normalized double values.
+	 */
+	private boolean mCompactStore = false;
+	
+	/**
+	 * The filter applied to the normalized samples; null for no filter.
+	 */
+	private BiquadFilter mFilter = null;
+	
+	/**
+	 * The buffer for storing the filtered EEG data parallel to the channel data; null if no filter is set.
+	 */
+	private double[][] mFilteredChannelData = null;
+	
+	/**
+	 * The estimated acquisition time of every sample in the EEG buffer in nanoseconds (System.nanoTime()), parallel to the channel data; 0 for samples not received yet.
+	 */
+	private long[] mSampleTimestamps = null;
+	
+	/**
+	 * The clock estimating the acquisition time of the decoded samples; only used by the reading thread.
+	 */
+	private SampleClock mSampleClock = null;
+	
 	/**
 	 * Current pointer to a byte of EEG data buffer.
 	 */
@@ -142,6 +259,121 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	@SuppressWarnings("rawtypes")
 	private List<Gesture> mGestures = null;
 	
+	/**
+	 * The samples of the current decoded batch for the gestures in block mode.
+	 */
+	private SampleBlock mBlock = null;
+	
+	/**
+	 * The streams with a reduced sample rate derived from the samples of the reader.
+	 */
+	private List<DecimatedStream> mDecimatedStreams = null;
+	
+	/**
+	 * The time the chunk being decoded was read in nanoseconds.
+	 */
+	private long mChunkReadTimestamp = 0;
+	
+	/**
+	 * The time the sample being processed was read in nanoseconds.
+	 */
+	private long mSampleReadTimestamp = 0;
+	
+	/**
+	 * The estimated acquisition time of the sample being processed in nanoseconds.
+	 */
+	private long mSampleTimestamp = 0;
+	
+	/**
+	 * The monitor recording the latencies of reading and processing; null if latencies are not recorded.
+	 */
+	private volatile LatencyMonitor mLatencyMonitor = null;
+	
+	/**
+	 * The number of received bytes.
+	 */
+	private volatile long mReceivedByteCount = 0;
+	
+	/**
+	 * The number of valid packets.
+	 */
+	private volatile long mPacketCount = 0;
+	
+	/**
+	 * Indicates whether the durations of dispatching samples are recorded.
+	 */
+	private volatile boolean mTimingEnabled = false;
+	
+	/**
+	 * The durations of dispatching a sample to the sample event listeners (only recorded if timing is enabled).
+	 */
+	private LatencyHistogram mListenerDispatchTimes = null;
+	
+	/**
+	 * The durations of dispatching a sample to the gestures (only recorded if timing is enabled).
+	 */
+	private LatencyHistogram mGestureDispatchTimes = null;
+	
+	/**
+	 * List of listeners that get notified about every decoded sample.
+	 */
+	private List<SampleEventListener> mSampleListeners = null;
+	
+	/**
+	 * The shared spectrum engine for gestures analyzing the same windows; created on first use.
+	 */
+	private SpectrumProvider mSpectrumProvider = null;
+	
+	/**
+	 * The raw values of the channels of the last complete packet.
+	 */
+	private int[] mRawValues = null;
+	
+	/**
+	 * Indicator whether the gestures are processed on a separate thread instead of the reading thread.
+	 */
+	private boolean mPipelineMode = false;
+	
+	/**
+	 * The buffer handing decoded samples from the reading thread to the processing thread (only used in pipeline mode).
+	 */
+	private volatile SampleRingBuffer mPipeline = null;
+	
+	/**
+	 * The thread that takes samples from the pipeline and processes the gestures (only used in pipeline mode).
+	 */
+	private Thread mProcessingThread = null;
+	
+	/**
+	 * The pool processing the samples of the pipeline instead of an own processing thread; null for an own thread.
+	 */
+	private ProcessingPool mProcessingPool = null;
+	
+	/**
+	 * The selector reading the transport instead of an own reading thread; null for an own thread.
+	 */
+	private TransportSelector mTransportSelector = null;
+	
+	/**
+	 * The task processing the samples of the pipeline on the pool (only used in pipeline mode with a pool).
+	 */
+	private volatile PooledProcessor mPooledProcessor = null;
+	
+	/**
+	 * Indicates whether the processing thread is running.
+	 */
+	private volatile boolean mRunProcessingThread = false;
+	
+	/**
+	 * Indicates whether the processing thread is waiting for new samples.
+	 */
+	private volatile boolean mProcessingThreadWaiting = false;
+	
+	/**
+	 * Number of samples that were dropped because the pipeline was full.
+	 */
+	private volatile long mDroppedSampleCount = 0;
+	
 	/**
 	 * Constructor.
 	 * @param _port the serial port for the EEG device
@@ -161,37 +393,99 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	
 	/**
 	 * Constructor.
-	 * @param _port the serial port for the EEG device
+	 * @param _port the serial port for the EEG device; null for a reader that is fed by another source (e. g. a ReplayReader)
 	 * @param _channels the number of channels of the EEG device
 	 * @param _bufferSamplesSeconds the duration to buffer EEG data in seconds
 	 */
-	@SuppressWarnings("rawtypes")
 	public OpenEEGReader(String _port, int _channels, int _bufferSamplesSeconds) {
+		this(_port == null ? null : new RXTXTransport(_port, BAUDRATE, DATABITS, STOPBITS, PARITY), _channels, _bufferSamplesSeconds);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param _transport the transport the EEG device is read from (serial port, device file, socket); null for a reader that is fed by another source (e. g. a ReplayReader)
+	 * @param _channels the number of channels of the EEG device
+	 * @param _bufferSamplesSeconds the duration to buffer EEG data in seconds
+	 */
+	@SuppressWarnings("rawtypes")
+	public OpenEEGReader(ByteTransport _transport, int _channels, int _bufferSamplesSeconds) {
 		mBufferSamplesSeconds = Math.max(0, _bufferSamplesSeconds);
 		setChannels(_channels);
+		mSampleClock = new SampleClock(SAMPLE_RATE);
 		resetChannelData();
-		mReader = new SerialReader(_port, BAUDRATE, DATABITS, STOPBITS, PARITY, SERIAL_BUFFER_SIZE_DEFAULT);
-		mReader.addReceiveEventListener(this);
+		if (_transport != null) {
+			mReader = new SerialReader(_transport, SERIAL_BUFFER_SIZE_DEFAULT);
+			mReader.addReceiveEventListener(this);
+		}
 		mTempBuffer = new byte[PACKET_SIZE];
+		mResyncBuffer = new byte[PACKET_SIZE];
+		mRawValues = new int[mChannels];
 		mGestures = new ArrayList<Gesture>();
+		mDecimatedStreams = new ArrayList<>();
+		mSampleListeners = new ArrayList<>();
+		mListenerDispatchTimes = new LatencyHistogram();
+		mGestureDispatchTimes = new LatencyHistogram();
 	}
 	
 	/**
 	 * Reset the buffers and pointers.
 	 */
 	private void resetChannelData() {
-		if (mChannelData == null || mChannelData.length != mChannels) {
-			mChannelData = new double[mChannels][getBufferLength()];
+		if (mCompactStore) {
+			mChannelData = null;
+			if (mCompactChannelData == null || mCompactChannelData.length != mChannels) {
+				mCompactChannelData = new short[mChannels][getBufferLength()];
+			}
+			for(int i=0; i<mCompactChannelData.length; i++) {
+				Arrays.fill(mCompactChannelData[i], (short)-1);
+			}
+		} else {
+			mCompactChannelData = null;
+			if (mChannelData == null || mChannelData.length != mChannels) {
+				mChannelData = new double[mChannels][getBufferLength()];
+			}
+			for(int i=0; i<mChannelData.length; i++) {
+				Arrays.fill(mChannelData[i], -1);
+			}
 		}
-		for(int i=0; i<mChannelData.length; i++) {
-			for(int j=0; j<mChannelData[i].length; j++) {
-				mChannelData[i][j] = -1;
+		if (mFilter == null) {
+			mFilteredChannelData = null;
+		} else {
+			if (mFilteredChannelData == null || mFilteredChannelData.length != mChannels) {
+				mFilteredChannelData = new double[mChannels][getBufferLength()];
 			}
+			for(int i=0; i<mFilteredChannelData.length; i++) {
+				Arrays.fill(mFilteredChannelData[i], 0);
+			}
+			mFilter.reset();
+		}
+		if (mSampleTimestamps == null || mSampleTimestamps.length != getBufferLength()) {
+			mSampleTimestamps = new long[getBufferLength()];
+		} else {
+			Arrays.fill(mSampleTimestamps, 0);
 		}
+		mBlock = new SampleBlock(mChannels, Math.max(1, Math.min(BLOCK_SAMPLES_MAX, getBufferLength() / 2)), mFilter != null);
+		mSampleClock.reset();
+		mSampleTimestamp = 0;
 		mChannelDataPointer = -1;
-		mTempBufferPointer = -1;
+		mTempBufferLength = 0;
 		mChannelDataSampleCount = 0;
 		mSyncing = true;
+		mSyncState = 0;
+		mLastPacketCounter = -1;
+		mLostPacketCount = 0;
+		mSyncLossCount = 0;
+		mReceivedByteCount = 0;
+		mPacketCount = 0;
+		if (mSpectrumProvider != null) {
+			mSpectrumProvider.clear();
+			mSpectrumProvider.setPendingBlock(mBlock);
+		}
+		if (mDecimatedStreams != null) {
+			for (int d=0; d<mDecimatedStreams.size(); d++) {
+				mDecimatedStreams.get(d).reset();
+			}
+		}
 	}
 	
 	/**
@@ -220,9 +514,11 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	/**
 	 * Adds a gesture to the gesture list.
 	 * @param _gesture the gesture to add
+	 * @throws IllegalArgumentException if the gesture inspects a channel the reader does not have
 	 */
 	@SuppressWarnings("rawtypes")
 	public void addGesture(Gesture _gesture) {
+		_gesture.checkChannels(mChannels);
 		mGestures.add(_gesture);
 	}
 	
@@ -235,6 +531,71 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 		mGestures.remove(_gesture);
 	}
 	
+	/**
+	 * Gets the gestures handled by the reader.
+	 * @return an unmodifiable view of the gestures
+	 */
+	@SuppressWarnings("rawtypes")
+	public List<Gesture> getGestures() {
+		return Collections.unmodifiableList(mGestures);
+	}
+	
+	/**
+	 * Adds a stream with the sample rate reduced by a factor, using the default number of taps per phase of the anti-aliasing filter.
+	 * @param _factor the decimation factor; has to divide the sample rate (e. g. 4 for 64 Hz or 8 for 32 Hz)
+	 * @return the new stream; gestures added to it are evaluated whenever it produces a new sample
+	 */
+	public DecimatedStream addDecimatedStream(int _factor) {
+		return addDecimatedStream(_factor, PolyphaseDecimator.TAPS_PER_PHASE_DEFAULT);
+	}
+	
+	/**
+	 * Adds a stream with the sample rate reduced by a factor; has to be called before connecting.
+	 * More taps per phase give a steeper anti-aliasing filter but delay the stream more.
+	 * @param _factor the decimation factor; has to divide the sample rate (e. g. 4 for 64 Hz or 8 for 32 Hz)
+	 * @param _tapsPerPhase the number of taps of every phase of the anti-aliasing filter
+	 * @return the new stream; gestures added to it are evaluated whenever it produces a new sample
+	 */
+	public DecimatedStream addDecimatedStream(int _factor, int _tapsPerPhase) {
+		DecimatedStream stream = new DecimatedStream(this, _factor, _tapsPerPhase);
+		mDecimatedStreams.add(stream);
+		return stream;
+	}
+	
+	/**
+	 * Removes a stream with a reduced sample rate.
+	 * @param _stream the stream to remove
+	 */
+	public void removeDecimatedStream(DecimatedStream _stream) {
+		mDecimatedStreams.remove(_stream);
+	}
+	
+	/**
+	 * Gets the streams with a reduced sample rate.
+	 * @return an unmodifiable view of the streams
+	 */
+	public List<DecimatedStream> getDecimatedStreams() {
+		return Collections.unmodifiableList(mDecimatedStreams);
+	}
+	
+	/**
+	 * Registers a listener that is notified about every decoded sample.
+	 * @param _listener the sample event listener to add
+	 */
+	public void addSampleEventListener(SampleEventListener _listener) {
+		if (!mSampleListeners.contains(_listener)) {
+			mSampleListeners.add(_listener);
+		}
+	}
+	
+	/**
+	 * Unregisters a sample event listener.
+	 * @param _listener the sample event listener to remove
+	 */
+	public void removeSampleEventListener(SampleEventListener _listener) {
+		mSampleListeners.remove(_listener);
+	}
+	
 	/**
 	 * Gets the duration of EEG data to buffer in seconds.
 	 * @return the duration of EEG data to buffer in seconds
@@ -247,6 +608,7 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	 * Gets the length of EEG data to buffer.
 	 * @return the length of EEG data to buffer.
 	 */
+	@Override
 	public int getBufferLength() {
 		return mBufferSamplesSeconds * getSampleRate();
 	}
@@ -255,22 +617,217 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	 * Gets the sample rate.
 	 * @return the sample rate
 	 */
+	@Override
 	public int getSampleRate() {
 		return SAMPLE_RATE;
 	}
 	
 	/**
 	 * Gets the EEG data divided in multiple channels.
-	 * @return the EEG data divided in multiple channels.
+	 * Use getNormalizedValue or copyNormalized to read the data independent of the store mode.
+	 * @return the EEG data divided in multiple channels; null in compact store mode
 	 */
 	public double[][] getChannelData() {
 		return mChannelData;
 	}
 	
+	/**
+	 * Gets the raw 10-bit EEG data divided in multiple channels (-1 for samples not received yet).
+	 * @return the raw EEG data divided in multiple channels; null if not in compact store mode
+	 */
+	public short[][] getCompactChannelData() {
+		return mCompactChannelData;
+	}
+	
+	/**
+	 * Sets whether the raw 10-bit values are stored as short instead of normalized double values; has to be set before connecting.
+	 * The compact store needs a quarter of the memory, e. g. for long buffer durations on many channels and headsets.
+	 * @param _compactStore true to store the raw values; false to store the normalized values
+	 */
+	public void setCompactStore(boolean _compactStore) {
+		if (mCompactStore != _compactStore) {
+			mCompactStore = _compactStore;
+			resetChannelData();
+		}
+	}
+	
+	/**
+	 * Checks whether the raw values are stored as short instead of normalized double values.
+	 * @return true in compact store mode; false otherwise
+	 */
+	public boolean isCompactStore() {
+		return mCompactStore;
+	}
+	
+	/**
+	 * Sets the filter applied to the normalized samples before the gestures are processed; has to be set before connecting.
+	 * The filtered samples are stored in a second buffer, so each gesture can choose between the normalized and the filtered signal (see Gesture.setSignal).
+	 * @param _filter the filter for at least the number of channels of the reader; null for no filter
+	 */
+	public void setFilter(BiquadFilter _filter) {
+		if (_filter != null && _filter.getChannels() < mChannels) {
+			throw new IllegalArgumentException("Parameter _filter must filter at least " + mChannels + " channels in class " + this.getClass().getName() + "!");
+		}
+		mFilter = _filter;
+		resetChannelData();
+	}
+	
+	/**
+	 * Gets the filter applied to the normalized samples.
+	 * @return the filter; null if no filter is set
+	 */
+	public BiquadFilter getFilter() {
+		return mFilter;
+	}
+	
+	/**
+	 * Gets the value of a sample of a signal in the buffer.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the value
+	 */
+	@Override
+	public double getValue(SampleSignal _signal, int _channel, int _index) {
+		if (_signal == SampleSignal.FILTERED && mFilteredChannelData != null) {
+			return mFilteredChannelData[_channel][_index];
+		}
+		return getNormalizedValue(_channel, _index);
+	}
+	
+	/**
+	 * Copies consecutive values of a signal of a channel in chronological order.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _start the index of the first sample inside the buffer; negative indexes count back from the end of the buffer
+	 * @param _length the number of samples to copy (at most the buffer length)
+	 * @param _dest the array to copy the values to
+	 * @param _destOffset the index of the first value inside _dest
+	 */
+	@Override
+	public void copyValues(SampleSignal _signal, int _channel, int _start, int _length, double[] _dest, int _destOffset) {
+		if (_signal == SampleSignal.FILTERED && mFilteredChannelData != null) {
+			int bufferLength = getBufferLength();
+			int start = _start < 0 ? bufferLength + _start : _start;
+			int first = Math.min(_length, bufferLength - start);
+			double[] buffer = mFilteredChannelData[_channel];
+			System.arraycopy(buffer, start, _dest, _destOffset, first);
+			System.arraycopy(buffer, 0, _dest, _destOffset + first, _length - first);
+		} else {
+			copyNormalized(_channel, _start, _length, _dest, _destOffset);
+		}
+	}
+	
+	/**
+	 * Gets the normalized value (between 0 and 1) of a sample in the buffer independent of the store mode.
+	 * @param _channel the channel
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the normalized value; -1 if no sample was received for the index yet
+	 */
+	public double getNormalizedValue(int _channel, int _index) {
+		if (mCompactChannelData != null) {
+			short raw = mCompactChannelData[_channel][_index];
+			return raw < 0 ? -1 : NORMALIZED_TABLE[raw];
+		}
+		return mChannelData[_channel][_index];
+	}
+	
+	/**
+	 * Gets the raw 10-bit value of a sample in the buffer independent of the store mode.
+	 * @param _channel the channel
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the raw value; -1 if no sample was received for the index yet
+	 */
+	public int getRawValue(int _channel, int _index) {
+		if (mCompactChannelData != null) {
+			return mCompactChannelData[_channel][_index];
+		}
+		double value = mChannelData[_channel][_index];
+		return value < 0 ? -1 : (int)Math.round(value * 1023);
+	}
+	
+	/**
+	 * Copies consecutive normalized values of a channel in chronological order independent of the store mode.
+	 * @param _channel the channel
+	 * @param _start the index of the first sample inside the buffer; negative indexes count back from the end of the buffer
+	 * @param _length the number of samples to copy (at most the buffer length)
+	 * @param _dest the array to copy the values to
+	 * @param _destOffset the index of the first value inside _dest
+	 */
+	public void copyNormalized(int _channel, int _start, int _length, double[] _dest, int _destOffset) {
+		int bufferLength = getBufferLength();
+		int start = _start < 0 ? bufferLength + _start : _start;
+		int first = Math.min(_length, bufferLength - start);
+		if (mCompactChannelData != null) {
+			short[] buffer = mCompactChannelData[_channel];
+			for (int i=0; i<first; i++) {
+				short raw = buffer[start + i];
+				_dest[_destOffset + i] = raw < 0 ? -1 : NORMALIZED_TABLE[raw];
+			}
+			for (int i=first; i<_length; i++) {
+				short raw = buffer[i - first];
+				_dest[_destOffset + i] = raw < 0 ? -1 : NORMALIZED_TABLE[raw];
+			}
+		} else {
+			double[] buffer = mChannelData[_channel];
+			System.arraycopy(buffer, start, _dest, _destOffset, first);
+			System.arraycopy(buffer, 0, _dest, _destOffset + first, _length - first);
+		}
+	}
+	
+	/**
+	 * Gets the estimated acquisition time of a sample in the buffer.
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if no sample was received for the index yet
+	 */
+	@Override
+	public long getSampleTimestamp(int _index) {
+		return mSampleTimestamps[_index];
+	}
+	
+	/**
+	 * Copies the estimated acquisition times of consecutive samples in chronological order.
+	 * @param _start the index of the first sample inside the buffer; negative indexes count back from the end of the buffer
+	 * @param _length the number of timestamps to copy (at most the buffer length)
+	 * @param _dest the array to copy the timestamps to
+	 * @param _destOffset the index of the first timestamp inside _dest
+	 */
+	public void copySampleTimestamps(int _start, int _length, long[] _dest, int _destOffset) {
+		int bufferLength = getBufferLength();
+		int start = _start < 0 ? bufferLength + _start : _start;
+		int first = Math.min(_length, bufferLength - start);
+		System.arraycopy(mSampleTimestamps, start, _dest, _destOffset, first);
+		System.arraycopy(mSampleTimestamps, 0, _dest, _destOffset + first, _length - first);
+	}
+	
+	/**
+	 * Copies consecutive raw 10-bit values of a channel in chronological order independent of the store mode.
+	 * @param _channel the channel
+	 * @param _start the index of the first sample inside the buffer; negative indexes count back from the end of the buffer
+	 * @param _length the number of samples to copy (at most the buffer length)
+	 * @param _dest the array to copy the values to
+	 * @param _destOffset the index of the first value inside _dest
+	 */
+	public void copyRaw(int _channel, int _start, int _length, short[] _dest, int _destOffset) {
+		int bufferLength = getBufferLength();
+		int start = _start < 0 ? bufferLength + _start : _start;
+		int first = Math.min(_length, bufferLength - start);
+		if (mCompactChannelData != null) {
+			short[] buffer = mCompactChannelData[_channel];
+			System.arraycopy(buffer, start, _dest, _destOffset, first);
+			System.arraycopy(buffer, 0, _dest, _destOffset + first, _length - first);
+		} else {
+			for (int i=0; i<_length; i++) {
+				_dest[_destOffset + i] = (short)getRawValue(_channel, i < first ? start + i : i - first);
+			}
+		}
+	}
+	
 	/**
 	 * Gets the pointer to the current byte in the channel data.
 	 * @return the pointer to the current byte in the channel data
 	 */
+	@Override
 	public int getChannelDataPointer() {
 		return mChannelDataPointer;
 	}
@@ -279,18 +836,227 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	 * Gets the channel data sample count.
 	 * @return the channel data sample count
 	 */
+	@Override
 	public long getChannelDataSampleCount() {
 		return mChannelDataSampleCount;
 	}
 	
+	/**
+	 * Gets the number of packets that were lost according to the packet counter.
+	 * @return the number of lost packets
+	 */
+	public long getLostPacketCount() {
+		return mLostPacketCount;
+	}
+	
+	/**
+	 * Gets the number of times the reader lost the packet boundaries and had to sync again.
+	 * @return the number of sync losses
+	 */
+	public long getSyncLossCount() {
+		return mSyncLossCount;
+	}
+	
+	/**
+	 * Gets the shared spectrum engine that computes each spectrum at most once per sample for all gestures.
+	 * @return the spectrum provider of this reader
+	 */
+	@Override
+	public SpectrumProvider getSpectrumProvider() {
+		if (mSpectrumProvider == null) {
+			mSpectrumProvider = new SpectrumProvider(this);
+			mSpectrumProvider.setPendingBlock(mBlock);
+		}
+		return mSpectrumProvider;
+	}
+	
+	/**
+	 * Sets whether the gestures are processed on a separate thread; has to be set before connecting.
+	 * In pipeline mode the reading thread only decodes packets and hands the samples to the processing thread, so slow gestures do not delay reading from the serial port.
+	 * @param _pipelineMode true to process the gestures on a separate thread; false to process them on the reading thread
+	 */
+	public void setPipelineMode(boolean _pipelineMode) {
+		mPipelineMode = _pipelineMode;
+	}
+	
+	/**
+	 * Checks whether the gestures are processed on a separate thread.
+	 * @return true if the gestures are processed on a separate thread; false otherwise
+	 */
+	public boolean isPipelineMode() {
+		return mPipelineMode;
+	}
+	
+	/**
+	 * Sets the pool processing the samples in pipeline mode instead of an own processing thread; has to be set before connecting.
+	 * Many readers can share a pool, so the number of processing threads does not grow with the number of headsets.
+	 * @param _pool the processing pool; null to process the samples on an own thread
+	 */
+	public void setProcessingPool(ProcessingPool _pool) {
+		mProcessingPool = _pool;
+	}
+	
+	/**
+	 * Gets the pool processing the samples in pipeline mode.
+	 * @return the processing pool; null if the samples are processed on an own thread
+	 */
+	public ProcessingPool getProcessingPool() {
+		return mProcessingPool;
+	}
+	
+	/**
+	 * Sets the selector reading the transport instead of an own reading thread; has to be set before connecting.
+	 * Only used if the transport is selectable (e. g. a socket); other transports are still read by an own thread.
+	 * @param _selector the transport selector; null to read on an own thread
+	 */
+	public void setTransportSelector(TransportSelector _selector) {
+		mTransportSelector = _selector;
+	}
+	
+	/**
+	 * Gets the selector reading the transport.
+	 * @return the transport selector; null if the transport is read on an own thread
+	 */
+	public TransportSelector getTransportSelector() {
+		return mTransportSelector;
+	}
+	
+	/**
+	 * Gets the number of samples that were dropped because the processing thread could not keep up (only in pipeline mode).
+	 * @return the number of dropped samples
+	 */
+	public long getDroppedSampleCount() {
+		return mDroppedSampleCount;
+	}
+	
+	/**
+	 * Gets the number of received bytes.
+	 * @return the number of received bytes
+	 */
+	public long getReceivedByteCount() {
+		return mReceivedByteCount;
+	}
+	
+	/**
+	 * Gets the number of valid packets.
+	 * @return the number of valid packets
+	 */
+	public long getPacketCount() {
+		return mPacketCount;
+	}
+	
+	/**
+	 * Sets whether the durations of dispatching samples to the sample event listeners and gestures are recorded.
+	 * @param _timingEnabled true to record the durations; false otherwise
+	 */
+	public void setTimingEnabled(boolean _timingEnabled) {
+		mTimingEnabled = _timingEnabled;
+	}
+	
+	/**
+	 * Checks whether the durations of dispatching samples are recorded.
+	 * @return true if the durations are recorded; false otherwise
+	 */
+	public boolean isTimingEnabled() {
+		return mTimingEnabled;
+	}
+	
+	/**
+	 * Gets the durations of dispatching a sample to the sample event listeners (only recorded if timing is enabled).
+	 * @return the histogram of the durations in nanoseconds
+	 */
+	public LatencyHistogram getListenerDispatchTimes() {
+		return mListenerDispatchTimes;
+	}
+	
+	/**
+	 * Gets the durations of dispatching a sample to the gestures (only recorded if timing is enabled).
+	 * @return the histogram of the durations in nanoseconds
+	 */
+	public LatencyHistogram getGestureDispatchTimes() {
+		return mGestureDispatchTimes;
+	}
+	
+	/**
+	 * Sets the monitor recording the latencies of reading and processing.
+	 * @param _monitor the latency monitor; null to stop recording latencies
+	 */
+	public void setLatencyMonitor(LatencyMonitor _monitor) {
+		mLatencyMonitor = _monitor;
+	}
+	
+	/**
+	 * Gets the monitor recording the latencies of reading and processing.
+	 * @return the latency monitor; null if latencies are not recorded
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return mLatencyMonitor;
+	}
+	
+	/**
+	 * Gets the time the data of the sample currently processed by the gestures was read.
+	 * @return the time in nanoseconds (System.nanoTime())
+	 */
+	public long getSampleReadTimestamp() {
+		return mSampleReadTimestamp;
+	}
+	
+	/**
+	 * Gets the estimated acquisition time of the sample currently processed by the gestures.
+	 * The samples of a chunk are dated back from the read time of the chunk with the sample rate (see SampleClock).
+	 * @return the time in nanoseconds (System.nanoTime()); 0 before the first sample
+	 */
+	public long getSampleTimestamp() {
+		return mSampleTimestamp;
+	}
+	
+	/**
+	 * Gets the clock estimating the acquisition time of the samples, e. g. for its effective sample rate.
+	 * @return the sample clock
+	 */
+	public SampleClock getSampleClock() {
+		return mSampleClock;
+	}
+	
+	/**
+	 * Gets the number of samples waiting in the pipeline to be processed.
+	 * @return the number of waiting samples; 0 if the processing thread is not running
+	 */
+	public int getPipelineBacklog() {
+		SampleRingBuffer pipeline = mPipeline;
+		return pipeline == null ? 0 : pipeline.size();
+	}
+	
+	/**
+	 * Gets the number of samples the pipeline can hold between the reading and the processing thread.
+	 * @return the capacity of the pipeline in samples
+	 */
+	public int getPipelineCapacity() {
+		return PIPELINE_BUFFER_SAMPLES_DEFAULT;
+	}
+	
 	/**
 	 * Connects the serial reader and starts reading data.
+	 * A reader without serial port only resets its buffers and starts the processing thread in pipeline mode.
 	 */
 	public void connect() {
 		resetChannelData();
-		if (mReaderThread == null && !mReader.isConnected()) {
+		if (mReader == null) {
+			if (mPipelineMode) {
+				startProcessing();
+			}
+		} else if (mReaderThread == null && !mReader.isConnected()) {
+			if (mPipelineMode) {
+				startProcessing();
+			}
 			if (mReader.connect()) {
-				mReaderThread = mReader.startReading();
+				if (mTransportSelector != null && mReader.getTransport().getSelectableChannel() != null) {
+					mTransportSelector.register(mReader);
+				} else {
+					mReaderThread = mReader.startReading();
+				}
+			} else {
+				stopProcessing();
 			}
 		}
 	}
@@ -299,85 +1065,294 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 	 * Closes the connection to serial device.
 	 */
 	public void disconnect() {
-		if (mReader.isConnected()) {
+		if (mReader != null && mReader.isConnected()) {
+			if (mTransportSelector != null) {
+				mTransportSelector.unregister(mReader);
+			}
 			mReader.disconnect();
 		}
 		if (mReaderThread != null) {
 			mReaderThread.interrupt();
 		}
 		mReaderThread = null;
+		stopProcessing();
+	}
+	
+	/**
+	 * Starts the thread that processes the samples of the pipeline; with a processing pool, the samples are processed on the pool instead.
+	 */
+	public void startProcessing() {
+		if (mProcessingThread != null || mPooledProcessor != null) {
+			return;
+		}
+		SampleRingBuffer pipeline = new SampleRingBuffer(PIPELINE_BUFFER_SAMPLES_DEFAULT, mChannels);
+		mDroppedSampleCount = 0;
+		mRunProcessingThread = true;
+		if (mProcessingPool != null) {
+			//Publish the task before the pipeline, so the reading thread never adds a sample without queueing the task
+			mPooledProcessor = new PooledProcessor(pipeline, mProcessingPool);
+			mPipeline = pipeline;
+			return;
+		}
+		mPipeline = pipeline;
+		mProcessingThread = new Thread(new Processor(), "OpenEEGReader processing");
+		mProcessingThread.start();
+	}
+	
+	/**
+	 * Stops the thread that processes the samples of the pipeline; samples that have not been processed yet, and samples received until the processing is started again, are discarded.
+	 */
+	public void stopProcessing() {
+		mRunProcessingThread = false;
+		if (mPooledProcessor != null) {
+			mPooledProcessor.awaitIdle();
+			mPooledProcessor = null;
+		}
+		if (mProcessingThread != null) {
+			LockSupport.unpark(mProcessingThread);
+			try {
+				mProcessingThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		mProcessingThread = null;
+		mPipeline = null;
 	}
 
 	/**
 	 * Method that is called when new data arrived.
+	 * Complete packets are decoded in place inside the received data; only packets split over two chunks are collected in the temp buffer.
 	 * @param _buffer the buffer containing the new data from index 0 to _length - 1
 	 * @param _length the length of the received data bytes
 	 */
 	@Override
 	public void onReceivedData(byte[] _buffer, int _length) {
-		for (int i=0; i < _length; i++) {
+		onReceivedData(_buffer, _length, System.nanoTime());
+	}
+	
+	/**
+	 * Method that is called when new data arrived, with the time it was read.
+	 * @param _buffer the buffer containing the new data from index 0 to _length - 1
+	 * @param _length the length of the received data bytes
+	 * @param _readTimestamp the time the data was read in nanoseconds (System.nanoTime())
+	 */
+	@Override
+	public void onReceivedData(byte[] _buffer, int _length, long _readTimestamp) {
+		mChunkReadTimestamp = _readTimestamp;
+		mReceivedByteCount += _length;
+		//Number of packets the chunk completes (estimated while syncing)
+		mSampleClock.beginChunk((mSyncing ? _length : mTempBufferLength + _length) / PACKET_SIZE, _readTimestamp);
+		decode(_buffer, 0, _length);
+		
+		//Queue the pooled task once per chunk, so it processes the whole chunk in one batch
+		PooledProcessor pooled = mPooledProcessor;
+		if (pooled != null) {
+			pooled.signal();
+		} else if (mPipeline == null && !mPipelineMode) {
+			//The samples of the chunk were processed right away, so the chunk is the batch of the gestures in block mode
+			flushBlocks();
+		}
+	}
+	
+	/**
+	 * Helper method to decode all packets inside a range of received data.
+	 * @param _buffer the buffer containing the data
+	 * @param _from the index of the first byte to decode
+	 * @param _to the index after the last byte to decode
+	 */
+	private void decode(byte[] _buffer, int _from, int _to) {
+		int i = _from;
+		while (i < _to) {
 			
 			//Still in syncing phase? (Has to find the first byte of a packet)
 			if (mSyncing) {
-				if (mTempBufferPointer == -1) {
-					mTempBufferPointer = 0;
-				}
-				mTempBuffer[mTempBufferPointer] = _buffer[i];
-				mTempBufferPointer = (mTempBufferPointer + 1) % mTempBuffer.length;
-				
-				//Detect start of package
-				if (_buffer[i] == VERSION) {
-					int idxSync = -1;
-					for (int j=0; j<mTempBuffer.length; j++) {
-						if (mTempBuffer[j] == SYNC0 && mTempBuffer[(j+1)%mTempBuffer.length] == SYNC1 && mTempBuffer[(j+2)%mTempBuffer.length] == VERSION) {
-							idxSync = j;
-							break;
-						}
-					}
-					
-					if (idxSync != -1) {
-						for (int j=0; j<3; j++) {
-							mTempBuffer[j] = mTempBuffer[(j + idxSync)%mTempBuffer.length];
-						}
-						mSyncing = false;
-						mTempBufferPointer = 3;
-						
-						System.out.println("Syncing done.");
+				i = scanForPacketStart(_buffer, i, _to);
+				continue;
+			}
+			
+			//Complete a packet that was split over multiple chunks
+			if (mTempBufferLength > 0) {
+				int count = Math.min(PACKET_SIZE - mTempBufferLength, _to - i);
+				System.arraycopy(_buffer, i, mTempBuffer, mTempBufferLength, count);
+				mTempBufferLength += count;
+				i += count;
+				if (mTempBufferLength == PACKET_SIZE) {
+					mTempBufferLength = 0;
+					if (!submitPacket(mTempBuffer, 0)) {
+						//Scan the rejected packet (without its first byte) for the start of the next packet
+						System.arraycopy(mTempBuffer, 0, mResyncBuffer, 0, PACKET_SIZE);
+						decode(mResyncBuffer, 1, PACKET_SIZE);
 					}
 				}
-			} else {
-				//Collect next value if valid
-				mTempBuffer[mTempBufferPointer] = _buffer[i];
-				mTempBufferPointer++;
-				if (mTempBufferPointer >= mTempBuffer.length) {
-					mTempBufferPointer = 0;
-					submitTempBuffer();
+				continue;
+			}
+			
+			//Decode complete packets in place
+			while (i + PACKET_SIZE <= _to) {
+				if (!submitPacket(_buffer, i)) {
+					i++;
+					break;
 				}
+				i += PACKET_SIZE;
+			}
+			
+			//Keep the beginning of a split packet
+			if (!mSyncing && i < _to && i + PACKET_SIZE > _to) {
+				mTempBufferLength = _to - i;
+				System.arraycopy(_buffer, i, mTempBuffer, 0, mTempBufferLength);
+				i = _to;
 			}
 		}
 	}
 	
 	/**
-	 * Helper method to submit data for the EEG buffer whenever a new complete EEG packet has arrived.
+	 * Helper method to find the header (SYNC0, SYNC1, VERSION) of the next packet; the header may be split over multiple chunks.
+	 * @param _buffer the buffer containing the data
+	 * @param _from the index of the first byte to scan
+	 * @param _to the index after the last byte to scan
+	 * @return the index after the header if it was found; _to otherwise
 	 */
-	private void submitTempBuffer() {
+	private int scanForPacketStart(byte[] _buffer, int _from, int _to) {
+		for (int i=_from; i<_to; i++) {
+			byte b = _buffer[i];
+			if (mSyncState == 2 && b == VERSION) {
+				mTempBuffer[0] = SYNC0;
+				mTempBuffer[1] = SYNC1;
+				mTempBuffer[2] = VERSION;
+				mTempBufferLength = 3;
+				mSyncState = 0;
+				mSyncing = false;
+				System.out.println("Syncing done.");
+				return i + 1;
+			} else if (mSyncState == 1 && b == SYNC1) {
+				mSyncState = 2;
+			} else {
+				mSyncState = b == SYNC0 ? 1 : 0;
+			}
+		}
+		return _to;
+	}
+	
+	/**
+	 * Helper method to check and decode a complete packet and submit its sample.
+	 * @param _buffer the buffer containing the packet
+	 * @param _offset the index of the first byte of the packet
+	 * @return true if the packet was valid; false if the packet boundaries were lost and the reader has to sync again
+	 */
+	private boolean submitPacket(byte[] _buffer, int _offset) {
+		if (_buffer[_offset] != SYNC0 || _buffer[_offset + 1] != SYNC1 || _buffer[_offset + 2] != VERSION) {
+			mSyncing = true;
+			mSyncState = 0;
+			mSyncLossCount++;
+			return false;
+		}
+		
+		//Detect lost packets with the packet counter
+		int counter = _buffer[_offset + PACKET_COUNTER_INDEX] & 0xFF;
+		if (mLastPacketCounter != -1) {
+			int lost = (counter - mLastPacketCounter - 1) & 0xFF;
+			if (lost > 0) {
+				mLostPacketCount += lost;
+				mSampleClock.skip(lost);
+			}
+		}
+		mLastPacketCounter = counter;
+		mPacketCount++;
+		
+		//Decode values of channels
+		int data = _offset + PACKET_DATA_INDEX;
+		for(int ch=0; ch<mChannels; ch++) {
+			mRawValues[ch] = HIGH_BYTE_TABLE[_buffer[data + ch * 2] & 0xFF] + (_buffer[data + ch * 2 + 1] & 0xFF);
+		}
+		
+		if (!mSampleListeners.isEmpty()) {
+			long start = mTimingEnabled ? System.nanoTime() : 0;
+			for (int l=0; l<mSampleListeners.size(); l++) {
+				mSampleListeners.get(l).onSampleDecoded(counter, mRawValues, mChannels);
+			}
+			if (start != 0) {
+				mListenerDispatchTimes.record(System.nanoTime() - start);
+			}
+		}
+		
+		LatencyMonitor monitor = mLatencyMonitor;
+		if (monitor != null) {
+			monitor.record(LatencyStage.READ_TO_PACKET, System.nanoTime() - mChunkReadTimestamp);
+		}
+		
+		long sampleTimestamp = mSampleClock.next();
+		SampleRingBuffer pipeline = mPipeline;
+		if (pipeline != null) {
+			//Hand the sample to the processing thread
+			if (!pipeline.offer(mRawValues, 0, mChunkReadTimestamp, sampleTimestamp)) {
+				mDroppedSampleCount++;
+			} else if (mProcessingThreadWaiting && mProcessingThread != null) {
+				LockSupport.unpark(mProcessingThread);
+			}
+		} else if (!mPipelineMode) {
+			processSample(mRawValues, 0, mChunkReadTimestamp, sampleTimestamp);
+		}
+		//In pipeline mode without running processing the sample is discarded instead of being processed on the reading thread
+		return true;
+	}
+	
+	/**
+	 * Helper method to add a decoded sample to the EEG buffer and handle the gestures.
+	 * @param _rawValues the raw values of all channels
+	 * @param _offset the index of the value of the first channel inside _rawValues
+	 * @param _readTimestamp the time the data of the sample was read in nanoseconds
+	 * @param _sampleTimestamp the estimated acquisition time of the sample in nanoseconds
+	 */
+	@SuppressWarnings("rawtypes")
+	private void processSample(int[] _rawValues, int _offset, long _readTimestamp, long _sampleTimestamp) {
 		if (mChannelDataPointer <= -1) {
 			mChannelDataPointer = 0;
 		}
+		
+		mSampleReadTimestamp = _readTimestamp;
+		mSampleTimestamp = _sampleTimestamp;
+		mSampleTimestamps[mChannelDataPointer] = _sampleTimestamp;
+		LatencyMonitor monitor = mLatencyMonitor;
+		if (monitor != null) {
+			monitor.record(LatencyStage.READ_TO_PROCESSING, System.nanoTime() - _readTimestamp);
+		}
 	
 		//Add values to channels
-		for(int ch=0; ch<mChannels; ch++) {
-			addNewRawValueToChannel(ch, mTempBuffer[4+ch*2], mTempBuffer[4+ch*2+1]);
+		if (mCompactChannelData != null) {
+			for(int ch=0; ch<mChannels; ch++) {
+				mCompactChannelData[ch][mChannelDataPointer] = (short)_rawValues[_offset + ch];
+			}
+		} else {
+			for(int ch=0; ch<mChannels; ch++) {
+				mChannelData[ch][mChannelDataPointer] = NORMALIZED_TABLE[_rawValues[_offset + ch]];
+			}
 		}
-		
-		//Reset temp buffer
-		for (int i=0; i<mTempBuffer.length; i++) {
-			mTempBuffer[i] = -1;
+		if (mFilteredChannelData != null) {
+			for(int ch=0; ch<mChannels; ch++) {
+				mFilteredChannelData[ch][mChannelDataPointer] = mFilter.filter(ch, NORMALIZED_TABLE[_rawValues[_offset + ch]]);
+			}
 		}
 		
 		//Handle gestures
-		for(@SuppressWarnings("rawtypes") Gesture gesture : mGestures) {
-			gesture.handleNextSample(this);
+		long start = mTimingEnabled ? System.nanoTime() : 0;
+		boolean blockMode = false;
+		for(int g=0; g<mGestures.size(); g++) {
+			Gesture gesture = mGestures.get(g);
+			if (gesture.isBlockMode()) {
+				blockMode = true;
+			} else {
+				gesture.evaluate(this);
+			}
+		}
+		if (blockMode) {
+			mBlock.append(this, mChannelDataPointer, mChannelDataSampleCount, mChannelDataSampleCount, _readTimestamp);
+		}
+		for(int d=0; d<mDecimatedStreams.size(); d++) {
+			mDecimatedStreams.get(d).processSample(mChannelDataPointer, _readTimestamp, _sampleTimestamp);
+		}
+		if (start != 0) {
+			mGestureDispatchTimes.record(System.nanoTime() - start);
 		}
 		
 		mChannelDataPointer++;
@@ -386,30 +1361,188 @@ public class OpenEEGReader implements SerialReader.ReceiveEventListener {
 		if (mChannelDataPointer >= getBufferLength()) {
 			mChannelDataPointer = 0;
 		}
+		
+		if (mBlock.isFull()) {
+			flushBlock();
+		}
+	}
+	
+	/**
+	 * Helper method to hand the samples collected since the last call to the gestures in block mode and to apply changed modes of the gestures.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void flushBlock() {
+		try {
+			if (mBlock.getLength() > 0) {
+				long start = mTimingEnabled ? System.nanoTime() : 0;
+				for(int g=0; g<mGestures.size(); g++) {
+					Gesture gesture = mGestures.get(g);
+					if (gesture.isBlockMode()) {
+						gesture.evaluateBlock(this, this, mBlock);
+					}
+				}
+				if (start != 0) {
+					mGestureDispatchTimes.record(System.nanoTime() - start);
+				}
+			}
+		} finally {
+			mBlock.clear();
+			//All gestures have evaluated the same samples now, so they can change their mode
+			for(int g=0; g<mGestures.size(); g++) {
+				mGestures.get(g).applyBlockMode();
+			}
+		}
 	}
 	
 	/**
-	 * Helper method to add a new signal byte to the EEG data buffer.
-	 * @param _channel the channel to add the value to
-	 * @param _high the high bit of the 10-bit value
-	 * @param _low the low bit of the 10-bit value
+	 * Helper method to hand the samples of a decoded batch to the gestures in block mode of the reader and its decimated streams; called after each batch.
 	 */
-	private void addNewRawValueToChannel(int _channel, int _high, int _low) {
+	private void flushBlocks() {
+		flushBlock();
+		for(int d=0; d<mDecimatedStreams.size(); d++) {
+			mDecimatedStreams.get(d).flushBlock();
+		}
+	}
+	
+	/**
+	 * Helper class that takes the samples from the pipeline and processes the gestures.
+	 */
+	private class Processor implements Runnable {
+		/**
+		 * Executed in a separate thread this method will process the samples handed over by the reading thread in batches.
+		 */
+		@Override
+		public void run() {
+			SampleRingBuffer pipeline = mPipeline;
+			int[] batch = new int[PIPELINE_BATCH_SAMPLES * mChannels];
+			long[] timestamps = new long[PIPELINE_BATCH_SAMPLES];
+			long[] sampleTimestamps = new long[PIPELINE_BATCH_SAMPLES];
+			while (mRunProcessingThread) {
+				int count = pipeline.drainTo(batch, timestamps, sampleTimestamps, PIPELINE_BATCH_SAMPLES);
+				if (count == 0) {
+					mProcessingThreadWaiting = true;
+					if (pipeline.isEmpty() && mRunProcessingThread) {
+						LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(PIPELINE_IDLE_WAIT_MS));
+					}
+					mProcessingThreadWaiting = false;
+					continue;
+				}
+				for (int i=0; i<count; i++) {
+					processSample(batch, i * mChannels, timestamps[i], sampleTimestamps[i]);
+				}
+				flushBlocks();
+			}
+			System.out.println("Processing thread exit.");
+		}
+	}
+	
+	/**
+	 * Helper class that processes a batch of samples from the pipeline as a task of a processing pool.
+	 * At most one task per reader is queued or running at a time; after a batch it queues itself again if samples are left, behind the tasks of the other readers.
+	 */
+	private class PooledProcessor implements Runnable {
+		/**
+		 * The pipeline to take the samples from.
+		 */
+		private SampleRingBuffer mSamples = null;
+		
+		/**
+		 * The pool running the task.
+		 */
+		private ProcessingPool mPool = null;
 		
-		if (_high < 0) {
-			_high = 0;
-		} else if (_high > 3) {
-			_high = 3;
+		/**
+		 * The raw values of a batch.
+		 */
+		private int[] mBatch = null;
+		
+		/**
+		 * The read timestamps of a batch.
+		 */
+		private long[] mTimestamps = null;
+		
+		/**
+		 * The acquisition timestamps of a batch.
+		 */
+		private long[] mAcquisitionTimestamps = null;
+		
+		/**
+		 * Indicates whether the task is queued or running.
+		 */
+		private AtomicBoolean mScheduled = null;
+		
+		/**
+		 * Constructor.
+		 * @param _samples the pipeline to take the samples from
+		 * @param _pool the pool running the task
+		 */
+		private PooledProcessor(SampleRingBuffer _samples, ProcessingPool _pool) {
+			mSamples = _samples;
+			mPool = _pool;
+			mBatch = new int[_pool.getBatchSamples() * mChannels];
+			mTimestamps = new long[_pool.getBatchSamples()];
+			mAcquisitionTimestamps = new long[_pool.getBatchSamples()];
+			mScheduled = new AtomicBoolean();
 		}
 		
-		if (_low < 0) {
-			_low = 256 + _low;
-		}
-        
-        // Calculate each channel data from low bit and high bit.
-        int intValue  = _high * 256 + _low; // 256 x chan high bytes + chanlow bytes.
-        
-        // Update the packet on the sample.
-        mChannelData[_channel][mChannelDataPointer] = intValue / 1023.0;
-   }
+		/**
+		 * Queues the task unless it is already queued or running; called by the reading thread after adding the samples of a chunk.
+		 */
+		private void signal() {
+			//The pipeline publishes samples with a full fence (see SampleRingBuffer.offer), so either this call sees the flag reset by the task or the task sees the new samples
+			if (!mScheduled.get() && !mSamples.isEmpty() && mScheduled.compareAndSet(false, true)) {
+				try {
+					mPool.execute(this);
+				} catch (RejectedExecutionException e) {
+					mScheduled.set(false);
+					System.err.println("Processing pool rejected reader: " + e.getMessage());
+				}
+			}
+		}
+		
+		/**
+		 * Waits until the task is neither queued nor running.
+		 */
+		private void awaitIdle() {
+			while (mScheduled.get()) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			}
+		}
+		
+		/**
+		 * Executed on the pool this method processes a batch of samples.
+		 */
+		@Override
+		public void run() {
+			try {
+				if (mRunProcessingThread) {
+					int count = mSamples.drainTo(mBatch, mTimestamps, mAcquisitionTimestamps, mPool.getBatchSamples());
+					for (int i=0; i<count; i++) {
+						processSample(mBatch, i * mChannels, mTimestamps[i], mAcquisitionTimestamps[i]);
+					}
+					flushBlocks();
+				}
+			} finally {
+				//Also if a gesture failed, otherwise the reader would never be queued again
+				mScheduled.set(false);
+			}
+			//Samples added while the flag was set did not queue the task, so check again
+			if (mRunProcessingThread && !mSamples.isEmpty()) {
+				signal();
+			}
+		}
+	}
+	
+	/**
+	 * Interface for representing listeners that are notified about every decoded sample on the thread reading the data, before the gestures are processed.
+	 */
+	public static interface SampleEventListener {
+		/**
+		 * Method that is called when a sample has been decoded.
+		 * @param _packetCounter the packet counter of the packet containing the sample
+		 * @param _rawValues the raw 10-bit values of the channels (only valid during the call)
+		 * @param _channels the number of channels
+		 */
+		public void onSampleDecoded(int _packetCounter, int[] _rawValues, int _channels);
+	}
 }
\ No newline at end of file
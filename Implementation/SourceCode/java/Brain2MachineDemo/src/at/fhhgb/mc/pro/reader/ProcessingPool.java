@@ -0,0 +1,99 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class representing a fixed pool of threads processing the gestures of many OpenEEGReaders in pipeline mode.
+ * Instead of a processing thread per reader, every reader with pending samples has exactly one task in the queue of the pool; a task processes at most a batch of samples and then queues the reader again behind all other readers.
+ * So the readers take turns fairly, a reader receiving too much data only fills and drops samples of its own pipeline, and the throughput scales with the number of cores instead of the number of threads.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class ProcessingPool {
+	
+	/**
+	 * Default number of samples a reader processes before the next reader takes its turn.
+	 */
+	public static final int BATCH_SAMPLES_DEFAULT = OpenEEGReader.PIPELINE_BATCH_SAMPLES;
+	
+	/**
+	 * The threads processing the readers.
+	 */
+	private ThreadPoolExecutor mExecutor = null;
+	
+	/**
+	 * The number of samples a reader processes before the next reader takes its turn.
+	 */
+	private int mBatchSamples = 0;
+	
+	/**
+	 * Constructor; creates a thread per available core.
+	 */
+	public ProcessingPool() {
+		this(Runtime.getRuntime().availableProcessors(), BATCH_SAMPLES_DEFAULT);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param _threads the number of processing threads
+	 * @param _batchSamples the number of samples a reader processes before the next reader takes its turn
+	 */
+	public ProcessingPool(int _threads, int _batchSamples) {
+		if (_threads <= 0 || _batchSamples <= 0) {
+			throw new IllegalArgumentException("Constructor parameters _threads and _batchSamples must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mBatchSamples = _batchSamples;
+		final AtomicInteger threadNumber = new AtomicInteger();
+		//The unbounded queue never holds more tasks than there are readers
+		mExecutor = new ThreadPoolExecutor(_threads, _threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable _r) {
+				Thread thread = new Thread(_r, "OpenEEGReader processing pool " + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Gets the number of processing threads.
+	 * @return the number of threads
+	 */
+	public int getThreadCount() {
+		return mExecutor.getCorePoolSize();
+	}
+	
+	/**
+	 * Gets the number of samples a reader processes before the next reader takes its turn.
+	 * @return the batch size in samples
+	 */
+	public int getBatchSamples() {
+		return mBatchSamples;
+	}
+	
+	/**
+	 * Gets the number of readers waiting for a processing thread.
+	 * @return the number of queued readers
+	 */
+	public int getQueuedReaderCount() {
+		return mExecutor.getQueue().size();
+	}
+	
+	/**
+	 * Stops the processing threads after the queued batches; the readers should be disconnected before.
+	 */
+	public void shutdown() {
+		mExecutor.shutdown();
+	}
+	
+	/**
+	 * Queues the task processing a batch of a reader.
+	 * @param _task the task
+	 */
+	void execute(Runnable _task) {
+		mExecutor.execute(_task);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,180 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+import gnu.io.CommPort;
+import gnu.io.CommPortIdentifier;
+import gnu.io.SerialPort;
+
+/**
+ * A class reading from a serial port with RXTX.
+ * RXTX only provides an input stream, so the port is read from the stream directly and cannot be selected.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class RXTXTransport implements ByteTransport {
+	
+	/**
+	 * Timeout of opening the port in milliseconds.
+	 */
+	private static final int OPEN_TIMEOUT_MS = 2000;
+	
+	/**
+	 * The serial port; on Windows always starting with "COM" and followed by a number (e. g. "COM1").
+	 */
+	private String mPort = null;
+	
+	/**
+	 * Baud rate for that port.
+	 */
+	private int mBaudRate = 0;
+	
+	/**
+	 * Info about data bits.
+	 */
+	private int mDataBits = 0;
+	
+	/**
+	 * Info about stop bits.
+	 */
+	private int mStopBits = 0;
+	
+	/**
+	 * Info about parity.
+	 */
+	private int mParity = 0;
+	
+	/**
+	 * The opened serial port; null if the port is not open.
+	 */
+	private SerialPort mSerialPort = null;
+	
+	/**
+	 * The input stream of the serial port.
+	 */
+	private InputStream mInputStream = null;
+	
+	/**
+	 * The channel reading the input stream of the serial port; only created if requested.
+	 */
+	private ReadableByteChannel mChannel = null;
+	
+	/**
+	 * Constructor.
+	 * @param _port the serial port
+	 * @param _baudRate the baud rate for communicating over the serial port
+	 * @param _databits the data bits for the serial port communication
+	 * @param _stopbits the stop bits for the serial port communication
+	 * @param _parity the parity for the serial port communication
+	 */
+	public RXTXTransport(String _port, int _baudRate, int _databits, int _stopbits, int _parity) {
+		if (_port == null) {
+			throw new IllegalArgumentException("Constructor parameter _port must not be null in class " + this.getClass().getName() + "!");
+		}
+		mPort = _port;
+		mBaudRate = _baudRate;
+		mDataBits = _databits;
+		mStopBits = _stopbits;
+		mParity = _parity;
+	}
+	
+	/**
+	 * Opens the serial port using the specified configuration parameters.
+	 * @throws IOException if the port is in use, is no serial port or cannot be configured
+	 */
+	@Override
+	public void open() throws IOException {
+		try {
+			CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(mPort);
+			if (portIdentifier.isCurrentlyOwned()) {
+				throw new IOException("Port " + mPort + " is currently in use");
+			}
+			CommPort commPort = portIdentifier.open(this.getClass().getName(), OPEN_TIMEOUT_MS);
+			if (!(commPort instanceof SerialPort)) {
+				commPort.close();
+				throw new IOException("Only serial ports are handled currently.");
+			}
+			mSerialPort = (SerialPort) commPort;
+			mSerialPort.setSerialPortParams(mBaudRate, mDataBits, mStopBits, mParity);
+			mInputStream = mSerialPort.getInputStream();
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			if (mSerialPort != null) {
+				mSerialPort.close();
+				mSerialPort = null;
+			}
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Checks whether the serial port is open.
+	 * @return true if the port is open; false otherwise
+	 */
+	@Override
+	public boolean isOpen() {
+		return mSerialPort != null;
+	}
+	
+	/**
+	 * Gets the input stream of the serial port, so SerialReader reads the bytes without copying them through the buffer of a channel.
+	 * @return the input stream
+	 */
+	@Override
+	public InputStream getInputStream() {
+		return mInputStream;
+	}
+	
+	/**
+	 * Gets a channel reading the input stream of the serial port.
+	 * @return the channel; null if the port is not open
+	 */
+	@Override
+	public ReadableByteChannel getChannel() {
+		if (mChannel == null && mInputStream != null) {
+			mChannel = Channels.newChannel(mInputStream);
+		}
+		return mChannel;
+	}
+	
+	/**
+	 * Gets the selectable channel; a serial port of RXTX cannot be selected.
+	 * @return null
+	 */
+	@Override
+	public SelectableChannel getSelectableChannel() {
+		return null;
+	}
+	
+	/**
+	 * Closes the serial port.
+	 * @throws IOException if the input stream cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (mSerialPort == null) {
+			return;
+		}
+		try {
+			mInputStream.close();
+		} finally {
+			mSerialPort.close();
+			mSerialPort = null;
+			mInputStream = null;
+			mChannel = null;
+		}
+	}
+	
+	/**
+	 * Gets the name of the serial port.
+	 * @return the port
+	 */
+	@Override
+	public String getName() {
+		return mPort;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import at.fhhgb.mc.pro.recording.SessionRecording;
+
+/**
+ * A class representing a source that replays recorded EEG data into an OpenEEGReader instead of a serial port.
+ * Raw byte dumps of the serial port are passed on unchanged; samples of session recordings are encoded to OpenEEG packets again, so both take the same decoding and gesture path as live data.
+ * Data is replayed at wall-clock speed, any multiple of it or as fast as possible; the reader is typically created without serial port.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class ReplayReader {
+
+	/**
+	 * Constant for replaying as fast as possible.
+	 */
+	public static final double SPEED_UNLIMITED = 0;
+
+	/**
+	 * Default number of packets passed to the reader at once.
+	 */
+	public static final int CHUNK_PACKETS_DEFAULT = 16;
+
+	/**
+	 * The reader the data is replayed into.
+	 */
+	private OpenEEGReader mReader = null;
+
+	/**
+	 * The replay speed as multiple of wall-clock speed; SPEED_UNLIMITED for as fast as possible.
+	 */
+	private double mSpeed = 1;
+
+	/**
+	 * The number of packets passed to the reader at once.
+	 */
+	private int mChunkPackets = CHUNK_PACKETS_DEFAULT;
+
+	/**
+	 * Indicates whether the current replay should be stopped.
+	 */
+	private volatile boolean mStopped = false;
+
+	/**
+	 * Constructor.
+	 * @param _reader the reader the data is replayed into
+	 */
+	public ReplayReader(OpenEEGReader _reader) {
+		if (_reader == null) {
+			throw new IllegalArgumentException("Constructor parameter _reader must not be null in class " + this.getClass().getName() + "!");
+		}
+		mReader = _reader;
+	}
+
+	/**
+	 * Sets the replay speed.
+	 * @param _speed the replay speed as multiple of wall-clock speed (1 for real time); SPEED_UNLIMITED for as fast as possible
+	 */
+	public void setSpeed(double _speed) {
+		mSpeed = Math.max(SPEED_UNLIMITED, _speed);
+	}
+
+	/**
+	 * Gets the replay speed.
+	 * @return the replay speed as multiple of wall-clock speed; SPEED_UNLIMITED for as fast as possible
+	 */
+	public double getSpeed() {
+		return mSpeed;
+	}
+
+	/**
+	 * Sets the number of packets passed to the reader at once.
+	 * A chunk has to fit into the pipeline of the reader, otherwise it could never be passed in pipeline mode without dropping samples.
+	 * @param _chunkPackets the number of packets passed to the reader at once, at most the pipeline capacity of the reader
+	 */
+	public void setChunkPackets(int _chunkPackets) {
+		if (_chunkPackets <= 0 || _chunkPackets > mReader.getPipelineCapacity()) {
+			throw new IllegalArgumentException("Parameter _chunkPackets must be greater than 0 and not greater than the pipeline capacity of the reader in class " + this.getClass().getName() + "!");
+		}
+		mChunkPackets = _chunkPackets;
+	}
+
+	/**
+	 * Gets the number of packets passed to the reader at once.
+	 * @return the number of packets passed to the reader at once
+	 */
+	public int getChunkPackets() {
+		return mChunkPackets;
+	}
+
+	/**
+	 * Stops a running replay after the current chunk; may be called from any thread.
+	 */
+	public void stop() {
+		mStopped = true;
+	}
+
+	/**
+	 * Replays a raw byte dump of the serial port; blocks until the end of the file has been reached or the replay has been stopped.
+	 * @param _file the raw byte dump
+	 * @return the number of replayed bytes
+	 * @throws IOException if the file cannot be read
+	 */
+	public long replayRawDump(File _file) throws IOException {
+		try (InputStream in = new FileInputStream(_file)) {
+			return replayRawDump(in);
+		}
+	}
+
+	/**
+	 * Replays raw bytes of the serial port; blocks until the end of the stream has been reached or the replay has been stopped.
+	 * @param _in the stream of raw bytes
+	 * @return the number of replayed bytes
+	 * @throws IOException if the stream cannot be read
+	 */
+	public long replayRawDump(InputStream _in) throws IOException {
+		mStopped = false;
+		byte[] chunk = new byte[mChunkPackets * OpenEEGReader.PACKET_SIZE];
+		long bytes = 0;
+		long start = System.nanoTime();
+
+		while (!mStopped) {
+			//Fill the chunk completely unless the stream ends, so pacing is based on whole packets
+			int length = 0;
+			int read = 0;
+			while (length < chunk.length && (read = _in.read(chunk, length, chunk.length - length)) > 0) {
+				length += read;
+			}
+			if (length == 0) {
+				break;
+			}
+			waitForReader(start, bytes / OpenEEGReader.PACKET_SIZE, length / OpenEEGReader.PACKET_SIZE);
+			mReader.onReceivedData(chunk, length);
+			bytes += length;
+			if (read < 0) {
+				break;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Replays a session recording from the beginning; blocks until the end of the recording has been reached or the replay has been stopped.
+	 * @param _file the session recording
+	 * @return the number of replayed samples
+	 * @throws IOException if the file cannot be read
+	 */
+	public long replayRecording(File _file) throws IOException {
+		return replayRecording(new SessionRecording(_file), 0);
+	}
+
+	/**
+	 * Replays a session recording; blocks until the end of the recording has been reached or the replay has been stopped.
+	 * Recorded gesture events are skipped since the gestures of the reader detect them again.
+	 * @param _recording the session recording
+	 * @param _fromSecond the second of the recording to start at
+	 * @return the number of replayed samples
+	 */
+	public long replayRecording(SessionRecording _recording, int _fromSecond) {
+		mStopped = false;
+		_recording.seekSecond(_fromSecond);
+		int channels = Math.min(_recording.getChannels(), OpenEEGReader.MAX_CHANNELS);
+		byte[] chunk = new byte[mChunkPackets * OpenEEGReader.PACKET_SIZE];
+		long samples = 0;
+		long start = System.nanoTime();
+
+		while (!mStopped) {
+			int packets = 0;
+			while (packets < mChunkPackets && _recording.nextSample()) {
+				encodePacket(_recording, channels, chunk, packets * OpenEEGReader.PACKET_SIZE);
+				packets++;
+			}
+			if (packets == 0) {
+				break;
+			}
+			waitForReader(start, samples, packets);
+			mReader.onReceivedData(chunk, packets * OpenEEGReader.PACKET_SIZE);
+			samples += packets;
+		}
+		return samples;
+	}
+
+	/**
+	 * Helper method to encode the current sample of a recording as OpenEEG packet.
+	 * @param _recording the recording positioned at a sample
+	 * @param _channels the number of channels to encode; the remaining channels of the packet are 0
+	 * @param _buffer the buffer to write the packet to
+	 * @param _offset the index of the first byte of the packet inside _buffer
+	 */
+	private static void encodePacket(SessionRecording _recording, int _channels, byte[] _buffer, int _offset) {
+		_buffer[_offset] = OpenEEGReader.SYNC0;
+		_buffer[_offset + 1] = OpenEEGReader.SYNC1;
+		_buffer[_offset + 2] = OpenEEGReader.VERSION;
+		_buffer[_offset + OpenEEGReader.PACKET_COUNTER_INDEX] = (byte)_recording.getPacketCounter();
+		int data = _offset + OpenEEGReader.PACKET_DATA_INDEX;
+		for (int ch=0; ch<OpenEEGReader.MAX_CHANNELS; ch++) {
+			int value = ch < _channels ? _recording.getRawValue(ch) : 0;
+			_buffer[data + ch * 2] = (byte)(value >> 8);
+			_buffer[data + ch * 2 + 1] = (byte)value;
+		}
+		_buffer[_offset + OpenEEGReader.PACKET_SIZE - 1] = 0;
+	}
+
+	/**
+	 * Helper method to wait before the next chunk is passed to the reader.
+	 * At limited speed it waits until the chunk is due; in pipeline mode it also waits until the pipeline has space for the chunk, so no samples are dropped.
+	 * @param _start the time the replay started in nanoseconds
+	 * @param _replayedPackets the number of packets replayed so far
+	 * @param _chunkPackets the number of packets of the next chunk
+	 */
+	private void waitForReader(long _start, long _replayedPackets, int _chunkPackets) {
+		if (mSpeed > SPEED_UNLIMITED) {
+			long due = _start + (long)(TimeUnit.SECONDS.toNanos(_replayedPackets) / (mReader.getSampleRate() * mSpeed));
+			long wait = due - System.nanoTime();
+			while (wait > 0 && !mStopped) {
+				LockSupport.parkNanos(wait);
+				wait = due - System.nanoTime();
+			}
+		}
+		if (mReader.isPipelineMode()) {
+			while (mReader.getPipelineBacklog() > mReader.getPipelineCapacity() - _chunkPackets && !mStopped) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+package at.fhhgb.mc.pro.reader;
+
+/**
+ * A class representing the samples a sample stream received in one decoded batch, handed to gestures in block mode at once (see BlockGesture.handleBlock).
+ * The values of every channel are stored contiguously in chronological order starting at index 0, so gestures can loop over them without wrapping around the ring buffer of the stream.
+ * The samples are also stored in the ring buffer of the stream; samples preceding the block are read from there (see getFirstIndex).
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SampleBlock {
+	
+	/**
+	 * The normalized values of every channel.
+	 */
+	private double[][] mValues = null;
+	
+	/**
+	 * The filtered values of every channel; null if the stream has no filtered signal.
+	 */
+	private double[][] mFilteredValues = null;
+	
+	/**
+	 * The estimated acquisition time of every sample in nanoseconds (System.nanoTime()).
+	 */
+	private long[] mSampleTimestamps = null;
+	
+	/**
+	 * The time the data of every sample was read in nanoseconds (System.nanoTime()).
+	 */
+	private long[] mReadTimestamps = null;
+
+	/**
+	 * The sample count of the reader when every sample was received; differs from the sample count of a decimated stream.
+	 */
+	private long[] mReaderSampleCounts = null;
+	
+	/**
+	 * The number of samples in the block.
+	 */
+	private int mLength = 0;
+	
+	/**
+	 * The sample count of the stream when the first sample of the block was received, i. e. the number of samples preceding the block.
+	 */
+	private long mFirstSample = 0;
+	
+	/**
+	 * The index of the first sample of the block inside the ring buffer of the stream.
+	 */
+	private int mFirstIndex = 0;
+	
+	/**
+	 * Constructor.
+	 * @param _channels the number of channels
+	 * @param _capacity the maximum number of samples of a block
+	 * @param _filtered true if the stream has a filtered signal; false otherwise
+	 */
+	SampleBlock(int _channels, int _capacity, boolean _filtered) {
+		if (_channels <= 0 || _capacity <= 0) {
+			throw new IllegalArgumentException("Constructor parameters _channels and _capacity must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mValues = new double[_channels][_capacity];
+		mFilteredValues = _filtered ? new double[_channels][_capacity] : null;
+		mSampleTimestamps = new long[_capacity];
+		mReadTimestamps = new long[_capacity];
+		mReaderSampleCounts = new long[_capacity];
+	}
+	
+	/**
+	 * Gets the number of samples in the block.
+	 * @return the number of samples
+	 */
+	public int getLength() {
+		return mLength;
+	}
+	
+	/**
+	 * Gets the maximum number of samples of a block.
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return mSampleTimestamps.length;
+	}
+	
+	/**
+	 * Gets the number of channels.
+	 * @return the number of channels
+	 */
+	public int getChannels() {
+		return mValues.length;
+	}
+	
+	/**
+	 * Checks whether the block is full.
+	 * @return true if no further sample fits into the block; false otherwise
+	 */
+	public boolean isFull() {
+		return mLength == mSampleTimestamps.length;
+	}
+	
+	/**
+	 * Gets the sample count of the stream when the first sample of the block was received (see SampleStream.getChannelDataSampleCount).
+	 * The sample at index i of the block is the sample the stream counted as getFirstSample() + i.
+	 * @return the number of samples preceding the block
+	 */
+	public long getFirstSample() {
+		return mFirstSample;
+	}
+	
+	/**
+	 * Gets the index of the first sample of the block inside the ring buffer of the stream.
+	 * @return the index inside the buffer of the stream
+	 */
+	public int getFirstIndex() {
+		return mFirstIndex;
+	}
+	
+	/**
+	 * Gets the values of a signal of a channel; only the first getLength() values belong to the block.
+	 * The array is reused for the next block and must not be modified.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @return the values in chronological order
+	 */
+	public double[] getValues(SampleSignal _signal, int _channel) {
+		if (_signal == SampleSignal.FILTERED && mFilteredValues != null) {
+			return mFilteredValues[_channel];
+		}
+		return mValues[_channel];
+	}
+	
+	/**
+	 * Gets the estimated acquisition time of a sample of the block.
+	 * @param _index the index inside the block
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if unknown
+	 */
+	public long getSampleTimestamp(int _index) {
+		return mSampleTimestamps[_index];
+	}
+	
+	/**
+	 * Gets the time the data of a sample of the block was read.
+	 * @param _index the index inside the block
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if unknown
+	 */
+	public long getReadTimestamp(int _index) {
+		return mReadTimestamps[_index];
+	}
+	
+	/**
+	 * Gets the sample count of the reader when a sample of the block was received (see OpenEEGReader.getChannelDataSampleCount).
+	 * @param _index the index inside the block
+	 * @return the number of samples the reader had received before this sample
+	 */
+	public long getReaderSampleCount(int _index) {
+		return mReaderSampleCounts[_index];
+	}
+
+	/**
+	 * Appends the current sample of a stream to the block.
+	 * @param _stream the stream the sample was stored in
+	 * @param _index the index of the sample inside the buffer of the stream
+	 * @param _sampleCount the sample count of the stream when the sample was received
+	 * @param _readerSampleCount the sample count of the reader when the sample was received
+	 * @param _readTimestamp the time the data of the sample was read in nanoseconds
+	 */
+	void append(SampleStream _stream, int _index, long _sampleCount, long _readerSampleCount, long _readTimestamp) {
+		if (mLength == 0) {
+			mFirstSample = _sampleCount;
+			mFirstIndex = _index;
+		}
+		for (int ch=0; ch<mValues.length; ch++) {
+			mValues[ch][mLength] = _stream.getValue(SampleSignal.NORMALIZED, ch, _index);
+		}
+		if (mFilteredValues != null) {
+			for (int ch=0; ch<mFilteredValues.length; ch++) {
+				mFilteredValues[ch][mLength] = _stream.getValue(SampleSignal.FILTERED, ch, _index);
+			}
+		}
+		mSampleTimestamps[mLength] = _stream.getSampleTimestamp(_index);
+		mReadTimestamps[mLength] = _readTimestamp;
+		mReaderSampleCounts[mLength] = _readerSampleCount;
+		mLength++;
+	}
+	
+	/**
+	 * Removes all samples from the block.
+	 */
+	void clear() {
+		mLength = 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,242 @@
+package at.fhhgb.mc.pro.reader;
+
+/**
+ * A class estimating the acquisition time of every sample from the times the chunks of data were read and the nominal sample rate.
+ * The samples of a chunk are dated back from its read time; as no sample can be acquired after it was read, timestamps later than the read time are corrected at once, earlier ones only slowly, so the timestamps follow the lower envelope of the read times and jitter of reading is filtered out.
+ * The corrections also adjust the sample period, so a device clock that drifts against System.nanoTime() is followed.
+ * The timestamps are strictly increasing: if a correction moves the samples of a chunk before the last timestamp, they are spread between the last timestamp and the corrected time of the last sample of the chunk.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SampleClock {
+	
+	/**
+	 * Fraction of the error corrected per chunk if the samples were read later than expected.
+	 */
+	public static final double LATE_CORRECTION_GAIN = 1 / 64.0;
+	
+	/**
+	 * Fraction of a correction that adjusts the sample period (spread over the samples of the chunk).
+	 */
+	public static final double DRIFT_CORRECTION_GAIN = 1 / 256.0;
+	
+	/**
+	 * Maximum deviation of the sample period from the nominal period (relative).
+	 */
+	public static final double MAX_DRIFT = 0.01;
+	
+	/**
+	 * Error in nanoseconds that restarts the clock from the read time instead of correcting it (e. g. after the device was paused).
+	 */
+	public static final long RESYNC_THRESHOLD_NS = 250000000L;
+	
+	/**
+	 * Number of fractional bits of the fixed point times, so sample periods are kept with a precision of 1/256 ns.
+	 */
+	private static final int FRACTION_BITS = 8;
+	
+	/**
+	 * The minimum distance of two timestamps in fixed point nanoseconds (1 ns).
+	 */
+	private static final long MIN_STEP_FIXED = 1 << FRACTION_BITS;
+	
+	/**
+	 * The nominal sample period in nanoseconds.
+	 */
+	private double mNominalPeriod = 0;
+	
+	/**
+	 * The current estimate of the sample period in nanoseconds.
+	 */
+	private double mPeriod = 0;
+	
+	/**
+	 * The current estimate of the sample period in fixed point nanoseconds.
+	 */
+	private long mPeriodFixed = 0;
+	
+	/**
+	 * The time the clock was started at in nanoseconds; all other times are kept relative to it.
+	 */
+	private long mOrigin = 0;
+	
+	/**
+	 * The timestamp of the next sample relative to the origin in fixed point nanoseconds.
+	 */
+	private long mNextFixed = 0;
+	
+	/**
+	 * The timestamp of the last sample in nanoseconds; Long.MIN_VALUE if no sample has been taken since the clock was reset.
+	 */
+	private long mLastTimestamp = Long.MIN_VALUE;
+	
+	/**
+	 * The distance of the samples of the current chunk in fixed point nanoseconds if they are spread after the last timestamp.
+	 */
+	private long mChunkPeriodFixed = 0;
+	
+	/**
+	 * The number of samples of the current chunk still to be taken with the distance of the chunk; 0 if the samples are not spread.
+	 */
+	private int mChunkSamples = 0;
+	
+	/**
+	 * Indicates whether the clock has been started by a chunk.
+	 */
+	private boolean mStarted = false;
+	
+	/**
+	 * Number of times the clock was restarted because the error was too large.
+	 */
+	private long mResyncCount = 0;
+	
+	/**
+	 * Constructor.
+	 * @param _sampleRate the nominal sample rate in Hz
+	 */
+	public SampleClock(int _sampleRate) {
+		if (_sampleRate <= 0) {
+			throw new IllegalArgumentException("Constructor parameter _sampleRate must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mNominalPeriod = 1e9 / _sampleRate;
+		reset();
+	}
+	
+	/**
+	 * Resets the clock; the next chunk starts it again.
+	 */
+	public void reset() {
+		setPeriod(mNominalPeriod);
+		mOrigin = 0;
+		mNextFixed = 0;
+		mLastTimestamp = Long.MIN_VALUE;
+		mChunkSamples = 0;
+		mStarted = false;
+		mResyncCount = 0;
+	}
+	
+	/**
+	 * Announces a chunk of data; called before the samples of the chunk are taken with next().
+	 * @param _samples the number of samples completed by the chunk
+	 * @param _readTimestamp the time the chunk was read in nanoseconds (System.nanoTime())
+	 */
+	public void beginChunk(int _samples, long _readTimestamp) {
+		if (_samples <= 0) {
+			return;
+		}
+		double span = (_samples - 1) * mPeriod;
+		if (!mStarted) {
+			start(_readTimestamp, span);
+			mStarted = true;
+		} else {
+			//Positive if the last sample of the chunk is read later than expected
+			double error = (_readTimestamp - mOrigin) - mNextFixed / (double)(1 << FRACTION_BITS) - span;
+			if (Math.abs(error) > RESYNC_THRESHOLD_NS) {
+				start(_readTimestamp, span);
+				mResyncCount++;
+			} else {
+				double correction = error < 0 ? error : error * LATE_CORRECTION_GAIN;
+				mNextFixed += toFixed(correction);
+				double period = mPeriod + correction * DRIFT_CORRECTION_GAIN / _samples;
+				setPeriod(Math.max(mNominalPeriod * (1 - MAX_DRIFT), Math.min(mNominalPeriod * (1 + MAX_DRIFT), period)));
+			}
+		}
+		spreadAfterLast(_samples);
+	}
+	
+	/**
+	 * Gets the timestamp of the next sample and advances the clock by one sample period.
+	 * @return the estimated acquisition time of the sample in nanoseconds (System.nanoTime())
+	 */
+	public long next() {
+		long timestamp = mOrigin + (mNextFixed >> FRACTION_BITS);
+		if (mChunkSamples > 1) {
+			mChunkSamples--;
+			mNextFixed += mChunkPeriodFixed;
+		} else {
+			mChunkSamples = 0;
+			mNextFixed += mPeriodFixed;
+		}
+		mLastTimestamp = timestamp;
+		return timestamp;
+	}
+	
+	/**
+	 * Advances the clock by samples that were lost.
+	 * @param _samples the number of lost samples
+	 */
+	public void skip(int _samples) {
+		mNextFixed += _samples * mPeriodFixed;
+	}
+	
+	/**
+	 * Gets the current estimate of the sample period.
+	 * @return the sample period in nanoseconds
+	 */
+	public double getPeriodNanos() {
+		return mPeriod;
+	}
+	
+	/**
+	 * Gets the current estimate of the sample rate.
+	 * @return the sample rate in Hz
+	 */
+	public double getEffectiveSampleRate() {
+		return 1e9 / mPeriod;
+	}
+	
+	/**
+	 * Gets the number of times the clock was restarted because the error was too large.
+	 * @return the number of restarts
+	 */
+	public long getResyncCount() {
+		return mResyncCount;
+	}
+	
+	/**
+	 * Helper method to start the clock, so the last sample of a chunk gets its read time.
+	 * @param _readTimestamp the time the chunk was read in nanoseconds
+	 * @param _span the time between the first and the last sample of the chunk in nanoseconds
+	 */
+	private void start(long _readTimestamp, double _span) {
+		mOrigin = _readTimestamp;
+		mNextFixed = -toFixed(_span);
+	}
+	
+	/**
+	 * Helper method to keep the samples of a chunk after the last timestamp; if the chunk would start at or before it, its samples are spread between the last timestamp
+	 * and the corrected time of the last sample of the chunk, at least 1 ns apart.
+	 * @param _samples the number of samples of the chunk
+	 */
+	private void spreadAfterLast(int _samples) {
+		mChunkSamples = 0;
+		if (mLastTimestamp == Long.MIN_VALUE) {
+			return;
+		}
+		long lastFixed = (mLastTimestamp - mOrigin) << FRACTION_BITS;
+		if (mNextFixed >= lastFixed + MIN_STEP_FIXED) {
+			return;
+		}
+		long endFixed = mNextFixed + (_samples - 1) * mPeriodFixed;
+		mChunkPeriodFixed = Math.max(MIN_STEP_FIXED, (endFixed - lastFixed) / _samples);
+		mNextFixed = lastFixed + mChunkPeriodFixed;
+		mChunkSamples = _samples;
+	}
+	
+	/**
+	 * Helper method to set the sample period.
+	 * @param _period the sample period in nanoseconds
+	 */
+	private void setPeriod(double _period) {
+		mPeriod = _period;
+		mPeriodFixed = toFixed(_period);
+	}
+	
+	/**
+	 * Helper method to convert nanoseconds to fixed point nanoseconds.
+	 * @param _nanos the nanoseconds
+	 * @return the fixed point nanoseconds
+	 */
+	private static long toFixed(double _nanos) {
+		return Math.round(_nanos * (1 << FRACTION_BITS));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,214 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class representing a lock-free ring buffer for raw EEG samples with exactly one producing and one consuming thread.
+ * Each entry holds one value per channel; all values are stored in one primitive array, so neither side allocates memory.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SampleRingBuffer {
+
+	/**
+	 * The values of all entries, one block of values per entry.
+	 */
+	private int[] mData = null;
+
+	/**
+	 * The timestamp of every entry.
+	 */
+	private long[] mTimestamps = null;
+
+	/**
+	 * The second timestamp of every entry (e. g. the acquisition time next to the read time).
+	 */
+	private long[] mSecondTimestamps = null;
+
+	/**
+	 * The number of values of one entry.
+	 */
+	private int mWidth = 0;
+
+	/**
+	 * The maximum number of entries (a power of 2).
+	 */
+	private int mCapacity = 0;
+
+	/**
+	 * Mask to map a sequence number to an entry index.
+	 */
+	private int mMask = 0;
+
+	/**
+	 * Sequence number of the next entry to read; only written by the consumer.
+	 */
+	private AtomicLong mHead = null;
+
+	/**
+	 * Sequence number of the next entry to write; only written by the producer.
+	 */
+	private AtomicLong mTail = null;
+
+	/**
+	 * The producer's last known value of the head, so the shared head is only read when the buffer seems to be full.
+	 */
+	private long mCachedHead = 0;
+
+	/**
+	 * The consumer's last known value of the tail, so the shared tail is only read when the buffer seems to be empty.
+	 */
+	private long mCachedTail = 0;
+
+	/**
+	 * Constructor.
+	 * @param _capacity the minimum number of entries; rounded up to a power of 2
+	 * @param _width the number of values of one entry
+	 */
+	public SampleRingBuffer(int _capacity, int _width) {
+		if (_capacity <= 0 || _width <= 0) {
+			throw new IllegalArgumentException("Constructor parameters _capacity and _width must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		int capacity = Integer.highestOneBit(_capacity);
+		if (capacity < _capacity) {
+			capacity <<= 1;
+		}
+		mCapacity = capacity;
+		mMask = capacity - 1;
+		mWidth = _width;
+		mData = new int[capacity * _width];
+		mTimestamps = new long[capacity];
+		mSecondTimestamps = new long[capacity];
+		mHead = new AtomicLong();
+		mTail = new AtomicLong();
+	}
+
+	/**
+	 * Gets the maximum number of entries.
+	 * @return the maximum number of entries
+	 */
+	public int getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * Gets the number of values of one entry.
+	 * @return the number of values of one entry
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * Gets the number of entries that are currently buffered.
+	 * @return the number of buffered entries
+	 */
+	public int size() {
+		return (int)(mTail.get() - mHead.get());
+	}
+
+	/**
+	 * Checks whether no entries are buffered.
+	 * @return true if no entries are buffered; false otherwise
+	 */
+	public boolean isEmpty() {
+		return mTail.get() == mHead.get();
+	}
+
+	/**
+	 * Appends an entry without timestamp; must only be called by the producing thread.
+	 * @param _values the values of the entry
+	 * @param _offset the index of the first value inside _values
+	 * @return true if the entry was appended; false if the buffer is full
+	 */
+	public boolean offer(int[] _values, int _offset) {
+		return offer(_values, _offset, 0);
+	}
+
+	/**
+	 * Appends an entry; must only be called by the producing thread.
+	 * @param _values the values of the entry
+	 * @param _offset the index of the first value inside _values
+	 * @param _timestamp the timestamp of the entry
+	 * @return true if the entry was appended; false if the buffer is full
+	 */
+	public boolean offer(int[] _values, int _offset, long _timestamp) {
+		return offer(_values, _offset, _timestamp, 0);
+	}
+
+	/**
+	 * Appends an entry with two timestamps; must only be called by the producing thread.
+	 * @param _values the values of the entry
+	 * @param _offset the index of the first value inside _values
+	 * @param _timestamp the timestamp of the entry
+	 * @param _secondTimestamp the second timestamp of the entry
+	 * @return true if the entry was appended; false if the buffer is full
+	 */
+	public boolean offer(int[] _values, int _offset, long _timestamp, long _secondTimestamp) {
+		long tail = mTail.get();
+		if (tail - mCachedHead >= mCapacity) {
+			mCachedHead = mHead.get();
+			if (tail - mCachedHead >= mCapacity) {
+				return false;
+			}
+		}
+		int index = (int)(tail & mMask);
+		System.arraycopy(_values, _offset, mData, index * mWidth, mWidth);
+		mTimestamps[index] = _timestamp;
+		mSecondTimestamps[index] = _secondTimestamp;
+		//A full volatile write, so a flag the producer reads afterwards (e. g. whether the consumer is about to wait) cannot be read before the entry is visible
+		mTail.set(tail + 1);
+		return true;
+	}
+
+	/**
+	 * Removes up to a maximum number of entries at once; must only be called by the consuming thread.
+	 * @param _values the array the values of the entries are copied to, one block of values per entry
+	 * @param _maxEntries the maximum number of entries to remove
+	 * @return the number of removed entries
+	 */
+	public int drainTo(int[] _values, int _maxEntries) {
+		return drainTo(_values, null, _maxEntries);
+	}
+
+	/**
+	 * Removes up to a maximum number of entries and their timestamps at once; must only be called by the consuming thread.
+	 * @param _values the array the values of the entries are copied to, one block of values per entry
+	 * @param _timestamps the array the timestamps of the entries are copied to; null to ignore the timestamps
+	 * @param _maxEntries the maximum number of entries to remove
+	 * @return the number of removed entries
+	 */
+	public int drainTo(int[] _values, long[] _timestamps, int _maxEntries) {
+		return drainTo(_values, _timestamps, null, _maxEntries);
+	}
+
+	/**
+	 * Removes up to a maximum number of entries and both of their timestamps at once; must only be called by the consuming thread.
+	 * @param _values the array the values of the entries are copied to, one block of values per entry
+	 * @param _timestamps the array the timestamps of the entries are copied to; null to ignore the timestamps
+	 * @param _secondTimestamps the array the second timestamps of the entries are copied to; null to ignore the second timestamps
+	 * @param _maxEntries the maximum number of entries to remove
+	 * @return the number of removed entries
+	 */
+	public int drainTo(int[] _values, long[] _timestamps, long[] _secondTimestamps, int _maxEntries) {
+		long head = mHead.get();
+		if (head >= mCachedTail) {
+			mCachedTail = mTail.get();
+			if (head >= mCachedTail) {
+				return 0;
+			}
+		}
+		int count = (int)Math.min(_maxEntries, mCachedTail - head);
+		for (int i=0; i<count; i++) {
+			int index = (int)((head + i) & mMask);
+			System.arraycopy(mData, index * mWidth, _values, i * mWidth, mWidth);
+			if (_timestamps != null) {
+				_timestamps[i] = mTimestamps[index];
+			}
+			if (_secondTimestamps != null) {
+				_secondTimestamps[i] = mSecondTimestamps[index];
+			}
+		}
+		mHead.lazySet(head + count);
+		return count;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package at.fhhgb.mc.pro.reader;
+
+/**
+ * An enum containing the signals of an OpenEEGReader a gesture can inspect.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public enum SampleSignal {
+	/**
+	 * The samples normalized between 0 and 1.
+	 */
+	NORMALIZED,
+	
+	/**
+	 * The normalized samples after the filter of the reader (see OpenEEGReader.setFilter); the normalized samples if the reader has no filter.
+	 */
+	FILTERED
+}
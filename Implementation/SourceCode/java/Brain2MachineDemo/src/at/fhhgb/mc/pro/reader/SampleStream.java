@@ -0,0 +1,66 @@
+package at.fhhgb.mc.pro.reader;
+
+/**
+ * An interface for a buffered stream of EEG samples gestures can analyze, i. e. the full rate samples of an OpenEEGReader or a decimated stream derived from them.
+ * The samples are kept in a ring buffer; while the gestures are evaluated the pointer refers to the index of the newest sample.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public interface SampleStream {
+	
+	/**
+	 * Gets the sample rate of the stream.
+	 * @return the sample rate in Hz
+	 */
+	public int getSampleRate();
+	
+	/**
+	 * Gets the number of samples the ring buffer of the stream holds.
+	 * @return the length of the buffer
+	 */
+	public int getBufferLength();
+	
+	/**
+	 * Gets the index of the current sample inside the buffer.
+	 * @return the index of the current sample
+	 */
+	public int getChannelDataPointer();
+	
+	/**
+	 * Gets the number of samples the stream has produced.
+	 * @return the number of samples
+	 */
+	public long getChannelDataSampleCount();
+	
+	/**
+	 * Gets the value of a sample of a signal in the buffer.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the value
+	 */
+	public double getValue(SampleSignal _signal, int _channel, int _index);
+	
+	/**
+	 * Copies consecutive values of a signal of a channel in chronological order.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _start the index of the first sample inside the buffer; negative indexes count back from the end of the buffer
+	 * @param _length the number of samples to copy (at most the buffer length)
+	 * @param _dest the array to copy the values to
+	 * @param _destOffset the index of the first value inside _dest
+	 */
+	public void copyValues(SampleSignal _signal, int _channel, int _start, int _length, double[] _dest, int _destOffset);
+	
+	/**
+	 * Gets the estimated acquisition time of a sample in the buffer.
+	 * @param _index the index inside the buffer (see getChannelDataPointer)
+	 * @return the time in nanoseconds (System.nanoTime()); 0 if no sample was received for the index yet
+	 */
+	public long getSampleTimestamp(int _index);
+	
+	/**
+	 * Gets the shared spectrum engine of the stream.
+	 * @return the spectrum provider of this stream
+	 */
+	public SpectrumProvider getSpectrumProvider();
+}
\ No newline at end of file
@@ -2,14 +2,14 @@ package at.fhhgb.mc.pro.reader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
 import java.util.ArrayList;
 import java.util.List;
-import gnu.io.CommPort;
-import gnu.io.CommPortIdentifier;
 import gnu.io.SerialPort;
 
 /**
- * A class that is capable of reading from a serial port and notifying listeners that register to receive that data.
+ * A class that is capable of reading from a serial port (or any other ByteTransport) and notifying listeners that register to receive that data.
  * @author Boris Fuchs, Paul Schmutz
  */
 public class SerialReader {
@@ -47,44 +47,24 @@ public class SerialReader {
 	
 	
 	/**
-	 * Desired port to listen to.
+	 * The transport providing the bytes (serial port, device file, socket).
 	 */
-	private String mPort = null;
+	private ByteTransport mTransport = null;
 	
-	/**
-	 * Baud rate for that port.
-	 */
-	private int mBaudRate = 0;
-	
-	/**
-	 * Info about data bits.
-	 */
-	private int mDataBits = 0;
-	
-	/**
-	 * Info about stop bits.
-	 */
-    private int mStopBits = 0;
-    
-    /**
-	 * Info about parity.
-	 */
-    private int mParity = 0;
-    
     /**
 	 * The buffer size used for receiving data.
 	 */
     private int mBufferSize = 0;
 	
     /**
-     * The serial port object used for handling communication; on Windows always starting with "COM" and followed by a number (e. g. "COM1").
+     * Reusable direct buffer the channel of the transport reads into.
      */
-    private SerialPort mSerialPort = null;
+    private ByteBuffer mBuffer = null;
     
     /**
-     * The input stream handle for the serial port to receive data from.
+     * Reusable array the received bytes are handed to the listeners with.
      */
-    private InputStream mIStream = null;
+    private byte[] mData = null;
     
     /**
      * Indicates whether reading thread is running.
@@ -138,12 +118,25 @@ public class SerialReader {
 	 * @param _bufferSize the buffer size used for receiving input of the serial port
 	 */
 	public SerialReader(String _port, int _baudRate, int _databits, int _stopbits, int _parity, int _bufferSize) {
-		mPort = _port;
-		mBaudRate = _baudRate;
-		mDataBits = _databits;
-		mStopBits = _stopbits;
-		mParity = _parity;
+		this(new RXTXTransport(_port, _baudRate, _databits, _stopbits, _parity), _bufferSize);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param _transport the transport to read from
+	 * @param _bufferSize the buffer size used for receiving input of the transport
+	 */
+	public SerialReader(ByteTransport _transport, int _bufferSize) {
+		if (_transport == null) {
+			throw new IllegalArgumentException("Constructor parameter _transport must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_bufferSize <= 0) {
+			throw new IllegalArgumentException("Constructor parameter _bufferSize must be greater than 0 in class " + this.getClass().getName() + "!");
+		}
+		mTransport = _transport;
 		mBufferSize = _bufferSize;
+		mBuffer = ByteBuffer.allocateDirect(mBufferSize);
+		mData = new byte[mBufferSize];
 		mReceiveListeners = new ArrayList<>();
 		mRunReadingThread = false;
 	}
@@ -178,77 +171,96 @@ public class SerialReader {
 	 * Helper method to notify all listeners about new received data.
 	 * @param _buffer the buffer containing the new data from index 0 to _length - 1 
 	 * @param _length the length of the newly arrived data
+	 * @param _readTimestamp the time the data was read in nanoseconds (System.nanoTime())
 	 */
-	private void fireReceiveData(byte[] _buffer, int _length) {
+	private void fireReceiveData(byte[] _buffer, int _length, long _readTimestamp) {
 		for(ReceiveEventListener listener : mReceiveListeners) {
-			listener.onReceivedData(_buffer, _length);
+			listener.onReceivedData(_buffer, _length, _readTimestamp);
 		}
 	}
 	
 	/**
-	 * Connects to the serial device on the serial port using the specified configuration parameters.
+	 * Gets the transport the reader reads from.
+	 * @return the transport
+	 */
+	public ByteTransport getTransport() {
+		return mTransport;
+	}
+	
+	/**
+	 * Connects to the device using the transport.
 	 * @return true if connection succeeded; false if an error occurred
 	 */
     public boolean connect() {
         try {
-            CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(mPort);        
-            if (portIdentifier.isCurrentlyOwned()) {
-                System.err.println("Port " + mPort + " is currently in use");
-                return false;
-            }
-            else {
-            	//Open port with timeout of 2000ms
-                CommPort commPort = portIdentifier.open(this.getClass().getName(), 2000);
-
-                if (commPort instanceof SerialPort) {
-                    mSerialPort = (SerialPort) commPort;
-                    mSerialPort.setSerialPortParams(mBaudRate, mDataBits, mStopBits, mParity);
-
-                    mIStream = mSerialPort.getInputStream();
-                } else {
-                    System.err.println("Only serial ports are handled currently.");
-                    return false;
-                }
-            }
+            mTransport.open();
         } catch (Exception e) {
-            System.err.println("Exception while connecting to port " + mPort + ": " + e.getMessage());
+            System.err.println("Exception while connecting to " + mTransport.getName() + ": " + e.getMessage());
             return false;
         }
-        System.out.println("Com port connected " + mPort);
+        System.out.println("Connected " + mTransport.getName());
         return true;
     }
     
     /**
-     * Disconnects from the device on the serial port.
+     * Disconnects from the device.
      */
     public void disconnect() {
     	stopReading();
         if (isConnected()) {
-            System.out.println("Closing serial port " + mPort);
-            if (mIStream != null) {
-                try {
-                	mIStream.close();
-                } catch(Exception e) {
-                    System.err.println("Exception when closing input stream " + e + ".");
-                }                
+            System.out.println("Closing " + mTransport.getName());
+            try {
+            	mTransport.close();
+            } catch(Exception e) {
+                System.err.println("Exception when closing " + mTransport.getName() + " " + e + ".");
             }
-            mSerialPort.close();
-            System.out.println("Serial port " + mPort + " disconnected.");  
-            mIStream = null;
-            mSerialPort = null;        
+            System.out.println(mTransport.getName() + " disconnected.");
         } else {
-            System.out.println("No need to close serial port: Not connected.");
+            System.out.println("No need to close " + mTransport.getName() + ": Not connected.");
         }
     }
     
     /**
-     * Checks whether a connection on the serial port exists.
-     * @return true if the serial port is connected; false otherwise
+     * Checks whether a connection to the device exists.
+     * @return true if the transport is open; false otherwise
      */
     public boolean isConnected() {
-        if (mSerialPort != null)
-            return true;
-        return false;
+        return mTransport.isOpen();
+    }
+    
+    /**
+     * Reads the bytes currently available on the transport without waiting for more and notifies the listeners.
+     * Used by a TransportSelector for a non-blocking selectable channel; must not be called while a reading thread is running.
+     * @return the number of bytes read; -1 if the end of the stream was reached
+     * @throws IOException if reading failed
+     */
+    int readAvailable() throws IOException {
+    	return read();
+    }
+    
+    /**
+     * Helper method to read once from the transport and notify the listeners.
+     * A stream is read straight into the array handed to the listeners; a channel is read into the reusable direct buffer first.
+     * @return the number of bytes read; -1 if the end of the stream was reached
+     * @throws IOException if reading failed
+     */
+    private int read() throws IOException {
+    	InputStream stream = mTransport.getInputStream();
+    	if (stream != null) {
+    		int len = stream.read(mData, 0, mBufferSize);
+    		if (len > 0) {
+    			fireReceiveData(mData, len, System.nanoTime());
+    		}
+    		return len;
+    	}
+    	mBuffer.clear();
+    	int len = mTransport.getChannel().read(mBuffer);
+    	if (len > 0) {
+    		mBuffer.flip();
+    		mBuffer.get(mData, 0, len);
+    		fireReceiveData(mData, len, System.nanoTime());
+    	}
+    	return len;
     }
     
     /**
@@ -289,19 +301,21 @@ public class SerialReader {
     	@Override
     	public void run() {
     		mRunReadingThread = true;
-    		byte[] buffer = new byte[mBufferSize];
-            int len = -1;
             try {
-                while (isConnected() && mRunReadingThread && (len = mIStream.read(buffer)) > -1) {
-                    if (len > 0) {
-                    	fireReceiveData(buffer, len);
-                    }
+                while (isConnected() && mRunReadingThread) {
+                	if (read() < 0) {
+                		break;
+                	}
                 }
                 System.out.println("Reading thread exit.");
             }
+            catch (AsynchronousCloseException e)
+            {
+                System.out.println("Reading thread exit.");
+            }
             catch (IOException e)
             {
-                System.err.println(e.getStackTrace());
+                System.err.println("Exception while reading from " + mTransport.getName() + ": " + e.getMessage());
             }
             mRunReadingThread = false;
     	}
@@ -317,5 +331,15 @@ public class SerialReader {
 		 * @param _length the length of the received data bytes
 		 */
 		public void onReceivedData(byte[] _buffer, int _length);
+		
+		/**
+		 * Method that is called when new data arrived, with the time it was read.
+		 * @param _buffer the buffer containing the new data from index 0 to _length - 1
+		 * @param _length the length of the received data bytes
+		 * @param _readTimestamp the time the data was read in nanoseconds (System.nanoTime())
+		 */
+		public default void onReceivedData(byte[] _buffer, int _length, long _readTimestamp) {
+			onReceivedData(_buffer, _length);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketAddress;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A class reading from a TCP socket, e. g. a serial-to-network bridge or a load generator.
+ * The socket can be read by an own thread or, together with other sockets, by a TransportSelector.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SocketTransport implements ByteTransport {
+	
+	/**
+	 * The address to connect to.
+	 */
+	private SocketAddress mAddress = null;
+	
+	/**
+	 * The channel of the connected socket; null if not connected.
+	 */
+	private SocketChannel mChannel = null;
+	
+	/**
+	 * Constructor.
+	 * @param _address the address to connect to
+	 */
+	public SocketTransport(SocketAddress _address) {
+		if (_address == null) {
+			throw new IllegalArgumentException("Constructor parameter _address must not be null in class " + this.getClass().getName() + "!");
+		}
+		mAddress = _address;
+	}
+	
+	/**
+	 * Connects the socket.
+	 * @throws IOException if the socket cannot be connected
+	 */
+	@Override
+	public void open() throws IOException {
+		mChannel = SocketChannel.open(mAddress);
+	}
+	
+	/**
+	 * Checks whether the socket is connected.
+	 * @return true if the socket is connected; false otherwise
+	 */
+	@Override
+	public boolean isOpen() {
+		return mChannel != null;
+	}
+	
+	/**
+	 * Gets the channel of the socket.
+	 * @return the channel
+	 */
+	@Override
+	public ReadableByteChannel getChannel() {
+		return mChannel;
+	}
+	
+	/**
+	 * Gets the stream to read from; the socket is read through its channel.
+	 * @return null
+	 */
+	@Override
+	public InputStream getInputStream() {
+		return null;
+	}
+	
+	/**
+	 * Gets the channel of the socket as selectable channel.
+	 * @return the channel
+	 */
+	@Override
+	public SelectableChannel getSelectableChannel() {
+		return mChannel;
+	}
+	
+	/**
+	 * Closes the socket.
+	 * @throws IOException if the socket cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (mChannel != null) {
+			try {
+				mChannel.close();
+			} finally {
+				mChannel = null;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the address of the socket.
+	 * @return the address
+	 */
+	@Override
+	public String getName() {
+		return mAddress.toString();
+	}
+}
\ No newline at end of file
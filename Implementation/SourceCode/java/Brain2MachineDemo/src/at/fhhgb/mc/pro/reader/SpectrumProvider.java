@@ -0,0 +1,219 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import at.fhhgb.mc.pro.dsp.FFTPlan;
+
+/**
+ * A class representing a shared spectrum engine attached to a sample stream (an OpenEEGReader or one of its decimated streams).
+ * Each spectrum for a combination of signal, channel and window length is computed at most once per sample and handed to every gesture asking for it.
+ * The hop size of a gesture only decides when a gesture asks for a spectrum and does not change the spectrum itself, so gestures with different hops still share whenever their windows coincide.
+ * Gestures in block mode evaluate a whole block one after another, so the spectra of all samples of the pending block of the stream stay cached until the block has been evaluated.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SpectrumProvider {
+
+	/**
+	 * The stream that provides the EEG data.
+	 */
+	private SampleStream mStream = null;
+
+	/**
+	 * The cached spectra.
+	 */
+	private List<Spectrum> mSpectra = null;
+
+	/**
+	 * The block of samples of the stream that is pending for the gestures in block mode; null if the stream has no block.
+	 */
+	private SampleBlock mPendingBlock = null;
+
+	/**
+	 * Number of spectra computed so far.
+	 */
+	private long mTransformCount = 0;
+
+	/**
+	 * Number of requests answered from the cache so far.
+	 */
+	private long mCacheHitCount = 0;
+
+	/**
+	 * Constructor.
+	 * @param _stream the stream that provides the EEG data
+	 */
+	public SpectrumProvider(SampleStream _stream) {
+		if (_stream == null) {
+			throw new IllegalArgumentException("Constructor parameter _stream must not be null in class " + this.getClass().getName() + "!");
+		}
+		mStream = _stream;
+		mSpectra = new ArrayList<>();
+	}
+
+	/**
+	 * Gets the magnitudes of the spectrum of a channel for the window of the given length ending right before the current sample.
+	 * The returned array is shared between all callers and must not be modified.
+	 * @param _channel the channel
+	 * @param _length the length of the window in samples
+	 * @return the magnitudes of the bins 0 to _length / 2
+	 */
+	public double[] getMagnitudes(int _channel, int _length) {
+		return getMagnitudes(SampleSignal.NORMALIZED, _channel, _length);
+	}
+
+	/**
+	 * Gets the magnitudes of the spectrum of a signal of a channel for the window of the given length ending right before the current sample.
+	 * The returned array is shared between all callers and must not be modified.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _length the length of the window in samples
+	 * @return the magnitudes of the bins 0 to _length / 2
+	 */
+	public double[] getMagnitudes(SampleSignal _signal, int _channel, int _length) {
+		return getMagnitudes(_signal, _channel, _length, mStream.getChannelDataSampleCount(), mStream.getChannelDataPointer());
+	}
+
+	/**
+	 * Gets the magnitudes of the spectrum of a signal of a channel for the window of the given length ending right before a sample of the stream, e. g. a sample of a block (see SampleBlock).
+	 * The returned array is shared between all callers and must not be modified.
+	 * @param _signal the signal
+	 * @param _channel the channel
+	 * @param _length the length of the window in samples
+	 * @param _sampleCount the sample count of the stream when the sample was received
+	 * @param _index the index of the sample inside the buffer of the stream
+	 * @return the magnitudes of the bins 0 to _length / 2
+	 */
+	public double[] getMagnitudes(SampleSignal _signal, int _channel, int _length, long _sampleCount, int _index) {
+		//Spectra of samples before the pending block are not asked for anymore and can be reused
+		long oldestSample = mPendingBlock != null && mPendingBlock.getLength() > 0 ? mPendingBlock.getFirstSample() : mStream.getChannelDataSampleCount();
+		Spectrum spectrum = null;
+		for (int i=0; i<mSpectra.size(); i++) {
+			Spectrum s = mSpectra.get(i);
+			if (s.mSignal == _signal && s.mChannel == _channel && s.mLength == _length) {
+				if (s.mSampleCount == _sampleCount) {
+					mCacheHitCount++;
+					return s.mMagnitudes;
+				}
+				if (s.mSampleCount < oldestSample && (spectrum == null || s.mSampleCount < spectrum.mSampleCount)) {
+					spectrum = s;
+				}
+			}
+		}
+		if (spectrum == null) {
+			spectrum = new Spectrum(_signal, _channel, _length);
+			mSpectra.add(spectrum);
+		}
+
+		transform(spectrum, _index);
+		spectrum.mSampleCount = _sampleCount;
+		mTransformCount++;
+		return spectrum.mMagnitudes;
+	}
+
+	/**
+	 * Gets the number of spectra computed so far.
+	 * @return the number of spectra computed so far
+	 */
+	public long getTransformCount() {
+		return mTransformCount;
+	}
+
+	/**
+	 * Gets the number of requests answered from the cache so far.
+	 * @return the number of requests answered from the cache so far
+	 */
+	public long getCacheHitCount() {
+		return mCacheHitCount;
+	}
+
+	/**
+	 * Removes all cached spectra.
+	 */
+	public void clear() {
+		mSpectra.clear();
+	}
+
+	/**
+	 * Sets the block of samples of the stream that is pending for the gestures in block mode; the spectra of its samples stay cached until it has been evaluated.
+	 * @param _block the pending block; null if the stream has no block
+	 */
+	void setPendingBlock(SampleBlock _block) {
+		mPendingBlock = _block;
+	}
+
+	/**
+	 * Helper method to compute the spectrum for the window ending right before a sample.
+	 * @param _spectrum the spectrum to update
+	 * @param _index the index of the sample following the window inside the buffer of the stream
+	 */
+	private void transform(Spectrum _spectrum, int _index) {
+		mStream.copyValues(_spectrum.mSignal, _spectrum.mChannel, _index-_spectrum.mLength, _spectrum.mLength, _spectrum.mRe, 0);
+		Arrays.fill(_spectrum.mIm, 0);
+
+		_spectrum.mPlan.transform(_spectrum.mRe, _spectrum.mIm);
+		FFTPlan.magnitudes(_spectrum.mRe, _spectrum.mIm, _spectrum.mMagnitudes, _spectrum.mMagnitudes.length);
+	}
+
+	/**
+	 * Helper class holding a cached spectrum.
+	 */
+	private static class Spectrum {
+
+		/**
+		 * The signal of the spectrum.
+		 */
+		private SampleSignal mSignal = null;
+
+		/**
+		 * The channel of the spectrum.
+		 */
+		private int mChannel = 0;
+
+		/**
+		 * The length of the window in samples.
+		 */
+		private int mLength = 0;
+
+		/**
+		 * The sample count the spectrum was computed for; -1 if not computed yet.
+		 */
+		private long mSampleCount = -1;
+
+		/**
+		 * The precomputed FFT plan for the window length.
+		 */
+		private FFTPlan mPlan = null;
+
+		/**
+		 * Buffer for the real parts of the window.
+		 */
+		private double[] mRe = null;
+
+		/**
+		 * Buffer for the imaginary parts of the window.
+		 */
+		private double[] mIm = null;
+
+		/**
+		 * The magnitudes of the bins 0 to length / 2.
+		 */
+		private double[] mMagnitudes = null;
+
+		/**
+		 * Constructor.
+		 * @param _signal the signal of the spectrum
+		 * @param _channel the channel of the spectrum
+		 * @param _length the length of the window in samples
+		 */
+		private Spectrum(SampleSignal _signal, int _channel, int _length) {
+			mSignal = _signal;
+			mChannel = _channel;
+			mLength = _length;
+			mPlan = FFTPlan.forLength(_length);
+			mRe = new double[_length];
+			mIm = new double[_length];
+			mMagnitudes = new double[_length / 2 + 1];
+		}
+	}
+}
\ No newline at end of file
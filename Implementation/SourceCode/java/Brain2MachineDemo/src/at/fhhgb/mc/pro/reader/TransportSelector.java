@@ -0,0 +1,188 @@
+package at.fhhgb.mc.pro.reader;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A class reading many SerialReaders with selectable transports (e. g. sockets) on a single thread instead of a reading thread per reader.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class TransportSelector {
+	
+	/**
+	 * The selector waiting for readable channels.
+	 */
+	private Selector mSelector = null;
+	
+	/**
+	 * Readers to register or unregister on the selecting thread, as registering blocks while the selector is selecting.
+	 */
+	private ConcurrentLinkedQueue<Change> mChanges = null;
+	
+	/**
+	 * The selecting thread.
+	 */
+	private Thread mThread = null;
+	
+	/**
+	 * Indicates whether the selecting thread is running.
+	 */
+	private volatile boolean mRunning = false;
+	
+	/**
+	 * Constructor; starts the selecting thread.
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public TransportSelector() throws IOException {
+		mSelector = Selector.open();
+		mChanges = new ConcurrentLinkedQueue<>();
+		mRunning = true;
+		mThread = new Thread(new Selecting(), "TransportSelector");
+		mThread.setDaemon(true);
+		mThread.start();
+	}
+	
+	/**
+	 * Registers a connected reader whose transport provides a selectable channel; the reader must not run its own reading thread.
+	 * @param _reader the reader to register
+	 */
+	public void register(SerialReader _reader) {
+		SelectableChannel channel = _reader.getTransport().getSelectableChannel();
+		if (channel == null) {
+			throw new IllegalArgumentException("Parameter _reader must have a selectable transport in class " + this.getClass().getName() + "!");
+		}
+		mChanges.add(new Change(_reader, true));
+		mSelector.wakeup();
+	}
+	
+	/**
+	 * Unregisters a reader; the reader is not read anymore once the selecting thread processed the change.
+	 * @param _reader the reader to unregister
+	 */
+	public void unregister(SerialReader _reader) {
+		mChanges.add(new Change(_reader, false));
+		mSelector.wakeup();
+	}
+	
+	/**
+	 * Gets the number of registered readers.
+	 * @return the number of readers
+	 */
+	public int getReaderCount() {
+		try {
+			return mSelector.keys().size();
+		} catch (ClosedSelectorException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Stops the selecting thread and closes the selector; the transports of the readers stay open.
+	 */
+	public void close() {
+		mRunning = false;
+		mSelector.wakeup();
+		try {
+			mThread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Helper method to apply pending registrations on the selecting thread.
+	 */
+	private void applyChanges() {
+		Change change;
+		while ((change = mChanges.poll()) != null) {
+			SelectableChannel channel = change.mReader.getTransport().getSelectableChannel();
+			if (channel == null) {
+				continue;
+			}
+			SelectionKey key = channel.keyFor(mSelector);
+			if (!change.mRegister) {
+				if (key != null) {
+					key.cancel();
+				}
+				continue;
+			}
+			try {
+				channel.configureBlocking(false);
+				channel.register(mSelector, SelectionKey.OP_READ, change.mReader);
+			} catch (IOException e) {
+				System.err.println("Exception while registering " + change.mReader.getTransport().getName() + ": " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Helper class holding a pending registration or unregistration.
+	 */
+	private static class Change {
+		/**
+		 * The reader.
+		 */
+		private SerialReader mReader = null;
+		
+		/**
+		 * True to register the reader; false to unregister it.
+		 */
+		private boolean mRegister = false;
+		
+		/**
+		 * Constructor.
+		 * @param _reader the reader
+		 * @param _register true to register the reader; false to unregister it
+		 */
+		private Change(SerialReader _reader, boolean _register) {
+			mReader = _reader;
+			mRegister = _register;
+		}
+	}
+	
+	/**
+	 * Helper class that is providing the functionality of selecting and reading the channels.
+	 */
+	private class Selecting implements Runnable {
+		/**
+		 * Executed in a separate thread this method waits for readable channels and lets their readers read the available data.
+		 */
+		@Override
+		public void run() {
+			try {
+				while (mRunning) {
+					applyChanges();
+					mSelector.select();
+					Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						SerialReader reader = (SerialReader) key.attachment();
+						try {
+							if (!key.isValid() || reader.readAvailable() < 0) {
+								key.cancel();
+								System.out.println("End of stream on " + reader.getTransport().getName() + ".");
+							}
+						} catch (IOException e) {
+							key.cancel();
+							System.err.println("Exception while reading from " + reader.getTransport().getName() + ": " + e.getMessage());
+						}
+					}
+				}
+			} catch (IOException e) {
+				System.err.println("Exception while selecting: " + e.getMessage());
+			} finally {
+				try {
+					mSelector.close();
+				} catch (IOException e) {
+					System.err.println("Exception when closing selector " + e + ".");
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
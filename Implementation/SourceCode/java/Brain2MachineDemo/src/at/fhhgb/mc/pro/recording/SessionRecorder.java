@@ -0,0 +1,678 @@
+package at.fhhgb.mc.pro.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import at.fhhgb.mc.pro.gesture.FreqGesture;
+import at.fhhgb.mc.pro.gesture.FreqGestureEvent;
+import at.fhhgb.mc.pro.gesture.FreqGestureEventListener;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureDirection;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.reader.SampleRingBuffer;
+
+/**
+ * A class representing a recorder that writes a session of an OpenEEGReader to a compact binary file.
+ * Every decoded sample is appended with its packet counter and raw channel values; gesture events are appended as separate records.
+ * The reading thread only hands the samples over through a lock-free ring buffer; a writer thread appends them to the file, so recording never makes the reading thread wait for a lock.
+ * Only if the writer thread falls a whole ring buffer behind (e. g. replaying as fast as possible) the reading thread waits for it, so no sample is lost.
+ * The file is written through memory mapped regions, so writing a sample is a plain memory copy; the next region is mapped and touched by a background thread before it is needed.
+ * When the recorder is closed, the files are truncated to the written length.
+ * A second file (same name with the extension ".idx") holds the offset of the first sample of every second, so recordings can be opened at any second in constant time (see SessionRecording).
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SessionRecorder implements OpenEEGReader.SampleEventListener {
+
+	/**
+	 * The magic number at the beginning of every recording.
+	 */
+	public static final long MAGIC = 0x42324D5345535331L;
+
+	/**
+	 * The version of the file format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The size of the file header in bytes; the records start right behind it.
+	 */
+	public static final int HEADER_SIZE = 64;
+
+	/**
+	 * Header position of the version.
+	 */
+	static final int HEADER_VERSION = 8;
+
+	/**
+	 * Header position of the number of channels.
+	 */
+	static final int HEADER_CHANNELS = 12;
+
+	/**
+	 * Header position of the sample rate.
+	 */
+	static final int HEADER_SAMPLE_RATE = 16;
+
+	/**
+	 * Header position of the start time in milliseconds since the epoch.
+	 */
+	static final int HEADER_START_TIME = 24;
+
+	/**
+	 * Header position of the end of the last complete record.
+	 */
+	static final int HEADER_DATA_END = 32;
+
+	/**
+	 * Header position of the number of recorded samples.
+	 */
+	static final int HEADER_SAMPLE_COUNT = 40;
+
+	/**
+	 * Header position of the number of recorded gesture events.
+	 */
+	static final int HEADER_EVENT_COUNT = 48;
+
+	/**
+	 * Record type of a sample: type (1 byte), packet counter (1 byte), raw value of every channel (2 bytes each).
+	 */
+	public static final byte RECORD_SAMPLE = 1;
+
+	/**
+	 * Record type of a gesture event: type (1 byte), event code (1 byte), gesture id (4 bytes), sample count of the reader (8 bytes).
+	 */
+	public static final byte RECORD_EVENT = 2;
+
+	/**
+	 * Event code of a frequency gesture that started.
+	 */
+	public static final int EVENT_FREQ_START = 1;
+
+	/**
+	 * Event code of a frequency gesture that completed.
+	 */
+	public static final int EVENT_FREQ_COMPLETE = 2;
+
+	/**
+	 * Event code of a look gesture to the left.
+	 */
+	public static final int EVENT_LOOK_LEFT = 3;
+
+	/**
+	 * Event code of a look gesture to the right.
+	 */
+	public static final int EVENT_LOOK_RIGHT = 4;
+
+	/**
+	 * The extension of the index file.
+	 */
+	public static final String INDEX_EXTENSION = ".idx";
+
+	/**
+	 * The size of a mapped region of the data file in bytes.
+	 */
+	private static final int REGION_SIZE = 8 << 20;
+
+	/**
+	 * Number of bytes consecutive regions overlap, so a record never has to be split; larger than any record.
+	 */
+	private static final int REGION_OVERLAP = 64;
+
+	/**
+	 * Number of seconds the index file is mapped for at once.
+	 */
+	private static final int INDEX_REGION_SECONDS = 24 * 3600;
+
+	/**
+	 * Size of a memory page; the background thread touches every page of a new region once.
+	 */
+	private static final int PAGE_SIZE = 4096;
+
+	/**
+	 * Number of seconds of samples the ring buffer between the reading and the writer thread holds before the reading thread has to wait.
+	 */
+	private static final int RING_SECONDS = 16;
+
+	/**
+	 * Maximum number of samples the writer thread takes from the ring buffer at once.
+	 */
+	private static final int WRITE_BATCH_SAMPLES = 256;
+
+	/**
+	 * Maximum time the idle writer thread waits for new samples in milliseconds.
+	 */
+	private static final int WRITER_IDLE_WAIT_MS = 10;
+
+	/**
+	 * The reader being recorded.
+	 */
+	private OpenEEGReader mReader = null;
+
+	/**
+	 * The file being recorded to.
+	 */
+	private File mFile = null;
+
+	/**
+	 * The channel of the data file.
+	 */
+	private FileChannel mDataChannel = null;
+
+	/**
+	 * The channel of the index file.
+	 */
+	private FileChannel mIndexChannel = null;
+
+	/**
+	 * The mapped header of the data file.
+	 */
+	private MappedByteBuffer mHeader = null;
+
+	/**
+	 * The mapped region records are currently written to.
+	 */
+	private MappedByteBuffer mRegion = null;
+
+	/**
+	 * The file position of the first byte of the current region.
+	 */
+	private long mRegionStart = 0;
+
+	/**
+	 * The next region being prepared by the background thread; null if not requested yet.
+	 */
+	private Future<MappedByteBuffer> mNextRegion = null;
+
+	/**
+	 * The mapped index file.
+	 */
+	private MappedByteBuffer mIndex = null;
+
+	/**
+	 * The number of seconds the index file is currently mapped for.
+	 */
+	private int mIndexSeconds = 0;
+
+	/**
+	 * Thread preparing the next mapped region.
+	 */
+	private ExecutorService mMapper = null;
+
+	/**
+	 * The number of channels of every sample.
+	 */
+	private int mChannels = 0;
+
+	/**
+	 * The sample rate of the reader.
+	 */
+	private int mSampleRate = 0;
+
+	/**
+	 * The samples handed over from the reading thread to the writer thread; the packet counter is stored as timestamp.
+	 */
+	private SampleRingBuffer mSamples = null;
+
+	/**
+	 * The gesture events handed over to the writer thread.
+	 */
+	private ConcurrentLinkedQueue<EventRecord> mEvents = null;
+
+	/**
+	 * The raw values of a sample padded to the number of channels of the recording; only used by the reading thread.
+	 */
+	private int[] mPaddedValues = null;
+
+	/**
+	 * Thread writing the samples and events to the file.
+	 */
+	private Thread mWriterThread = null;
+
+	/**
+	 * Indicator whether the writer thread should keep running.
+	 */
+	private volatile boolean mRunWriterThread = false;
+
+	/**
+	 * Indicator whether the writer thread is about to wait for new samples and has to be woken up.
+	 */
+	private volatile boolean mWriterThreadWaiting = false;
+
+	/**
+	 * The number of recorded samples; only written by the writer thread.
+	 */
+	private volatile long mSampleCount = 0;
+
+	/**
+	 * The number of recorded gesture events; only written by the writer thread.
+	 */
+	private volatile long mEventCount = 0;
+
+	/**
+	 * Indicator whether the recorder has been closed.
+	 */
+	private volatile boolean mClosed = false;
+
+	/**
+	 * Constructor; creates the files and starts recording all samples decoded by the reader.
+	 * @param _file the file to record to; existing files are overwritten
+	 * @param _reader the reader to record
+	 * @throws IOException if the files cannot be created
+	 */
+	public SessionRecorder(File _file, OpenEEGReader _reader) throws IOException {
+		if (_file == null || _reader == null) {
+			throw new IllegalArgumentException("Constructor parameters _file and _reader must not be null in class " + this.getClass().getName() + "!");
+		}
+		mFile = _file;
+		mReader = _reader;
+		mChannels = _reader.getChannels();
+		mSampleRate = _reader.getSampleRate();
+
+		File indexFile = new File(_file.getPath() + INDEX_EXTENSION);
+		RandomAccessFile data = new RandomAccessFile(_file, "rw");
+		RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+		data.setLength(0);
+		index.setLength(0);
+		mDataChannel = data.getChannel();
+		mIndexChannel = index.getChannel();
+
+		mHeader = map(mDataChannel, 0, HEADER_SIZE);
+		mHeader.putLong(0, MAGIC);
+		mHeader.putInt(HEADER_VERSION, VERSION);
+		mHeader.putInt(HEADER_CHANNELS, mChannels);
+		mHeader.putInt(HEADER_SAMPLE_RATE, mSampleRate);
+		mHeader.putLong(HEADER_START_TIME, System.currentTimeMillis());
+		mHeader.putLong(HEADER_DATA_END, HEADER_SIZE);
+
+		mRegionStart = HEADER_SIZE;
+		mRegion = map(mDataChannel, mRegionStart, REGION_SIZE);
+		mIndexSeconds = INDEX_REGION_SECONDS;
+		mIndex = map(mIndexChannel, 0, (long)mIndexSeconds * 8);
+
+		mMapper = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable _runnable) {
+				Thread thread = new Thread(_runnable, "SessionRecorder mapper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		mSamples = new SampleRingBuffer(RING_SECONDS * mSampleRate, mChannels);
+		mEvents = new ConcurrentLinkedQueue<>();
+		mPaddedValues = new int[mChannels];
+		mRunWriterThread = true;
+		mWriterThread = new Thread(new Writer(), "SessionRecorder writer");
+		mWriterThread.setDaemon(true);
+		mWriterThread.start();
+
+		_reader.addSampleEventListener(this);
+	}
+
+	/**
+	 * Gets the file being recorded to.
+	 * @return the file being recorded to
+	 */
+	public File getFile() {
+		return mFile;
+	}
+
+	/**
+	 * Gets the number of samples written to the file.
+	 * @return the number of recorded samples
+	 */
+	public long getSampleCount() {
+		return mSampleCount;
+	}
+
+	/**
+	 * Gets the number of gesture events written to the file.
+	 * @return the number of recorded gesture events
+	 */
+	public long getEventCount() {
+		return mEventCount;
+	}
+
+
+	/**
+	 * Records the events of a frequency gesture.
+	 * @param _gesture the frequency gesture
+	 * @param _gestureId the id stored with the events to tell gestures apart
+	 */
+	public void recordGesture(FreqGesture _gesture, final int _gestureId) {
+		_gesture.addGestureEventListener(new FreqGestureEventListener() {
+			@Override
+			public void onFreqGestureEventStart(FreqGestureEvent _evt) {
+				recordEvent(_gestureId, EVENT_FREQ_START, _evt.getSampleCount());
+			}
+
+			@Override
+			public void onFreqGestureEventComplete(FreqGestureEvent _evt) {
+				recordEvent(_gestureId, EVENT_FREQ_COMPLETE, _evt.getSampleCount());
+			}
+		});
+	}
+
+	/**
+	 * Records the events of a look gesture.
+	 * @param _gesture the look gesture
+	 * @param _gestureId the id stored with the events to tell gestures apart
+	 */
+	public void recordGesture(LookGesture _gesture, final int _gestureId) {
+		_gesture.addGestureEventListener(new LookGestureEventListener() {
+			@Override
+			public void onLook(LookGestureEvent _evt) {
+				recordEvent(_gestureId, _evt.getDirection() == LookGestureDirection.LEFT ? EVENT_LOOK_LEFT : EVENT_LOOK_RIGHT, _evt.getSampleCount());
+			}
+		});
+	}
+
+	/**
+	 * Hands a decoded sample over to the writer thread; called by the reader. Waits if the ring buffer is full.
+	 * @param _packetCounter the packet counter of the packet containing the sample
+	 * @param _rawValues the raw values of the channels
+	 * @param _channels the number of channels
+	 */
+	@Override
+	public void onSampleDecoded(int _packetCounter, int[] _rawValues, int _channels) {
+		if (mClosed) {
+			return;
+		}
+		int[] values = _rawValues;
+		if (_channels < mChannels) {
+			for (int ch=0; ch<mChannels; ch++) {
+				mPaddedValues[ch] = ch < _channels ? _rawValues[ch] : 0;
+			}
+			values = mPaddedValues;
+		}
+		while (!mSamples.offer(values, 0, _packetCounter)) {
+			if (mClosed) {
+				return;
+			}
+			LockSupport.unpark(mWriterThread);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		if (mWriterThreadWaiting) {
+			LockSupport.unpark(mWriterThread);
+		}
+	}
+
+	/**
+	 * Appends a gesture event referring to the current sample count of the reader.
+	 * @param _gestureId the id of the gesture
+	 * @param _eventCode the code of the event
+	 */
+	public void recordEvent(int _gestureId, int _eventCode) {
+		recordEvent(_gestureId, _eventCode, -1);
+	}
+
+	/**
+	 * Appends a gesture event referring to a sample count of the reader.
+	 * @param _gestureId the id of the gesture
+	 * @param _eventCode the code of the event
+	 * @param _sampleCount the sample count of the reader when the event was detected (see GestureEvent.getSampleCount()); negative for the current sample count of the reader
+	 */
+	public void recordEvent(int _gestureId, int _eventCode, long _sampleCount) {
+		if (mClosed) {
+			return;
+		}
+		mEvents.offer(new EventRecord(_gestureId, _eventCode, _sampleCount >= 0 ? _sampleCount : mReader.getChannelDataSampleCount()));
+		if (mWriterThreadWaiting) {
+			LockSupport.unpark(mWriterThread);
+		}
+	}
+
+	/**
+	 * Stops recording, writes the remaining samples and events and all changes to the disk, truncates the files to the written length and closes them.
+	 * @throws IOException if the files cannot be written
+	 */
+	public synchronized void close() throws IOException {
+		if (mClosed) {
+			return;
+		}
+		mClosed = true;
+		mReader.removeSampleEventListener(this);
+		mRunWriterThread = false;
+		LockSupport.unpark(mWriterThread);
+		try {
+			mWriterThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mMapper.shutdownNow();
+
+		long dataEnd = mRegionStart + mRegion.position();
+		long indexEnd = (mSampleCount + mSampleRate - 1) / mSampleRate * 8;
+		mRegion.force();
+		mIndex.force();
+		mHeader.force();
+		try {
+			mDataChannel.truncate(dataEnd);
+			mIndexChannel.truncate(indexEnd);
+		} catch (IOException e) {
+			//Systems that do not allow truncating mapped files keep the tail; readers only use the data up to the end stored in the header
+			System.err.println("Could not truncate " + mFile + " to the written length: " + e);
+		}
+		mDataChannel.close();
+		mIndexChannel.close();
+	}
+
+	/**
+	 * Helper method to write the samples and events handed over so far; only called by the writer thread (or after it has terminated).
+	 * The events are taken before the samples, so every sample an event refers to has been decoded and is written first.
+	 * @param _batch the array the values of the samples are copied to
+	 * @param _packetCounters the array the packet counters of the samples are copied to
+	 * @param _events the list the events are collected in
+	 * @return the number of written samples and events
+	 */
+	private int write(int[] _batch, long[] _packetCounters, List<EventRecord> _events) {
+		EventRecord event;
+		while ((event = mEvents.poll()) != null) {
+			_events.add(event);
+		}
+		int written = 0;
+		int count;
+		while ((count = mSamples.drainTo(_batch, _packetCounters, WRITE_BATCH_SAMPLES)) > 0) {
+			for (int i=0; i<count; i++) {
+				writeSample((int)_packetCounters[i], _batch, i * mChannels);
+			}
+			written += count;
+			mHeader.putLong(HEADER_SAMPLE_COUNT, mSampleCount);
+			mHeader.putLong(HEADER_DATA_END, mRegionStart + mRegion.position());
+		}
+		for (int i=0; i<_events.size(); i++) {
+			writeEvent(_events.get(i));
+		}
+		if (!_events.isEmpty()) {
+			written += _events.size();
+			_events.clear();
+			mHeader.putLong(HEADER_EVENT_COUNT, mEventCount);
+			mHeader.putLong(HEADER_DATA_END, mRegionStart + mRegion.position());
+		}
+		return written;
+	}
+
+	/**
+	 * Helper method to append a sample record.
+	 * @param _packetCounter the packet counter of the packet containing the sample
+	 * @param _values the array holding the raw values of the sample
+	 * @param _offset the index of the value of the first channel inside _values
+	 */
+	private void writeSample(int _packetCounter, int[] _values, int _offset) {
+		prepareRecord();
+
+		if (mSampleCount % mSampleRate == 0) {
+			writeIndex(mSampleCount / mSampleRate, mRegionStart + mRegion.position());
+		}
+
+		mRegion.put(RECORD_SAMPLE);
+		mRegion.put((byte)_packetCounter);
+		for (int ch=0; ch<mChannels; ch++) {
+			mRegion.putShort((short)_values[_offset + ch]);
+		}
+		mSampleCount++;
+	}
+
+	/**
+	 * Helper method to append an event record.
+	 * @param _event the event
+	 */
+	private void writeEvent(EventRecord _event) {
+		prepareRecord();
+
+		mRegion.put(RECORD_EVENT);
+		mRegion.put((byte)_event.mEventCode);
+		mRegion.putInt(_event.mGestureId);
+		mRegion.putLong(_event.mSampleCount);
+		mEventCount++;
+	}
+
+	/**
+	 * Helper method to make sure the current region has space for the next record.
+	 * Switches to the next region once the overlap is reached and requests the region after it from the background thread.
+	 */
+	private void prepareRecord() {
+		int position = mRegion.position();
+
+		if (mNextRegion == null && position >= REGION_SIZE / 2) {
+			final long start = mRegionStart + REGION_SIZE - REGION_OVERLAP;
+			mNextRegion = mMapper.submit(new Callable<MappedByteBuffer>() {
+				@Override
+				public MappedByteBuffer call() throws IOException {
+					MappedByteBuffer region = map(mDataChannel, start, REGION_SIZE);
+					//The overlap still belongs to the current region and may already hold records
+					for (int i=REGION_OVERLAP; i<REGION_SIZE; i+=PAGE_SIZE) {
+						region.put(i, (byte)0);
+					}
+					return region;
+				}
+			});
+		}
+
+		if (position > REGION_SIZE - REGION_OVERLAP) {
+			long start = mRegionStart + REGION_SIZE - REGION_OVERLAP;
+			MappedByteBuffer next = null;
+			try {
+				next = mNextRegion != null ? mNextRegion.get() : map(mDataChannel, start, REGION_SIZE);
+			} catch (InterruptedException | ExecutionException | IOException e) {
+				System.err.println("Could not prepare next region of " + mFile + " in background: " + e);
+				try {
+					next = map(mDataChannel, start, REGION_SIZE);
+				} catch (IOException ex) {
+					throw new IllegalStateException("Could not map next region of " + mFile + "!", ex);
+				}
+			}
+			next.position((int)(mRegionStart + position - start));
+			mRegion = next;
+			mRegionStart = start;
+			mNextRegion = null;
+		}
+	}
+
+	/**
+	 * Helper method to store the file offset of the first sample of a second.
+	 * @param _second the second
+	 * @param _offset the file offset of the first sample record of the second
+	 */
+	private void writeIndex(long _second, long _offset) {
+		if (_second >= mIndexSeconds) {
+			try {
+				mIndex.force();
+				mIndexSeconds += INDEX_REGION_SECONDS;
+				mIndex = map(mIndexChannel, 0, (long)mIndexSeconds * 8);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not grow index of " + mFile + "!", e);
+			}
+		}
+		mIndex.putLong((int)(_second * 8), _offset);
+	}
+
+	/**
+	 * Helper method to map a region of a file for writing in little endian byte order.
+	 * @param _channel the channel of the file
+	 * @param _position the file position of the region
+	 * @param _size the size of the region
+	 * @return the mapped region
+	 * @throws IOException if the region cannot be mapped
+	 */
+	private static MappedByteBuffer map(FileChannel _channel, long _position, long _size) throws IOException {
+		MappedByteBuffer buffer = _channel.map(FileChannel.MapMode.READ_WRITE, _position, _size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * Helper class that writes the samples and events handed over to the recorder.
+	 */
+	private class Writer implements Runnable {
+		/**
+		 * Executed in a separate thread this method writes the handed over samples and events in batches until the recorder is closed.
+		 */
+		@Override
+		public void run() {
+			int[] batch = new int[WRITE_BATCH_SAMPLES * mChannels];
+			long[] packetCounters = new long[WRITE_BATCH_SAMPLES];
+			List<EventRecord> events = new ArrayList<>();
+			while (mRunWriterThread) {
+				if (write(batch, packetCounters, events) == 0) {
+					mWriterThreadWaiting = true;
+					if (mSamples.isEmpty() && mEvents.isEmpty() && mRunWriterThread) {
+						LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(WRITER_IDLE_WAIT_MS));
+					}
+					mWriterThreadWaiting = false;
+				}
+			}
+			//Write what has been handed over until the recorder was closed
+			write(batch, packetCounters, events);
+		}
+	}
+
+	/**
+	 * Helper class holding a gesture event until the writer thread writes it.
+	 */
+	private static class EventRecord {
+		/**
+		 * The id of the gesture.
+		 */
+		private int mGestureId = 0;
+
+		/**
+		 * The code of the event.
+		 */
+		private int mEventCode = 0;
+
+		/**
+		 * The sample count of the reader the event refers to.
+		 */
+		private long mSampleCount = 0;
+
+		/**
+		 * Constructor.
+		 * @param _gestureId the id of the gesture
+		 * @param _eventCode the code of the event
+		 * @param _sampleCount the sample count of the reader the event refers to
+		 */
+		private EventRecord(int _gestureId, int _eventCode, long _sampleCount) {
+			mGestureId = _gestureId;
+			mEventCode = _eventCode;
+			mSampleCount = _sampleCount;
+		}
+	}
+}
\ No newline at end of file
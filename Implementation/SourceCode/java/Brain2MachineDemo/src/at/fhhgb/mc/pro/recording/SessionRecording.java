@@ -0,0 +1,311 @@
+package at.fhhgb.mc.pro.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A class representing a session recorded by a SessionRecorder, opened for reading.
+ * The records are read one after another through a memory mapped view of the file; any second of the session can be jumped to in constant time using the index file.
+ * Recordings of up to 2 GB (more than 100 hours with 6 channels) are supported.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SessionRecording {
+
+	/**
+	 * The mapped records of the data file.
+	 */
+	private MappedByteBuffer mData = null;
+
+	/**
+	 * The mapped index file; null if the index file is missing.
+	 */
+	private MappedByteBuffer mIndex = null;
+
+	/**
+	 * The number of channels of every sample.
+	 */
+	private int mChannels = 0;
+
+	/**
+	 * The sample rate of the recorded reader.
+	 */
+	private int mSampleRate = 0;
+
+	/**
+	 * The start time of the recording in milliseconds since the epoch.
+	 */
+	private long mStartTime = 0;
+
+	/**
+	 * The number of recorded samples.
+	 */
+	private long mSampleCount = 0;
+
+	/**
+	 * The number of recorded gesture events.
+	 */
+	private long mEventCount = 0;
+
+	/**
+	 * The type of the current record; 0 if there is no current record.
+	 */
+	private byte mRecordType = 0;
+
+	/**
+	 * The number of the next sample record (0 for the first sample of the recording).
+	 */
+	private long mNextSample = 0;
+
+	/**
+	 * The number of the current sample record.
+	 */
+	private long mSample = -1;
+
+	/**
+	 * The packet counter of the current sample record.
+	 */
+	private int mPacketCounter = 0;
+
+	/**
+	 * The raw values of the current sample record.
+	 */
+	private int[] mRawValues = null;
+
+	/**
+	 * The event code of the current event record.
+	 */
+	private int mEventCode = 0;
+
+	/**
+	 * The gesture id of the current event record.
+	 */
+	private int mGestureId = 0;
+
+	/**
+	 * The sample count of the reader stored with the current event record.
+	 */
+	private long mEventSample = 0;
+
+	/**
+	 * Constructor; opens a recording for reading.
+	 * @param _file the recorded file
+	 * @throws IOException if the file cannot be read or is no recording
+	 */
+	public SessionRecording(File _file) throws IOException {
+		if (_file == null) {
+			throw new IllegalArgumentException("Constructor parameter _file must not be null in class " + this.getClass().getName() + "!");
+		}
+
+		try (RandomAccessFile data = new RandomAccessFile(_file, "r")) {
+			FileChannel channel = data.getChannel();
+			if (channel.size() < SessionRecorder.HEADER_SIZE) {
+				throw new IOException(_file + " is no session recording!");
+			}
+			MappedByteBuffer header = map(channel, 0, SessionRecorder.HEADER_SIZE);
+			if (header.getLong(0) != SessionRecorder.MAGIC || header.getInt(SessionRecorder.HEADER_VERSION) != SessionRecorder.VERSION) {
+				throw new IOException(_file + " is no session recording of version " + SessionRecorder.VERSION + "!");
+			}
+			mChannels = header.getInt(SessionRecorder.HEADER_CHANNELS);
+			mSampleRate = header.getInt(SessionRecorder.HEADER_SAMPLE_RATE);
+			mStartTime = header.getLong(SessionRecorder.HEADER_START_TIME);
+			mSampleCount = header.getLong(SessionRecorder.HEADER_SAMPLE_COUNT);
+			mEventCount = header.getLong(SessionRecorder.HEADER_EVENT_COUNT);
+			long end = header.getLong(SessionRecorder.HEADER_DATA_END);
+			if (end - SessionRecorder.HEADER_SIZE > Integer.MAX_VALUE) {
+				throw new IOException(_file + " is too large!");
+			}
+			mData = map(channel, SessionRecorder.HEADER_SIZE, end - SessionRecorder.HEADER_SIZE);
+		}
+
+		File indexFile = new File(_file.getPath() + SessionRecorder.INDEX_EXTENSION);
+		if (indexFile.exists()) {
+			try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+				mIndex = map(index.getChannel(), 0, index.length());
+			}
+		}
+		mRawValues = new int[mChannels];
+	}
+
+	/**
+	 * Gets the number of channels of every sample.
+	 * @return the number of channels
+	 */
+	public int getChannels() {
+		return mChannels;
+	}
+
+	/**
+	 * Gets the sample rate of the recorded reader.
+	 * @return the sample rate
+	 */
+	public int getSampleRate() {
+		return mSampleRate;
+	}
+
+	/**
+	 * Gets the start time of the recording.
+	 * @return the start time in milliseconds since the epoch
+	 */
+	public long getStartTime() {
+		return mStartTime;
+	}
+
+	/**
+	 * Gets the number of recorded samples.
+	 * @return the number of recorded samples
+	 */
+	public long getSampleCount() {
+		return mSampleCount;
+	}
+
+	/**
+	 * Gets the number of recorded gesture events.
+	 * @return the number of recorded gesture events
+	 */
+	public long getEventCount() {
+		return mEventCount;
+	}
+
+	/**
+	 * Gets the duration of the recording.
+	 * @return the duration in seconds
+	 */
+	public double getDurationSeconds() {
+		return (double)mSampleCount / mSampleRate;
+	}
+
+	/**
+	 * Jumps to the first sample of a second; the next call of next() returns this sample.
+	 * Uses the index file, so the cost does not depend on the length of the recording.
+	 * @param _second the second to jump to (0 for the beginning, which is valid for an empty recording as well)
+	 */
+	public void seekSecond(int _second) {
+		if (_second < 0 || (_second > 0 && (long)_second * mSampleRate >= mSampleCount)) {
+			throw new IllegalArgumentException("Parameter _second is out of range in class " + this.getClass().getName() + "!");
+		}
+		if (_second == 0) {
+			mData.position(0);
+		} else if (mIndex != null && (long)_second * 8 + 8 <= mIndex.capacity()) {
+			mData.position((int)(mIndex.getLong(_second * 8) - SessionRecorder.HEADER_SIZE));
+		} else {
+			throw new IllegalStateException("Missing index to seek in class " + this.getClass().getName() + "!");
+		}
+		mNextSample = (long)_second * mSampleRate;
+		mSample = -1;
+		mRecordType = 0;
+	}
+
+	/**
+	 * Reads the next record.
+	 * @return true if a record has been read; false if the end of the recording has been reached
+	 */
+	public boolean next() {
+		if (!mData.hasRemaining()) {
+			mRecordType = 0;
+			return false;
+		}
+		mRecordType = mData.get();
+		if (mRecordType == SessionRecorder.RECORD_SAMPLE) {
+			mPacketCounter = mData.get() & 0xFF;
+			for (int ch=0; ch<mChannels; ch++) {
+				mRawValues[ch] = mData.getShort();
+			}
+			mSample = mNextSample++;
+		} else if (mRecordType == SessionRecorder.RECORD_EVENT) {
+			mEventCode = mData.get();
+			mGestureId = mData.getInt();
+			mEventSample = mData.getLong();
+		} else {
+			throw new IllegalStateException("Unknown record type " + mRecordType + " at position " + (mData.position() - 1) + " in class " + this.getClass().getName() + "!");
+		}
+		return true;
+	}
+
+	/**
+	 * Reads records up to the next sample record, skipping gesture events.
+	 * @return true if a sample has been read; false if the end of the recording has been reached
+	 */
+	public boolean nextSample() {
+		while (next()) {
+			if (mRecordType == SessionRecorder.RECORD_SAMPLE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the type of the current record.
+	 * @return SessionRecorder.RECORD_SAMPLE or SessionRecorder.RECORD_EVENT; 0 if there is no current record
+	 */
+	public byte getRecordType() {
+		return mRecordType;
+	}
+
+	/**
+	 * Gets the number of the last sample read (0 for the first sample of the recording).
+	 * @return the number of the last sample read; -1 if no sample has been read yet
+	 */
+	public long getSample() {
+		return mSample;
+	}
+
+	/**
+	 * Gets the packet counter of the last sample read.
+	 * @return the packet counter
+	 */
+	public int getPacketCounter() {
+		return mPacketCounter;
+	}
+
+	/**
+	 * Gets a raw value of the last sample read.
+	 * @param _channel the channel
+	 * @return the raw 10-bit value
+	 */
+	public int getRawValue(int _channel) {
+		return mRawValues[_channel];
+	}
+
+	/**
+	 * Gets the event code of the last event read.
+	 * @return one of the event codes of SessionRecorder
+	 */
+	public int getEventCode() {
+		return mEventCode;
+	}
+
+	/**
+	 * Gets the gesture id of the last event read.
+	 * @return the gesture id
+	 */
+	public int getGestureId() {
+		return mGestureId;
+	}
+
+	/**
+	 * Gets the sample count of the reader at the time the last event read was triggered.
+	 * @return the sample count of the reader
+	 */
+	public long getEventSample() {
+		return mEventSample;
+	}
+
+	/**
+	 * Helper method to map a region of a file for reading in little endian byte order.
+	 * @param _channel the channel of the file
+	 * @param _position the file position of the region
+	 * @param _size the size of the region
+	 * @return the mapped region
+	 * @throws IOException if the region cannot be mapped
+	 */
+	private static MappedByteBuffer map(FileChannel _channel, long _position, long _size) throws IOException {
+		MappedByteBuffer buffer = _channel.map(FileChannel.MapMode.READ_ONLY, _position, _size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+}
\ No newline at end of file
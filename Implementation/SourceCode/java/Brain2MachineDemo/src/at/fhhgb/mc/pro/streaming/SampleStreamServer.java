@@ -0,0 +1,795 @@
+package at.fhhgb.mc.pro.streaming;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import at.fhhgb.mc.pro.gesture.FreqGesture;
+import at.fhhgb.mc.pro.gesture.FreqGestureEvent;
+import at.fhhgb.mc.pro.gesture.FreqGestureEventListener;
+import at.fhhgb.mc.pro.gesture.LookGesture;
+import at.fhhgb.mc.pro.gesture.LookGestureDirection;
+import at.fhhgb.mc.pro.gesture.LookGestureEvent;
+import at.fhhgb.mc.pro.gesture.LookGestureEventListener;
+import at.fhhgb.mc.pro.reader.OpenEEGReader;
+import at.fhhgb.mc.pro.recording.SessionRecorder;
+
+/**
+ * A class publishing the decoded samples and gesture events of a reader to other processes over localhost TCP and optionally UDP.
+ * Every client first receives a header frame (FRAME_HEADER, version, channels, sample rate as short); then follow the frames in the record format of SessionRecorder in big endian byte order:
+ * sample frames (RECORD_SAMPLE, packet counter, a short per channel) and event frames (RECORD_EVENT, event code, int gesture id, long sample count).
+ * The frames are written once into direct buffers; all clients send views of the same buffers with gathering writes, so there is no copy per client.
+ * A buffer is reused once it has been published and no client has views of it queued anymore, so no direct memory is allocated while the clients keep up.
+ * A client that cannot keep up has a bounded backlog; when it is full the oldest frames are dropped for this client only, so the reader is never slowed down.
+ * @author Boris Fuchs, Paul Schmutz
+ */
+public class SampleStreamServer implements OpenEEGReader.SampleEventListener {
+	
+	/**
+	 * The version of the stream format.
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * Frame type of the header frame sent to every new client.
+	 */
+	public static final byte FRAME_HEADER = 0;
+	
+	/**
+	 * The size of the header frame in bytes.
+	 */
+	public static final int HEADER_FRAME_SIZE = 5;
+	
+	/**
+	 * Default maximum number of bytes queued for a client.
+	 */
+	public static final int BACKLOG_BYTES_DEFAULT = 64 * 1024;
+	
+	/**
+	 * The size of a buffer the frames are written to; also the maximum size of a UDP datagram.
+	 */
+	private static final int BLOCK_SIZE = 16 * 1024;
+	
+	/**
+	 * The maximum number of buffers written to a client at once.
+	 */
+	private static final int GATHER_BUFFERS = 16;
+	
+	/**
+	 * Placeholder for frames queued for a client that do not belong to a buffer (e. g. the header frame).
+	 */
+	private static final Block NO_BLOCK = new Block(0);
+	
+	/**
+	 * The reader whose samples are published.
+	 */
+	private OpenEEGReader mReader = null;
+	
+	/**
+	 * The number of channels of every sample.
+	 */
+	private int mChannels = 0;
+	
+	/**
+	 * The maximum number of bytes queued for a client.
+	 */
+	private int mBacklogBytes = 0;
+	
+	/**
+	 * The selector handling all connections.
+	 */
+	private Selector mSelector = null;
+	
+	/**
+	 * The channel accepting TCP clients.
+	 */
+	private ServerSocketChannel mServerChannel = null;
+	
+	/**
+	 * The channel sending UDP datagrams; null until the first UDP subscriber is added.
+	 */
+	private volatile DatagramChannel mUdpChannel = null;
+	
+	/**
+	 * The addresses of the UDP subscribers.
+	 */
+	private List<InetSocketAddress> mUdpSubscribers = null;
+	
+	/**
+	 * The TCP clients (only accessed by the server thread).
+	 */
+	private List<Subscriber> mSubscribers = null;
+	
+	/**
+	 * The buffer the next frame is written to (guarded by this).
+	 */
+	private Block mWriteBlock = null;
+	
+	/**
+	 * Buffers that are neither written, published nor queued for a client anymore and can be written again (guarded by this).
+	 */
+	private ArrayDeque<Block> mFreeBlocks = null;
+	
+	/**
+	 * The maximum number of buffers kept for reuse.
+	 */
+	private int mFreeBlocksMax = 0;
+	
+	/**
+	 * The buffer containing the next frames to publish (only accessed by the server thread).
+	 */
+	private Block mPublishBlock = null;
+	
+	/**
+	 * The position of the next frame to publish inside mPublishBlock.
+	 */
+	private int mPublishPosition = 0;
+	
+	/**
+	 * Indicates whether the selector has been woken up and has not published the new frames yet.
+	 */
+	private AtomicBoolean mWakeupPending = null;
+	
+	/**
+	 * The thread handling the connections.
+	 */
+	private Thread mServerThread = null;
+	
+	/**
+	 * Indicates whether the server thread is running.
+	 */
+	private volatile boolean mRunning = false;
+	
+	/**
+	 * The number of connected TCP clients.
+	 */
+	private volatile int mSubscriberCount = 0;
+	
+	/**
+	 * The number of bytes written to the buffers.
+	 */
+	private AtomicLong mPublishedBytes = null;
+	
+	/**
+	 * The number of bytes dropped for clients that could not keep up.
+	 */
+	private AtomicLong mDroppedBytes = null;
+	
+	/**
+	 * Constructor; starts the server on localhost with the default backlog.
+	 * @param _reader the reader whose samples are published
+	 * @param _port the TCP port; 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public SampleStreamServer(OpenEEGReader _reader, int _port) throws IOException {
+		this(_reader, _port, BACKLOG_BYTES_DEFAULT);
+	}
+	
+	/**
+	 * Constructor; starts the server on localhost.
+	 * @param _reader the reader whose samples are published
+	 * @param _port the TCP port; 0 for any free port
+	 * @param _backlogBytes the maximum number of bytes queued for a client
+	 * @throws IOException if the port cannot be opened
+	 */
+	public SampleStreamServer(OpenEEGReader _reader, int _port, int _backlogBytes) throws IOException {
+		if (_reader == null) {
+			throw new IllegalArgumentException("Constructor parameter _reader must not be null in class " + this.getClass().getName() + "!");
+		}
+		if (_backlogBytes < BLOCK_SIZE) {
+			throw new IllegalArgumentException("Constructor parameter _backlogBytes must be at least " + BLOCK_SIZE + " in class " + this.getClass().getName() + "!");
+		}
+		mReader = _reader;
+		mChannels = _reader.getChannels();
+		mBacklogBytes = _backlogBytes;
+		mUdpSubscribers = new CopyOnWriteArrayList<>();
+		mSubscribers = new ArrayList<>();
+		mWakeupPending = new AtomicBoolean();
+		mPublishedBytes = new AtomicLong();
+		mDroppedBytes = new AtomicLong();
+		mFreeBlocksMax = _backlogBytes / BLOCK_SIZE + 2;
+		mFreeBlocks = new ArrayDeque<>(mFreeBlocksMax);
+		mWriteBlock = new Block();
+		mPublishBlock = mWriteBlock;
+		
+		mSelector = Selector.open();
+		mServerChannel = ServerSocketChannel.open();
+		mServerChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), _port));
+		mServerChannel.configureBlocking(false);
+		mServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+		
+		mRunning = true;
+		mServerThread = new Thread(new Server(), "SampleStreamServer");
+		mServerThread.setDaemon(true);
+		mServerThread.start();
+		mReader.addSampleEventListener(this);
+	}
+	
+	/**
+	 * Gets the TCP port of the server.
+	 * @return the port
+	 */
+	public int getPort() {
+		return mServerChannel.socket().getLocalPort();
+	}
+	
+	/**
+	 * Gets the number of connected TCP clients.
+	 * @return the number of clients
+	 */
+	public int getSubscriberCount() {
+		return mSubscriberCount;
+	}
+	
+	/**
+	 * Gets the number of bytes of all frames published.
+	 * @return the number of bytes
+	 */
+	public long getPublishedByteCount() {
+		return mPublishedBytes.get();
+	}
+	
+	/**
+	 * Gets the number of bytes dropped for clients that could not keep up, summed over all clients.
+	 * @return the number of bytes
+	 */
+	public long getDroppedByteCount() {
+		return mDroppedBytes.get();
+	}
+	
+	/**
+	 * Adds a UDP subscriber; it receives the header frame and then datagrams of complete frames.
+	 * Datagrams that cannot be sent immediately are dropped.
+	 * @param _address the address of the subscriber
+	 * @throws IOException if the UDP channel cannot be opened
+	 */
+	public synchronized void addUdpSubscriber(InetSocketAddress _address) throws IOException {
+		if (mUdpChannel == null) {
+			mUdpChannel = DatagramChannel.open();
+			mUdpChannel.configureBlocking(false);
+		}
+		mUdpChannel.send(createHeaderFrame(), _address);
+		mUdpSubscribers.add(_address);
+	}
+	
+	/**
+	 * Removes a UDP subscriber.
+	 * @param _address the address of the subscriber
+	 */
+	public void removeUdpSubscriber(InetSocketAddress _address) {
+		mUdpSubscribers.remove(_address);
+	}
+	
+	/**
+	 * Publishes the events of a frequency gesture.
+	 * @param _gesture the gesture
+	 * @param _gestureId the id identifying the gesture in the stream
+	 */
+	public void publishGesture(FreqGesture _gesture, final int _gestureId) {
+		_gesture.addGestureEventListener(new FreqGestureEventListener() {
+			@Override
+			public void onFreqGestureEventStart(FreqGestureEvent _evt) {
+				publishEvent(_gestureId, SessionRecorder.EVENT_FREQ_START, _evt.getSampleCount());
+			}
+			
+			@Override
+			public void onFreqGestureEventComplete(FreqGestureEvent _evt) {
+				publishEvent(_gestureId, SessionRecorder.EVENT_FREQ_COMPLETE, _evt.getSampleCount());
+			}
+		});
+	}
+	
+	/**
+	 * Publishes the events of a look gesture.
+	 * @param _gesture the gesture
+	 * @param _gestureId the id identifying the gesture in the stream
+	 */
+	public void publishGesture(LookGesture _gesture, final int _gestureId) {
+		_gesture.addGestureEventListener(new LookGestureEventListener() {
+			@Override
+			public void onLook(LookGestureEvent _evt) {
+				publishEvent(_gestureId, _evt.getDirection() == LookGestureDirection.LEFT ? SessionRecorder.EVENT_LOOK_LEFT : SessionRecorder.EVENT_LOOK_RIGHT, _evt.getSampleCount());
+			}
+		});
+	}
+	
+	/**
+	 * Publishes a gesture event at the current sample of the reader.
+	 * @param _gestureId the id identifying the gesture in the stream
+	 * @param _eventCode one of the event codes of SessionRecorder
+	 */
+	public void publishEvent(int _gestureId, int _eventCode) {
+		publishEvent(_gestureId, _eventCode, mReader.getChannelDataSampleCount());
+	}
+	
+	/**
+	 * Publishes a gesture event.
+	 * @param _gestureId the id identifying the gesture in the stream
+	 * @param _eventCode one of the event codes of SessionRecorder
+	 * @param _sampleCount the position of the sample triggering the event (see GestureEvent.getSampleCount()); events may be delivered after the reader has moved on
+	 */
+	public synchronized void publishEvent(int _gestureId, int _eventCode, long _sampleCount) {
+		if (!mRunning) {
+			return;
+		}
+		ByteBuffer buffer = reserve(14);
+		buffer.put(SessionRecorder.RECORD_EVENT);
+		buffer.put((byte)_eventCode);
+		buffer.putInt(_gestureId);
+		buffer.putLong(_sampleCount);
+		commit();
+	}
+	
+	/**
+	 * Publishes a decoded sample; called by the reader.
+	 * @param _packetCounter the packet counter of the packet containing the sample
+	 * @param _rawValues the raw 10-bit values of the channels
+	 * @param _channels the number of channels
+	 */
+	@Override
+	public synchronized void onSampleDecoded(int _packetCounter, int[] _rawValues, int _channels) {
+		if (!mRunning) {
+			return;
+		}
+		ByteBuffer buffer = reserve(2 + mChannels * 2);
+		buffer.put(SessionRecorder.RECORD_SAMPLE);
+		buffer.put((byte)_packetCounter);
+		for (int ch=0; ch<mChannels; ch++) {
+			buffer.putShort((short)_rawValues[ch]);
+		}
+		commit();
+	}
+	
+	/**
+	 * Stops the server and disconnects all clients.
+	 * @throws IOException if a channel cannot be closed
+	 */
+	public void close() throws IOException {
+		mReader.removeSampleEventListener(this);
+		synchronized (this) {
+			mRunning = false;
+		}
+		mSelector.wakeup();
+		try {
+			mServerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mServerChannel.close();
+		mSelector.close();
+		synchronized (this) {
+			if (mUdpChannel != null) {
+				mUdpChannel.close();
+			}
+		}
+	}
+	
+	/**
+	 * Helper method to get a buffer with space for a frame, continuing with a reused or new buffer if the current one is full.
+	 * @param _size the size of the frame
+	 * @return the buffer positioned at the start of the frame
+	 */
+	private ByteBuffer reserve(int _size) {
+		if (mWriteBlock.mBuffer.remaining() < _size) {
+			Block next = mFreeBlocks.pollFirst();
+			if (next == null) {
+				next = new Block();
+			}
+			mWriteBlock.mNext = next;
+			mWriteBlock = next;
+		}
+		return mWriteBlock.mBuffer;
+	}
+	
+	/**
+	 * Helper method to hand the written frame to the server thread.
+	 */
+	private void commit() {
+		int position = mWriteBlock.mBuffer.position();
+		mPublishedBytes.addAndGet(position - mWriteBlock.mCommitted);
+		mWriteBlock.mCommitted = position;
+		if (!mWakeupPending.get() && mWakeupPending.compareAndSet(false, true)) {
+			mSelector.wakeup();
+		}
+	}
+	
+	/**
+	 * Helper method to release a view of a buffer that was queued for a client; called by the server thread.
+	 * @param _block the buffer of the view
+	 */
+	private void release(Block _block) {
+		_block.mReferences--;
+		if (_block.mReferences == 0 && _block.mPublished) {
+			recycle(_block);
+		}
+	}
+	
+	/**
+	 * Helper method to hand a buffer back for reuse once the server thread is done with it.
+	 * @param _block the buffer
+	 */
+	private synchronized void recycle(Block _block) {
+		if (mFreeBlocks.size() < mFreeBlocksMax) {
+			_block.reset();
+			mFreeBlocks.addFirst(_block);
+		}
+	}
+	
+	/**
+	 * Helper method to create the header frame.
+	 * @return the header frame ready to be sent
+	 */
+	private ByteBuffer createHeaderFrame() {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_FRAME_SIZE);
+		header.put(FRAME_HEADER);
+		header.put((byte)VERSION);
+		header.put((byte)mChannels);
+		header.putShort((short)mReader.getSampleRate());
+		header.flip();
+		return header;
+	}
+	
+	/**
+	 * Helper class representing a buffer the frames are written to.
+	 */
+	private static class Block {
+		/**
+		 * The buffer written by the publishing threads.
+		 */
+		private ByteBuffer mBuffer = null;
+		
+		/**
+		 * A view of the buffer for the server thread, whose position and limit never change.
+		 */
+		private ByteBuffer mView = null;
+		
+		/**
+		 * The end of the last complete frame.
+		 */
+		private volatile int mCommitted = 0;
+		
+		/**
+		 * The next buffer; null while this is the current buffer.
+		 */
+		private volatile Block mNext = null;
+		
+		/**
+		 * The number of views of the buffer queued for clients (only accessed by the server thread).
+		 */
+		private int mReferences = 0;
+		
+		/**
+		 * Indicates whether all frames of the buffer have been published (only accessed by the server thread).
+		 */
+		private boolean mPublished = false;
+		
+		/**
+		 * Constructor.
+		 */
+		private Block() {
+			this(BLOCK_SIZE);
+		}
+		
+		/**
+		 * Constructor.
+		 * @param _size the size of the buffer in bytes
+		 */
+		private Block(int _size) {
+			mBuffer = ByteBuffer.allocateDirect(_size);
+			mView = mBuffer.duplicate();
+		}
+		
+		/**
+		 * Empties the buffer, so it can be written again.
+		 */
+		private void reset() {
+			mBuffer.clear();
+			mCommitted = 0;
+			mNext = null;
+			mReferences = 0;
+			mPublished = false;
+		}
+	}
+	
+	/**
+	 * Helper class representing a TCP client and its backlog.
+	 */
+	private class Subscriber {
+		/**
+		 * The channel of the client.
+		 */
+		private SocketChannel mChannel = null;
+		
+		/**
+		 * The key of the channel.
+		 */
+		private SelectionKey mKey = null;
+		
+		/**
+		 * The frames waiting to be sent; a buffer at the head may be partially sent.
+		 */
+		private ArrayDeque<ByteBuffer> mBacklog = null;
+		
+		/**
+		 * The buffer every queued view belongs to, in the same order as mBacklog.
+		 */
+		private ArrayDeque<Block> mBacklogBlocks = null;
+		
+		/**
+		 * The number of bytes waiting to be sent.
+		 */
+		private int mQueuedBytes = 0;
+		
+		/**
+		 * The buffers of a gathering write.
+		 */
+		private ByteBuffer[] mGather = null;
+		
+		/**
+		 * Constructor.
+		 * @param _channel the channel of the client
+		 * @throws IOException if the channel cannot be registered
+		 */
+		private Subscriber(SocketChannel _channel) throws IOException {
+			mChannel = _channel;
+			mChannel.configureBlocking(false);
+			mKey = mChannel.register(mSelector, SelectionKey.OP_READ, this);
+			mBacklog = new ArrayDeque<>();
+			mBacklogBlocks = new ArrayDeque<>();
+			mGather = new ByteBuffer[GATHER_BUFFERS];
+		}
+		
+		/**
+		 * Queues frames for the client, dropping the oldest frames if the backlog is full.
+		 * @param _frames the frames; position 0 is the start of the first frame
+		 * @param _block the buffer the frames belong to; NO_BLOCK if they do not belong to a buffer
+		 */
+		private void offer(ByteBuffer _frames, Block _block) {
+			mBacklog.addLast(_frames);
+			mBacklogBlocks.addLast(_block);
+			_block.mReferences++;
+			mQueuedBytes += _frames.remaining();
+			while (mQueuedBytes > mBacklogBytes && mBacklog.size() > 1) {
+				ByteBuffer dropped;
+				Block droppedBlock;
+				if (mBacklog.peekFirst().position() > 0) {
+					//A partially sent buffer has to be completed, so the client never receives half a frame
+					ByteBuffer head = mBacklog.pollFirst();
+					Block headBlock = mBacklogBlocks.pollFirst();
+					dropped = mBacklog.pollFirst();
+					droppedBlock = mBacklogBlocks.pollFirst();
+					mBacklog.addFirst(head);
+					mBacklogBlocks.addFirst(headBlock);
+				} else {
+					dropped = mBacklog.pollFirst();
+					droppedBlock = mBacklogBlocks.pollFirst();
+				}
+				mQueuedBytes -= dropped.remaining();
+				mDroppedBytes.addAndGet(dropped.remaining());
+				release(droppedBlock);
+			}
+		}
+		
+		/**
+		 * Sends as many queued frames as the channel accepts without blocking.
+		 * @return false if the client has disconnected; true otherwise
+		 */
+		private boolean flush() {
+			try {
+				while (!mBacklog.isEmpty()) {
+					int count = 0;
+					for (ByteBuffer frames : mBacklog) {
+						mGather[count++] = frames;
+						if (count == mGather.length) {
+							break;
+						}
+					}
+					long written = mChannel.write(mGather, 0, count);
+					Arrays.fill(mGather, 0, count, null);
+					mQueuedBytes -= written;
+					while (!mBacklog.isEmpty() && !mBacklog.peekFirst().hasRemaining()) {
+						mBacklog.pollFirst();
+						release(mBacklogBlocks.pollFirst());
+					}
+					if (written == 0) {
+						break;
+					}
+				}
+				mKey.interestOps(mBacklog.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		
+		/**
+		 * Discards data sent by the client.
+		 * @param _buffer a buffer to read into
+		 * @return false if the client has disconnected; true otherwise
+		 */
+		private boolean discardInput(ByteBuffer _buffer) {
+			try {
+				int read;
+				do {
+					_buffer.clear();
+					read = mChannel.read(_buffer);
+				} while (read > 0);
+				return read == 0;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		
+		/**
+		 * Closes the connection to the client and releases its backlog.
+		 */
+		private void close() {
+			mBacklog.clear();
+			while (!mBacklogBlocks.isEmpty()) {
+				release(mBacklogBlocks.pollFirst());
+			}
+			mQueuedBytes = 0;
+			mKey.cancel();
+			try {
+				mChannel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Helper class that accepts the clients and sends the published frames.
+	 */
+	private class Server implements Runnable {
+		/**
+		 * Executed in a separate thread this method handles all connections until the server is closed.
+		 */
+		@Override
+		public void run() {
+			ByteBuffer input = ByteBuffer.allocate(256);
+			while (mRunning) {
+				try {
+					mSelector.select();
+				} catch (IOException e) {
+					e.printStackTrace();
+					break;
+				}
+				mWakeupPending.set(false);
+				publish();
+				
+				Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Subscriber subscriber = (Subscriber)key.attachment();
+					boolean open = true;
+					if (key.isReadable()) {
+						open = subscriber.discardInput(input);
+					}
+					if (open && key.isValid() && key.isWritable()) {
+						open = subscriber.flush();
+					}
+					if (!open) {
+						remove(subscriber);
+					}
+				}
+			}
+			for (Subscriber subscriber : mSubscribers) {
+				subscriber.close();
+			}
+			mSubscribers.clear();
+			mSubscriberCount = 0;
+		}
+		
+		/**
+		 * Helper method to accept a new client and send it the header frame.
+		 */
+		private void accept() {
+			try {
+				SocketChannel channel = mServerChannel.accept();
+				if (channel == null) {
+					return;
+				}
+				channel.socket().setTcpNoDelay(true);
+				Subscriber subscriber = new Subscriber(channel);
+				mSubscribers.add(subscriber);
+				mSubscriberCount = mSubscribers.size();
+				subscriber.offer(createHeaderFrame(), NO_BLOCK);
+				if (!subscriber.flush()) {
+					remove(subscriber);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		/**
+		 * Helper method to disconnect a client.
+		 * @param _subscriber the client
+		 */
+		private void remove(Subscriber _subscriber) {
+			_subscriber.close();
+			mSubscribers.remove(_subscriber);
+			mSubscriberCount = mSubscribers.size();
+		}
+		
+		/**
+		 * Helper method to hand all committed frames to the clients.
+		 */
+		private void publish() {
+			while (true) {
+				int committed = mPublishBlock.mCommitted;
+				if (committed > mPublishPosition) {
+					ByteBuffer frames = mPublishBlock.mView.duplicate();
+					frames.limit(committed);
+					frames.position(mPublishPosition);
+					send(frames.slice(), mPublishBlock);
+					mPublishPosition = committed;
+				}
+				Block next = mPublishBlock.mNext;
+				if (next == null) {
+					return;
+				}
+				//Frames committed before the next buffer was started have to be published first
+				if (mPublishBlock.mCommitted == mPublishPosition) {
+					Block published = mPublishBlock;
+					mPublishBlock = next;
+					mPublishPosition = 0;
+					published.mPublished = true;
+					if (published.mReferences == 0) {
+						recycle(published);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Helper method to send frames to all clients; every client gets its own view of the same memory.
+		 * @param _frames the frames
+		 * @param _block the buffer the frames belong to
+		 */
+		private void send(ByteBuffer _frames, Block _block) {
+			for (int s=mSubscribers.size()-1; s>=0; s--) {
+				Subscriber subscriber = mSubscribers.get(s);
+				subscriber.offer(_frames.duplicate(), _block);
+				if (!subscriber.flush()) {
+					remove(subscriber);
+				}
+			}
+			DatagramChannel udp = mUdpChannel;
+			if (udp != null) {
+				for (InetSocketAddress address : mUdpSubscribers) {
+					try {
+						if (udp.send(_frames.duplicate(), address) == 0) {
+							mDroppedBytes.addAndGet(_frames.remaining());
+						}
+					} catch (IOException e) {
+						mDroppedBytes.addAndGet(_frames.remaining());
+					}
+				}
+			}
+		}
+	}
+}
\ No newline at end of file